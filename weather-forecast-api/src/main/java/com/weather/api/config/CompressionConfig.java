@@ -0,0 +1,27 @@
+package com.weather.api.config;
+
+import com.weather.api.repository.WeatherRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(name = "weather.compression.enabled", havingValue = "true", matchIfMissing = true)
+public class CompressionConfig {
+
+    @Bean
+    public FilterRegistrationBean<PrecompressedResponseFilter> precompressedResponseFilter(
+            WeatherRepository repository,
+            @Value("${weather.compression.cache-max-entries:256}") int maxEntries,
+            @Value("${weather.compression.min-size:1024}") int minSize) {
+        PrecompressedResponseFilter filter = new PrecompressedResponseFilter(maxEntries, minSize);
+        repository.addListener(filter);
+        FilterRegistrationBean<PrecompressedResponseFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/weather/*");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return registration;
+    }
+}
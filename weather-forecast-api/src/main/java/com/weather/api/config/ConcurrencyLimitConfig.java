@@ -0,0 +1,38 @@
+package com.weather.api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(name = "weather.concurrency.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public ConcurrencyLimiter concurrencyLimiter(
+            @Value("${weather.concurrency.initial-limit:20}") int initialLimit,
+            @Value("${weather.concurrency.min-limit:4}") int minLimit,
+            @Value("${weather.concurrency.max-limit:200}") int maxLimit) {
+        return new ConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+    }
+
+    @Bean
+    public ConcurrencyLimitSampler concurrencyLimitSampler(ConcurrencyLimiter limiter) {
+        return new ConcurrencyLimitSampler(limiter);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            ConcurrencyLimiter limiter,
+            @Value("${weather.concurrency.retry-after-seconds:1}") long retryAfterSeconds) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiter, retryAfterSeconds));
+        registration.addUrlPatterns("/api/weather/*");
+        // Runs inside the compression filter, so responses served from its cache never take a slot.
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return registration;
+    }
+}
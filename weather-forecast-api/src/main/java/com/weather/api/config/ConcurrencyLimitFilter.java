@@ -0,0 +1,125 @@
+package com.weather.api.config;
+
+import com.weather.api.config.ConcurrencyLimiter.Priority;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits API requests through a {@link ConcurrencyLimiter} and answers the rest with 503 and
+ * {@code Retry-After}. Requests are classed by cost: single-forecast lookups, health, stats and the
+ * precomputed latest view are critical; full listings, geo queries, ranges, batches and
+ * {@code asOf} queries are sheddable. The change stream, write-status polls and profiling
+ * endpoints are not limited, as they spend their time waiting or must work under overload.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final String API_PREFIX = "/api/weather";
+    private static final Set<String> CRITICAL_PATHS = Set.of(
+            API_PREFIX + "/health", API_PREFIX + "/stats", API_PREFIX + "/stats/queries", API_PREFIX + "/latest");
+    private static final Set<String> LISTING_PATHS = Set.of(API_PREFIX, API_PREFIX + "/");
+    private static final Set<String> SHEDDABLE_PATHS = Set.of(API_PREFIX + "/nearby", API_PREFIX + "/nearest",
+            API_PREFIX + "/bulk", API_PREFIX + "/cities/batch", API_PREFIX + "/lookup");
+    // First path segments under the prefix that are not forecast ids.
+    private static final Set<String> RESERVED_SEGMENTS = Set.of(
+            "health", "stats", "stream", "nearby", "nearest", "bulk", "cities", "lookup", "city", "writes", "latest",
+            "profiling");
+
+    private final ConcurrencyLimiter limiter;
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimiter limiter, long retryAfterSeconds) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !path.startsWith(API_PREFIX) || path.equals(API_PREFIX + "/stream")
+                || path.startsWith(API_PREFIX + "/writes/") || path.startsWith(API_PREFIX + "/profiling/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!limiter.tryAcquire(classify(request))) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            return;
+        }
+        long start = System.nanoTime();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - start);
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Streamed responses hold their slot until the body has been written.
+                request.getAsyncContext().addListener(new ReleasingListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    static Priority classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (CRITICAL_PATHS.contains(path)) {
+            return Priority.CRITICAL;
+        }
+        boolean get = "GET".equals(request.getMethod());
+        if (request.getParameter("asOf") != null || SHEDDABLE_PATHS.contains(path)
+                || (get && LISTING_PATHS.contains(path))
+                || (path.startsWith(API_PREFIX + "/city/") && path.endsWith("/range"))) {
+            return Priority.SHEDDABLE;
+        }
+        String rest = path.substring(API_PREFIX.length());
+        boolean singleSegment = rest.length() > 1 && rest.indexOf('/', 1) < 0;
+        if (get && singleSegment && !RESERVED_SEGMENTS.contains(rest.substring(1))) {
+            return Priority.CRITICAL;
+        }
+        return Priority.NORMAL;
+    }
+
+    private static final class ReleasingListener implements AsyncListener {
+        private final Runnable release;
+
+        ReleasingListener(Runnable release) {
+            this.release = release;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.weather.api.config;
+
+import com.weather.api.jfr.ConcurrencyLimitEvent;
+import jdk.jfr.FlightRecorder;
+
+import java.util.Map;
+
+/**
+ * Publishes the limiter's state as a periodic {@link ConcurrencyLimitEvent}, so a flight recording
+ * shows the limit and shed counts over time next to the service's other events. The hook only runs
+ * while a recording has the event enabled.
+ */
+public class ConcurrencyLimitSampler implements AutoCloseable {
+    private final Runnable hook;
+
+    public ConcurrencyLimitSampler(ConcurrencyLimiter limiter) {
+        this.hook = () -> {
+            Map<ConcurrencyLimiter.Priority, Long> rejections = limiter.getRejections();
+            new ConcurrencyLimitEvent(limiter.getLimit(), limiter.getInFlight(),
+                    rejections.get(ConcurrencyLimiter.Priority.CRITICAL),
+                    rejections.get(ConcurrencyLimiter.Priority.NORMAL),
+                    rejections.get(ConcurrencyLimiter.Priority.SHEDDABLE)).commit();
+        };
+        FlightRecorder.addPeriodicEvent(ConcurrencyLimitEvent.class, hook);
+    }
+
+    @Override
+    public void close() {
+        FlightRecorder.removePeriodicEvent(hook);
+    }
+}
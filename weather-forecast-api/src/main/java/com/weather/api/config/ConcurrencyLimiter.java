@@ -0,0 +1,115 @@
+package com.weather.api.config;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive limit on concurrent requests, in the style of a gradient limiter. Latency is tracked as
+ * a fast and a slow moving average; while the fast one stays close to the slow one, the limit
+ * grows by about its square root per update, and once queueing makes recent requests slower the
+ * limit shrinks in proportion. Each {@link Priority} may only use part of the limit, so sheddable
+ * requests are turned away first as the limit tightens.
+ */
+public class ConcurrencyLimiter {
+
+    public enum Priority {
+        /** Cheap lookups that should keep working under overload. */
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        /** Scans and full listings, shed first. */
+        SHEDDABLE(0.5);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    private static final double SMOOTHING = 0.2;
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, AtomicLong> rejections = new EnumMap<>(Priority.class);
+    private volatile double limit;
+    // Guarded by this.
+    private double shortRtt;
+    private double longRtt;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        for (Priority priority : Priority.values()) {
+            rejections.put(priority, new AtomicLong());
+        }
+    }
+
+    /**
+     * Takes a slot if the priority's share of the limit is not used up; every successful call must
+     * be followed by {@link #release}.
+     */
+    public boolean tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejections.get(priority).incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Frees a slot and feeds the request's latency into the limit.
+     */
+    public void release(long latencyNanos) {
+        int concurrency = inFlight.getAndDecrement();
+        update(Math.max(1, latencyNanos), concurrency);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public Map<Priority, Long> getRejections() {
+        Map<Priority, Long> counts = new EnumMap<>(Priority.class);
+        rejections.forEach((priority, count) -> counts.put(priority, count.get()));
+        return counts;
+    }
+
+    private synchronized void update(long latencyNanos, int concurrency) {
+        if (longRtt == 0) {
+            shortRtt = latencyNanos;
+            longRtt = latencyNanos;
+            return;
+        }
+        shortRtt += (latencyNanos - shortRtt) / SHORT_WINDOW;
+        longRtt += (latencyNanos - longRtt) / LONG_WINDOW;
+        // After a lasting latency increase the baseline catches up, so the limit can grow again.
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+        // A limit that is not being used says nothing about whether more would be safe.
+        if (next > current && concurrency < current / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,253 @@
+package com.weather.api.config;
+
+import com.weather.api.jfr.CacheLookupEvent;
+import com.weather.api.jfr.ServerTiming;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.ForecastChangeListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves gzip-compressed GET responses from a small LRU cache of already-compressed bodies, so a
+ * listing is compressed once per data change rather than once per request. Entries are stamped
+ * with a data generation: responses under {@code /city/{city}} are invalidated only by changes to
+ * that city, everything else by any change. Conditional requests are left to the controllers, which
+ * answer them with 304, and history and {@code asOf} reads are not cached, as pruning old versions
+ * changes them without a change event.
+ */
+public class PrecompressedResponseFilter extends OncePerRequestFilter implements ForecastChangeListener {
+    private static final String API_PREFIX = "/api/weather";
+    private static final String CITY_PREFIX = API_PREFIX + "/city/";
+    // The latest view rolls over at midnight without a change event, so no stamp would catch it.
+    private static final Set<String> UNCACHED_PATHS = Set.of(
+            API_PREFIX + "/health", API_PREFIX + "/stats", API_PREFIX + "/stats/queries", API_PREFIX + "/stream",
+            API_PREFIX + "/latest");
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong clears = new AtomicLong();
+    private final Map<String, AtomicLong> cityGenerations = new ConcurrentHashMap<>();
+    private final Map<String, Entry> cache;
+    private final int minSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PrecompressedResponseFilter(int maxEntries, int minSize) {
+        this.minSize = minSize;
+        int capacity = Math.max(1, maxEntries);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !"GET".equals(request.getMethod())
+                || !path.startsWith(API_PREFIX)
+                || UNCACHED_PATHS.contains(path)
+                || path.startsWith(API_PREFIX + "/profiling/")
+                || path.endsWith("/history")
+                || request.getParameter("asOf") != null
+                || request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null
+                || !acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String city = cityOf(request.getRequestURI());
+        // Headers set downstream (content type, CORS) are cached too, so they are part of the key.
+        String key = request.getRequestURI() + '?' + request.getQueryString()
+                + '|' + request.getHeader(HttpHeaders.ACCEPT) + '|' + request.getHeader(HttpHeaders.ORIGIN);
+        long stamp = stampFor(city);
+
+        CacheLookupEvent lookup = CacheLookupEvent.start("compressed-responses");
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        boolean hit = entry != null && entry.stamp == stamp;
+        lookup.finish(key, hit);
+        if (hit) {
+            hits.incrementAndGet();
+            write(response, entry);
+            return;
+        }
+        misses.incrementAndGet();
+
+        Set<String> headersBefore = new HashSet<>(response.getHeaderNames());
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        byte[] body = wrapper.getContentAsByteArray();
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || body.length < minSize
+                || response.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        ServerTiming.start(ServerTiming.Stage.COMPRESSION);
+        byte[] compressed = gzip(body);
+        ServerTiming.stop(ServerTiming.Stage.COMPRESSION);
+        entry = new Entry(stamp, wrapper.getContentType(), compressed, headersAddedBy(response, headersBefore));
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+        wrapper.resetBuffer();
+        write(response, entry);
+    }
+
+    @Override
+    public void onForecastChanged(WeatherForecast previous, WeatherForecast current) {
+        generation.incrementAndGet();
+        if (previous != null) {
+            cityGeneration(normalize(previous.getCity())).incrementAndGet();
+        }
+        if (current != null && (previous == null || !normalize(previous.getCity()).equals(normalize(current.getCity())))) {
+            cityGeneration(normalize(current.getCity())).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onForecastsCleared() {
+        generation.incrementAndGet();
+        clears.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("*")) {
+                continue;
+            }
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (quality > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long stampFor(String city) {
+        if (city == null) {
+            return generation.get();
+        }
+        // Both counters only grow, so their sum changes whenever either one does.
+        AtomicLong cityGeneration = cityGenerations.get(city);
+        return clears.get() + (cityGeneration == null ? 0 : cityGeneration.get());
+    }
+
+    private AtomicLong cityGeneration(String city) {
+        return cityGenerations.computeIfAbsent(city, key -> new AtomicLong());
+    }
+
+    private static String cityOf(String path) {
+        if (!path.startsWith(CITY_PREFIX)) {
+            return null;
+        }
+        int end = path.indexOf('/', CITY_PREFIX.length());
+        String segment = end < 0 ? path.substring(CITY_PREFIX.length()) : path.substring(CITY_PREFIX.length(), end);
+        return normalize(UriUtils.decode(segment, StandardCharsets.UTF_8));
+    }
+
+    private static String normalize(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String[]> headersAddedBy(HttpServletResponse response, Set<String> before) {
+        List<String[]> headers = new ArrayList<>();
+        for (String name : new HashSet<>(response.getHeaderNames())) {
+            if (before.contains(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+                continue;
+            }
+            Collection<String> values = response.getHeaders(name);
+            for (String value : values) {
+                headers.add(new String[]{name, value});
+            }
+        }
+        return headers;
+    }
+
+    private static void write(HttpServletResponse response, Entry entry) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        for (String[] header : entry.headers) {
+            if (!response.containsHeader(header[0])) {
+                response.addHeader(header[0], header[1]);
+            }
+        }
+        response.setContentType(entry.contentType);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentLength(entry.body.length);
+        response.getOutputStream().write(entry.body);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static final class Entry {
+        final long stamp;
+        final String contentType;
+        final byte[] body;
+        final List<String[]> headers;
+
+        Entry(long stamp, String contentType, byte[] body, List<String[]> headers) {
+            this.stamp = stamp;
+            this.contentType = contentType;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.weather.api.config;
+
+import com.weather.api.jfr.ServerTiming;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@ConditionalOnProperty(name = "weather.server-timing.enabled", havingValue = "true")
+public class ServerTimingConfig implements WebMvcConfigurer {
+    private final ObjectProvider<javax.validation.Validator> validator;
+
+    public ServerTimingConfig(ObjectProvider<javax.validation.Validator> validator) {
+        this.validator = validator;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ServerTimingFilter> serverTimingFilter(
+            @Value("${weather.server-timing.min-total-ms:0}") long minTotalMs) {
+        FilterRegistrationBean<ServerTimingFilter> registration = new FilterRegistrationBean<>(new ServerTimingFilter(minTotalMs));
+        registration.addUrlPatterns("/api/weather/*");
+        // Outside the compression filter, so the header covers cache lookups and compression.
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+        return registration;
+    }
+
+    /**
+     * Times request body validation ({@code @Valid}) into the validation stage.
+     */
+    @Override
+    public Validator getValidator() {
+        javax.validation.Validator target = validator.getIfAvailable();
+        return target == null ? null : new TimedValidator(new SpringValidatorAdapter(target));
+    }
+
+    private static final class TimedValidator implements SmartValidator {
+        private final SmartValidator delegate;
+
+        TimedValidator(SmartValidator delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return delegate.supports(clazz);
+        }
+
+        @Override
+        public void validate(Object target, Errors errors) {
+            ServerTiming.start(ServerTiming.Stage.VALIDATION);
+            delegate.validate(target, errors);
+            ServerTiming.stop(ServerTiming.Stage.VALIDATION);
+        }
+
+        @Override
+        public void validate(Object target, Errors errors, Object... validationHints) {
+            ServerTiming.start(ServerTiming.Stage.VALIDATION);
+            delegate.validate(target, errors, validationHints);
+            ServerTiming.stop(ServerTiming.Stage.VALIDATION);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.weather.api.config;
+
+import com.weather.api.jfr.ServerTiming;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds a {@code Server-Timing} header breaking the request's time down into the {@link ServerTiming}
+ * stages. A header has to go out before the body, so it is added just before the first byte is
+ * written: a serialization stage still running at that point is counted up to then, which for
+ * bodies smaller than Jackson's buffer is all of it. Requests faster than the threshold get no header.
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+    static final String HEADER = "Server-Timing";
+
+    private final long minTotalNanos;
+
+    public ServerTimingFilter(long minTotalMs) {
+        this.minTotalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minTotalMs));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ServerTiming timing = ServerTiming.begin();
+        TimedResponse timed = new TimedResponse(response, timing, minTotalNanos);
+        try {
+            chain.doFilter(request, timed);
+        } finally {
+            if (!request.isAsyncStarted()) {
+                timed.addTimingHeader();
+            }
+            timing.end();
+        }
+    }
+
+    private static final class TimedResponse extends HttpServletResponseWrapper {
+        private final ServerTiming timing;
+        private final long minTotalNanos;
+        private boolean headerAdded;
+        private ServletOutputStream outputStream;
+
+        TimedResponse(HttpServletResponse response, ServerTiming timing, long minTotalNanos) {
+            super(response);
+            this.timing = timing;
+            this.minTotalNanos = minTotalNanos;
+        }
+
+        void addTimingHeader() {
+            if (headerAdded) {
+                return;
+            }
+            headerAdded = true;
+            if (!isCommitted() && timing.totalNanos() >= minTotalNanos) {
+                setHeader(HEADER, timing.header());
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new TimedOutputStream(super.getOutputStream(), this);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addTimingHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addTimingHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addTimingHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addTimingHeader();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addTimingHeader();
+            super.sendRedirect(location);
+        }
+    }
+
+    private static final class TimedOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private final TimedResponse response;
+
+        TimedOutputStream(ServletOutputStream delegate, TimedResponse response) {
+            this.delegate = delegate;
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            response.addTimingHeader();
+            delegate.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            response.addTimingHeader();
+            delegate.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            response.addTimingHeader();
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.addTimingHeader();
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            delegate.setWriteListener(listener);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.weather.api.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.api.model.CityBatchRequest;
+import com.weather.api.model.CityForecasts;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastLookup;
+import com.weather.api.model.ForecastLookupRequest;
+import com.weather.api.service.ForecastBatchService;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Batch reads that would otherwise take one request per item. Results are streamed as a single
+ * array, written element by element in request order, in whichever Jackson format the client accepts.
+ */
+@RestController
+@RequestMapping("/api/weather")
+@CrossOrigin(origins = "*")
+public class ForecastBatchController {
+    static final int MAX_BATCH_CITIES = 500;
+    static final int MAX_LOOKUP_IDS = 10_000;
+
+    private final ForecastBatchService batchService;
+    private final List<AbstractJackson2HttpMessageConverter> converters = new ArrayList<>();
+
+    public ForecastBatchController(ForecastBatchService batchService, HttpMessageConverters messageConverters) {
+        this.batchService = batchService;
+        for (HttpMessageConverter<?> converter : messageConverters.getConverters()) {
+            if (converter instanceof AbstractJackson2HttpMessageConverter) {
+                converters.add((AbstractJackson2HttpMessageConverter) converter);
+            }
+        }
+    }
+
+    @PostMapping("/cities/batch")
+    public ResponseEntity<StreamingResponseBody> getForecastsByCities(
+            @Valid @RequestBody CityBatchRequest request,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        LocalDate startDate = request.getDate() != null ? request.getDate() : request.getStartDate();
+        LocalDate endDate = request.getDate() != null ? request.getDate() : request.getEndDate();
+        boolean dateAndRange = request.getDate() != null && (request.getStartDate() != null || request.getEndDate() != null);
+        if (request.getCities().size() > MAX_BATCH_CITIES || dateAndRange
+                || (startDate != null && endDate != null && startDate.isAfter(endDate))) {
+            return ResponseEntity.badRequest().build();
+        }
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        return stream(accept, () -> {
+            List<CompletableFuture<CityForecasts>> results =
+                    batchService.getForecastsByCities(request.getCities(), startDate, endDate, fieldSet);
+            // Failed lookups come back as error entries, so join() only waits.
+            return (mapper, generator) -> {
+                try {
+                    generator.writeStartArray();
+                    for (CompletableFuture<CityForecasts> result : results) {
+                        mapper.writeValue(generator, result.join());
+                        generator.flush();
+                    }
+                    generator.writeEndArray();
+                } catch (IOException | RuntimeException e) {
+                    // The client has gone or the body cannot be written: skip the cities not yet started.
+                    for (CompletableFuture<CityForecasts> result : results) {
+                        result.cancel(false);
+                    }
+                    throw e;
+                }
+            };
+        });
+    }
+
+    @PostMapping("/lookup")
+    public ResponseEntity<StreamingResponseBody> getForecastsByIds(
+            @Valid @RequestBody ForecastLookupRequest request,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (request.getIds().size() > MAX_LOOKUP_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        return stream(accept, () -> {
+            ForecastLookup lookup = batchService.getForecastsByIds(request.getIds(), fieldSet);
+            return (mapper, generator) -> {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("forecasts");
+                for (Object forecast : lookup.getForecasts()) {
+                    mapper.writeValue(generator, forecast);
+                }
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("missing");
+                for (String id : lookup.getMissing()) {
+                    generator.writeString(id);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            };
+        });
+    }
+
+    /**
+     * Picks the first Jackson format the client accepts and only then runs the query, whose result
+     * is written incrementally to the response on the async request thread.
+     */
+    private ResponseEntity<StreamingResponseBody> stream(String accept, Supplier<BodyWriter> query) {
+        for (MediaType accepted : acceptedTypes(accept)) {
+            for (AbstractJackson2HttpMessageConverter converter : converters) {
+                for (MediaType supported : converter.getSupportedMediaTypes()) {
+                    if (!supported.isWildcardSubtype() && accepted.includes(supported)) {
+                        BodyWriter writer = query.get();
+                        ObjectMapper mapper = converter.getObjectMapper();
+                        return ResponseEntity.ok()
+                                .contentType(supported)
+                                .body(out -> write(mapper, out, writer));
+                    }
+                }
+            }
+        }
+        return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+    }
+
+    private static void write(ObjectMapper mapper, OutputStream out, BodyWriter writer) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writer.write(mapper, generator);
+        }
+    }
+
+    private static List<MediaType> acceptedTypes(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return List.of(MediaType.ALL);
+        }
+        try {
+            List<MediaType> types = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(types);
+            return types;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static ForecastFieldSet fieldSet(String fields) {
+        try {
+            return ForecastFieldSet.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private interface BodyWriter {
+        void write(ObjectMapper mapper, JsonGenerator generator) throws IOException;
+    }
+}
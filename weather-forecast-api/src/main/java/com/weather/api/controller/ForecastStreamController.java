@@ -0,0 +1,26 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.ForecastEventBroadcaster;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/weather")
+@CrossOrigin(origins = "*")
+public class ForecastStreamController {
+    private final ForecastEventBroadcaster broadcaster;
+
+    public ForecastStreamController(ForecastEventBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) String city) {
+        return broadcaster.subscribe(city);
+    }
+}
@@ -0,0 +1,36 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.LatestForecastView;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+@RestController
+@RequestMapping("/api/weather")
+@CrossOrigin(origins = "*")
+public class LatestForecastController {
+    private final LatestForecastView view;
+
+    public LatestForecastController(LatestForecastView view) {
+        this.view = view;
+    }
+
+    /**
+     * Serves the pre-serialized view as is; a client holding the current {@code ETag} gets 304.
+     */
+    @GetMapping(path = "/latest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getLatestForecasts(WebRequest request) {
+        LatestForecastView.Snapshot snapshot = view.snapshot();
+        if (request.checkNotModified(snapshot.getETag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getETag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getJson());
+    }
+}
@@ -0,0 +1,87 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.ProfilingService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Controls the flight recording. Only mapped when {@code weather.profiling.enabled} is set, as a
+ * recording exposes stack traces, thread names and system properties; the loopback check on top of
+ * that is no protection behind a proxy on the same machine, so enable it only where the port is
+ * not reachable through one.
+ */
+@RestController
+@ConditionalOnProperty(name = "weather.profiling.enabled", havingValue = "true")
+@RequestMapping("/api/weather/profiling/recording")
+public class ProfilingController {
+    private final ProfilingService profilingService;
+
+    public ProfilingController(ProfilingService profilingService) {
+        this.profilingService = profilingService;
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> startRecording(HttpServletRequest request) {
+        requireLocal(request);
+        return ResponseEntity.ok(profilingService.start());
+    }
+
+    @GetMapping(path = "/status")
+    public ResponseEntity<Map<String, Object>> getRecordingStatus(HttpServletRequest request) {
+        requireLocal(request);
+        return ResponseEntity.ok(profilingService.status());
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> dumpRecording(HttpServletRequest request) {
+        requireLocal(request);
+        Path file = profilingService.dump()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT, "No recording is running"));
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"weather-api.jfr\"")
+                .body(body);
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> stopRecording(HttpServletRequest request) {
+        requireLocal(request);
+        return profilingService.stop() ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static void requireLocal(HttpServletRequest request) {
+        boolean local;
+        try {
+            local = InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            local = false;
+        }
+        if (!local) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Profiling is only available locally");
+        }
+    }
+}
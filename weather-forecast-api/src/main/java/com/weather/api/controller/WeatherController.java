@@ -1,27 +1,64 @@
 package com.weather.api.controller;
 
+import com.weather.api.config.ConcurrencyLimiter;
+import com.weather.api.jfr.ServerTiming;
+import com.weather.api.model.CitySuggestion;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastProjection;
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.QueryStatsReport;
 import com.weather.api.model.WeatherForecast;
 import com.weather.api.model.WeatherRequest;
+import com.weather.api.model.WriteReceipt;
+import com.weather.api.model.WriteStatus;
+import com.weather.api.repository.DuplicateForecastException;
+import com.weather.api.repository.ForecastVersionConflictException;
 import com.weather.api.service.WeatherService;
+import com.weather.api.service.WriteBehindService;
+import com.weather.api.service.WriteQueueFullException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.net.URI;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/weather")
 @CrossOrigin(origins = "*")
 public class WeatherController {
+    static final double MAX_RADIUS_KM = 20_000;
+    static final int MAX_NEAREST_CITIES = 100;
+    static final int MAX_BULK_SIZE = 10_000;
+    static final long MAX_WRITE_WAIT_MS = 30_000;
+    // Versions start at 1, so an If-Match that cannot be parsed never matches.
+    static final long UNMATCHABLE_VERSION = 0;
+
     private final WeatherService weatherService;
+    private final Validator validator;
+    private final ObjectProvider<ConcurrencyLimiter> concurrencyLimiter;
+    private final ObjectProvider<WriteBehindService> writeBehind;
 
-    public WeatherController(WeatherService weatherService) {
+    public WeatherController(WeatherService weatherService, Validator validator,
+                             ObjectProvider<ConcurrencyLimiter> concurrencyLimiter,
+                             ObjectProvider<WriteBehindService> writeBehind) {
         this.weatherService = weatherService;
+        this.validator = validator;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.writeBehind = writeBehind;
     }
 
     @GetMapping("/health")
@@ -35,20 +72,97 @@ public class WeatherController {
     }
 
     @GetMapping
-    public ResponseEntity<List<WeatherForecast>> getAllForecasts() {
-        return ResponseEntity.ok(weatherService.getAllForecasts());
+    public ResponseEntity<List<?>> getAllForecasts(
+            @RequestParam(required = false) Instant asOf,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        List<?> forecasts;
+        if (asOf != null) {
+            forecasts = withFields(weatherService.getAllForecastsAsOf(asOf), fieldSet);
+        } else if (fieldSet != null) {
+            forecasts = weatherService.getAllForecasts(fieldSet);
+        } else {
+            forecasts = weatherService.getAllForecasts();
+        }
+        return ResponseEntity.ok(forecasts);
+    }
+
+    @GetMapping("/cities/suggest")
+    public ResponseEntity<List<CitySuggestion>> suggestCities(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(weatherService.suggestCities(query, limit));
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<?>> getForecastsNear(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "50") double radiusKm,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        if (!isValidCoordinate(lat, lon) || radiusKm <= 0 || radiusKm > MAX_RADIUS_KM) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<?> forecasts = fieldSet == null
+                ? weatherService.getForecastsNear(lat, lon, radiusKm)
+                : weatherService.getForecastsNear(lat, lon, radiusKm, fieldSet);
+        return ResponseEntity.ok(forecasts);
+    }
+
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearbyCity>> getNearestCities(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5") int k) {
+        if (!isValidCoordinate(lat, lon) || k < 1 || k > MAX_NEAREST_CITIES) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(weatherService.getNearestCities(lat, lon, k));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<WeatherForecast> getForecastById(@PathVariable String id) {
-        return weatherService.getForecastById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> getForecastById(
+            @PathVariable String id,
+            @RequestParam(required = false) Instant asOf,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        Optional<?> forecast;
+        if (asOf != null) {
+            forecast = weatherService.getForecastByIdAsOf(id, asOf).map(f -> fieldSet == null ? f : fieldSet.project(f));
+        } else if (fieldSet != null) {
+            forecast = weatherService.getForecastById(id, fieldSet);
+        } else {
+            return weatherService.getForecastById(id)
+                    .map(WeatherController::okWithETag)
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        return forecast.isPresent() ? ResponseEntity.ok(forecast.get()) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<ForecastVersion>> getForecastHistory(@PathVariable String id) {
+        List<ForecastVersion> versions = weatherService.getForecastHistory(id);
+        if (versions.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(versions);
     }
 
     @GetMapping("/city/{city}")
-    public ResponseEntity<List<WeatherForecast>> getForecastsByCity(@PathVariable String city) {
-        List<WeatherForecast> forecasts = weatherService.getForecastsByCity(city);
+    public ResponseEntity<List<?>> getForecastsByCity(
+            @PathVariable String city,
+            @RequestParam(required = false) Instant asOf,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        List<?> forecasts;
+        if (asOf != null) {
+            forecasts = withFields(weatherService.getForecastsByCityAsOf(city, asOf), fieldSet);
+        } else if (fieldSet != null) {
+            forecasts = weatherService.getForecastsByCity(city, fieldSet);
+        } else {
+            forecasts = weatherService.getForecastsByCity(city);
+        }
         if (forecasts.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -56,10 +170,20 @@ public class WeatherController {
     }
 
     @GetMapping("/city/{city}/country/{country}")
-    public ResponseEntity<List<WeatherForecast>> getForecastsByCityAndCountry(
+    public ResponseEntity<List<?>> getForecastsByCityAndCountry(
             @PathVariable String city,
-            @PathVariable String country) {
-        List<WeatherForecast> forecasts = weatherService.getForecastsByCityAndCountry(city, country);
+            @PathVariable String country,
+            @RequestParam(required = false) Instant asOf,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        List<?> forecasts;
+        if (asOf != null) {
+            forecasts = withFields(weatherService.getForecastsByCityAndCountryAsOf(city, country, asOf), fieldSet);
+        } else if (fieldSet != null) {
+            forecasts = weatherService.getForecastsByCityAndCountry(city, country, fieldSet);
+        } else {
+            forecasts = weatherService.getForecastsByCityAndCountry(city, country);
+        }
         if (forecasts.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -67,10 +191,20 @@ public class WeatherController {
     }
 
     @GetMapping("/city/{city}/date/{date}")
-    public ResponseEntity<List<WeatherForecast>> getForecastsByCityAndDate(
+    public ResponseEntity<List<?>> getForecastsByCityAndDate(
             @PathVariable String city,
-            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        List<WeatherForecast> forecasts = weatherService.getForecastsByCityAndDate(city, date);
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) Instant asOf,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
+        List<?> forecasts;
+        if (asOf != null) {
+            forecasts = withFields(weatherService.getForecastsByCityAndDateAsOf(city, date, asOf), fieldSet);
+        } else if (fieldSet != null) {
+            forecasts = weatherService.getForecastsByCityAndDate(city, date, fieldSet);
+        } else {
+            forecasts = weatherService.getForecastsByCityAndDate(city, date);
+        }
         if (forecasts.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -78,14 +212,24 @@ public class WeatherController {
     }
 
     @GetMapping("/city/{city}/range")
-    public ResponseEntity<List<WeatherForecast>> getForecastsByCityAndDateRange(
+    public ResponseEntity<List<?>> getForecastsByCityAndDateRange(
             @PathVariable String city,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) Instant asOf,
+            @RequestParam(required = false) String fields) {
+        ForecastFieldSet fieldSet = fieldSet(fields);
         if (startDate.isAfter(endDate)) {
             return ResponseEntity.badRequest().build();
         }
-        List<WeatherForecast> forecasts = weatherService.getForecastsByCityAndDateRange(city, startDate, endDate);
+        List<?> forecasts;
+        if (asOf != null) {
+            forecasts = withFields(weatherService.getForecastsByCityAndDateRangeAsOf(city, startDate, endDate, asOf), fieldSet);
+        } else if (fieldSet != null) {
+            forecasts = weatherService.getForecastsByCityAndDateRange(city, startDate, endDate, fieldSet);
+        } else {
+            forecasts = weatherService.getForecastsByCityAndDateRange(city, startDate, endDate);
+        }
         if (forecasts.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -93,33 +237,216 @@ public class WeatherController {
     }
 
     @PostMapping
-    public ResponseEntity<WeatherForecast> createForecast(@Valid @RequestBody WeatherRequest request) {
+    public ResponseEntity<?> createForecast(@Valid @RequestBody WeatherRequest request) {
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            return accepted(async.create(request));
+        }
         WeatherForecast created = weatherService.createForecast(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(eTag(created)).body(created);
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<?> createForecasts(@RequestBody List<WeatherRequest> requests) {
+        if (!isValidBulk(requests)) {
+            return ResponseEntity.badRequest().build();
+        }
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            return accepted(async.createAll(requests));
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(weatherService.createForecasts(requests));
+    }
+
+    @PutMapping
+    public ResponseEntity<?> upsertForecast(@Valid @RequestBody WeatherRequest request) {
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            return accepted(async.upsert(request));
+        }
+        return okWithETag(weatherService.upsertForecast(request));
+    }
+
+    @PutMapping("/bulk")
+    public ResponseEntity<?> upsertForecasts(@RequestBody List<WeatherRequest> requests) {
+        if (!isValidBulk(requests)) {
+            return ResponseEntity.badRequest().build();
+        }
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            return accepted(async.upsertAll(requests));
+        }
+        return ResponseEntity.ok(weatherService.upsertForecasts(requests));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<WeatherForecast> updateForecast(
+    public ResponseEntity<?> updateForecast(
             @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody WeatherRequest request) {
-        return weatherService.updateForecast(id, request)
-                .map(ResponseEntity::ok)
+        Long expectedVersion = expectedVersion(ifMatch);
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            return accepted(async.update(id, request, expectedVersion));
+        }
+        return weatherService.updateForecast(id, request, expectedVersion)
+                .map(WeatherController::okWithETag)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteForecast(@PathVariable String id) {
-        if (weatherService.deleteForecast(id)) {
+    public ResponseEntity<?> deleteForecast(
+            @PathVariable String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = expectedVersion(ifMatch);
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            return accepted(async.delete(id, expectedVersion));
+        }
+        if (weatherService.deleteForecast(id, expectedVersion)) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.notFound().build();
     }
 
+    /**
+     * Reports a write-behind write, first waiting up to {@code waitMs} for it to be applied.
+     */
+    @GetMapping("/writes/{sequence}")
+    public ResponseEntity<WriteStatus> getWriteStatus(
+            @PathVariable long sequence,
+            @RequestParam(defaultValue = "0") long waitMs) throws InterruptedException {
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async == null || sequence < 1 || sequence > async.getAcceptedSequence()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(async.await(sequence, Math.min(waitMs, MAX_WRITE_WAIT_MS)));
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalForecasts", weatherService.getForecastCount());
+        stats.put("executedQueries", weatherService.getExecutedQueryCount());
+        stats.put("coalescedQueries", weatherService.getCoalescedQueryCount());
+        stats.put("cityFilterRejections", weatherService.getCityFilterRejections());
+        stats.put("cityFilterFalsePositives", weatherService.getCityFilterFalsePositives());
+        stats.put("cityFilterFalsePositiveRate", weatherService.getCityFilterFalsePositiveRate());
+        ConcurrencyLimiter limiter = concurrencyLimiter.getIfAvailable();
+        if (limiter != null) {
+            stats.put("concurrencyLimit", limiter.getLimit());
+            stats.put("inFlightRequests", limiter.getInFlight());
+            stats.put("rejectedRequests", limiter.getRejections());
+        }
+        WriteBehindService async = writeBehind.getIfAvailable();
+        if (async != null) {
+            stats.put("acceptedWrites", async.getAcceptedSequence());
+            stats.put("appliedWrites", async.getAppliedSequence());
+        }
         stats.put("timestamp", LocalDate.now().toString());
         return ResponseEntity.ok(stats);
     }
+
+    @GetMapping("/stats/queries")
+    public ResponseEntity<QueryStatsReport> getQueryStats() {
+        return ResponseEntity.ok(weatherService.getQueryStats());
+    }
+
+    @ExceptionHandler(WriteQueueFullException.class)
+    public ResponseEntity<Void> handleWriteQueueFull(WriteQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    @ExceptionHandler(DuplicateForecastException.class)
+    public ResponseEntity<Void> handleDuplicate(DuplicateForecastException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .location(URI.create("/api/weather/" + e.getExistingId()))
+                .build();
+    }
+
+    @ExceptionHandler(ForecastVersionConflictException.class)
+    public ResponseEntity<Void> handleVersionConflict(ForecastVersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .eTag(eTag(e.getCurrentVersion()))
+                .build();
+    }
+
+    /**
+     * The version an {@code If-Match} header asks for: {@code null} when there is none or it is
+     * {@code *}, and {@link #UNMATCHABLE_VERSION} unless it is a single strong tag this API issued.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // Not a tag this API issued; falls through to never match.
+            }
+        }
+        return UNMATCHABLE_VERSION;
+    }
+
+    private static ResponseEntity<WeatherForecast> okWithETag(WeatherForecast forecast) {
+        return ResponseEntity.ok().eTag(eTag(forecast)).body(forecast);
+    }
+
+    private static String eTag(WeatherForecast forecast) {
+        return eTag(forecast.getVersion());
+    }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private static ResponseEntity<WriteReceipt> accepted(WriteReceipt receipt) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(receipt);
+    }
+
+    private boolean isValidBulk(List<WeatherRequest> requests) {
+        if (requests.isEmpty() || requests.size() > MAX_BULK_SIZE) {
+            return false;
+        }
+        ServerTiming.start(ServerTiming.Stage.VALIDATION);
+        boolean valid = true;
+        for (WeatherRequest request : requests) {
+            if (request == null || !validator.validate(request).isEmpty()) {
+                valid = false;
+                break;
+            }
+        }
+        ServerTiming.stop(ServerTiming.Stage.VALIDATION);
+        return valid;
+    }
+
+    private static ForecastFieldSet fieldSet(String fields) {
+        try {
+            return ForecastFieldSet.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Projects snapshot results, which are rebuilt from history in full and so cannot be narrowed earlier.
+     */
+    private static List<?> withFields(List<WeatherForecast> forecasts, ForecastFieldSet fields) {
+        if (fields == null) {
+            return forecasts;
+        }
+        List<ForecastProjection> projected = new ArrayList<>(forecasts.size());
+        for (WeatherForecast forecast : forecasts) {
+            projected.add(fields.project(forecast));
+        }
+        return projected;
+    }
+
+    private static boolean isValidCoordinate(double lat, double lon) {
+        return lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180;
+    }
 }
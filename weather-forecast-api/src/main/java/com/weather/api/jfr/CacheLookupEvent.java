@@ -0,0 +1,49 @@
+package com.weather.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A lookup in one of the service's caches, and whether it was served from the cache. Timed into
+ * the {@code cache} Server-Timing stage as well.
+ */
+@Name("com.weather.api.CacheLookup")
+@Label("Cache Lookup")
+@Category({"Weather API", "Cache"})
+@Description("A lookup in a response or view cache")
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+    @Label("Cache")
+    private final String cache;
+
+    @Label("Key")
+    private String key;
+
+    @Label("Hit")
+    private boolean hit;
+
+    private CacheLookupEvent(String cache) {
+        this.cache = cache;
+    }
+
+    public static CacheLookupEvent start(String cache) {
+        CacheLookupEvent event = new CacheLookupEvent(cache);
+        event.begin();
+        ServerTiming.start(ServerTiming.Stage.CACHE);
+        return event;
+    }
+
+    public void finish(String key, boolean hit) {
+        end();
+        ServerTiming.stop(ServerTiming.Stage.CACHE);
+        if (shouldCommit()) {
+            this.key = key;
+            this.hit = hit;
+            commit();
+        }
+    }
+}
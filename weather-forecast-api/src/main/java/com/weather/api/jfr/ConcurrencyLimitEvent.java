@@ -0,0 +1,45 @@
+package com.weather.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * A periodic sample of the adaptive concurrency limit: the limit, the requests holding a slot and
+ * the requests turned away so far in each class.
+ */
+@Name("com.weather.api.ConcurrencyLimit")
+@Label("Concurrency Limit")
+@Category({"Weather API", "Load Shedding"})
+@Description("The adaptive concurrency limit and the requests it has rejected, sampled every second")
+@Period("1 s")
+@StackTrace(false)
+public class ConcurrencyLimitEvent extends Event {
+    @Label("Limit")
+    private final int limit;
+
+    @Label("In Flight")
+    private final int inFlight;
+
+    @Label("Rejected Critical")
+    private final long rejectedCritical;
+
+    @Label("Rejected Normal")
+    private final long rejectedNormal;
+
+    @Label("Rejected Sheddable")
+    private final long rejectedSheddable;
+
+    public ConcurrencyLimitEvent(int limit, int inFlight, long rejectedCritical, long rejectedNormal,
+                                 long rejectedSheddable) {
+        this.limit = limit;
+        this.inFlight = inFlight;
+        this.rejectedCritical = rejectedCritical;
+        this.rejectedNormal = rejectedNormal;
+        this.rejectedSheddable = rejectedSheddable;
+    }
+}
@@ -0,0 +1,46 @@
+package com.weather.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One batch of writes applied together: a bulk request, or a batch taken by the write-behind writer.
+ */
+@Name("com.weather.api.IngestBatch")
+@Label("Ingest Batch")
+@Category({"Weather API", "Ingest"})
+@Description("A batch of forecast writes applied together")
+@StackTrace(false)
+public class IngestBatchEvent extends Event {
+    @Label("Source")
+    private final String source;
+
+    @Label("Writes")
+    private long writes;
+
+    @Label("Failed")
+    private long failed;
+
+    private IngestBatchEvent(String source) {
+        this.source = source;
+    }
+
+    public static IngestBatchEvent start(String source) {
+        IngestBatchEvent event = new IngestBatchEvent(source);
+        event.begin();
+        return event;
+    }
+
+    public void finish(long writes, long failed) {
+        end();
+        if (shouldCommit()) {
+            this.writes = writes;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
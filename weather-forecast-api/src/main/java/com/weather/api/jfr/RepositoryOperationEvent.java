@@ -0,0 +1,50 @@
+package com.weather.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One read or write against the forecast repository. Rows scanned counts the stored forecasts the
+ * operation had to look at, so a large gap to rows returned points at a missing index. Its duration
+ * is also the request's {@code db} Server-Timing stage.
+ */
+@Name("com.weather.api.RepositoryOperation")
+@Label("Repository Operation")
+@Category({"Weather API", "Repository"})
+@Description("A read or write against the forecast repository")
+@StackTrace(false)
+public class RepositoryOperationEvent extends Event {
+    @Label("Operation")
+    private final String operation;
+
+    @Label("Rows Scanned")
+    private long rowsScanned;
+
+    @Label("Rows Returned")
+    private long rowsReturned;
+
+    private RepositoryOperationEvent(String operation) {
+        this.operation = operation;
+    }
+
+    public static RepositoryOperationEvent start(String operation) {
+        RepositoryOperationEvent event = new RepositoryOperationEvent(operation);
+        event.begin();
+        ServerTiming.start(ServerTiming.Stage.REPOSITORY);
+        return event;
+    }
+
+    public void finish(long rowsScanned, long rowsReturned) {
+        end();
+        ServerTiming.stop(ServerTiming.Stage.REPOSITORY);
+        if (shouldCommit()) {
+            this.rowsScanned = rowsScanned;
+            this.rowsReturned = rowsReturned;
+            commit();
+        }
+    }
+}
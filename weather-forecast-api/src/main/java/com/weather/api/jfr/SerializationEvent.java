@@ -0,0 +1,59 @@
+package com.weather.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Collection;
+
+/**
+ * Writing one response body, or a pre-serialized view, in a given format. Feeds the {@code ser}
+ * Server-Timing stage too.
+ */
+@Name("com.weather.api.Serialization")
+@Label("Serialization")
+@Category({"Weather API", "Serialization"})
+@Description("A response body or view serialized to JSON, Smile or CBOR")
+@StackTrace(false)
+public class SerializationEvent extends Event {
+    @Label("Format")
+    private final String format;
+
+    @Label("Value Type")
+    private String valueType;
+
+    @Label("Elements")
+    @Description("Number of elements when the value is a collection, otherwise 1")
+    private long elements;
+
+    @Label("Size")
+    @DataAmount
+    @Description("Bytes written, or -1 when written straight to the response stream")
+    private long size;
+
+    private SerializationEvent(String format) {
+        this.format = format;
+    }
+
+    public static SerializationEvent start(String format) {
+        SerializationEvent event = new SerializationEvent(format);
+        event.begin();
+        ServerTiming.start(ServerTiming.Stage.SERIALIZATION);
+        return event;
+    }
+
+    public void finish(Object value, long size) {
+        end();
+        ServerTiming.stop(ServerTiming.Stage.SERIALIZATION);
+        if (shouldCommit()) {
+            this.valueType = value == null ? null : value.getClass().getName();
+            this.elements = value instanceof Collection ? ((Collection<?>) value).size() : 1;
+            this.size = size;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.weather.api.jfr;
+
+import java.util.Locale;
+
+/**
+ * Per-request stage timers behind the {@code Server-Timing} response header. Each request thread
+ * reuses one instance, so timing a stage costs two {@code nanoTime} calls and allocates nothing;
+ * on threads that are not serving a timed request, {@link #start} and {@link #stop} do nothing.
+ * Work handed to other threads (parallel batch reads, the write-behind writer) is not attributed.
+ */
+public final class ServerTiming {
+
+    public enum Stage {
+        VALIDATION("validation"), REPOSITORY("db"), CACHE("cache"), SERIALIZATION("ser"), COMPRESSION("gzip");
+
+        private final String metric;
+
+        Stage(String metric) {
+            this.metric = metric;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final ThreadLocal<ServerTiming> CURRENT = ThreadLocal.withInitial(ServerTiming::new);
+
+    private final long[] elapsed = new long[STAGES.length];
+    private final long[] openedAt = new long[STAGES.length];
+    private boolean active;
+    private long requestStart;
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Starts timing a request on the current thread, clearing whatever the last request recorded.
+     */
+    public static ServerTiming begin() {
+        ServerTiming timing = CURRENT.get();
+        for (int i = 0; i < STAGES.length; i++) {
+            timing.elapsed[i] = 0;
+            timing.openedAt[i] = 0;
+        }
+        timing.requestStart = System.nanoTime();
+        timing.active = true;
+        return timing;
+    }
+
+    public static void start(Stage stage) {
+        ServerTiming timing = CURRENT.get();
+        if (timing.active) {
+            timing.openedAt[stage.ordinal()] = System.nanoTime();
+        }
+    }
+
+    public static void stop(Stage stage) {
+        ServerTiming timing = CURRENT.get();
+        int i = stage.ordinal();
+        if (timing.active && timing.openedAt[i] != 0) {
+            timing.elapsed[i] += System.nanoTime() - timing.openedAt[i];
+            timing.openedAt[i] = 0;
+        }
+    }
+
+    public void end() {
+        active = false;
+    }
+
+    public long totalNanos() {
+        return System.nanoTime() - requestStart;
+    }
+
+    /**
+     * Nanoseconds spent in {@code stage} so far, counting a stage that is still running up to now.
+     */
+    public long stageNanos(Stage stage) {
+        int i = stage.ordinal();
+        return elapsed[i] + (openedAt[i] == 0 ? 0 : System.nanoTime() - openedAt[i]);
+    }
+
+    /**
+     * Formats the header value, e.g. {@code db;dur=1.204, ser;dur=0.310, total;dur=1.822}, listing
+     * only the stages the request went through.
+     */
+    public String header() {
+        StringBuilder header = new StringBuilder(128);
+        for (Stage stage : STAGES) {
+            long nanos = stageNanos(stage);
+            if (nanos > 0) {
+                append(header, stage.getMetric(), nanos);
+            }
+        }
+        append(header, "total", totalNanos());
+        return header.toString();
+    }
+
+    private static void append(StringBuilder header, String metric, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(metric).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+}
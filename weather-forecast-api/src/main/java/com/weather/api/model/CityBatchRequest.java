@@ -0,0 +1,48 @@
+package com.weather.api.model;
+
+import javax.validation.constraints.NotEmpty;
+import java.time.LocalDate;
+import java.util.List;
+
+public class CityBatchRequest {
+    @NotEmpty(message = "At least one city is required")
+    private List<String> cities;
+
+    private LocalDate date;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    public List<String> getCities() {
+        return cities;
+    }
+
+    public void setCities(List<String> cities) {
+        this.cities = cities;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+}
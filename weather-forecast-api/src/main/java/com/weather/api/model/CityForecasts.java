@@ -0,0 +1,65 @@
+package com.weather.api.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One city's entry in a batch response. {@code found} is false when the city has no forecasts at
+ * all; a known city with nothing in the requested dates is found with an empty list. A city whose
+ * lookup failed carries an {@code error} instead, so the rest of the response is still usable.
+ */
+public class CityForecasts {
+    private String city;
+    private boolean found;
+    private List<?> forecasts;
+    private String error;
+
+    public CityForecasts() {
+    }
+
+    public CityForecasts(String city, boolean found, List<?> forecasts) {
+        this.city = city;
+        this.found = found;
+        this.forecasts = forecasts;
+    }
+
+    public static CityForecasts failed(String city, String error) {
+        CityForecasts failed = new CityForecasts(city, false, List.of());
+        failed.setError(error);
+        return failed;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    public List<?> getForecasts() {
+        return forecasts;
+    }
+
+    public void setForecasts(List<?> forecasts) {
+        this.forecasts = forecasts;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,45 @@
+package com.weather.api.model;
+
+import java.util.List;
+
+/**
+ * The forecasts of one city and country in the latest-forecast view, in date order.
+ */
+public class CityOutlook {
+    private String city;
+    private String country;
+    private List<WeatherForecast> forecasts;
+
+    public CityOutlook() {
+    }
+
+    public CityOutlook(String city, String country, List<WeatherForecast> forecasts) {
+        this.city = city;
+        this.country = country;
+        this.forecasts = forecasts;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    public List<WeatherForecast> getForecasts() {
+        return forecasts;
+    }
+
+    public void setForecasts(List<WeatherForecast> forecasts) {
+        this.forecasts = forecasts;
+    }
+}
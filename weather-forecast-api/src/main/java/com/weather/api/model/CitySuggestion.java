@@ -0,0 +1,40 @@
+package com.weather.api.model;
+
+public class CitySuggestion {
+    private String city;
+    private int forecastCount;
+    private double score;
+
+    public CitySuggestion() {
+    }
+
+    public CitySuggestion(String city, int forecastCount, double score) {
+        this.city = city;
+        this.forecastCount = forecastCount;
+        this.score = score;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public int getForecastCount() {
+        return forecastCount;
+    }
+
+    public void setForecastCount(int forecastCount) {
+        this.forecastCount = forecastCount;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
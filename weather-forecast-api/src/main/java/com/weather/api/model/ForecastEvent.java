@@ -0,0 +1,67 @@
+package com.weather.api.model;
+
+import java.time.Instant;
+
+public class ForecastEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, CLEARED, RESYNC
+    }
+
+    private long sequence;
+    private Type type;
+    private String forecastId;
+    private WeatherForecast forecast;
+    private Instant timestamp;
+
+    public ForecastEvent() {
+    }
+
+    public ForecastEvent(long sequence, Type type, String forecastId, WeatherForecast forecast, Instant timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.forecastId = forecastId;
+        this.forecast = forecast;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getForecastId() {
+        return forecastId;
+    }
+
+    public void setForecastId(String forecastId) {
+        this.forecastId = forecastId;
+    }
+
+    public WeatherForecast getForecast() {
+        return forecast;
+    }
+
+    public void setForecast(WeatherForecast forecast) {
+        this.forecast = forecast;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+    }
+}
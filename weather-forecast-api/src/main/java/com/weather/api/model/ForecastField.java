@@ -0,0 +1,60 @@
+package com.weather.api.model;
+
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The fields of a {@link WeatherForecast}, each with a direct accessor and mutator so callers can
+ * work field by field without reflection.
+ */
+public enum ForecastField {
+    ID("id", false, WeatherForecast::getId, (f, v) -> f.setId((String) v)),
+    CITY("city", true, WeatherForecast::getCity, (f, v) -> f.setCity((String) v)),
+    COUNTRY("country", true, WeatherForecast::getCountry, (f, v) -> f.setCountry((String) v)),
+    DATE("date", true, WeatherForecast::getDate, (f, v) -> f.setDate((LocalDate) v)),
+    TEMPERATURE_CELSIUS("temperatureCelsius", true, WeatherForecast::getTemperatureCelsius,
+            (f, v) -> f.setTemperatureCelsius((Double) v)),
+    TEMPERATURE_FAHRENHEIT("temperatureFahrenheit", false, WeatherForecast::getTemperatureFahrenheit,
+            (f, v) -> f.setTemperatureFahrenheit((Double) v)),
+    CONDITION("condition", true, WeatherForecast::getCondition, (f, v) -> f.setCondition((String) v)),
+    HUMIDITY("humidity", true, WeatherForecast::getHumidity, (f, v) -> f.setHumidity((Integer) v)),
+    WIND_SPEED_KMH("windSpeedKmh", true, WeatherForecast::getWindSpeedKmh, (f, v) -> f.setWindSpeedKmh((Double) v)),
+    WIND_DIRECTION("windDirection", true, WeatherForecast::getWindDirection, (f, v) -> f.setWindDirection((String) v)),
+    DESCRIPTION("description", true, WeatherForecast::getDescription, (f, v) -> f.setDescription((String) v)),
+    LATITUDE("latitude", true, WeatherForecast::getLatitude, (f, v) -> f.setLatitude((Double) v)),
+    LONGITUDE("longitude", true, WeatherForecast::getLongitude, (f, v) -> f.setLongitude((Double) v)),
+    VERSION("version", true, WeatherForecast::getVersion, (f, v) -> f.setVersion((Long) v));
+
+    private final String jsonName;
+    private final boolean versioned;
+    private final Function<WeatherForecast, Object> getter;
+    private final BiConsumer<WeatherForecast, Object> setter;
+
+    ForecastField(String jsonName, boolean versioned, Function<WeatherForecast, Object> getter,
+                  BiConsumer<WeatherForecast, Object> setter) {
+        this.jsonName = jsonName;
+        this.versioned = versioned;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    /**
+     * Whether the field is tracked in forecast history; the id never changes and Fahrenheit is derived.
+     */
+    public boolean isVersioned() {
+        return versioned;
+    }
+
+    public Object get(WeatherForecast forecast) {
+        return getter.apply(forecast);
+    }
+
+    public void set(WeatherForecast forecast, Object value) {
+        setter.accept(forecast, value);
+    }
+}
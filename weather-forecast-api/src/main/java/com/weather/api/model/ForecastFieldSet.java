@@ -0,0 +1,99 @@
+package com.weather.api.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A subset of {@link ForecastField}s requested through {@code ?fields=}, kept in canonical field
+ * order. Parsed sets are interned by bit mask, so each distinct selection is built only once.
+ */
+public final class ForecastFieldSet {
+    private static final ForecastField[] ALL_FIELDS = ForecastField.values();
+    private static final Map<String, ForecastField> BY_NAME = new HashMap<>();
+    private static final ForecastFieldSet[] INTERNED = new ForecastFieldSet[1 << ALL_FIELDS.length];
+
+    static {
+        for (ForecastField field : ALL_FIELDS) {
+            BY_NAME.put(field.getJsonName(), field);
+        }
+    }
+
+    private final int mask;
+    private final ForecastField[] fields;
+
+    private ForecastFieldSet(int mask) {
+        this.mask = mask;
+        this.fields = new ForecastField[Integer.bitCount(mask)];
+        int next = 0;
+        for (ForecastField field : ALL_FIELDS) {
+            if ((mask & (1 << field.ordinal())) != 0) {
+                fields[next++] = field;
+            }
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of field names, e.g. {@code date,temperatureCelsius,condition}.
+     *
+     * @return the field set, or {@code null} when {@code spec} is blank (meaning all fields)
+     * @throws IllegalArgumentException if a name is not a forecast field
+     */
+    public static ForecastFieldSet parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return null;
+        }
+        int mask = 0;
+        for (String name : spec.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            ForecastField field = BY_NAME.get(trimmed);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown forecast field: " + trimmed);
+            }
+            mask |= 1 << field.ordinal();
+        }
+        return mask == 0 ? null : interned(mask);
+    }
+
+    /**
+     * Returns this set together with {@code extra}, e.g. the fields a query filters on.
+     */
+    public ForecastFieldSet with(ForecastField... extra) {
+        int union = mask;
+        for (ForecastField field : extra) {
+            union |= 1 << field.ordinal();
+        }
+        return union == mask ? this : interned(union);
+    }
+
+    /**
+     * Reads just the selected fields of {@code forecast}.
+     */
+    public ForecastProjection project(WeatherForecast forecast) {
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = fields[i].get(forecast);
+        }
+        return new ForecastProjection(fields, values);
+    }
+
+    public boolean contains(ForecastField field) {
+        return (mask & (1 << field.ordinal())) != 0;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    private static ForecastFieldSet interned(int mask) {
+        ForecastFieldSet interned = INTERNED[mask];
+        if (interned == null) {
+            // Racing threads may each build an equal instance; any of them is fine to keep.
+            interned = new ForecastFieldSet(mask);
+            INTERNED[mask] = interned;
+        }
+        return interned;
+    }
+}
@@ -0,0 +1,116 @@
+package com.weather.api.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates forecast ids. In {@link Mode#COMPACT} mode an id is a positive 64-bit number made of
+ * milliseconds since 2024-01-01 (41 bits), a node id (10 bits) and a per-millisecond sequence
+ * (12 bits), rendered as 13 Crockford base32 characters so that string order matches creation
+ * order. {@link Mode#UUID} keeps the original random UUID strings. Both kinds are accepted wherever
+ * an id is looked up.
+ */
+public final class ForecastIds {
+
+    public enum Mode {
+        COMPACT, UUID
+    }
+
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final int LENGTH = 13;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = decodeTable();
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // Milliseconds since the epoch shifted left by SEQUENCE_BITS, plus the sequence of the last id.
+    private static final AtomicLong lastTick = new AtomicLong();
+    private static volatile Mode mode = Mode.COMPACT;
+    private static volatile long nodeBits;
+
+    private ForecastIds() {
+    }
+
+    public static void configure(Mode idMode, int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        mode = idMode;
+        nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static String next() {
+        return mode == Mode.COMPACT ? format(nextCompact()) : UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns a new compact id. Never blocks: once the 4096 sequence numbers of a millisecond are
+     * used up, ids continue into the next millisecond ahead of the clock, so they stay unique and
+     * increasing on this node.
+     */
+    static long nextCompact() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long tick = lastTick.updateAndGet(last -> Math.max(last + 1, now));
+        return ((tick & ~SEQUENCE_MASK) << NODE_BITS) | nodeBits | (tick & SEQUENCE_MASK);
+    }
+
+    /**
+     * Renders a compact id as its 13-character string.
+     */
+    public static String format(long id) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decodes a compact id, ignoring case, or returns {@code 0} if {@code id} is not one (such as a
+     * legacy UUID).
+     */
+    public static long parseCompact(String id) {
+        if (id == null || id.length() != LENGTH) {
+            return 0;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit = c < VALUES.length ? VALUES[c] : -1;
+            // 13 characters carry 65 bits, so the first may only use the low 3 of its 5.
+            if (digit < 0 || (i == 0 && digit > 7)) {
+                return 0;
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns {@code id} in the one spelling stored for it: upper case if it is a compact id, as is
+     * otherwise.
+     */
+    public static String canonical(String id) {
+        return parseCompact(id) != 0 ? id.toUpperCase(Locale.ROOT) : id;
+    }
+
+    private static byte[] decodeTable() {
+        byte[] values = new byte['z' + 1];
+        Arrays.fill(values, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            values[ALPHABET[i]] = (byte) i;
+            values[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+        return values;
+    }
+}
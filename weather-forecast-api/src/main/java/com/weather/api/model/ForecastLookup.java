@@ -0,0 +1,35 @@
+package com.weather.api.model;
+
+import java.util.List;
+
+/**
+ * Result of a multi-get: the forecasts that were found, in request order, and the ids that were not.
+ */
+public class ForecastLookup {
+    private List<?> forecasts;
+    private List<String> missing;
+
+    public ForecastLookup() {
+    }
+
+    public ForecastLookup(List<?> forecasts, List<String> missing) {
+        this.forecasts = forecasts;
+        this.missing = missing;
+    }
+
+    public List<?> getForecasts() {
+        return forecasts;
+    }
+
+    public void setForecasts(List<?> forecasts) {
+        this.forecasts = forecasts;
+    }
+
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<String> missing) {
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,17 @@
+package com.weather.api.model;
+
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+public class ForecastLookupRequest {
+    @NotEmpty(message = "At least one id is required")
+    private List<String> ids;
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+}
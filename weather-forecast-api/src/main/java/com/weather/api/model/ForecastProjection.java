@@ -0,0 +1,54 @@
+package com.weather.api.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * A forecast reduced to the fields of a {@link ForecastFieldSet}. Serialized as an object holding
+ * only those fields, in the same order and under the same names as a full {@link WeatherForecast}.
+ */
+@JsonSerialize(using = ForecastProjection.Serializer.class)
+public final class ForecastProjection {
+    private final ForecastField[] fields;
+    private final Object[] values;
+
+    ForecastProjection(ForecastField[] fields, Object[] values) {
+        this.fields = fields;
+        this.values = values;
+    }
+
+    /**
+     * Returns the value of {@code field}, or {@code null} if it was not selected.
+     */
+    public Object get(ForecastField field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == field) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    static final class Serializer extends StdSerializer<ForecastProjection> {
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(ForecastProjection.class);
+        }
+
+        @Override
+        public void serialize(ForecastProjection projection, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject(projection);
+            for (int i = 0; i < projection.fields.length; i++) {
+                generator.writeFieldName(projection.fields[i].getJsonName());
+                provider.defaultSerializeValue(projection.values[i], generator);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.weather.api.model;
+
+import java.time.Instant;
+
+public class ForecastVersion {
+    private int version;
+    private Instant recordedAt;
+    private Instant supersededAt;
+    private WeatherForecast forecast;
+
+    public ForecastVersion() {
+    }
+
+    public ForecastVersion(int version, Instant recordedAt, Instant supersededAt, WeatherForecast forecast) {
+        this.version = version;
+        this.recordedAt = recordedAt;
+        this.supersededAt = supersededAt;
+        this.forecast = forecast;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(Instant recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+
+    public Instant getSupersededAt() {
+        return supersededAt;
+    }
+
+    public void setSupersededAt(Instant supersededAt) {
+        this.supersededAt = supersededAt;
+    }
+
+    public WeatherForecast getForecast() {
+        return forecast;
+    }
+
+    public void setForecast(WeatherForecast forecast) {
+        this.forecast = forecast;
+    }
+}
@@ -0,0 +1,47 @@
+package com.weather.api.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Body of {@code /api/weather/latest}: every city's forecasts from {@code startDate} (today) to
+ * {@code endDate}, cities ordered by name and country.
+ */
+public class LatestForecasts {
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private List<CityOutlook> cities;
+
+    public LatestForecasts() {
+    }
+
+    public LatestForecasts(LocalDate startDate, LocalDate endDate, List<CityOutlook> cities) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.cities = cities;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    public List<CityOutlook> getCities() {
+        return cities;
+    }
+
+    public void setCities(List<CityOutlook> cities) {
+        this.cities = cities;
+    }
+}
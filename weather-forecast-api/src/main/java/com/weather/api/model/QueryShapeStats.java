@@ -0,0 +1,136 @@
+package com.weather.api.model;
+
+/**
+ * Latency and row counts of one kind of repository query. Indexed counts runs answered through an
+ * index or a key range, scan counts runs that had to read every forecast.
+ */
+public class QueryShapeStats {
+    private String shape;
+    private long count;
+    private long indexedCount;
+    private long scanCount;
+    private long rowsScanned;
+    private long rowsReturned;
+    private double meanMicros;
+    private long p50Micros;
+    private long p90Micros;
+    private long p99Micros;
+    private long p999Micros;
+    private long maxMicros;
+
+    public QueryShapeStats() {
+    }
+
+    public QueryShapeStats(String shape, long count, long indexedCount, long scanCount, long rowsScanned,
+                           long rowsReturned, double meanMicros, long p50Micros, long p90Micros,
+                           long p99Micros, long p999Micros, long maxMicros) {
+        this.shape = shape;
+        this.count = count;
+        this.indexedCount = indexedCount;
+        this.scanCount = scanCount;
+        this.rowsScanned = rowsScanned;
+        this.rowsReturned = rowsReturned;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public void setShape(String shape) {
+        this.shape = shape;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public void setIndexedCount(long indexedCount) {
+        this.indexedCount = indexedCount;
+    }
+
+    public long getScanCount() {
+        return scanCount;
+    }
+
+    public void setScanCount(long scanCount) {
+        this.scanCount = scanCount;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public void setRowsScanned(long rowsScanned) {
+        this.rowsScanned = rowsScanned;
+    }
+
+    public long getRowsReturned() {
+        return rowsReturned;
+    }
+
+    public void setRowsReturned(long rowsReturned) {
+        this.rowsReturned = rowsReturned;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public void setMeanMicros(double meanMicros) {
+        this.meanMicros = meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public void setP50Micros(long p50Micros) {
+        this.p50Micros = p50Micros;
+    }
+
+    public long getP90Micros() {
+        return p90Micros;
+    }
+
+    public void setP90Micros(long p90Micros) {
+        this.p90Micros = p90Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public void setP99Micros(long p99Micros) {
+        this.p99Micros = p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public void setP999Micros(long p999Micros) {
+        this.p999Micros = p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public void setMaxMicros(long maxMicros) {
+        this.maxMicros = maxMicros;
+    }
+}
@@ -0,0 +1,46 @@
+package com.weather.api.model;
+
+import java.util.List;
+
+/**
+ * Per-shape query statistics, busiest first, with the most recent slow queries, newest first.
+ */
+public class QueryStatsReport {
+    private long slowQueryThresholdMs;
+    private List<QueryShapeStats> shapes;
+    private List<SlowQuery> slowQueries;
+
+    public QueryStatsReport() {
+    }
+
+    public QueryStatsReport(long slowQueryThresholdMs, List<QueryShapeStats> shapes,
+                            List<SlowQuery> slowQueries) {
+        this.slowQueryThresholdMs = slowQueryThresholdMs;
+        this.shapes = shapes;
+        this.slowQueries = slowQueries;
+    }
+
+    public long getSlowQueryThresholdMs() {
+        return slowQueryThresholdMs;
+    }
+
+    public void setSlowQueryThresholdMs(long slowQueryThresholdMs) {
+        this.slowQueryThresholdMs = slowQueryThresholdMs;
+    }
+
+    public List<QueryShapeStats> getShapes() {
+        return shapes;
+    }
+
+    public void setShapes(List<QueryShapeStats> shapes) {
+        this.shapes = shapes;
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        return slowQueries;
+    }
+
+    public void setSlowQueries(List<SlowQuery> slowQueries) {
+        this.slowQueries = slowQueries;
+    }
+}
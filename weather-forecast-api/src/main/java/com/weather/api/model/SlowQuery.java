@@ -0,0 +1,83 @@
+package com.weather.api.model;
+
+import java.time.Instant;
+
+public class SlowQuery {
+    private Instant timestamp;
+    private String shape;
+    private String parameters;
+    private String accessPath;
+    private long rowsScanned;
+    private long rowsReturned;
+    private long durationMicros;
+
+    public SlowQuery() {
+    }
+
+    public SlowQuery(Instant timestamp, String shape, String parameters, String accessPath, long rowsScanned,
+                     long rowsReturned, long durationMicros) {
+        this.timestamp = timestamp;
+        this.shape = shape;
+        this.parameters = parameters;
+        this.accessPath = accessPath;
+        this.rowsScanned = rowsScanned;
+        this.rowsReturned = rowsReturned;
+        this.durationMicros = durationMicros;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Instant timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public void setShape(String shape) {
+        this.shape = shape;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public String getAccessPath() {
+        return accessPath;
+    }
+
+    public void setAccessPath(String accessPath) {
+        this.accessPath = accessPath;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public void setRowsScanned(long rowsScanned) {
+        this.rowsScanned = rowsScanned;
+    }
+
+    public long getRowsReturned() {
+        return rowsReturned;
+    }
+
+    public void setRowsReturned(long rowsReturned) {
+        this.rowsReturned = rowsReturned;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public void setDurationMicros(long durationMicros) {
+        this.durationMicros = durationMicros;
+    }
+}
@@ -1,8 +1,11 @@
 package com.weather.api.model;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import java.time.LocalDate;
-import java.util.UUID;
 
+@JsonPropertyOrder({"id", "city", "country", "date", "temperatureCelsius", "temperatureFahrenheit", "condition",
+        "humidity", "windSpeedKmh", "windDirection", "description", "latitude", "longitude", "version"})
 public class WeatherForecast {
     private String id;
     private String city;
@@ -15,14 +18,17 @@ public class WeatherForecast {
     private double windSpeedKmh;
     private String windDirection;
     private String description;
+    private Double latitude;
+    private Double longitude;
+    private long version;
 
     public WeatherForecast() {
-        this.id = UUID.randomUUID().toString();
+        this.id = ForecastIds.next();
     }
 
     public WeatherForecast(String city, String country, LocalDate date, double temperatureCelsius,
                            String condition, int humidity, double windSpeedKmh, String windDirection, String description) {
-        this.id = UUID.randomUUID().toString();
+        this.id = ForecastIds.next();
         this.city = city;
         this.country = country;
         this.date = date;
@@ -35,6 +41,23 @@ public class WeatherForecast {
         this.description = description;
     }
 
+    public WeatherForecast(WeatherForecast source) {
+        this.id = source.id;
+        this.city = source.city;
+        this.country = source.country;
+        this.date = source.date;
+        this.temperatureCelsius = source.temperatureCelsius;
+        this.temperatureFahrenheit = source.temperatureFahrenheit;
+        this.condition = source.condition;
+        this.humidity = source.humidity;
+        this.windSpeedKmh = source.windSpeedKmh;
+        this.windDirection = source.windDirection;
+        this.description = source.description;
+        this.latitude = source.latitude;
+        this.longitude = source.longitude;
+        this.version = source.version;
+    }
+
     private double celsiusToFahrenheit(double celsius) {
         return Math.round((celsius * 9.0 / 5.0 + 32) * 100.0) / 100.0;
     }
@@ -127,4 +150,35 @@ public class WeatherForecast {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Starts at 1 when the forecast is created and goes up by one with every change to its content.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean hasLocation() {
+        return latitude != null && longitude != null;
+    }
 }
@@ -1,11 +1,17 @@
 package com.weather.api.model;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDate;
 
+@JsonPropertyOrder({"city", "country", "date", "temperatureCelsius", "condition", "humidity", "windSpeedKmh",
+        "windDirection", "description", "latitude", "longitude"})
 public class WeatherRequest {
     @NotBlank(message = "City is required")
     private String city;
@@ -34,6 +40,14 @@ public class WeatherRequest {
 
     private String description;
 
+    @DecimalMin(value = "-90", message = "Latitude must be at least -90")
+    @DecimalMax(value = "90", message = "Latitude must be at most 90")
+    private Double latitude;
+
+    @DecimalMin(value = "-180", message = "Longitude must be at least -180")
+    @DecimalMax(value = "180", message = "Longitude must be at most 180")
+    private Double longitude;
+
     public String getCity() {
         return city;
     }
@@ -105,4 +119,20 @@ public class WeatherRequest {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
 }
@@ -0,0 +1,36 @@
+package com.weather.api.model;
+
+import java.util.List;
+
+/**
+ * Acknowledgement of a write accepted in write-behind mode: the sequence number to wait on, and
+ * the ids of the forecasts it writes where they are known up front.
+ */
+public class WriteReceipt {
+    private long sequence;
+    private List<String> ids;
+
+    public WriteReceipt() {
+    }
+
+    public WriteReceipt(long sequence, List<String> ids) {
+        this.sequence = sequence;
+        this.ids = ids;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+}
@@ -0,0 +1,54 @@
+package com.weather.api.model;
+
+/**
+ * Progress of a write-behind write. Writes are applied in sequence order, so once {@code applied}
+ * is true every earlier write has been applied too. {@code error} is set if this write failed.
+ */
+public class WriteStatus {
+    private long sequence;
+    private long appliedSequence;
+    private boolean applied;
+    private String error;
+
+    public WriteStatus() {
+    }
+
+    public WriteStatus(long sequence, long appliedSequence, String error) {
+        this.sequence = sequence;
+        this.appliedSequence = appliedSequence;
+        this.applied = appliedSequence >= sequence;
+        this.error = error;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    public void setAppliedSequence(long appliedSequence) {
+        this.appliedSequence = appliedSequence;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public void setApplied(boolean applied) {
+        this.applied = applied;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
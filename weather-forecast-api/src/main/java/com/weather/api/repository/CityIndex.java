@@ -0,0 +1,405 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.CitySuggestion;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index of known city names used for typeahead suggestions. A concurrent trie answers prefix
+ * queries and a trigram index answers typo-tolerant ones; prefix hits always rank ahead of fuzzy
+ * hits. Each city entry tracks the forecasts that reference it as refs in primitive arrays ordered
+ * by forecast date, so the index stays in sync with the repository on every mutation without heap
+ * objects per forecast, and a city's oldest forecasts can be read off directly.
+ */
+class CityIndex {
+    static final double MIN_FUZZY_SCORE = 0.3;
+
+    private static final Comparator<Candidate> RANKING = Comparator
+            .comparing((Candidate c) -> c.prefix)
+            .thenComparingDouble(c -> c.score)
+            .thenComparingInt(c -> c.entry.count.get())
+            .thenComparing((Candidate c) -> c.entry.key, Comparator.reverseOrder());
+
+    private final ForecastRefs refs;
+    private final Node root = new Node();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<Entry>> trigrams = new ConcurrentHashMap<>();
+
+    CityIndex() {
+        this(new ForecastRefs());
+    }
+
+    CityIndex(ForecastRefs refs) {
+        this.refs = refs;
+    }
+
+    static String normalize(String city) {
+        if (city == null) {
+            return null;
+        }
+        String key = city.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+
+    void add(String city, LocalDate date, String id) {
+        String key = normalize(city);
+        if (key == null) {
+            return;
+        }
+        entries.compute(key, (k, entry) -> {
+            if (entry == null) {
+                entry = new Entry(k, city.trim());
+                link(entry);
+            }
+            long ref = refs.acquire(id);
+            if (entry.add(day(date), ref)) {
+                entry.count.incrementAndGet();
+            } else {
+                refs.release(ref);
+            }
+            return entry;
+        });
+    }
+
+    void remove(String city, LocalDate date, String id) {
+        String key = normalize(city);
+        long ref = refs.of(id);
+        if (key == null || ref == 0) {
+            return;
+        }
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (!entry.remove(day(date), ref)) {
+                return entry;
+            }
+            refs.release(ref);
+            if (entry.count.decrementAndGet() == 0) {
+                unlink(entry);
+                return null;
+            }
+            return entry;
+        });
+    }
+
+    void move(String oldCity, LocalDate oldDate, String newCity, LocalDate newDate, String id) {
+        String oldKey = normalize(oldCity);
+        if (oldKey != null && oldKey.equals(normalize(newCity)) && Objects.equals(oldDate, newDate)) {
+            return;
+        }
+        remove(oldCity, oldDate, id);
+        add(newCity, newDate, id);
+    }
+
+    void clear() {
+        for (String key : new ArrayList<>(entries.keySet())) {
+            entries.computeIfPresent(key, (k, entry) -> {
+                for (long ref : entry.refs(Integer.MAX_VALUE)) {
+                    refs.release(ref);
+                }
+                unlink(entry);
+                return null;
+            });
+        }
+    }
+
+    boolean contains(String city) {
+        String key = normalize(city);
+        return key != null && entries.containsKey(key);
+    }
+
+    /**
+     * Returns the ids of the city's forecasts, oldest first.
+     */
+    List<String> idsFor(String city) {
+        String key = normalize(city);
+        Entry entry = key == null ? null : entries.get(key);
+        if (entry == null) {
+            return List.of();
+        }
+        long[] held = entry.refs(Integer.MAX_VALUE);
+        List<String> ids = new ArrayList<>(held.length);
+        for (long ref : held) {
+            String id = refs.idOf(ref);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns up to {@code limit} ids, oldest first within each city, of the forecasts that put a city
+     * over {@code maxPerCity}. Only the excess of each city is read.
+     */
+    List<String> oldestBeyondCap(int maxPerCity, int limit) {
+        List<String> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            int excess = entry.count.get() - maxPerCity;
+            if (excess <= 0) {
+                continue;
+            }
+            for (long ref : entry.refs(Math.min(excess, limit - result.size()))) {
+                String id = refs.idOf(ref);
+                if (id != null) {
+                    result.add(id);
+                }
+            }
+            if (result.size() >= limit) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    List<CitySuggestion> suggest(String query, int limit) {
+        String key = normalize(query);
+        if (key == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit + 1, RANKING);
+        Set<Entry> seen = new HashSet<>();
+        collectPrefixMatches(key, limit, top, seen);
+        if (top.size() < limit) {
+            collectFuzzyMatches(key, limit, top, seen);
+        }
+        List<Candidate> ranked = new ArrayList<>(top);
+        ranked.sort(RANKING.reversed());
+        List<CitySuggestion> suggestions = new ArrayList<>(ranked.size());
+        for (Candidate candidate : ranked) {
+            suggestions.add(new CitySuggestion(candidate.entry.displayName, candidate.entry.count.get(), candidate.score));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Walks the subtree below {@code prefix} one depth at a time. Every entry at a depth has the same
+     * score and deeper entries score lower, so once a whole depth leaves {@code limit} candidates
+     * nothing further down can displace them.
+     */
+    private void collectPrefixMatches(String prefix, int limit, PriorityQueue<Candidate> top, Set<Entry> seen) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null) {
+            return;
+        }
+        List<Node> level = List.of(node);
+        while (!level.isEmpty() && top.size() < limit) {
+            List<Node> next = new ArrayList<>();
+            for (Node current : level) {
+                Entry entry = current.entry;
+                if (entry != null && seen.add(entry)) {
+                    offer(top, new Candidate(entry, true, (double) prefix.length() / entry.key.length()), limit);
+                }
+                next.addAll(current.children.values());
+            }
+            level = next;
+        }
+    }
+
+    private void collectFuzzyMatches(String key, int limit, PriorityQueue<Candidate> top, Set<Entry> seen) {
+        Set<String> queryGrams = trigramsOf(key);
+        Map<Entry, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<Entry> posting = trigrams.get(gram);
+            if (posting != null) {
+                for (Entry entry : posting) {
+                    shared.merge(entry, 1, Integer::sum);
+                }
+            }
+        }
+        for (Map.Entry<Entry, Integer> match : shared.entrySet()) {
+            Entry entry = match.getKey();
+            if (seen.contains(entry)) {
+                continue;
+            }
+            double dice = 2.0 * match.getValue() / (queryGrams.size() + entry.trigrams.size());
+            if (dice >= MIN_FUZZY_SCORE) {
+                offer(top, new Candidate(entry, false, dice), limit);
+            }
+        }
+    }
+
+    private static void offer(PriorityQueue<Candidate> top, Candidate candidate, int limit) {
+        top.offer(candidate);
+        if (top.size() > limit) {
+            top.poll();
+        }
+    }
+
+    private void link(Entry entry) {
+        // Trie changes are serialized, so pruning in unlink never detaches a node another link is using.
+        synchronized (root) {
+            Node node = root;
+            for (int i = 0; i < entry.key.length(); i++) {
+                node = node.children.computeIfAbsent(entry.key.charAt(i), c -> new Node());
+            }
+            node.entry = entry;
+        }
+        for (String gram : entry.trigrams) {
+            trigrams.compute(gram, (g, posting) -> {
+                Set<Entry> updated = posting == null ? ConcurrentHashMap.newKeySet() : posting;
+                updated.add(entry);
+                return updated;
+            });
+        }
+    }
+
+    private void unlink(Entry entry) {
+        synchronized (root) {
+            Node[] path = new Node[entry.key.length() + 1];
+            path[0] = root;
+            int depth = 0;
+            while (depth < entry.key.length() && path[depth] != null) {
+                path[depth + 1] = path[depth].children.get(entry.key.charAt(depth));
+                depth++;
+            }
+            Node node = path[depth];
+            if (depth == entry.key.length() && node != null && node.entry == entry) {
+                node.entry = null;
+                // Drop the chain of nodes that now lead to no entry.
+                for (int i = depth; i > 0 && path[i].entry == null && path[i].children.isEmpty(); i--) {
+                    path[i - 1].children.remove(entry.key.charAt(i - 1));
+                }
+            }
+        }
+        for (String gram : entry.trigrams) {
+            trigrams.computeIfPresent(gram, (g, posting) -> {
+                posting.remove(entry);
+                return posting.isEmpty() ? null : posting;
+            });
+        }
+    }
+
+    int trieNodeCount() {
+        int count = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            count++;
+            stack.addAll(node.children.values());
+        }
+        return count;
+    }
+
+    static Set<String> trigramsOf(String key) {
+        String padded = "  " + key + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static long day(LocalDate date) {
+        return date == null ? Long.MIN_VALUE : date.toEpochDay();
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new ConcurrentHashMap<>();
+        volatile Entry entry;
+    }
+
+    private static final class Entry {
+        final String key;
+        final String displayName;
+        final Set<String> trigrams;
+        // Forecasts sorted by (epoch day, ref), undated ones first; guarded by the entry's monitor.
+        private long[] days = new long[4];
+        private long[] refs = new long[4];
+        private int size;
+        // Read by ranking without taking the monitor.
+        final AtomicInteger count = new AtomicInteger();
+
+        Entry(String key, String displayName) {
+            this.key = key;
+            this.displayName = displayName;
+            this.trigrams = trigramsOf(key);
+        }
+
+        synchronized boolean add(long day, long ref) {
+            int index = search(day, ref);
+            if (index >= 0) {
+                return false;
+            }
+            index = -index - 1;
+            if (size == refs.length) {
+                days = Arrays.copyOf(days, size * 2);
+                refs = Arrays.copyOf(refs, size * 2);
+            }
+            System.arraycopy(days, index, days, index + 1, size - index);
+            System.arraycopy(refs, index, refs, index + 1, size - index);
+            days[index] = day;
+            refs[index] = ref;
+            size++;
+            return true;
+        }
+
+        synchronized boolean remove(long day, long ref) {
+            int index = search(day, ref);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(days, index + 1, days, index, size - index - 1);
+            System.arraycopy(refs, index + 1, refs, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * Copies up to {@code limit} refs, oldest first.
+         */
+        synchronized long[] refs(int limit) {
+            return Arrays.copyOf(refs, Math.min(limit, size));
+        }
+
+        private int search(long day, long ref) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int order = days[mid] != day ? Long.compare(days[mid], day) : Long.compare(refs[mid], ref);
+                if (order < 0) {
+                    low = mid + 1;
+                } else if (order > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private static final class Candidate {
+        final Entry entry;
+        final boolean prefix;
+        final double score;
+
+        Candidate(Entry entry, boolean prefix, double score) {
+            this.entry = entry;
+            this.prefix = prefix;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.weather.api.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter over string keys, sized for an expected number of distinct keys at a target
+ * false positive rate. Each key sets {@code k} 16-bit counters, packed four to a long and updated
+ * with CAS, so adds, removes and lookups never lock. A "no" from {@link #mightContain} is always
+ * right; a "yes" is wrong with about the configured probability while the filter holds no more
+ * keys than it was sized for. Counters that reach their maximum stay there, which can only add
+ * false positives.
+ */
+final class CountingBloomFilter {
+    private static final int COUNTER_BITS = 16;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLongArray words;
+    private final int counters;
+    private final int hashes;
+    private final AtomicInteger nonZero = new AtomicInteger();
+
+    CountingBloomFilter(int expectedKeys, double falsePositiveRate) {
+        int keys = Math.max(1, expectedKeys);
+        double rate = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long optimal = (long) Math.ceil(-keys * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        this.counters = (int) Math.min(Integer.MAX_VALUE - COUNTERS_PER_WORD, Math.max(64, optimal));
+        this.hashes = Math.max(1, (int) Math.round((double) counters / keys * Math.log(2)));
+        this.words = new AtomicLongArray((counters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    void add(String key) {
+        long hash1 = hash(key);
+        long hash2 = secondHash(hash1);
+        for (int i = 0; i < hashes; i++) {
+            increment(index(hash1, hash2, i));
+        }
+    }
+
+    /**
+     * Takes back one earlier {@link #add} of {@code key}; removing a key that was never added can
+     * cause false negatives.
+     */
+    void remove(String key) {
+        long hash1 = hash(key);
+        long hash2 = secondHash(hash1);
+        for (int i = 0; i < hashes; i++) {
+            decrement(index(hash1, hash2, i));
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash1 = hash(key);
+        long hash2 = secondHash(hash1);
+        for (int i = 0; i < hashes; i++) {
+            if (counter(index(hash1, hash2, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chance that a key never added is reported as present, estimated from how many counters are set.
+     */
+    double falsePositiveRate() {
+        return Math.pow((double) nonZero.get() / counters, hashes);
+    }
+
+    int counters() {
+        return counters;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    /**
+     * Resets every counter; adds or removes running at the same time may be partly lost.
+     */
+    void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+        nonZero.set(0);
+    }
+
+    private int index(long hash1, long hash2, int i) {
+        return (int) Math.floorMod(hash1 + i * hash2, (long) counters);
+    }
+
+    private long counter(int index) {
+        return (words.get(index / COUNTERS_PER_WORD) >>> shift(index)) & COUNTER_MAX;
+    }
+
+    private void increment(int index) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = shift(index);
+        while (true) {
+            long current = words.get(word);
+            long count = (current >>> shift) & COUNTER_MAX;
+            if (count == COUNTER_MAX) {
+                return;
+            }
+            if (words.compareAndSet(word, current, current + (1L << shift))) {
+                if (count == 0) {
+                    nonZero.incrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    private void decrement(int index) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = shift(index);
+        while (true) {
+            long current = words.get(word);
+            long count = (current >>> shift) & COUNTER_MAX;
+            // A saturated counter no longer knows its true count, so it is never lowered.
+            if (count == 0 || count == COUNTER_MAX) {
+                return;
+            }
+            if (words.compareAndSet(word, current, current - (1L << shift))) {
+                if (count == 1) {
+                    nonZero.decrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    private static int shift(int index) {
+        return (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+    }
+
+    private static long hash(String key) {
+        // 64-bit FNV-1a over the UTF-16 chars, finished with a mixer so nearby keys spread out.
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long secondHash(long hash1) {
+        return mix(hash1 ^ 0x9E3779B97F4A7C15L);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,131 @@
+package com.weather.api.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Index of forecast ids by forecast date. Each date holds a primitive set of refs rather than id
+ * strings, and an ordered set of the dates in use answers range queries without a scan.
+ */
+final class DateIndex {
+    private final ForecastRefs refs;
+    private final Map<LocalDate, LongHashSet> ids = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<LocalDate> dates = new ConcurrentSkipListSet<>();
+
+    DateIndex() {
+        this(new ForecastRefs());
+    }
+
+    DateIndex(ForecastRefs refs) {
+        this.refs = refs;
+    }
+
+    void add(LocalDate date, String id) {
+        if (date == null) {
+            return;
+        }
+        // The ordered date set is only touched under the hash map's per-date lock, keeping the two in step.
+        ids.compute(date, (d, set) -> {
+            LongHashSet updated = set;
+            if (updated == null) {
+                updated = new LongHashSet();
+                dates.add(d);
+            }
+            long ref = refs.acquire(id);
+            boolean added;
+            synchronized (updated) {
+                added = updated.add(ref);
+            }
+            if (!added) {
+                refs.release(ref);
+            }
+            return updated;
+        });
+    }
+
+    void remove(LocalDate date, String id) {
+        long ref = date == null ? 0 : refs.of(id);
+        if (ref == 0) {
+            return;
+        }
+        ids.computeIfPresent(date, (d, set) -> {
+            boolean empty;
+            synchronized (set) {
+                if (!set.remove(ref)) {
+                    return set;
+                }
+                empty = set.isEmpty();
+            }
+            refs.release(ref);
+            if (empty) {
+                dates.remove(d);
+                return null;
+            }
+            return set;
+        });
+    }
+
+    /**
+     * Returns up to {@code limit} ids of forecasts dated strictly before {@code cutoff}, oldest first.
+     */
+    List<String> idsBefore(LocalDate cutoff, int limit) {
+        List<String> result = new ArrayList<>();
+        for (LocalDate date : dates.headSet(cutoff, false)) {
+            for (long ref : refsOn(date)) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                String id = refs.idOf(ref);
+                if (id != null) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes each id dated from {@code start} to {@code end} inclusive, with its date, to {@code action}.
+     */
+    void forEachBetween(LocalDate start, LocalDate end, BiConsumer<LocalDate, String> action) {
+        for (LocalDate date : dates.subSet(start, true, end, true)) {
+            for (long ref : refsOn(date)) {
+                String id = refs.idOf(ref);
+                if (id != null) {
+                    action.accept(date, id);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        for (LocalDate date : new ArrayList<>(ids.keySet())) {
+            ids.computeIfPresent(date, (d, set) -> {
+                long[] held;
+                synchronized (set) {
+                    held = set.toArray();
+                }
+                for (long ref : held) {
+                    refs.release(ref);
+                }
+                dates.remove(d);
+                return null;
+            });
+        }
+    }
+
+    private long[] refsOn(LocalDate date) {
+        LongHashSet set = ids.get(date);
+        if (set == null) {
+            return new long[0];
+        }
+        synchronized (set) {
+            return set.toArray();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.weather.api.repository;
+
+/**
+ * Thrown when a write would give a second forecast the same city, country and date as an existing one.
+ */
+public class DuplicateForecastException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String existingId;
+
+    public DuplicateForecastException(String existingId) {
+        super("A forecast for the same city, country and date already exists: " + existingId);
+        this.existingId = existingId;
+    }
+
+    public String getExistingId() {
+        return existingId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.WeatherForecast;
+
+/**
+ * Callback for repository mutations. Invoked on the mutating thread once the change is visible to
+ * reads and indexed, while the affected id is still locked, so changes to the same forecast arrive in
+ * order; implementations must not block.
+ */
+public interface ForecastChangeListener {
+
+    /**
+     * @param previous the stored forecast before the change, or {@code null} on create
+     * @param current  the stored forecast after the change, or {@code null} on delete
+     */
+    void onForecastChanged(WeatherForecast previous, WeatherForecast current);
+
+    /**
+     * Called after every forecast has been removed at once.
+     */
+    void onForecastsCleared();
+}
@@ -0,0 +1,392 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastIds;
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.WeatherForecast;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Version history of every forecast. Each forecast has its latest state in full (held here, or read
+ * back from the store) plus a chain of reverse deltas, newest first, holding only the fields that
+ * changed in each update. Reading the
+ * current version costs nothing; older versions are rebuilt by walking back through the deltas.
+ * Deleted forecasts keep their chain (as a tombstone) until it is pruned.
+ *
+ * <p>When current versions are looked up, a forecast with a compact id gets no chain until it is
+ * first changed or deleted: until then its whole history is its creation time, kept as two longs
+ * in a primitive table.
+ */
+class ForecastHistory {
+    private static final ForecastField[] VERSIONED_FIELDS = versionedFields();
+    private static final long NOT_CREATED = Long.MIN_VALUE;
+
+    private final Map<String, Chain> chains = new ConcurrentHashMap<>();
+    // Creation times, in epoch nanoseconds, of compact ids that have no chain yet; guarded by its monitor.
+    private final LongLongMap createdAt = new LongLongMap();
+    private final int maxVersions;
+    private final Function<String, WeatherForecast> liveLookup;
+
+    ForecastHistory(int maxVersions) {
+        this(maxVersions, null);
+    }
+
+    /**
+     * With {@code liveLookup} set, the current version of a forecast that still exists is read back
+     * through it rather than kept here; only deleted forecasts keep their last version in the chain.
+     * It is only called when history is read, never while a change is recorded, so recording needs
+     * nothing from the store.
+     */
+    ForecastHistory(int maxVersions, Function<String, WeatherForecast> liveLookup) {
+        this.maxVersions = Math.max(1, maxVersions);
+        this.liveLookup = liveLookup;
+    }
+
+    void recordCreate(WeatherForecast forecast, Instant at) {
+        String id = forecast.getId();
+        long ref = liveLookup == null ? 0 : ForecastRefs.compact(id);
+        long nanos = ref == 0 ? NOT_CREATED : epochNanos(at);
+        if (nanos == NOT_CREATED || nanos == Long.MAX_VALUE) {
+            chains.put(id, new Chain(retained(forecast), at));
+            return;
+        }
+        synchronized (createdAt) {
+            createdAt.put(ref, nanos);
+        }
+        // A tombstone left by an earlier forecast with this id.
+        chains.remove(id);
+    }
+
+    /**
+     * Records that {@code previous} was replaced by {@code forecast}. The caller passes the version it
+     * replaced rather than this reading it back, as the store may already hold the new one.
+     */
+    void recordUpdate(WeatherForecast previous, WeatherForecast forecast, Instant at) {
+        String id = forecast.getId();
+        Chain chain = chains.get(id);
+        if (chain == null) {
+            long ref = ForecastRefs.compact(id);
+            if (!hasCreationTime(ref)) {
+                chains.putIfAbsent(id, new Chain(retained(forecast), at));
+                return;
+            }
+            if (previous != null && Delta.between(forecast, previous, at) == null) {
+                // Nothing versioned changed, so there is still no history to keep.
+                return;
+            }
+            chain = materialize(id, ref);
+        }
+        synchronized (chain) {
+            chain.append(forecast, previous, at, maxVersions);
+            chain.latest = retained(forecast);
+        }
+    }
+
+    void recordDelete(WeatherForecast previous, Instant at) {
+        String id = previous.getId();
+        Chain chain = chains.get(id);
+        if (chain == null) {
+            long ref = ForecastRefs.compact(id);
+            if (!hasCreationTime(ref)) {
+                return;
+            }
+            chain = materialize(id, ref);
+        }
+        synchronized (chain) {
+            // Pin the last version: once deleted it can no longer be looked up.
+            chain.latest = previous;
+            chain.deletedAt = at;
+        }
+    }
+
+    Optional<WeatherForecast> asOf(String id, Instant at) {
+        Chain chain = chains.get(id);
+        if (chain == null) {
+            long created = creationTime(ForecastRefs.compact(id));
+            if (created == NOT_CREATED || epochNanos(at) < created) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(liveLookup.apply(id));
+        }
+        synchronized (chain) {
+            return Optional.ofNullable(chain.asOf(at, latest(id, chain)));
+        }
+    }
+
+    List<WeatherForecast> allAsOf(Instant at) {
+        List<WeatherForecast> result = new ArrayList<>();
+        // Chainless forecasts first: one that gets its chain meanwhile is then found among the chains,
+        // and skipped there if it was already read here.
+        long cutoff = epochNanos(at);
+        LongHashSet seen = new LongHashSet();
+        List<Long> live = new ArrayList<>();
+        synchronized (createdAt) {
+            createdAt.forEach((ref, created) -> {
+                seen.add(ref);
+                if (created <= cutoff) {
+                    live.add(ref);
+                }
+            });
+        }
+        for (long ref : live) {
+            WeatherForecast version = liveLookup.apply(ForecastIds.format(ref));
+            if (version != null) {
+                result.add(version);
+            }
+        }
+        for (Map.Entry<String, Chain> entry : chains.entrySet()) {
+            if (seen.contains(ForecastRefs.compact(entry.getKey()))) {
+                continue;
+            }
+            Chain chain = entry.getValue();
+            WeatherForecast version;
+            synchronized (chain) {
+                version = chain.asOf(at, latest(entry.getKey(), chain));
+            }
+            if (version != null) {
+                result.add(version);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns every retained version of the forecast, newest first.
+     */
+    List<ForecastVersion> versions(String id) {
+        Chain chain = chains.get(id);
+        if (chain == null) {
+            List<ForecastVersion> versions = new ArrayList<>();
+            long created = creationTime(ForecastRefs.compact(id));
+            WeatherForecast current = created == NOT_CREATED ? null : liveLookup.apply(id);
+            if (current != null) {
+                versions.add(new ForecastVersion(1, instant(created), null, current));
+            }
+            return versions;
+        }
+        synchronized (chain) {
+            WeatherForecast latest = latest(id, chain);
+            return latest == null ? new ArrayList<>() : chain.versions(latest);
+        }
+    }
+
+    /**
+     * Drops versions that were superseded before {@code cutoff} and tombstones deleted before it.
+     */
+    void prune(Instant cutoff) {
+        for (Map.Entry<String, Chain> entry : chains.entrySet()) {
+            Chain chain = entry.getValue();
+            synchronized (chain) {
+                if (chain.deletedAt != null && chain.deletedAt.isBefore(cutoff)) {
+                    chains.remove(entry.getKey(), chain);
+                } else {
+                    chain.pruneSupersededBefore(cutoff);
+                }
+            }
+        }
+    }
+
+    int chainCount() {
+        return chains.size();
+    }
+
+    void clear() {
+        chains.clear();
+        synchronized (createdAt) {
+            createdAt.clear();
+        }
+    }
+
+    /**
+     * Gives the forecast its chain, starting from its recorded creation time. The creation time is
+     * only dropped once the chain is in place, so readers always find one or the other.
+     */
+    private Chain materialize(String id, long ref) {
+        Chain chain = new Chain(null, instant(creationTime(ref)));
+        chains.put(id, chain);
+        synchronized (createdAt) {
+            createdAt.remove(ref, NOT_CREATED);
+        }
+        return chain;
+    }
+
+    private boolean hasCreationTime(long ref) {
+        return creationTime(ref) != NOT_CREATED;
+    }
+
+    private long creationTime(long ref) {
+        if (ref == 0) {
+            return NOT_CREATED;
+        }
+        synchronized (createdAt) {
+            return createdAt.get(ref, NOT_CREATED);
+        }
+    }
+
+    /**
+     * Returns the instant in nanoseconds since the epoch, saturating at {@link Long#MIN_VALUE} and
+     * {@link Long#MAX_VALUE} for instants that do not fit; those are never stored as creation times.
+     */
+    private static long epochNanos(Instant at) {
+        try {
+            return Math.addExact(Math.multiplyExact(at.getEpochSecond(), 1_000_000_000L), at.getNano());
+        } catch (ArithmeticException e) {
+            return at.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private static Instant instant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+
+    private WeatherForecast retained(WeatherForecast forecast) {
+        return liveLookup == null ? forecast : null;
+    }
+
+    private WeatherForecast latest(String id, Chain chain) {
+        return chain.latest != null || liveLookup == null ? chain.latest : liveLookup.apply(id);
+    }
+
+    private static ForecastField[] versionedFields() {
+        List<ForecastField> fields = new ArrayList<>();
+        for (ForecastField field : ForecastField.values()) {
+            if (field.isVersioned()) {
+                fields.add(field);
+            }
+        }
+        return fields.toArray(new ForecastField[0]);
+    }
+
+    private static final class Chain {
+        final Instant createdAt;
+        final ArrayDeque<Delta> deltas = new ArrayDeque<>();
+        // Null while the forecast is live and its current version is looked up instead.
+        WeatherForecast latest;
+        Instant latestSince;
+        int latestVersion = 1;
+        Instant deletedAt;
+
+        Chain(WeatherForecast forecast, Instant at) {
+            this.createdAt = at;
+            this.latest = forecast;
+            this.latestSince = at;
+        }
+
+        void append(WeatherForecast forecast, WeatherForecast previous, Instant at, int maxVersions) {
+            Delta delta = previous == null ? null : Delta.between(forecast, previous, latestSince);
+            deletedAt = null;
+            if (delta == null) {
+                return;
+            }
+            deltas.addFirst(delta);
+            latestSince = at;
+            latestVersion++;
+            while (deltas.size() > maxVersions - 1) {
+                deltas.removeLast();
+            }
+        }
+
+        WeatherForecast asOf(Instant at, WeatherForecast current) {
+            if (current == null || at.isBefore(createdAt) || (deletedAt != null && !at.isBefore(deletedAt))) {
+                return null;
+            }
+            if (!at.isBefore(latestSince)) {
+                return current;
+            }
+            WeatherForecast version = new WeatherForecast(current);
+            for (Delta delta : deltas) {
+                delta.applyTo(version);
+                if (!at.isBefore(delta.validFrom)) {
+                    return version;
+                }
+            }
+            // The requested instant falls before the oldest retained version.
+            return null;
+        }
+
+        List<ForecastVersion> versions(WeatherForecast current) {
+            List<ForecastVersion> versions = new ArrayList<>(deltas.size() + 1);
+            Instant supersededAt = deletedAt;
+            versions.add(new ForecastVersion(latestVersion, latestSince, supersededAt, current));
+            WeatherForecast version = new WeatherForecast(current);
+            supersededAt = latestSince;
+            int number = latestVersion;
+            for (Delta delta : deltas) {
+                delta.applyTo(version);
+                versions.add(new ForecastVersion(--number, delta.validFrom, supersededAt, new WeatherForecast(version)));
+                supersededAt = delta.validFrom;
+            }
+            return versions;
+        }
+
+        void pruneSupersededBefore(Instant cutoff) {
+            // The oldest delta's version was superseded when the next newer one became valid.
+            while (!deltas.isEmpty()) {
+                Iterator<Delta> oldestFirst = deltas.descendingIterator();
+                oldestFirst.next();
+                Instant supersededAt = oldestFirst.hasNext() ? oldestFirst.next().validFrom : latestSince;
+                if (!supersededAt.isBefore(cutoff)) {
+                    return;
+                }
+                deltas.removeLast();
+            }
+        }
+    }
+
+    /**
+     * The fields an update overwrote, with their previous values, encoded as a bit mask over
+     * {@link #VERSIONED_FIELDS} plus the packed old values.
+     */
+    private static final class Delta {
+        final Instant validFrom;
+        final int mask;
+        final Object[] values;
+
+        private Delta(Instant validFrom, int mask, Object[] values) {
+            this.validFrom = validFrom;
+            this.mask = mask;
+            this.values = values;
+        }
+
+        static Delta between(WeatherForecast current, WeatherForecast previous, Instant previousSince) {
+            int mask = 0;
+            int changed = 0;
+            for (int i = 0; i < VERSIONED_FIELDS.length; i++) {
+                if (!Objects.equals(VERSIONED_FIELDS[i].get(current), VERSIONED_FIELDS[i].get(previous))) {
+                    mask |= 1 << i;
+                    changed++;
+                }
+            }
+            if (mask == 0) {
+                return null;
+            }
+            Object[] values = new Object[changed];
+            int next = 0;
+            for (int i = 0; i < VERSIONED_FIELDS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    values[next++] = VERSIONED_FIELDS[i].get(previous);
+                }
+            }
+            return new Delta(previousSince, mask, values);
+        }
+
+        void applyTo(WeatherForecast forecast) {
+            int next = 0;
+            for (int i = 0; i < VERSIONED_FIELDS.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    VERSIONED_FIELDS[i].set(forecast, values[next++]);
+                }
+            }
+        }
+    }
+}
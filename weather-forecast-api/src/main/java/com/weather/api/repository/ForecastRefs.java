@@ -0,0 +1,107 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastIds;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps forecast ids to the 64-bit refs the secondary indexes hold instead of id strings. A compact
+ * id is its own ref, so indexing it keeps nothing on the heap; any other id (such as a legacy UUID)
+ * is given a negative ref the first time an index takes it and keeps it while any index still
+ * holds it. Ref {@code 0} is never handed out.
+ */
+final class ForecastRefs {
+    private final Map<String, Legacy> byId = new HashMap<>();
+    private final Map<Long, Legacy> byRef = new HashMap<>();
+    private long nextLegacy = Long.MIN_VALUE;
+
+    /**
+     * Returns the value of {@code id} if it is a compact id in any case, as the stores accept it, or
+     * {@code 0} otherwise. Formatting the value gives back the canonical upper-case spelling.
+     */
+    static long compact(String id) {
+        return ForecastIds.parseCompact(id);
+    }
+
+    /**
+     * Returns the ref of {@code id}, counting one more holder of it if it is not compact. Every
+     * call must be matched by a {@link #release} once the index drops the id.
+     */
+    long acquire(String id) {
+        long ref = compact(id);
+        if (ref != 0) {
+            return ref;
+        }
+        synchronized (this) {
+            Legacy legacy = byId.get(id);
+            if (legacy == null) {
+                legacy = new Legacy(id, ++nextLegacy);
+                byId.put(id, legacy);
+                byRef.put(legacy.ref, legacy);
+            }
+            legacy.holders++;
+            return legacy.ref;
+        }
+    }
+
+    void release(long ref) {
+        if (ref > 0) {
+            return;
+        }
+        synchronized (this) {
+            Legacy legacy = byRef.get(ref);
+            if (legacy != null && --legacy.holders == 0) {
+                byRef.remove(ref);
+                byId.remove(legacy.id);
+            }
+        }
+    }
+
+    /**
+     * Returns the ref of {@code id} without taking it, or {@code 0} if no index holds it.
+     */
+    long of(String id) {
+        long ref = compact(id);
+        if (ref != 0) {
+            return ref;
+        }
+        synchronized (this) {
+            Legacy legacy = byId.get(id);
+            return legacy == null ? 0 : legacy.ref;
+        }
+    }
+
+    /**
+     * Returns the id of {@code ref}, or {@code null} if it is a legacy ref no index holds any more.
+     */
+    String idOf(long ref) {
+        if (ref > 0) {
+            return ForecastIds.format(ref);
+        }
+        synchronized (this) {
+            Legacy legacy = byRef.get(ref);
+            return legacy == null ? null : legacy.id;
+        }
+    }
+
+    synchronized int legacyCount() {
+        return byId.size();
+    }
+
+    synchronized void clear() {
+        byId.clear();
+        byRef.clear();
+    }
+
+    private static final class Legacy {
+        final String id;
+        final long ref;
+        int holders;
+
+        Legacy(String id, long ref) {
+            this.id = id;
+            this.ref = ref;
+        }
+    }
+}
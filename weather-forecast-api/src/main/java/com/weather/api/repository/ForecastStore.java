@@ -0,0 +1,86 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.WeatherForecast;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Primary map from id to forecast behind {@link WeatherRepository}. {@link #compute} must be atomic
+ * per id: the repository claims the forecast's natural key inside it. A store that can fail after a
+ * remapping has returned, such as on commit, throws {@link ForecastStoreWriteException} saying how
+ * many results it dropped, so the repository can take those claims back.
+ */
+interface ForecastStore extends AutoCloseable {
+
+    WeatherForecast get(String id);
+
+    /**
+     * Like {@link #get(String)}, but a store that decodes records may leave the fields outside
+     * {@code fields} unset; the id is always read. {@code null} selects every field.
+     */
+    default WeatherForecast get(String id, ForecastFieldSet fields) {
+        return get(id);
+    }
+
+    default boolean containsKey(String id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Replaces the forecast stored under {@code id} with the result of {@code remapping} applied to
+     * it ({@code null} if absent); a {@code null} result removes it. Returning the argument itself
+     * leaves the store unchanged.
+     */
+    void compute(String id, UnaryOperator<WeatherForecast> remapping);
+
+    void computeIfPresent(String id, UnaryOperator<WeatherForecast> remapping);
+
+    /**
+     * Applies {@link #compute} to each id in order, letting a store write the results together. If
+     * a remapping throws, the results of the ids before it are still kept.
+     */
+    default void computeAll(List<String> ids, BiFunction<String, WeatherForecast, WeatherForecast> remapping) {
+        for (String id : ids) {
+            compute(id, previous -> remapping.apply(id, previous));
+        }
+    }
+
+    List<WeatherForecast> values();
+
+    /**
+     * Like {@link #values()}, decoding only {@code fields} as {@link #get(String, ForecastFieldSet)} does.
+     */
+    default List<WeatherForecast> values(ForecastFieldSet fields) {
+        return values();
+    }
+
+    int size();
+
+    void clear();
+
+    /**
+     * Returns the forecasts of one city (normalized as by {@link CityIndex#normalize}) dated within
+     * the inclusive bounds, either of which may be {@code null}, in date order; or {@code null} if
+     * the store is not ordered by city, in which case the repository resolves cities itself.
+     */
+    default List<WeatherForecast> scanCity(String city, LocalDate startDate, LocalDate endDate) {
+        return null;
+    }
+
+    /**
+     * Like {@link #scanCity(String, LocalDate, LocalDate)}, decoding only {@code fields} as
+     * {@link #get(String, ForecastFieldSet)} does.
+     */
+    default List<WeatherForecast> scanCity(String city, LocalDate startDate, LocalDate endDate,
+                                           ForecastFieldSet fields) {
+        return scanCity(city, startDate, endDate);
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,21 @@
+package com.weather.api.repository;
+
+/**
+ * Thrown by a {@link ForecastStore} write that failed after running some of its remappings: the
+ * results of the last {@link #getDiscarded()} remapping calls were not stored, while the results of
+ * any calls before them were.
+ */
+public class ForecastStoreWriteException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    private final int discarded;
+
+    public ForecastStoreWriteException(String message, int discarded, Throwable cause) {
+        super(message, cause);
+        this.discarded = discarded;
+    }
+
+    public int getDiscarded() {
+        return discarded;
+    }
+}
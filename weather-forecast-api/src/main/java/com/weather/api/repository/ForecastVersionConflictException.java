@@ -0,0 +1,25 @@
+package com.weather.api.repository;
+
+/**
+ * Thrown when a conditional write expected a different version of the forecast than the stored one.
+ */
+public class ForecastVersionConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final long currentVersion;
+
+    public ForecastVersionConflictException(String id, long currentVersion) {
+        super("Forecast " + id + " is at version " + currentVersion);
+        this.id = id;
+        this.currentVersion = currentVersion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,343 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.WeatherForecast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial index over forecasts that carry coordinates. Points are bucketed into a fixed grid of
+ * one-degree cells, so radius queries only visit the cells overlapping the query's bounding box
+ * and nearest-city queries expand ring by ring until no unvisited cell can hold a closer city.
+ * A cell keeps its points in primitive arrays of ref and coordinates, and each distinct city is
+ * interned once as a {@link Place} shared by all its points.
+ */
+class GeoIndex {
+    static final double EARTH_RADIUS_KM = 6371.0088;
+    static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    private static final int LAT_CELLS = 180;
+    private static final int LON_CELLS = 360;
+
+    private final ForecastRefs refs;
+    private final Map<Integer, Cell> cells = new ConcurrentHashMap<>();
+    private final Map<String, Place> places = new ConcurrentHashMap<>();
+
+    GeoIndex() {
+        this(new ForecastRefs());
+    }
+
+    GeoIndex(ForecastRefs refs) {
+        this.refs = refs;
+    }
+
+    void add(WeatherForecast forecast) {
+        if (!forecast.hasLocation()) {
+            return;
+        }
+        double latitude = forecast.getLatitude();
+        double longitude = forecast.getLongitude();
+        cells.compute(cellOf(latitude, longitude), (key, cell) -> {
+            Cell updated = cell == null ? new Cell() : cell;
+            long ref = refs.acquire(forecast.getId());
+            Place place = acquirePlace(forecast.getCity(), forecast.getCountry());
+            Place replaced = updated.put(ref, latitude, longitude, place);
+            if (replaced != null) {
+                refs.release(ref);
+                releasePlace(replaced);
+            }
+            return updated;
+        });
+    }
+
+    void remove(WeatherForecast forecast) {
+        long ref = forecast.hasLocation() ? refs.of(forecast.getId()) : 0;
+        if (ref == 0) {
+            return;
+        }
+        cells.computeIfPresent(cellOf(forecast.getLatitude(), forecast.getLongitude()), (key, cell) -> {
+            Place removed = cell.remove(ref);
+            if (removed == null) {
+                return cell;
+            }
+            refs.release(ref);
+            releasePlace(removed);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    void clear() {
+        for (Integer key : new ArrayList<>(cells.keySet())) {
+            cells.computeIfPresent(key, (k, cell) -> {
+                for (long ref : cell.refs()) {
+                    refs.release(ref);
+                }
+                return null;
+            });
+        }
+        places.clear();
+    }
+
+    /**
+     * Returns the ids of all indexed forecasts within {@code radiusKm} of the given point, nearest first.
+     */
+    List<String> withinRadius(double latitude, double longitude, double radiusKm) {
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        int minLatCell = latCell(latitude - latSpan);
+        int maxLatCell = latCell(latitude + latSpan);
+        double farthestLat = Math.min(90.0, Math.abs(latitude) + latSpan);
+        double cos = Math.cos(Math.toRadians(farthestLat));
+        double lonSpan = cos < 1e-9 ? LON_CELLS : latSpan / cos;
+        int minLon = (int) Math.floor(longitude - lonSpan);
+        int maxLon = (int) Math.floor(longitude + lonSpan);
+        if (maxLon - minLon + 1 >= LON_CELLS) {
+            minLon = 0;
+            maxLon = LON_CELLS - 1;
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lon = minLon; lon <= maxLon; lon++) {
+                Cell cell = cells.get(key(latCell, Math.floorMod(lon + 180, LON_CELLS)));
+                if (cell != null) {
+                    cell.collect(latitude, longitude, radiusKm, hits);
+                }
+            }
+        }
+        hits.sort(Comparator.comparingDouble(hit -> hit.distanceKm));
+        List<String> ids = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            String id = refs.idOf(hit.ref);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the {@code k} distinct cities (by city and country) closest to the given point.
+     */
+    List<NearbyCity> nearestCities(double latitude, double longitude, int k) {
+        Map<String, NearbyCity> best = new HashMap<>();
+        Set<Integer> visited = new HashSet<>();
+        int centerLat = latCell(latitude);
+        int centerLon = lonCell(longitude);
+        for (int ring = 0; ring <= LON_CELLS / 2; ring++) {
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                int latCell = centerLat + dLat;
+                if (latCell < 0 || latCell >= LAT_CELLS) {
+                    continue;
+                }
+                boolean edgeRow = Math.abs(dLat) == ring;
+                for (int dLon = -ring; dLon <= ring; dLon += edgeRow ? 1 : 2 * Math.max(ring, 1)) {
+                    int cell = key(latCell, Math.floorMod(centerLon + dLon, LON_CELLS));
+                    if (visited.add(cell)) {
+                        Cell points = cells.get(cell);
+                        if (points != null) {
+                            points.visit(latitude, longitude, best);
+                        }
+                    }
+                }
+            }
+            if (best.size() >= k && lowerBoundBeyondRing(latitude, longitude, ring) >= kthDistance(best, k)) {
+                break;
+            }
+        }
+        List<NearbyCity> nearest = new ArrayList<>(best.values());
+        nearest.sort(Comparator.comparingDouble(NearbyCity::getDistanceKm));
+        return nearest.size() > k ? new ArrayList<>(nearest.subList(0, k)) : nearest;
+    }
+
+    private Place acquirePlace(String city, String country) {
+        String key = CityIndex.normalize(city) + '|' + CityIndex.normalize(country);
+        return places.compute(key, (k, place) -> {
+            Place updated = place == null ? new Place(k, city, country) : place;
+            updated.holders++;
+            return updated;
+        });
+    }
+
+    private void releasePlace(Place place) {
+        places.computeIfPresent(place.key, (k, current) -> --current.holders == 0 ? null : current);
+    }
+
+    private static double kthDistance(Map<String, NearbyCity> best, int k) {
+        return best.values().stream()
+                .mapToDouble(NearbyCity::getDistanceKm)
+                .sorted()
+                .skip(k - 1L)
+                .findFirst()
+                .orElse(Double.MAX_VALUE);
+    }
+
+    /**
+     * Great-circle distance from the query point to the nearest point outside the cells visited after
+     * {@code ring}: past the rows covered, the latitude gap alone; past the columns covered, the
+     * distance to the nearest unvisited meridian, which for a gap of 90 degrees or more is the
+     * distance to the nearer pole.
+     */
+    static double lowerBoundBeyondRing(double latitude, double longitude, int ring) {
+        int centerLat = latCell(latitude);
+        double bound = Double.POSITIVE_INFINITY;
+        if (centerLat - ring > 0) {
+            bound = (latitude - (centerLat - ring - 90)) * KM_PER_DEGREE;
+        }
+        if (centerLat + ring < LAT_CELLS - 1) {
+            bound = Math.min(bound, (centerLat + ring + 1 - 90 - latitude) * KM_PER_DEGREE);
+        }
+        if (2 * ring + 1 < LON_CELLS) {
+            double west = Math.floor(longitude) - ring;
+            double gap = Math.min(90.0, Math.min(longitude - west, west + 2 * ring + 1 - longitude));
+            double angle = Math.asin(Math.min(1.0, Math.cos(Math.toRadians(latitude)) * Math.sin(Math.toRadians(gap))));
+            bound = Math.min(bound, angle * EARTH_RADIUS_KM);
+        }
+        return Math.max(0.0, bound);
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static int cellOf(double latitude, double longitude) {
+        return key(latCell(latitude), lonCell(longitude));
+    }
+
+    private static int latCell(double latitude) {
+        return Math.max(0, Math.min(LAT_CELLS - 1, (int) Math.floor(latitude) + 90));
+    }
+
+    private static int lonCell(double longitude) {
+        return Math.floorMod((int) Math.floor(longitude) + 180, LON_CELLS);
+    }
+
+    private static int key(int latCell, int lonCell) {
+        return latCell * LON_CELLS + lonCell;
+    }
+
+    /**
+     * A distinct city and country, shared by every point that carries it. The holder count is only
+     * touched inside the places map's per-key lock.
+     */
+    private static final class Place {
+        final String key;
+        final String city;
+        final String country;
+        int holders;
+
+        Place(String key, String city, String country) {
+            this.key = key;
+            this.city = city;
+            this.country = country;
+        }
+    }
+
+    /**
+     * The points of one grid cell in parallel arrays, with a ref-to-position map so removal does
+     * not scan. All access goes through the cell's monitor.
+     */
+    private static final class Cell {
+        private final LongLongMap positions = new LongLongMap();
+        private long[] refs = new long[4];
+        private double[] latitudes = new double[4];
+        private double[] longitudes = new double[4];
+        private Place[] places = new Place[4];
+        private int size;
+
+        /**
+         * Adds or moves the point, returning the place it had before or {@code null} if it is new.
+         */
+        synchronized Place put(long ref, double latitude, double longitude, Place place) {
+            int index = (int) positions.get(ref, -1);
+            Place replaced = null;
+            if (index < 0) {
+                if (size == refs.length) {
+                    refs = Arrays.copyOf(refs, size * 2);
+                    latitudes = Arrays.copyOf(latitudes, size * 2);
+                    longitudes = Arrays.copyOf(longitudes, size * 2);
+                    places = Arrays.copyOf(places, size * 2);
+                }
+                index = size++;
+                positions.put(ref, index);
+            } else {
+                replaced = places[index];
+            }
+            refs[index] = ref;
+            latitudes[index] = latitude;
+            longitudes[index] = longitude;
+            places[index] = place;
+            return replaced;
+        }
+
+        /**
+         * Removes the point, returning its place, or {@code null} if the cell does not hold it.
+         */
+        synchronized Place remove(long ref) {
+            int index = (int) positions.remove(ref, -1);
+            if (index < 0) {
+                return null;
+            }
+            Place removed = places[index];
+            int last = --size;
+            if (index != last) {
+                refs[index] = refs[last];
+                latitudes[index] = latitudes[last];
+                longitudes[index] = longitudes[last];
+                places[index] = places[last];
+                positions.put(refs[index], index);
+            }
+            places[last] = null;
+            return removed;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        synchronized long[] refs() {
+            return Arrays.copyOf(refs, size);
+        }
+
+        synchronized void collect(double latitude, double longitude, double radiusKm, List<Hit> hits) {
+            for (int i = 0; i < size; i++) {
+                double distance = haversineKm(latitude, longitude, latitudes[i], longitudes[i]);
+                if (distance <= radiusKm) {
+                    hits.add(new Hit(refs[i], distance));
+                }
+            }
+        }
+
+        synchronized void visit(double latitude, double longitude, Map<String, NearbyCity> best) {
+            for (int i = 0; i < size; i++) {
+                double distance = haversineKm(latitude, longitude, latitudes[i], longitudes[i]);
+                Place place = places[i];
+                NearbyCity current = best.get(place.key);
+                if (current == null || distance < current.getDistanceKm()) {
+                    best.put(place.key, new NearbyCity(place.city, place.country, latitudes[i], longitudes[i], distance));
+                }
+            }
+        }
+    }
+
+    private static final class Hit {
+        final long ref;
+        final double distanceKm;
+
+        Hit(long ref, double distanceKm) {
+            this.ref = ref;
+            this.distanceKm = distanceKm;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastIds;
+import com.weather.api.model.WeatherForecast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Forecast store on the Java heap. Compact ids are kept as primitive {@code long} keys in a striped
+ * open-addressing table, so lookups neither box nor hash strings. Reads take no lock; writes lock
+ * one stripe, which also makes {@link #compute} atomic per id. Ids that are not compact (legacy
+ * UUIDs) fall back to a {@link ConcurrentHashMap}.
+ */
+class HeapForecastStore implements ForecastStore {
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final Map<String, WeatherForecast> legacy = new ConcurrentHashMap<>();
+
+    HeapForecastStore() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public WeatherForecast get(String id) {
+        long key = ForecastIds.parseCompact(id);
+        if (key == 0) {
+            return id == null ? null : legacy.get(id);
+        }
+        long hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    @Override
+    public void compute(String id, UnaryOperator<WeatherForecast> remapping) {
+        long key = ForecastIds.parseCompact(id);
+        if (key == 0) {
+            legacy.compute(id, (k, previous) -> remapping.apply(previous));
+            return;
+        }
+        long hash = hash(key);
+        segmentFor(hash).compute(key, hash, remapping, false);
+    }
+
+    @Override
+    public void computeIfPresent(String id, UnaryOperator<WeatherForecast> remapping) {
+        long key = ForecastIds.parseCompact(id);
+        if (key == 0) {
+            legacy.computeIfPresent(id, (k, previous) -> remapping.apply(previous));
+            return;
+        }
+        long hash = hash(key);
+        segmentFor(hash).compute(key, hash, remapping, true);
+    }
+
+    @Override
+    public List<WeatherForecast> values() {
+        List<WeatherForecast> values = new ArrayList<>(size());
+        for (Segment segment : segments) {
+            Table table = segment.table;
+            for (int i = 0; i < table.capacity; i++) {
+                WeatherForecast value = table.values.get(i);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+        values.addAll(legacy.values());
+        return values;
+    }
+
+    @Override
+    public int size() {
+        int size = legacy.size();
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        legacy.clear();
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private static long hash(long key) {
+        // Fibonacci hashing spreads the sequential low bits of compact ids over the whole word.
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Linear-probing table in which a zero key marks a free slot. Removing an entry only clears its
+     * value, leaving the key as a tombstone that keeps later probes intact (and is reused if the same
+     * id comes back); tombstones are dropped when the table is rebuilt.
+     */
+    private static final class Segment {
+        volatile Table table = new Table(INITIAL_CAPACITY);
+        volatile int size;
+        private int used;
+
+        WeatherForecast get(long key, long hash) {
+            Table current = table;
+            for (int i = current.indexOf(hash); ; i = (i + 1) & current.mask) {
+                long k = current.keys.get(i);
+                if (k == key) {
+                    return current.values.get(i);
+                }
+                if (k == 0) {
+                    return null;
+                }
+            }
+        }
+
+        synchronized void compute(long key, long hash, UnaryOperator<WeatherForecast> remapping, boolean ifPresent) {
+            Table current = table;
+            int slot = current.slotFor(key, hash);
+            WeatherForecast previous = current.values.get(slot);
+            if (previous == null && ifPresent) {
+                return;
+            }
+            WeatherForecast value = remapping.apply(previous);
+            if (value == previous) {
+                return;
+            }
+            if (value == null) {
+                current.values.set(slot, null);
+                size--;
+                return;
+            }
+            if (current.keys.get(slot) == 0) {
+                if ((used + 1) * 4L > current.capacity * 3L) {
+                    current = rebuild(current);
+                    slot = current.slotFor(key, hash);
+                }
+                used++;
+            }
+            // The value is published before the key, so a reader that finds the key also sees it.
+            current.values.set(slot, value);
+            current.keys.set(slot, key);
+            if (previous == null) {
+                size++;
+            }
+        }
+
+        synchronized void clear() {
+            table = new Table(INITIAL_CAPACITY);
+            size = 0;
+            used = 0;
+        }
+
+        private Table rebuild(Table old) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < (size + 1) * 4L) {
+                capacity <<= 1;
+            }
+            Table rebuilt = new Table(capacity);
+            for (int i = 0; i < old.capacity; i++) {
+                WeatherForecast value = old.values.get(i);
+                if (value != null) {
+                    long key = old.keys.get(i);
+                    int slot = rebuilt.slotFor(key, hash(key));
+                    rebuilt.values.set(slot, value);
+                    rebuilt.keys.set(slot, key);
+                }
+            }
+            used = size;
+            table = rebuilt;
+            return rebuilt;
+        }
+    }
+
+    private static final class Table {
+        final int capacity;
+        final int mask;
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<WeatherForecast> values;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        int indexOf(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        /**
+         * Returns the slot holding {@code key}, or the free slot where it would be inserted.
+         */
+        int slotFor(long key, long hash) {
+            for (int i = indexOf(hash); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key || k == 0) {
+                    return i;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastIds;
+import com.weather.api.model.WeatherForecast;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Forecast store in an embedded SQL database (H2 by default), reached through a Hikari connection
+ * pool. Rows carry the normalized city next to the date, and an index on (city, date, id) turns city
+ * and date-range queries into index range scans. {@link #computeAll} writes each chunk of
+ * {@code batchSize} forecasts as one batched statement in one transaction.
+ *
+ * <p>The table is created if it does not exist and its rows are kept across restarts: the repository
+ * indexes whatever the store holds when it starts.
+ */
+class JdbcForecastStore implements ForecastStore {
+    private static final int LOCK_STRIPES = 64;
+    private static final String COLUMNS = "id, city_key, forecast_date, city, country, forecast_condition, "
+            + "wind_direction, description, temperature_celsius, temperature_fahrenheit, humidity, wind_speed_kmh, "
+            + "latitude, longitude, version";
+    private static final String SELECT = "SELECT " + COLUMNS + " FROM forecasts";
+    private static final String MERGE = "MERGE INTO forecasts (" + COLUMNS + ") KEY (id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE = "DELETE FROM forecasts WHERE id = ?";
+    // Decoded rows start as copies of this, which skips generating an id that is then overwritten.
+    private static final WeatherForecast BLANK = new WeatherForecast();
+    private static final ForecastField[] FIELDS = ForecastField.values();
+    private static final Map<ForecastField, String> FIELD_COLUMNS = new EnumMap<>(ForecastField.class);
+
+    static {
+        FIELD_COLUMNS.put(ForecastField.CITY, "city");
+        FIELD_COLUMNS.put(ForecastField.COUNTRY, "country");
+        FIELD_COLUMNS.put(ForecastField.DATE, "forecast_date");
+        FIELD_COLUMNS.put(ForecastField.TEMPERATURE_CELSIUS, "temperature_celsius");
+        FIELD_COLUMNS.put(ForecastField.TEMPERATURE_FAHRENHEIT, "temperature_fahrenheit");
+        FIELD_COLUMNS.put(ForecastField.CONDITION, "forecast_condition");
+        FIELD_COLUMNS.put(ForecastField.HUMIDITY, "humidity");
+        FIELD_COLUMNS.put(ForecastField.WIND_SPEED_KMH, "wind_speed_kmh");
+        FIELD_COLUMNS.put(ForecastField.WIND_DIRECTION, "wind_direction");
+        FIELD_COLUMNS.put(ForecastField.DESCRIPTION, "description");
+        FIELD_COLUMNS.put(ForecastField.LATITUDE, "latitude");
+        FIELD_COLUMNS.put(ForecastField.LONGITUDE, "longitude");
+        FIELD_COLUMNS.put(ForecastField.VERSION, "version");
+    }
+
+    private final HikariDataSource dataSource;
+    private final Path temporaryDirectory;
+    private final int batchSize;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    // Field sets are interned, so there is at most one entry per distinct selection.
+    private final Map<ForecastFieldSet, String> selects = new ConcurrentHashMap<>();
+
+    /**
+     * @param url JDBC URL of the database, or blank for an H2 file database in a new temporary
+     *            directory that is deleted on {@link #close()}
+     */
+    JdbcForecastStore(String url, int poolSize, int batchSize) {
+        try {
+            this.temporaryDirectory = url.isBlank() ? Files.createTempDirectory("weather-h2") : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(temporaryDirectory == null ? url
+                : "jdbc:h2:file:" + temporaryDirectory.resolve("forecasts").toAbsolutePath());
+        config.setMaximumPoolSize(Math.max(1, poolSize));
+        config.setPoolName("forecast-store");
+        this.dataSource = new HikariDataSource(config);
+        this.batchSize = Math.max(1, batchSize);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        createTable();
+        size.set(countRows());
+    }
+
+    @Override
+    public WeatherForecast get(String id) {
+        return get(id, null);
+    }
+
+    @Override
+    public WeatherForecast get(String id, ForecastFieldSet fields) {
+        if (id == null) {
+            return null;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(select(fields) + " WHERE id = ?")) {
+            statement.setString(1, canonical(id));
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? read(rows, fields) : null;
+            }
+        } catch (SQLException e) {
+            throw failure("read forecast " + id, e);
+        }
+    }
+
+    @Override
+    public void compute(String id, UnaryOperator<WeatherForecast> remapping) {
+        write(List.of(id), (canonicalId, previous) -> remapping.apply(previous), false);
+    }
+
+    @Override
+    public void computeIfPresent(String id, UnaryOperator<WeatherForecast> remapping) {
+        write(List.of(id), (canonicalId, previous) -> remapping.apply(previous), true);
+    }
+
+    @Override
+    public void computeAll(List<String> ids, BiFunction<String, WeatherForecast, WeatherForecast> remapping) {
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            write(ids.subList(from, Math.min(ids.size(), from + batchSize)), remapping, false);
+        }
+    }
+
+    @Override
+    public List<WeatherForecast> values() {
+        return values(null);
+    }
+
+    @Override
+    public List<WeatherForecast> values(ForecastFieldSet fields) {
+        return query(select(fields), fields, statement -> { });
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("TRUNCATE TABLE forecasts");
+            size.set(0);
+        } catch (SQLException e) {
+            throw failure("clear forecasts", e);
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<WeatherForecast> scanCity(String city, LocalDate startDate, LocalDate endDate) {
+        return scanCity(city, startDate, endDate, null);
+    }
+
+    @Override
+    public List<WeatherForecast> scanCity(String city, LocalDate startDate, LocalDate endDate,
+                                          ForecastFieldSet fields) {
+        // Undated forecasts sort first, and only match when there is no lower bound.
+        StringBuilder sql = new StringBuilder(select(fields)).append(" WHERE city_key = ?");
+        if (startDate != null) {
+            sql.append(" AND forecast_date >= ?");
+        }
+        if (endDate != null) {
+            sql.append(" AND (forecast_date <= ?").append(startDate == null ? " OR forecast_date IS NULL)" : ")");
+        }
+        sql.append(" ORDER BY city_key, forecast_date NULLS FIRST, id");
+        return query(sql.toString(), fields, statement -> {
+            int parameter = 1;
+            statement.setString(parameter++, CityIndex.normalize(city));
+            if (startDate != null) {
+                statement.setDate(parameter++, Date.valueOf(startDate));
+            }
+            if (endDate != null) {
+                statement.setDate(parameter, Date.valueOf(endDate));
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+        if (temporaryDirectory != null) {
+            try (Stream<Path> files = Files.walk(temporaryDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Remaps the ids in one transaction while holding their lock stripes, taken in index order so
+     * that overlapping batches cannot deadlock. Only the final state of each id is written. The
+     * remappings only see rows read on this connection before the transaction, so none of them
+     * needs a second connection while this one is held.
+     *
+     * @throws ForecastStoreWriteException if the transaction fails, discarding every remapping here
+     */
+    private void write(List<String> ids, BiFunction<String, WeatherForecast, WeatherForecast> remapping,
+                       boolean ifPresent) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        List<String> canonicalIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            String canonicalId = canonical(id);
+            canonicalIds.add(canonicalId);
+            stripes.add(Math.floorMod(canonicalId.hashCode(), LOCK_STRIPES));
+        }
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            Map<String, WeatherForecast> stored = canonicalIds.size() == 1
+                    ? single(canonicalIds.get(0), find(connection, canonicalIds.get(0)))
+                    : findAll(connection, canonicalIds);
+            Map<String, WeatherForecast> current = new HashMap<>(stored);
+            Map<String, WeatherForecast> changed = new LinkedHashMap<>();
+            RuntimeException failure = null;
+            int remapped = 0;
+            for (String id : canonicalIds) {
+                WeatherForecast previous = current.get(id);
+                if (previous == null && ifPresent) {
+                    continue;
+                }
+                WeatherForecast value;
+                try {
+                    remapped++;
+                    value = remapping.apply(id, previous);
+                } catch (RuntimeException e) {
+                    // The ids before this one were applied by the caller and must still be written.
+                    failure = e;
+                    break;
+                }
+                if (value != previous) {
+                    current.put(id, value);
+                    changed.put(id, value);
+                }
+            }
+            try {
+                flush(connection, stored, changed);
+            } catch (SQLException e) {
+                throw new ForecastStoreWriteException("Cannot write forecasts: " + e.getMessage(), remapped, e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (SQLException e) {
+            throw failure("write forecasts", e);
+        } finally {
+            for (int stripe : stripes.descendingSet()) {
+                locks[stripe].unlock();
+            }
+        }
+    }
+
+    private void flush(Connection connection, Map<String, WeatherForecast> stored, Map<String, WeatherForecast> changed)
+            throws SQLException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        int delta = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement merge = connection.prepareStatement(MERGE);
+             PreparedStatement delete = connection.prepareStatement(DELETE)) {
+            int merges = 0;
+            int deletes = 0;
+            for (Map.Entry<String, WeatherForecast> entry : changed.entrySet()) {
+                boolean existed = stored.get(entry.getKey()) != null;
+                if (entry.getValue() != null) {
+                    bind(merge, entry.getKey(), entry.getValue());
+                    merge.addBatch();
+                    merges++;
+                    delta += existed ? 0 : 1;
+                } else if (existed) {
+                    delete.setString(1, entry.getKey());
+                    delete.addBatch();
+                    deletes++;
+                    delta--;
+                }
+            }
+            if (merges > 0) {
+                merge.executeBatch();
+            }
+            if (deletes > 0) {
+                delete.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        size.addAndGet(delta);
+    }
+
+    private WeatherForecast find(Connection connection, String id) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT + " WHERE id = ?")) {
+            statement.setString(1, id);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next() ? read(rows) : null;
+            }
+        }
+    }
+
+    private Map<String, WeatherForecast> findAll(Connection connection, List<String> ids) throws SQLException {
+        Map<String, WeatherForecast> found = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT + " WHERE id = ANY(?)")) {
+            Array array = connection.createArrayOf("VARCHAR", ids.toArray());
+            statement.setArray(1, array);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    WeatherForecast forecast = read(rows);
+                    found.put(forecast.getId(), forecast);
+                }
+            } finally {
+                array.free();
+            }
+        }
+        return found;
+    }
+
+    private List<WeatherForecast> query(String sql, ForecastFieldSet fields, StatementBinder binder) {
+        List<WeatherForecast> forecasts = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            binder.bind(statement);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    forecasts.add(read(rows, fields));
+                }
+            }
+        } catch (SQLException e) {
+            throw failure("query forecasts", e);
+        }
+        return forecasts;
+    }
+
+    private void createTable() {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS forecasts ("
+                    + "id VARCHAR(64) PRIMARY KEY, "
+                    + "city_key VARCHAR NOT NULL, "
+                    + "forecast_date DATE, "
+                    + "city VARCHAR, "
+                    + "country VARCHAR, "
+                    + "forecast_condition VARCHAR, "
+                    + "wind_direction VARCHAR, "
+                    + "description VARCHAR, "
+                    + "temperature_celsius DOUBLE PRECISION NOT NULL, "
+                    + "temperature_fahrenheit DOUBLE PRECISION NOT NULL, "
+                    + "humidity INT NOT NULL, "
+                    + "wind_speed_kmh DOUBLE PRECISION NOT NULL, "
+                    + "latitude DOUBLE PRECISION, "
+                    + "longitude DOUBLE PRECISION, "
+                    + "version BIGINT NOT NULL)");
+            statement.execute("CREATE INDEX IF NOT EXISTS forecasts_city_date ON forecasts (city_key, forecast_date, id)");
+        } catch (SQLException e) {
+            throw failure("create the forecasts table", e);
+        }
+    }
+
+    private int countRows() {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM forecasts")) {
+            rows.next();
+            return rows.getInt(1);
+        } catch (SQLException e) {
+            throw failure("count the stored forecasts", e);
+        }
+    }
+
+    private static void bind(PreparedStatement statement, String id, WeatherForecast forecast) throws SQLException {
+        statement.setString(1, id);
+        statement.setString(2, CityIndex.normalize(forecast.getCity()));
+        statement.setDate(3, forecast.getDate() == null ? null : Date.valueOf(forecast.getDate()));
+        statement.setString(4, forecast.getCity());
+        statement.setString(5, forecast.getCountry());
+        statement.setString(6, forecast.getCondition());
+        statement.setString(7, forecast.getWindDirection());
+        statement.setString(8, forecast.getDescription());
+        statement.setDouble(9, forecast.getTemperatureCelsius());
+        statement.setDouble(10, forecast.getTemperatureFahrenheit());
+        statement.setInt(11, forecast.getHumidity());
+        statement.setDouble(12, forecast.getWindSpeedKmh());
+        setNullableDouble(statement, 13, forecast.getLatitude());
+        setNullableDouble(statement, 14, forecast.getLongitude());
+        statement.setLong(15, forecast.getVersion());
+    }
+
+    private static WeatherForecast read(ResultSet rows) throws SQLException {
+        WeatherForecast forecast = new WeatherForecast(BLANK);
+        forecast.setId(rows.getString(1));
+        Date date = rows.getDate(3);
+        forecast.setDate(date == null ? null : date.toLocalDate());
+        forecast.setCity(rows.getString(4));
+        forecast.setCountry(rows.getString(5));
+        forecast.setCondition(rows.getString(6));
+        forecast.setWindDirection(rows.getString(7));
+        forecast.setDescription(rows.getString(8));
+        forecast.setTemperatureCelsius(rows.getDouble(9));
+        forecast.setTemperatureFahrenheit(rows.getDouble(10));
+        forecast.setHumidity(rows.getInt(11));
+        forecast.setWindSpeedKmh(rows.getDouble(12));
+        forecast.setLatitude(getNullableDouble(rows, 13));
+        forecast.setLongitude(getNullableDouble(rows, 14));
+        forecast.setVersion(rows.getLong(15));
+        return forecast;
+    }
+
+    /**
+     * The query for the id and the columns of {@code fields}, all columns when {@code null}; rows it
+     * returns are decoded by {@link #read(ResultSet, ForecastFieldSet)}.
+     */
+    private String select(ForecastFieldSet fields) {
+        if (fields == null) {
+            return SELECT;
+        }
+        return selects.computeIfAbsent(fields, selected -> {
+            StringBuilder sql = new StringBuilder("SELECT id");
+            for (ForecastField field : FIELDS) {
+                if (field != ForecastField.ID && selected.contains(field)) {
+                    sql.append(", ").append(FIELD_COLUMNS.get(field));
+                }
+            }
+            return sql.append(" FROM forecasts").toString();
+        });
+    }
+
+    private static WeatherForecast read(ResultSet rows, ForecastFieldSet fields) throws SQLException {
+        if (fields == null) {
+            return read(rows);
+        }
+        WeatherForecast forecast = new WeatherForecast(BLANK);
+        forecast.setId(rows.getString(1));
+        int column = 2;
+        // Fields come in canonical order, so Celsius is set before the Fahrenheit it would overwrite.
+        for (ForecastField field : FIELDS) {
+            if (field != ForecastField.ID && fields.contains(field)) {
+                field.set(forecast, value(rows, column++, field));
+            }
+        }
+        return forecast;
+    }
+
+    private static Object value(ResultSet rows, int column, ForecastField field) throws SQLException {
+        switch (field) {
+            case DATE:
+                Date date = rows.getDate(column);
+                return date == null ? null : date.toLocalDate();
+            case TEMPERATURE_CELSIUS:
+            case TEMPERATURE_FAHRENHEIT:
+            case WIND_SPEED_KMH:
+                return rows.getDouble(column);
+            case LATITUDE:
+            case LONGITUDE:
+                return getNullableDouble(rows, column);
+            case HUMIDITY:
+                return rows.getInt(column);
+            case VERSION:
+                return rows.getLong(column);
+            default:
+                return rows.getString(column);
+        }
+    }
+
+    private static void setNullableDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.DOUBLE);
+        } else {
+            statement.setDouble(index, value);
+        }
+    }
+
+    private static Double getNullableDouble(ResultSet rows, int index) throws SQLException {
+        double value = rows.getDouble(index);
+        return rows.wasNull() ? null : value;
+    }
+
+    private static Map<String, WeatherForecast> single(String id, WeatherForecast forecast) {
+        Map<String, WeatherForecast> found = new HashMap<>();
+        if (forecast != null) {
+            found.put(id, forecast);
+        }
+        return found;
+    }
+
+    private static String canonical(String id) {
+        return ForecastIds.parseCompact(id) != 0 ? id.toUpperCase(Locale.ROOT) : id;
+    }
+
+    private static IllegalStateException failure(String action, SQLException e) {
+        return new IllegalStateException("Cannot " + action + ": " + e.getMessage(), e);
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+}
@@ -0,0 +1,114 @@
+package com.weather.api.repository;
+
+/**
+ * Open-addressing set of non-zero longs in a single primitive array, with linear probing and
+ * backward-shift deletion so no tombstones build up. Not thread-safe; owners synchronize.
+ */
+final class LongHashSet {
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private int size;
+
+    boolean add(long key) {
+        int slot = find(key);
+        if (keys[slot] == key) {
+            return false;
+        }
+        keys[slot] = key;
+        if (++size * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    boolean contains(long key) {
+        return key != 0 && keys[find(key)] == key;
+    }
+
+    boolean remove(long key) {
+        if (key == 0) {
+            return false;
+        }
+        int slot = find(key);
+        if (keys[slot] != key) {
+            return false;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the members into a new array, in no particular order.
+     */
+    long[] toArray() {
+        long[] result = new long[size];
+        int next = 0;
+        for (long key : keys) {
+            if (key != 0) {
+                result[next++] = key;
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        keys = new long[MIN_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or the empty slot where it would go.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void shiftBack(int hole) {
+        int mask = keys.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                keys[hole] = 0;
+                return;
+            }
+            int home = mix(key) & mask;
+            // Move the key into the hole unless its home lies cyclically between the hole and its slot.
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = key;
+                hole = slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        for (long key : old) {
+            if (key != 0) {
+                keys[find(key)] = key;
+            }
+        }
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,121 @@
+package com.weather.api.repository;
+
+/**
+ * Open-addressing map from non-zero long keys to long values in two parallel primitive arrays,
+ * with linear probing and backward-shift deletion. Not thread-safe; owners synchronize.
+ */
+final class LongLongMap {
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private long[] values = new long[MIN_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the value of {@code key}, or {@code missing} if it has none.
+     */
+    long get(long key, long missing) {
+        if (key == 0) {
+            return missing;
+        }
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : missing;
+    }
+
+    boolean containsKey(long key) {
+        return key != 0 && keys[find(key)] == key;
+    }
+
+    void put(long key, long value) {
+        int slot = find(key);
+        values[slot] = value;
+        if (keys[slot] == key) {
+            return;
+        }
+        keys[slot] = key;
+        if (++size * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes {@code key}, returning its value, or {@code missing} if it had none.
+     */
+    long remove(long key, long missing) {
+        if (key == 0) {
+            return missing;
+        }
+        int slot = find(key);
+        if (keys[slot] != key) {
+            return missing;
+        }
+        long value = values[slot];
+        shiftBack(slot);
+        size--;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new long[MIN_CAPACITY];
+        size = 0;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = LongHashSet.mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void shiftBack(int hole) {
+        int mask = keys.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                keys[hole] = 0;
+                return;
+            }
+            int home = LongHashSet.mix(key) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = key;
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,323 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastIds;
+import com.weather.api.model.WeatherForecast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Forecast store on local disk, backed by an {@link LsmTree}. Records are keyed by normalized city,
+ * date and id, so one city's forecasts sit together in date order and a city or date-range query is
+ * a single key-range scan. A second key family maps each id to its record key for lookups by id.
+ * Writes to one id are serialized by striped locks; the record is written before the id entry that
+ * points at it, so a concurrent reader finds either the old or the new version.
+ *
+ * <p>Records in a configured directory survive restarts, and the repository indexes them on startup.
+ * Only the records are on disk. The repository's secondary indexes stay in memory at about 250
+ * bytes of heap per forecast, so this store moves the bulk of the data off the heap but does not
+ * make the dataset unbounded by it.
+ */
+class LsmForecastStore implements ForecastStore {
+    private static final String RECORD_PREFIX = "r";
+    private static final String ID_PREFIX = "i";
+    private static final char SEPARATOR = '\u0000';
+    private static final int LOCK_STRIPES = 64;
+    // Decoded records start as copies of this, which skips generating an id that is then overwritten.
+    private static final WeatherForecast BLANK = new WeatherForecast();
+
+    private final LsmTree tree;
+    private final Path temporaryDirectory;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param directory directory for the tree's files, kept across restarts, or {@code null} for a new
+     *                  temporary directory that is deleted on {@link #close()}
+     */
+    LsmForecastStore(Path directory, long memtableBytes, int compactionThreshold) {
+        try {
+            this.temporaryDirectory = directory == null ? Files.createTempDirectory("weather-lsm") : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.tree = new LsmTree(directory == null ? temporaryDirectory : directory, memtableBytes, compactionThreshold);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        size.set(tree.scan(ID_PREFIX, ID_PREFIX + '\uffff').size());
+    }
+
+    @Override
+    public WeatherForecast get(String id) {
+        return get(id, null);
+    }
+
+    @Override
+    public WeatherForecast get(String id, ForecastFieldSet fields) {
+        if (id == null) {
+            return null;
+        }
+        String idKey = ID_PREFIX + canonical(id);
+        byte[] recordKey = tree.get(idKey);
+        while (recordKey != null) {
+            byte[] record = tree.get(new String(recordKey, StandardCharsets.UTF_8));
+            if (record != null) {
+                return decode(record, fields);
+            }
+            // The forecast moved to another city or date, or was deleted, between the two reads.
+            byte[] current = tree.get(idKey);
+            if (current == null || Arrays.equals(current, recordKey)) {
+                return null;
+            }
+            recordKey = current;
+        }
+        return null;
+    }
+
+    @Override
+    public void compute(String id, UnaryOperator<WeatherForecast> remapping) {
+        compute(id, remapping, false);
+    }
+
+    @Override
+    public void computeIfPresent(String id, UnaryOperator<WeatherForecast> remapping) {
+        compute(id, remapping, true);
+    }
+
+    @Override
+    public List<WeatherForecast> values() {
+        return values(null);
+    }
+
+    @Override
+    public List<WeatherForecast> values(ForecastFieldSet fields) {
+        return decodeAll(RECORD_PREFIX, RECORD_PREFIX + '\uffff', fields);
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+        size.set(0);
+    }
+
+    @Override
+    public List<WeatherForecast> scanCity(String city, LocalDate startDate, LocalDate endDate) {
+        return scanCity(city, startDate, endDate, null);
+    }
+
+    @Override
+    public List<WeatherForecast> scanCity(String city, LocalDate startDate, LocalDate endDate,
+                                          ForecastFieldSet fields) {
+        String prefix = RECORD_PREFIX + CityIndex.normalize(city) + SEPARATOR;
+        // Dates are ISO strings, which sort chronologically; undated records sort first.
+        String from = prefix + (startDate == null ? "" : startDate.toString());
+        String to = prefix + (endDate == null ? "\uffff" : endDate.toString() + '\u0001');
+        return decodeAll(from, to, fields);
+    }
+
+    @Override
+    public void close() {
+        tree.close();
+        if (temporaryDirectory != null) {
+            try (Stream<Path> files = Files.walk(temporaryDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    LsmTree tree() {
+        return tree;
+    }
+
+    private void compute(String id, UnaryOperator<WeatherForecast> remapping, boolean ifPresent) {
+        String canonicalId = canonical(id);
+        synchronized (locks[Math.floorMod(canonicalId.hashCode(), LOCK_STRIPES)]) {
+            WeatherForecast previous = get(canonicalId);
+            if (previous == null && ifPresent) {
+                return;
+            }
+            WeatherForecast value = remapping.apply(previous);
+            if (value == previous) {
+                return;
+            }
+            String idKey = ID_PREFIX + canonicalId;
+            if (value == null) {
+                tree.delete(idKey);
+                tree.delete(recordKey(previous, canonicalId));
+                size.decrementAndGet();
+                return;
+            }
+            String recordKey = recordKey(value, canonicalId);
+            tree.put(recordKey, encode(value));
+            tree.put(idKey, recordKey.getBytes(StandardCharsets.UTF_8));
+            if (previous == null) {
+                size.incrementAndGet();
+            } else if (!recordKey.equals(recordKey(previous, canonicalId))) {
+                tree.delete(recordKey(previous, canonicalId));
+            }
+        }
+    }
+
+    private List<WeatherForecast> decodeAll(String from, String to, ForecastFieldSet fields) {
+        List<WeatherForecast> forecasts = new ArrayList<>();
+        for (byte[] record : tree.scan(from, to).values()) {
+            forecasts.add(decode(record, fields));
+        }
+        return forecasts;
+    }
+
+    private static String canonical(String id) {
+        return ForecastIds.parseCompact(id) != 0 ? id.toUpperCase(Locale.ROOT) : id;
+    }
+
+    private static String recordKey(WeatherForecast forecast, String id) {
+        return RECORD_PREFIX + CityIndex.normalize(forecast.getCity()) + SEPARATOR
+                + (forecast.getDate() == null ? "" : forecast.getDate().toString()) + SEPARATOR + id;
+    }
+
+    private static byte[] encode(WeatherForecast forecast) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, forecast.getId());
+            writeString(out, forecast.getCity());
+            writeString(out, forecast.getCountry());
+            writeString(out, forecast.getCondition());
+            writeString(out, forecast.getWindDirection());
+            writeString(out, forecast.getDescription());
+            out.writeBoolean(forecast.getDate() != null);
+            if (forecast.getDate() != null) {
+                out.writeLong(forecast.getDate().toEpochDay());
+            }
+            out.writeDouble(forecast.getTemperatureCelsius());
+            out.writeDouble(forecast.getTemperatureFahrenheit());
+            out.writeInt(forecast.getHumidity());
+            out.writeDouble(forecast.getWindSpeedKmh());
+            writeNullableDouble(out, forecast.getLatitude());
+            writeNullableDouble(out, forecast.getLongitude());
+            out.writeLong(forecast.getVersion());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a record, skipping over the strings and leaving unset the fields outside {@code fields}
+     * ({@code null} for all of them).
+     */
+    private static WeatherForecast decode(byte[] record, ForecastFieldSet fields) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            WeatherForecast forecast = new WeatherForecast(BLANK);
+            forecast.setId(readString(in));
+            forecast.setCity(readString(in, fields, ForecastField.CITY));
+            forecast.setCountry(readString(in, fields, ForecastField.COUNTRY));
+            forecast.setCondition(readString(in, fields, ForecastField.CONDITION));
+            forecast.setWindDirection(readString(in, fields, ForecastField.WIND_DIRECTION));
+            forecast.setDescription(readString(in, fields, ForecastField.DESCRIPTION));
+            LocalDate date = in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+            if (selected(fields, ForecastField.DATE)) {
+                forecast.setDate(date);
+            }
+            // The remaining fields are fixed-width or nearly so, and cheaper to read than to skip.
+            double celsius = in.readDouble();
+            double fahrenheit = in.readDouble();
+            int humidity = in.readInt();
+            double windSpeed = in.readDouble();
+            Double latitude = readNullableDouble(in);
+            Double longitude = readNullableDouble(in);
+            long version = in.readLong();
+            if (selected(fields, ForecastField.TEMPERATURE_CELSIUS)) {
+                forecast.setTemperatureCelsius(celsius);
+            }
+            if (selected(fields, ForecastField.TEMPERATURE_FAHRENHEIT)) {
+                forecast.setTemperatureFahrenheit(fahrenheit);
+            }
+            if (selected(fields, ForecastField.HUMIDITY)) {
+                forecast.setHumidity(humidity);
+            }
+            if (selected(fields, ForecastField.WIND_SPEED_KMH)) {
+                forecast.setWindSpeedKmh(windSpeed);
+            }
+            if (selected(fields, ForecastField.LATITUDE)) {
+                forecast.setLatitude(latitude);
+            }
+            if (selected(fields, ForecastField.LONGITUDE)) {
+                forecast.setLongitude(longitude);
+            }
+            if (selected(fields, ForecastField.VERSION)) {
+                forecast.setVersion(version);
+            }
+            return forecast;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static String readString(DataInputStream in, ForecastFieldSet fields, ForecastField field)
+            throws IOException {
+        if (selected(fields, field)) {
+            return readString(in);
+        }
+        int length = in.readInt();
+        if (length > 0) {
+            in.skipBytes(length);
+        }
+        return null;
+    }
+
+    private static boolean selected(ForecastFieldSet fields, ForecastField field) {
+        return fields == null || fields.contains(field);
+    }
+
+    private static void writeNullableDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static Double readNullableDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+}
@@ -0,0 +1,916 @@
+package com.weather.api.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Log-structured merge tree from string keys to byte values, backed by files in one directory.
+ * Writes go to an in-memory sorted memtable; a full memtable is frozen and written out by a
+ * background thread as an immutable segment file of sorted entries. Each segment keeps a sparse
+ * index (the first key of every 4 KB block) and a bloom filter in memory, so a point read touches
+ * at most one block per segment and usually none. Compaction is size-tiered: once
+ * {@code compactionThreshold} adjacent segments are of similar size they are merged into one,
+ * dropping overwritten values (and deletes, when the run reaches the oldest segment), so every
+ * entry is rewritten about once per tier rather than on every compaction. Reads consult the
+ * memtable, then frozen memtables, then segments, newest first.
+ *
+ * <p>Contents survive a restart. A manifest file lists the live segments, newest first, and is
+ * replaced atomically whenever that list changes; each memtable appends its writes to a log file
+ * that is deleted once the memtable is in a segment. Opening the tree reads the manifest and
+ * replays any logs left behind into a new segment. Logs are written through to the operating
+ * system but not forced to the device, so writes survive a process crash, not a power loss. Files
+ * in the directory that the manifest does not list, such as a segment cut short by a crash, are
+ * left alone.
+ */
+class LsmTree implements AutoCloseable {
+    private static final byte[] TOMBSTONE = new byte[0];
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".sst";
+    private static final String LOG_PREFIX = "memtable-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String MANIFEST = "MANIFEST";
+    static final int BLOCK_SIZE = 4096;
+    // Segments whose sizes are within this factor of each other are in the same tier.
+    static final int TIER_RATIO = 4;
+
+    private final Path directory;
+    private final long memtableBytes;
+    private final int compactionThreshold;
+    private final ReadWriteLock memtableLock = new ReentrantReadWriteLock();
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    private final Deque<Memtable> frozen = new ConcurrentLinkedDeque<>();
+    private final AtomicLong nextSegment = new AtomicLong();
+    private final AtomicLong nextLog = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final ExecutorService background;
+    private volatile Memtable active;
+    // Newest first; replaced wholesale under the segment write lock.
+    private volatile List<Segment> segments = new ArrayList<>();
+    private long generation;
+
+    LsmTree(Path directory, long memtableBytes, int compactionThreshold) {
+        this.directory = directory;
+        this.memtableBytes = Math.max(1, memtableBytes);
+        this.compactionThreshold = Math.max(2, compactionThreshold);
+        this.background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "forecast-lsm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(directory);
+            recover();
+            active = newMemtable();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open LSM directory " + directory, e);
+        }
+    }
+
+    /**
+     * Opens the segments the manifest lists and writes the entries of any memtable logs left by the
+     * last run into a new segment, before the background thread or any writer can touch the tree.
+     */
+    private void recover() throws IOException {
+        nextSegment.set(highestNumber(SEGMENT_PREFIX, SEGMENT_SUFFIX));
+        nextLog.set(highestNumber(LOG_PREFIX, LOG_SUFFIX));
+        List<Segment> recovered = new ArrayList<>();
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            for (String name : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (!name.isBlank()) {
+                    recovered.add(Segment.open(directory.resolve(name)));
+                }
+            }
+        }
+        List<Path> logs = files(LOG_PREFIX, LOG_SUFFIX);
+        if (!logs.isEmpty()) {
+            // Oldest first, so later writes to a key replace earlier ones.
+            logs.sort(Comparator.comparingLong(log -> number(log, LOG_PREFIX, LOG_SUFFIX)));
+            Memtable replayed = new Memtable(null);
+            for (Path log : logs) {
+                try (SegmentCursor cursor = new SegmentCursor(log, 0)) {
+                    while (cursor.advance()) {
+                        replayed.entries.put(cursor.key, cursor.value);
+                    }
+                } catch (EOFException e) {
+                    // The last write before a crash was cut short; it was never acknowledged.
+                }
+            }
+            Segment segment = Segment.write(nextFile(), replayed.entries.entrySet().iterator(),
+                    replayed.entries.size(), false);
+            if (segment != null) {
+                recovered.add(0, segment);
+            }
+        }
+        segments = recovered;
+        writeManifest();
+        for (Path log : logs) {
+            Files.delete(log);
+        }
+    }
+
+    byte[] get(String key) {
+        byte[] value = active.entries.get(key);
+        if (value == null) {
+            segmentLock.readLock().lock();
+            try {
+                for (Memtable memtable : frozen) {
+                    value = memtable.entries.get(key);
+                    if (value != null) {
+                        break;
+                    }
+                }
+                if (value == null) {
+                    for (Segment segment : segments) {
+                        value = segment.get(key);
+                        if (value != null) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                segmentLock.readLock().unlock();
+            }
+        }
+        return value == null || value.length == 0 ? null : value;
+    }
+
+    void put(String key, byte[] value) {
+        if (value.length == 0) {
+            throw new IllegalArgumentException("Values must not be empty");
+        }
+        write(key, value);
+    }
+
+    void delete(String key) {
+        write(key, TOMBSTONE);
+    }
+
+    /**
+     * Returns the live entries with keys in {@code [from, to)}, in key order.
+     */
+    NavigableMap<String, byte[]> scan(String from, String to) {
+        TreeMap<String, byte[]> merged = new TreeMap<>();
+        // Both locks, taken in the same order as clear(), so no rotation or flush moves a memtable
+        // between the levels while the scan runs and every version is seen exactly once. Writers
+        // share the memtable lock, so only rotation waits.
+        memtableLock.readLock().lock();
+        segmentLock.readLock().lock();
+        try {
+            Memtable current = active;
+            List<Memtable> frozenNewestFirst = new ArrayList<>(frozen);
+            List<Segment> segmentsNewestFirst = segments;
+            // Strictly oldest to newest, so each newer version of a key overwrites the older ones.
+            for (int i = segmentsNewestFirst.size() - 1; i >= 0; i--) {
+                segmentsNewestFirst.get(i).scan(from, to, merged);
+            }
+            for (int i = frozenNewestFirst.size() - 1; i >= 0; i--) {
+                merged.putAll(frozenNewestFirst.get(i).entries.subMap(from, to));
+            }
+            merged.putAll(current.entries.subMap(from, to));
+        } finally {
+            segmentLock.readLock().unlock();
+            memtableLock.readLock().unlock();
+        }
+        merged.values().removeIf(value -> value.length == 0);
+        return merged;
+    }
+
+    /**
+     * Drops every entry and segment file.
+     */
+    void clear() {
+        memtableLock.writeLock().lock();
+        segmentLock.writeLock().lock();
+        try {
+            // A flush already under way for the old contents sees the new generation and discards itself.
+            generation++;
+            active.closeLog();
+            active.deleteLog();
+            for (Memtable memtable : frozen) {
+                memtable.deleteLog();
+            }
+            active = newMemtable();
+            frozen.clear();
+            for (Segment segment : segments) {
+                segment.delete();
+            }
+            segments = new ArrayList<>();
+            writeManifest();
+        } finally {
+            segmentLock.writeLock().unlock();
+            memtableLock.writeLock().unlock();
+        }
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    long compactionCount() {
+        return compactions.get();
+    }
+
+    /**
+     * Waits until every frozen memtable has been written out and any compaction has finished.
+     */
+    void awaitBackgroundWork() {
+        try {
+            background.submit(() -> { }).get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Freezes the current memtable and schedules it to be written out, whatever its size.
+     */
+    void flush() {
+        memtableLock.writeLock().lock();
+        try {
+            if (!active.entries.isEmpty()) {
+                rotate();
+            }
+        } finally {
+            memtableLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lets pending flushes finish and closes the files, keeping them for the next open. Memtables
+     * not yet written out stay in their logs and are replayed then.
+     */
+    @Override
+    public void close() {
+        // Not shutdownNow: interrupting a flush would close the channel it is writing.
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        memtableLock.writeLock().lock();
+        segmentLock.writeLock().lock();
+        try {
+            active.closeLog();
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments = new ArrayList<>();
+        } finally {
+            segmentLock.writeLock().unlock();
+            memtableLock.writeLock().unlock();
+        }
+    }
+
+    private void write(String key, byte[] value) {
+        memtableLock.readLock().lock();
+        try {
+            active.append(key, value);
+        } finally {
+            memtableLock.readLock().unlock();
+        }
+        if (active.bytes.get() >= memtableBytes) {
+            memtableLock.writeLock().lock();
+            try {
+                if (active.bytes.get() >= memtableBytes) {
+                    rotate();
+                }
+            } finally {
+                memtableLock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Caller holds the memtable write lock.
+    private void rotate() {
+        Memtable full = active;
+        long flushGeneration = generation;
+        // No writer holds the memtable lock, so the frozen memtable's log is complete.
+        full.closeLog();
+        frozen.addFirst(full);
+        active = newMemtable();
+        background.execute(() -> flushFrozen(full, flushGeneration));
+    }
+
+    private void flushFrozen(Memtable memtable, long flushGeneration) {
+        Segment segment;
+        try {
+            segment = Segment.write(nextFile(), memtable.entries.entrySet().iterator(), memtable.entries.size(), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot flush memtable to " + directory, e);
+        }
+        segmentLock.writeLock().lock();
+        try {
+            if (flushGeneration != generation) {
+                if (segment != null) {
+                    segment.delete();
+                }
+                return;
+            }
+            List<Segment> updated = new ArrayList<>(segments.size() + 1);
+            if (segment != null) {
+                updated.add(segment);
+            }
+            updated.addAll(segments);
+            segments = updated;
+            writeManifest();
+            frozen.remove(memtable);
+            memtable.deleteLog();
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        while (compactTier()) {
+            // A merge can complete the tier above it.
+        }
+    }
+
+    /**
+     * Returns the start of the newest run of {@code threshold} adjacent segments whose sizes are
+     * within {@link #TIER_RATIO} of each other, or {@code -1} if there is none. Only adjacent
+     * segments are merged, so the result takes their place in the newest-first order.
+     */
+    static int tierStart(long[] sizesNewestFirst, int threshold) {
+        for (int start = 0; start + threshold <= sizesNewestFirst.length; start++) {
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (int i = start; i < start + threshold; i++) {
+                min = Math.min(min, sizesNewestFirst[i]);
+                max = Math.max(max, sizesNewestFirst[i]);
+            }
+            if (max <= min * TIER_RATIO) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private boolean compactTier() {
+        List<Segment> current;
+        long compactGeneration;
+        segmentLock.readLock().lock();
+        try {
+            current = segments;
+            compactGeneration = generation;
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        long[] sizes = new long[current.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = current.get(i).dataEnd;
+        }
+        int start = tierStart(sizes, compactionThreshold);
+        if (start < 0) {
+            return false;
+        }
+        int end = start + compactionThreshold;
+        List<Segment> inputs = current.subList(start, end);
+        // Deletes can only go when no older segment is left for them to shadow.
+        boolean dropDeletes = end == current.size();
+        Segment merged;
+        long expectedKeys = 0;
+        for (Segment input : inputs) {
+            expectedKeys += input.entryCount;
+        }
+        try (MergingIterator entries = new MergingIterator(inputs)) {
+            merged = Segment.write(nextFile(), entries, expectedKeys, dropDeletes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact segments in " + directory, e);
+        }
+        segmentLock.writeLock().lock();
+        try {
+            if (compactGeneration != generation) {
+                if (merged != null) {
+                    merged.delete();
+                }
+                return false;
+            }
+            // Flushes run on this thread too, so the segment list is still exactly the one read above.
+            List<Segment> updated = new ArrayList<>(current.size() - compactionThreshold + 1);
+            updated.addAll(current.subList(0, start));
+            if (merged != null) {
+                updated.add(merged);
+            }
+            updated.addAll(current.subList(end, current.size()));
+            segments = updated;
+            writeManifest();
+            for (Segment input : inputs) {
+                input.delete();
+            }
+            compactions.incrementAndGet();
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    private Path nextFile() {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, nextSegment.incrementAndGet(), SEGMENT_SUFFIX));
+    }
+
+    private Memtable newMemtable() {
+        Path log = nextLogFile();
+        try {
+            return new Memtable(log);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + log, e);
+        }
+    }
+
+    private Path nextLogFile() {
+        return directory.resolve(String.format("%s%06d%s", LOG_PREFIX, nextLog.incrementAndGet(), LOG_SUFFIX));
+    }
+
+    // Caller holds the segment write lock, or is still opening the tree.
+    private void writeManifest() {
+        List<String> names = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            names.add(segment.file.getFileName().toString());
+        }
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        try {
+            Files.write(temporary, names, StandardCharsets.UTF_8);
+            Files.move(temporary, directory.resolve(MANIFEST),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the LSM manifest in " + directory, e);
+        }
+    }
+
+    private List<Path> files(String prefix, String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> matching = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : matching) {
+                if (number(file, prefix, suffix) > 0) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the highest number among the directory's files of this kind, so new ones never reuse
+     * the name of a file the manifest does not list.
+     */
+    private long highestNumber(String prefix, String suffix) throws IOException {
+        long highest = 0;
+        for (Path file : files(prefix, suffix)) {
+            highest = Math.max(highest, number(file, prefix, suffix));
+        }
+        return highest;
+    }
+
+    private static long number(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Sorted in-memory entries, plus the log they are appended to first ({@code null} for one only
+     * used while recovering).
+     */
+    private static final class Memtable {
+        final ConcurrentSkipListMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+        final AtomicLong bytes = new AtomicLong();
+        final Path log;
+        private final DataOutputStream out;
+
+        Memtable(Path log) throws IOException {
+            this.log = log;
+            this.out = log == null ? null : new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(log)));
+        }
+
+        /**
+         * Logs the write, in the segment entry format, before making it visible. Writes are logged
+         * and applied in one order, so replaying the log ends with the same value for every key.
+         */
+        synchronized void append(String key, byte[] value) {
+            try {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(keyBytes.length);
+                out.write(keyBytes);
+                out.writeInt(value.length == 0 ? -1 : value.length);
+                out.write(value);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to " + log, e);
+            }
+            entries.put(key, value);
+            bytes.addAndGet(2L * key.length() + value.length + 64);
+        }
+
+        synchronized void closeLog() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void deleteLog() {
+            try {
+                Files.deleteIfExists(log);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * An immutable sorted file of entries, each written as key length, key bytes, value length
+     * ({@code -1} for a delete) and value bytes.
+     */
+    private static final class Segment {
+        final Path file;
+        final FileChannel channel;
+        final String[] blockKeys;
+        final long[] blockOffsets;
+        final long dataEnd;
+        final long entryCount;
+        final BloomFilter bloom;
+
+        private Segment(Path file, String[] blockKeys, long[] blockOffsets, long dataEnd, long entryCount,
+                        BloomFilter bloom) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.blockKeys = blockKeys;
+            this.blockOffsets = blockOffsets;
+            this.dataEnd = dataEnd;
+            this.entryCount = entryCount;
+            this.bloom = bloom;
+        }
+
+        /**
+         * Writes the entries, already in key order, to {@code file}; returns {@code null} if there
+         * was nothing to write.
+         */
+        static Segment write(Path file, Iterator<Map.Entry<String, byte[]>> entries, long expectedKeys,
+                             boolean dropDeletes) throws IOException {
+            BloomFilter bloom = new BloomFilter(expectedKeys);
+            List<String> blockKeys = new ArrayList<>();
+            List<Long> blockOffsets = new ArrayList<>();
+            long offset = 0;
+            long blockStart = -BLOCK_SIZE;
+            long entryCount = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+                while (entries.hasNext()) {
+                    Map.Entry<String, byte[]> entry = entries.next();
+                    byte[] value = entry.getValue();
+                    if (dropDeletes && value.length == 0) {
+                        continue;
+                    }
+                    if (offset - blockStart >= BLOCK_SIZE) {
+                        blockStart = offset;
+                        blockKeys.add(entry.getKey());
+                        blockOffsets.add(offset);
+                    }
+                    byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeInt(value.length == 0 ? -1 : value.length);
+                    out.write(value);
+                    offset += 8L + key.length + value.length;
+                    bloom.add(entry.getKey());
+                    entryCount++;
+                }
+            }
+            if (entryCount == 0) {
+                Files.delete(file);
+                return null;
+            }
+            long[] offsets = new long[blockOffsets.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = blockOffsets.get(i);
+            }
+            return new Segment(file, blockKeys.toArray(new String[0]), offsets, offset, entryCount, bloom);
+        }
+
+        /**
+         * Opens a segment written by an earlier run, rebuilding its block index and bloom filter with
+         * two sequential passes over the file.
+         */
+        static Segment open(Path file) throws IOException {
+            List<String> blockKeys = new ArrayList<>();
+            List<Long> blockOffsets = new ArrayList<>();
+            long offset = 0;
+            long blockStart = -BLOCK_SIZE;
+            long entryCount = 0;
+            try (SegmentCursor cursor = new SegmentCursor(file, 0)) {
+                while (cursor.advance()) {
+                    if (offset - blockStart >= BLOCK_SIZE) {
+                        blockStart = offset;
+                        blockKeys.add(cursor.key);
+                        blockOffsets.add(offset);
+                    }
+                    offset += 8L + cursor.keyLength + cursor.value.length;
+                    entryCount++;
+                }
+            }
+            BloomFilter bloom = new BloomFilter(entryCount);
+            try (SegmentCursor cursor = new SegmentCursor(file, 0)) {
+                while (cursor.advance()) {
+                    bloom.add(cursor.key);
+                }
+            }
+            long[] offsets = new long[blockOffsets.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = blockOffsets.get(i);
+            }
+            return new Segment(file, blockKeys.toArray(new String[0]), offsets, offset, entryCount, bloom);
+        }
+
+        byte[] get(String key) {
+            if (!bloom.mightContain(key)) {
+                return null;
+            }
+            int block = floorBlock(key);
+            if (block < 0) {
+                return null;
+            }
+            ByteBuffer data = readBlocks(block, block + 1);
+            while (data.hasRemaining()) {
+                String entryKey = readKey(data);
+                byte[] value = readValue(data);
+                int order = entryKey.compareTo(key);
+                if (order == 0) {
+                    return value;
+                }
+                if (order > 0) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        void scan(String from, String to, Map<String, byte[]> into) {
+            int first = Math.max(0, floorBlock(from));
+            int last = first;
+            while (last < blockKeys.length && blockKeys[last].compareTo(to) < 0) {
+                last++;
+            }
+            if (last == first) {
+                return;
+            }
+            ByteBuffer data = readBlocks(first, last);
+            while (data.hasRemaining()) {
+                String key = readKey(data);
+                byte[] value = readValue(data);
+                if (key.compareTo(to) >= 0) {
+                    return;
+                }
+                if (key.compareTo(from) >= 0) {
+                    into.put(key, value);
+                }
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int floorBlock(String key) {
+            int index = Arrays.binarySearch(blockKeys, key);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        private ByteBuffer readBlocks(int first, int end) {
+            long start = blockOffsets[first];
+            long stop = end < blockOffsets.length ? blockOffsets[end] : dataEnd;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (stop - start));
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new EOFException(file.toString());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer.flip();
+        }
+
+        private static String readKey(ByteBuffer data) {
+            byte[] key = new byte[data.getInt()];
+            data.get(key);
+            return new String(key, StandardCharsets.UTF_8);
+        }
+
+        private static byte[] readValue(ByteBuffer data) {
+            int length = data.getInt();
+            if (length < 0) {
+                return TOMBSTONE;
+            }
+            byte[] value = new byte[length];
+            data.get(value);
+            return value;
+        }
+    }
+
+    /**
+     * Streams the newest version of every key across segments in key order, reading each segment
+     * sequentially, so compaction needs memory for one entry per input rather than the whole merge.
+     */
+    private static final class MergingIterator implements Iterator<Map.Entry<String, byte[]>>, AutoCloseable {
+        private final PriorityQueue<SegmentCursor> cursors = new PriorityQueue<>();
+        private final List<SegmentCursor> opened = new ArrayList<>();
+
+        MergingIterator(List<Segment> newestFirst) throws IOException {
+            try {
+                for (int i = 0; i < newestFirst.size(); i++) {
+                    SegmentCursor cursor = new SegmentCursor(newestFirst.get(i).file, i);
+                    opened.add(cursor);
+                    if (cursor.advance()) {
+                        cursors.add(cursor);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !cursors.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+            if (cursors.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            SegmentCursor newest = cursors.poll();
+            Map.Entry<String, byte[]> entry = Map.entry(newest.key, newest.value);
+            requeue(newest);
+            // Older versions of the same key sort right behind it and are skipped.
+            while (!cursors.isEmpty() && cursors.peek().key.equals(entry.getKey())) {
+                requeue(cursors.poll());
+            }
+            return entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (SegmentCursor cursor : opened) {
+                cursor.close();
+            }
+        }
+
+        private void requeue(SegmentCursor cursor) {
+            try {
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader over a segment or memtable log, which share the entry format; orders by key,
+     * then newest segment first. An entry cut short ends the file with an {@link EOFException}.
+     */
+    private static final class SegmentCursor implements Comparable<SegmentCursor>, AutoCloseable {
+        final DataInputStream in;
+        final int age;
+        String key;
+        int keyLength;
+        byte[] value;
+
+        SegmentCursor(Path file, int age) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+            this.age = age;
+        }
+
+        boolean advance() throws IOException {
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] keyBytes = in.readNBytes(keyLength);
+            int valueLength = in.readInt();
+            value = valueLength < 0 ? TOMBSTONE : in.readNBytes(valueLength);
+            if (keyBytes.length != keyLength || (valueLength >= 0 && value.length != valueLength)) {
+                throw new EOFException("Entry cut short");
+            }
+            key = new String(keyBytes, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public int compareTo(SegmentCursor other) {
+            int order = key.compareTo(other.key);
+            return order != 0 ? order : Integer.compare(age, other.age);
+        }
+    }
+
+    /**
+     * Bloom filter sized for about 1% false positives, using double hashing over two 32-bit halves
+     * of a 64-bit string hash.
+     */
+    static final class BloomFilter {
+        private static final int BITS_PER_KEY = 10;
+        private static final int HASHES = 7;
+
+        private final long[] bits;
+        private final long bitCount;
+
+        BloomFilter(long expectedKeys) {
+            this.bitCount = Math.max(64, expectedKeys * BITS_PER_KEY);
+            this.bits = new long[(int) ((bitCount + 63) / 64)];
+        }
+
+        void add(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash(String key) {
+            // FNV-1a over the UTF-16 code units, then a final avalanche.
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
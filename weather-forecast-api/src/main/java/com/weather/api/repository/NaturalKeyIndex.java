@@ -0,0 +1,228 @@
+package com.weather.api.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unique index from natural key (normalized city, country and date) to forecast id. The key bytes
+ * live in an {@link OffHeapArena} and the table itself is primitive arrays of hash, ref, block and
+ * length, split into segments that each have their own lock, so an indexed forecast costs no heap
+ * objects. A lookup compares the stored bytes, so two keys with the same hash never mix.
+ */
+final class NaturalKeyIndex {
+    private static final int SEGMENT_BITS = 6;
+    private static final int MIN_CAPACITY = 16;
+
+    private final ForecastRefs refs;
+    private final OffHeapArena arena = new OffHeapArena();
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    NaturalKeyIndex() {
+        this(new ForecastRefs());
+    }
+
+    NaturalKeyIndex(ForecastRefs refs) {
+        this.refs = refs;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Returns the id holding {@code key}, or {@code null} if none does.
+     */
+    String get(String key) {
+        ByteBuffer bytes = encode(key);
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long ref;
+        synchronized (segment) {
+            int slot = segment.find(hash, bytes, arena);
+            ref = segment.refs[slot];
+        }
+        return ref == 0 ? null : refs.idOf(ref);
+    }
+
+    /**
+     * Gives {@code key} to {@code id} unless another id holds it.
+     *
+     * @return the id already holding the key, or {@code null} if it was free
+     */
+    String putIfAbsent(String key, String id) {
+        ByteBuffer bytes = encode(key);
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.find(hash, bytes, arena);
+            if (segment.refs[slot] != 0) {
+                return refs.idOf(segment.refs[slot]);
+            }
+            int length = bytes.remaining();
+            long block = arena.allocate(length);
+            arena.view(block, length).put(bytes);
+            segment.insert(slot, hash, refs.acquire(id), block, length);
+        }
+        return null;
+    }
+
+    /**
+     * Removes {@code key} if {@code id} holds it.
+     */
+    boolean remove(String key, String id) {
+        long ref = refs.of(id);
+        if (ref == 0) {
+            return false;
+        }
+        ByteBuffer bytes = encode(key);
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.find(hash, bytes, arena);
+            if (segment.refs[slot] != ref) {
+                return false;
+            }
+            arena.free(segment.blocks[slot], OffHeapArena.capacityFor(segment.lengths[slot]));
+            segment.delete(slot);
+        }
+        refs.release(ref);
+        return true;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (int slot = 0; slot < segment.refs.length; slot++) {
+                    if (segment.refs[slot] != 0) {
+                        arena.free(segment.blocks[slot], OffHeapArena.capacityFor(segment.lengths[slot]));
+                        refs.release(segment.refs[slot]);
+                    }
+                }
+                segment.reset(MIN_CAPACITY);
+            }
+        }
+    }
+
+    long allocatedBytes() {
+        return arena.allocatedBytes();
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    private static ByteBuffer encode(String key) {
+        return ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int hash(String key) {
+        return LongHashSet.mix(key.hashCode());
+    }
+
+    /**
+     * One lock's share of the table: open addressing with linear probing, where a zero ref marks
+     * an empty slot.
+     */
+    private static final class Segment {
+        int[] hashes;
+        long[] refs;
+        long[] blocks;
+        int[] lengths;
+        int size;
+
+        Segment() {
+            reset(MIN_CAPACITY);
+        }
+
+        void reset(int capacity) {
+            hashes = new int[capacity];
+            refs = new long[capacity];
+            blocks = new long[capacity];
+            lengths = new int[capacity];
+            size = 0;
+        }
+
+        /**
+         * Returns the slot holding the key, or the empty slot where it would go.
+         */
+        int find(int hash, ByteBuffer bytes, OffHeapArena arena) {
+            int mask = refs.length - 1;
+            int slot = hash & mask;
+            while (refs[slot] != 0) {
+                if (hashes[slot] == hash && lengths[slot] == bytes.remaining()
+                        && arena.view(blocks[slot], lengths[slot]).equals(bytes)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        void insert(int slot, int hash, long ref, long block, int length) {
+            hashes[slot] = hash;
+            refs[slot] = ref;
+            blocks[slot] = block;
+            lengths[slot] = length;
+            if (++size * 4 > refs.length * 3) {
+                grow();
+            }
+        }
+
+        void delete(int hole) {
+            int mask = refs.length - 1;
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (refs[slot] == 0) {
+                    refs[hole] = 0;
+                    size--;
+                    return;
+                }
+                int home = hashes[slot] & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    move(slot, hole);
+                    hole = slot;
+                }
+            }
+        }
+
+        private void move(int from, int to) {
+            hashes[to] = hashes[from];
+            refs[to] = refs[from];
+            blocks[to] = blocks[from];
+            lengths[to] = lengths[from];
+        }
+
+        private void grow() {
+            int[] oldHashes = hashes;
+            long[] oldRefs = refs;
+            long[] oldBlocks = blocks;
+            int[] oldLengths = lengths;
+            int count = size;
+            reset(oldRefs.length * 2);
+            size = count;
+            int mask = refs.length - 1;
+            for (int i = 0; i < oldRefs.length; i++) {
+                if (oldRefs[i] != 0) {
+                    int slot = oldHashes[i] & mask;
+                    while (refs[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    hashes[slot] = oldHashes[i];
+                    refs[slot] = oldRefs[i];
+                    blocks[slot] = oldBlocks[i];
+                    lengths[slot] = oldLengths[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.weather.api.repository;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Off-heap block allocator for variable-length data. Blocks are carved from 1 MB direct chunks in
+ * power-of-two sizes from 64 bytes up, each size with its own free list; a block larger than a
+ * chunk gets a dedicated chunk that is dropped when freed. A block reference packs the chunk
+ * index into the high 32 bits and the offset into the low 32.
+ */
+final class OffHeapArena {
+    static final int CHUNK_SIZE = 1 << 20;
+    static final int MIN_BLOCK_BITS = 6;
+    static final int CHUNK_BITS = 20;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private final LongStack[] freeBlocks = new LongStack[CHUNK_BITS - MIN_BLOCK_BITS + 1];
+    private final LongStack freeChunks = new LongStack();
+    private int current = -1;
+    private int position = CHUNK_SIZE;
+    private long allocatedBytes;
+
+    OffHeapArena() {
+        for (int i = 0; i < freeBlocks.length; i++) {
+            freeBlocks[i] = new LongStack();
+        }
+    }
+
+    static int capacityFor(int length) {
+        if (length > CHUNK_SIZE) {
+            return length;
+        }
+        return Math.max(1 << MIN_BLOCK_BITS, Integer.highestOneBit(Math.max(1, length - 1)) << 1);
+    }
+
+    ByteBuffer view(long block, int length) {
+        ByteBuffer view = chunks[(int) (block >>> 32)].duplicate();
+        int offset = (int) block;
+        view.limit(offset + length).position(offset);
+        return view;
+    }
+
+    synchronized long allocate(int length) {
+        int capacity = capacityFor(length);
+        if (capacity > CHUNK_SIZE) {
+            return (long) addChunk(capacity) << 32;
+        }
+        LongStack free = freeBlocks[sizeClass(capacity)];
+        if (!free.isEmpty()) {
+            return free.pop();
+        }
+        if (position + capacity > CHUNK_SIZE) {
+            current = addChunk(CHUNK_SIZE);
+            position = 0;
+        }
+        long block = ((long) current << 32) | position;
+        position += capacity;
+        return block;
+    }
+
+    synchronized void free(long block, int capacity) {
+        if (capacity > CHUNK_SIZE) {
+            int chunk = (int) (block >>> 32);
+            allocatedBytes -= chunks[chunk].capacity();
+            chunks[chunk] = null;
+            freeChunks.push(chunk);
+            return;
+        }
+        freeBlocks[sizeClass(capacity)].push(block);
+    }
+
+    synchronized long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private int addChunk(int capacity) {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(capacity);
+        allocatedBytes += capacity;
+        ByteBuffer[] grown;
+        int index;
+        if (!freeChunks.isEmpty()) {
+            index = (int) freeChunks.pop();
+            grown = chunks.clone();
+        } else {
+            index = chunks.length;
+            grown = Arrays.copyOf(chunks, chunks.length + 1);
+        }
+        grown[index] = chunk;
+        chunks = grown;
+        return index;
+    }
+
+    private static int sizeClass(int capacity) {
+        return Integer.numberOfTrailingZeros(capacity) - MIN_BLOCK_BITS;
+    }
+
+    private static final class LongStack {
+        private long[] values = new long[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long pop() {
+            return values[--size];
+        }
+    }
+}
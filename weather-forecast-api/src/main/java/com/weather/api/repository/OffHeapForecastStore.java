@@ -0,0 +1,549 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastIds;
+import com.weather.api.model.WeatherForecast;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Forecast store that keeps records outside the Java heap, so the garbage collector never traces
+ * them. Each forecast occupies a fixed-width slot in a direct buffer slab; its strings live in a
+ * block of a separate arena, allocated in power-of-two size classes. Slots and blocks freed by
+ * deletes or by strings outgrowing their block go on free lists and are reused. Reads take no lock:
+ * every slot carries a version that writers make odd while they change it, and a reader retries
+ * until it decodes the slot between two identical even versions. The id index maps compact ids to
+ * slot numbers in primitive arrays; only legacy UUID ids are kept in a heap map. The repository's
+ * secondary indexes follow the same rule (see {@link ForecastRefs}), so a forecast with a compact
+ * id adds no heap objects until its history holds a change, only primitive index entries.
+ */
+class OffHeapForecastStore implements ForecastStore {
+    private static final VarHandle VERSION = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    static final int SLOT_SIZE = 88;
+    private static final int SLAB_BITS = 14;
+    private static final int SLOTS_PER_SLAB = 1 << SLAB_BITS;
+
+    private static final int VERSION_OFFSET = 0;
+    private static final int BLOCK_OFFSET = 8;
+    private static final int BLOCK_LENGTH_OFFSET = 16;
+    private static final int BLOCK_CAPACITY_OFFSET = 20;
+    private static final int DATE_OFFSET = 24;
+    private static final int HUMIDITY_OFFSET = 28;
+    private static final int CELSIUS_OFFSET = 32;
+    private static final int FAHRENHEIT_OFFSET = 40;
+    private static final int WIND_SPEED_OFFSET = 48;
+    private static final int LATITUDE_OFFSET = 56;
+    private static final int LONGITUDE_OFFSET = 64;
+    private static final int FLAGS_OFFSET = 72;
+    private static final int FORECAST_VERSION_OFFSET = 80;
+
+    private static final byte LIVE = 1;
+    private static final byte HAS_DATE = 2;
+    private static final byte HAS_LATITUDE = 4;
+    private static final byte HAS_LONGITUDE = 8;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Decoded records start as copies of this, which skips generating an id that is then overwritten.
+    private static final WeatherForecast BLANK = new WeatherForecast();
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final Map<String, Integer> legacy = new ConcurrentHashMap<>();
+    private final OffHeapArena arena = new OffHeapArena();
+    private final AtomicInteger size = new AtomicInteger();
+    private final IntStack freeSlots = new IntStack();
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private volatile int slotCount;
+
+    OffHeapForecastStore() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public WeatherForecast get(String id) {
+        return get(id, null);
+    }
+
+    @Override
+    public WeatherForecast get(String id, ForecastFieldSet fields) {
+        if (id == null) {
+            return null;
+        }
+        long key = ForecastIds.parseCompact(id);
+        int slot = slotOf(id, key);
+        while (slot >= 0) {
+            WeatherForecast forecast = read(slot, fields);
+            if (forecast != null && (key == 0 ? id.equals(forecast.getId()) : key == ForecastIds.parseCompact(forecast.getId()))) {
+                return forecast;
+            }
+            // The slot was freed, and possibly reused, after the index lookup.
+            int current = slotOf(id, key);
+            if (current == slot) {
+                return null;
+            }
+            slot = current;
+        }
+        return null;
+    }
+
+    @Override
+    public void compute(String id, UnaryOperator<WeatherForecast> remapping) {
+        compute(id, remapping, false);
+    }
+
+    @Override
+    public void computeIfPresent(String id, UnaryOperator<WeatherForecast> remapping) {
+        compute(id, remapping, true);
+    }
+
+    @Override
+    public List<WeatherForecast> values() {
+        return values(null);
+    }
+
+    @Override
+    public List<WeatherForecast> values(ForecastFieldSet fields) {
+        List<WeatherForecast> values = new ArrayList<>(size());
+        int count = slotCount;
+        for (int slot = 0; slot < count; slot++) {
+            WeatherForecast forecast = read(slot, fields);
+            if (forecast != null) {
+                values.add(forecast);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        for (String id : legacy.keySet()) {
+            legacy.computeIfPresent(id, (k, slot) -> {
+                release(slot);
+                size.decrementAndGet();
+                return null;
+            });
+        }
+    }
+
+    int allocatedSlots() {
+        return slotCount;
+    }
+
+    long offHeapBytes() {
+        return (long) slabs.length * SLOTS_PER_SLAB * SLOT_SIZE + arena.allocatedBytes();
+    }
+
+    private void compute(String id, UnaryOperator<WeatherForecast> remapping, boolean ifPresent) {
+        long key = ForecastIds.parseCompact(id);
+        if (key == 0) {
+            legacy.compute(id, (k, slot) -> {
+                int updated = update(slot == null ? -1 : slot, remapping, ifPresent);
+                return updated < 0 ? null : updated;
+            });
+            return;
+        }
+        long hash = hash(key);
+        segmentFor(hash).compute(key, hash, remapping, ifPresent);
+    }
+
+    private int slotOf(String id, long key) {
+        if (key == 0) {
+            Integer slot = legacy.get(id);
+            return slot == null ? -1 : slot;
+        }
+        long hash = hash(key);
+        return segmentFor(hash).slotOf(key, hash);
+    }
+
+    /**
+     * Applies {@code remapping} to the record in {@code slot} ({@code -1} if none) and returns the
+     * slot now holding the id, or {@code -1}. Callers hold the id's lock.
+     */
+    private int update(int slot, UnaryOperator<WeatherForecast> remapping, boolean ifPresent) {
+        WeatherForecast previous = slot < 0 ? null : read(slot, null);
+        if (previous == null && ifPresent) {
+            return slot;
+        }
+        WeatherForecast value = remapping.apply(previous);
+        if (value == previous) {
+            return slot;
+        }
+        if (value == null) {
+            release(slot);
+            size.decrementAndGet();
+            return -1;
+        }
+        int target = slot < 0 ? allocateSlot() : slot;
+        write(target, value);
+        if (slot < 0) {
+            size.incrementAndGet();
+        }
+        return target;
+    }
+
+    private WeatherForecast read(int slot, ForecastFieldSet fields) {
+        ByteBuffer slab = slabs[slot >>> SLAB_BITS];
+        int base = (slot & (SLOTS_PER_SLAB - 1)) * SLOT_SIZE;
+        while (true) {
+            long version = (long) VERSION.getAcquire(slab, base + VERSION_OFFSET);
+            if ((version & 1) == 0) {
+                WeatherForecast forecast = null;
+                RuntimeException failure = null;
+                try {
+                    forecast = decode(slab, base, fields);
+                } catch (RuntimeException e) {
+                    // A concurrent write can leave a torn block reference; only fatal if the version held.
+                    failure = e;
+                }
+                VarHandle.acquireFence();
+                if ((long) VERSION.getVolatile(slab, base + VERSION_OFFSET) == version) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    return forecast;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Decodes the record in a slot, skipping the strings and leaving unset the fields outside
+     * {@code fields} ({@code null} for all of them).
+     */
+    private WeatherForecast decode(ByteBuffer slab, int base, ForecastFieldSet fields) {
+        byte flags = slab.get(base + FLAGS_OFFSET);
+        if ((flags & LIVE) == 0) {
+            return null;
+        }
+        WeatherForecast forecast = new WeatherForecast(BLANK);
+        ByteBuffer block = arena.view(slab.getLong(base + BLOCK_OFFSET), slab.getInt(base + BLOCK_LENGTH_OFFSET));
+        forecast.setId(readString(block));
+        forecast.setCity(readString(block, fields, ForecastField.CITY));
+        forecast.setCountry(readString(block, fields, ForecastField.COUNTRY));
+        forecast.setCondition(readString(block, fields, ForecastField.CONDITION));
+        forecast.setWindDirection(readString(block, fields, ForecastField.WIND_DIRECTION));
+        forecast.setDescription(readString(block, fields, ForecastField.DESCRIPTION));
+        if (selected(fields, ForecastField.DATE)) {
+            forecast.setDate((flags & HAS_DATE) == 0 ? null : LocalDate.ofEpochDay(slab.getInt(base + DATE_OFFSET)));
+        }
+        if (selected(fields, ForecastField.HUMIDITY)) {
+            forecast.setHumidity(slab.getInt(base + HUMIDITY_OFFSET));
+        }
+        if (selected(fields, ForecastField.TEMPERATURE_CELSIUS)) {
+            forecast.setTemperatureCelsius(slab.getDouble(base + CELSIUS_OFFSET));
+        }
+        if (selected(fields, ForecastField.TEMPERATURE_FAHRENHEIT)) {
+            forecast.setTemperatureFahrenheit(slab.getDouble(base + FAHRENHEIT_OFFSET));
+        }
+        if (selected(fields, ForecastField.WIND_SPEED_KMH)) {
+            forecast.setWindSpeedKmh(slab.getDouble(base + WIND_SPEED_OFFSET));
+        }
+        if (selected(fields, ForecastField.LATITUDE)) {
+            forecast.setLatitude((flags & HAS_LATITUDE) == 0 ? null : slab.getDouble(base + LATITUDE_OFFSET));
+        }
+        if (selected(fields, ForecastField.LONGITUDE)) {
+            forecast.setLongitude((flags & HAS_LONGITUDE) == 0 ? null : slab.getDouble(base + LONGITUDE_OFFSET));
+        }
+        if (selected(fields, ForecastField.VERSION)) {
+            forecast.setVersion(slab.getLong(base + FORECAST_VERSION_OFFSET));
+        }
+        return forecast;
+    }
+
+    private void write(int slot, WeatherForecast forecast) {
+        byte[][] strings = {
+                utf8(forecast.getId()), utf8(forecast.getCity()), utf8(forecast.getCountry()),
+                utf8(forecast.getCondition()), utf8(forecast.getWindDirection()), utf8(forecast.getDescription())};
+        int length = 0;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+
+        ByteBuffer slab = slabs[slot >>> SLAB_BITS];
+        int base = (slot & (SLOTS_PER_SLAB - 1)) * SLOT_SIZE;
+        long version = (long) VERSION.getVolatile(slab, base + VERSION_OFFSET);
+        boolean live = (slab.get(base + FLAGS_OFFSET) & LIVE) != 0;
+        long oldBlock = slab.getLong(base + BLOCK_OFFSET);
+        int oldCapacity = slab.getInt(base + BLOCK_CAPACITY_OFFSET);
+        boolean reuseBlock = live && OffHeapArena.capacityFor(length) == oldCapacity;
+        long block = reuseBlock ? oldBlock : arena.allocate(length);
+        int capacity = reuseBlock ? oldCapacity : OffHeapArena.capacityFor(length);
+        if (!reuseBlock) {
+            // A fresh block is invisible to readers until the slot points at it.
+            writeStrings(arena.view(block, length), strings);
+        }
+
+        VERSION.setVolatile(slab, base + VERSION_OFFSET, version + 1);
+        VarHandle.storeStoreFence();
+        if (reuseBlock) {
+            writeStrings(arena.view(block, length), strings);
+        }
+        byte flags = LIVE;
+        if (forecast.getDate() != null) {
+            flags |= HAS_DATE;
+            slab.putInt(base + DATE_OFFSET, (int) forecast.getDate().toEpochDay());
+        }
+        if (forecast.getLatitude() != null) {
+            flags |= HAS_LATITUDE;
+            slab.putDouble(base + LATITUDE_OFFSET, forecast.getLatitude());
+        }
+        if (forecast.getLongitude() != null) {
+            flags |= HAS_LONGITUDE;
+            slab.putDouble(base + LONGITUDE_OFFSET, forecast.getLongitude());
+        }
+        slab.putLong(base + BLOCK_OFFSET, block);
+        slab.putInt(base + BLOCK_LENGTH_OFFSET, length);
+        slab.putInt(base + BLOCK_CAPACITY_OFFSET, capacity);
+        slab.putInt(base + HUMIDITY_OFFSET, forecast.getHumidity());
+        slab.putDouble(base + CELSIUS_OFFSET, forecast.getTemperatureCelsius());
+        slab.putDouble(base + FAHRENHEIT_OFFSET, forecast.getTemperatureFahrenheit());
+        slab.putDouble(base + WIND_SPEED_OFFSET, forecast.getWindSpeedKmh());
+        slab.putLong(base + FORECAST_VERSION_OFFSET, forecast.getVersion());
+        slab.put(base + FLAGS_OFFSET, flags);
+        VERSION.setRelease(slab, base + VERSION_OFFSET, version + 2);
+
+        if (live && !reuseBlock) {
+            // Only freed once the version has moved on, so a reader still holding it will retry.
+            arena.free(oldBlock, oldCapacity);
+        }
+    }
+
+    private void release(int slot) {
+        ByteBuffer slab = slabs[slot >>> SLAB_BITS];
+        int base = (slot & (SLOTS_PER_SLAB - 1)) * SLOT_SIZE;
+        long version = (long) VERSION.getVolatile(slab, base + VERSION_OFFSET);
+        VERSION.setVolatile(slab, base + VERSION_OFFSET, version + 1);
+        VarHandle.storeStoreFence();
+        slab.put(base + FLAGS_OFFSET, (byte) 0);
+        VERSION.setRelease(slab, base + VERSION_OFFSET, version + 2);
+        arena.free(slab.getLong(base + BLOCK_OFFSET), slab.getInt(base + BLOCK_CAPACITY_OFFSET));
+        synchronized (freeSlots) {
+            freeSlots.push(slot);
+        }
+    }
+
+    private int allocateSlot() {
+        synchronized (freeSlots) {
+            if (!freeSlots.isEmpty()) {
+                return freeSlots.pop();
+            }
+            int slot = slotCount;
+            if (slot >>> SLAB_BITS == slabs.length) {
+                ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+                grown[slabs.length] = ByteBuffer.allocateDirect(SLOTS_PER_SLAB * SLOT_SIZE).order(ByteOrder.nativeOrder());
+                slabs = grown;
+            }
+            slotCount = slot + 1;
+            return slot;
+        }
+    }
+
+    private static void writeStrings(ByteBuffer block, byte[][] strings) {
+        for (byte[] string : strings) {
+            block.putInt(string == null ? -1 : string.length);
+            if (string != null) {
+                block.put(string);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer block) {
+        int length = block.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > block.remaining()) {
+            throw new IllegalStateException("String of " + length + " bytes overruns its block");
+        }
+        byte[] bytes = new byte[length];
+        block.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer block, ForecastFieldSet fields, ForecastField field) {
+        if (selected(fields, field)) {
+            return readString(block);
+        }
+        int length = block.getInt();
+        if (length > block.remaining()) {
+            throw new IllegalStateException("String of " + length + " bytes overruns its block");
+        }
+        if (length > 0) {
+            block.position(block.position() + length);
+        }
+        return null;
+    }
+
+    private static boolean selected(ForecastFieldSet fields, ForecastField field) {
+        return fields == null || fields.contains(field);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Stripe of the id index: a linear-probing table from compact id to slot number, laid out like
+     * the one in {@link HeapForecastStore} with {@code -1} marking a removed entry.
+     */
+    private final class Segment {
+        volatile IndexTable table = new IndexTable(INITIAL_CAPACITY);
+        private int live;
+        private int used;
+
+        int slotOf(long key, long hash) {
+            IndexTable current = table;
+            for (int i = current.indexOf(hash); ; i = (i + 1) & current.mask) {
+                long k = current.keys.get(i);
+                if (k == key) {
+                    return current.slots.get(i);
+                }
+                if (k == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        synchronized void compute(long key, long hash, UnaryOperator<WeatherForecast> remapping, boolean ifPresent) {
+            IndexTable current = table;
+            int i = current.entryFor(key, hash);
+            int slot = current.keys.get(i) == key ? current.slots.get(i) : -1;
+            int updated = update(slot, remapping, ifPresent);
+            if (updated == slot) {
+                return;
+            }
+            if (updated < 0) {
+                current.slots.set(i, -1);
+                live--;
+                return;
+            }
+            if (current.keys.get(i) == 0) {
+                if ((used + 1) * 4L > current.capacity * 3L) {
+                    current = rebuild(current);
+                    i = current.entryFor(key, hash);
+                }
+                used++;
+            }
+            current.slots.set(i, updated);
+            current.keys.set(i, key);
+            live++;
+        }
+
+        synchronized void clear() {
+            IndexTable current = table;
+            for (int i = 0; i < current.capacity; i++) {
+                int slot = current.slots.get(i);
+                if (current.keys.get(i) != 0 && slot >= 0) {
+                    release(slot);
+                    size.decrementAndGet();
+                }
+            }
+            table = new IndexTable(INITIAL_CAPACITY);
+            live = 0;
+            used = 0;
+        }
+
+        private IndexTable rebuild(IndexTable old) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < (live + 1) * 4L) {
+                capacity <<= 1;
+            }
+            IndexTable rebuilt = new IndexTable(capacity);
+            for (int i = 0; i < old.capacity; i++) {
+                long key = old.keys.get(i);
+                int slot = old.slots.get(i);
+                if (key != 0 && slot >= 0) {
+                    int entry = rebuilt.entryFor(key, hash(key));
+                    rebuilt.slots.set(entry, slot);
+                    rebuilt.keys.set(entry, key);
+                }
+            }
+            used = live;
+            table = rebuilt;
+            return rebuilt;
+        }
+    }
+
+    private static final class IndexTable {
+        final int capacity;
+        final int mask;
+        final AtomicLongArray keys;
+        final AtomicIntegerArray slots;
+
+        IndexTable(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.keys = new AtomicLongArray(capacity);
+            this.slots = new AtomicIntegerArray(capacity);
+        }
+
+        int indexOf(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        int entryFor(long key, long hash) {
+            for (int i = indexOf(hash); ; i = (i + 1) & mask) {
+                long k = keys.get(i);
+                if (k == key || k == 0) {
+                    return i;
+                }
+            }
+        }
+    }
+
+    private static final class IntStack {
+        private int[] values = new int[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.QueryShapeStats;
+import com.weather.api.model.SlowQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and row counts per query shape, plus a slow query log. A query at or above the
+ * threshold is logged with its parameters, rows scanned and returned, and whether an index or a
+ * full scan answered it; the most recent ones are also kept for the stats endpoint.
+ */
+final class QueryStats {
+    private static final Logger log = LoggerFactory.getLogger(QueryStats.class);
+    static final String INDEX = "index";
+    static final String SCAN = "scan";
+
+    private final Clock clock;
+    private final long slowThresholdNanos;
+    private final int slowLogSize;
+    private final List<Shape> shapes = new CopyOnWriteArrayList<>();
+    // Guarded by itself; newest last.
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    QueryStats(Clock clock, long slowThresholdMs, int slowLogSize) {
+        this.clock = clock;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, slowThresholdMs));
+        this.slowLogSize = Math.max(0, slowLogSize);
+    }
+
+    /**
+     * Registers a query shape whose parameters, when it is logged, are named {@code parameterNames}.
+     */
+    Shape shape(String name, String... parameterNames) {
+        Shape shape = new Shape(name, parameterNames);
+        shapes.add(shape);
+        return shape;
+    }
+
+    long slowThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    /**
+     * Shapes that have run at least once, the ones with the most total time first.
+     */
+    List<QueryShapeStats> shapeStats() {
+        List<QueryShapeStats> stats = new ArrayList<>();
+        for (Shape shape : shapes) {
+            if (shape.histogram.count() > 0) {
+                stats.add(shape.stats());
+            }
+        }
+        stats.sort(Comparator.comparingDouble((QueryShapeStats s) -> s.getMeanMicros() * s.getCount()).reversed());
+        return stats;
+    }
+
+    List<SlowQuery> slowQueries() {
+        List<SlowQuery> newestFirst = new ArrayList<>();
+        synchronized (slowQueries) {
+            slowQueries.descendingIterator().forEachRemaining(newestFirst::add);
+        }
+        return newestFirst;
+    }
+
+    final class Shape {
+        private final String name;
+        private final String[] parameterNames;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder indexed = new LongAdder();
+        private final LongAdder scans = new LongAdder();
+        private final LongAdder rowsScanned = new LongAdder();
+        private final LongAdder rowsReturned = new LongAdder();
+
+        private Shape(String name, String[] parameterNames) {
+            this.name = name;
+            this.parameterNames = parameterNames;
+        }
+
+        String name() {
+            return name;
+        }
+
+        /**
+         * Records a run that started at {@code startNanos}. Up to three parameters are given in the
+         * order of the shape's parameter names; they are only formatted if the run was slow.
+         */
+        void record(long startNanos, boolean usedIndex, long scanned, long returned,
+                    Object first, Object second, Object third) {
+            long nanos = System.nanoTime() - startNanos;
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            (usedIndex ? indexed : scans).increment();
+            rowsScanned.add(scanned);
+            rowsReturned.add(returned);
+            if (nanos >= slowThresholdNanos) {
+                logSlow(nanos, usedIndex ? INDEX : SCAN, scanned, returned, first, second, third);
+            }
+        }
+
+        private void logSlow(long nanos, String accessPath, long scanned, long returned,
+                             Object first, Object second, Object third) {
+            Object[] values = {first, second, third};
+            StringBuilder parameters = new StringBuilder();
+            for (int i = 0; i < parameterNames.length && i < values.length; i++) {
+                if (i > 0) {
+                    parameters.append(", ");
+                }
+                parameters.append(parameterNames[i]).append('=').append(values[i]);
+            }
+            SlowQuery slow = new SlowQuery(clock.instant(), name, parameters.toString(), accessPath, scanned, returned,
+                    TimeUnit.NANOSECONDS.toMicros(nanos));
+            log.warn("Slow query {}({}) took {} ms via {}: scanned {} rows, returned {}", name, slow.getParameters(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), accessPath, scanned, returned);
+            if (slowLogSize == 0) {
+                return;
+            }
+            synchronized (slowQueries) {
+                if (slowQueries.size() == slowLogSize) {
+                    slowQueries.removeFirst();
+                }
+                slowQueries.addLast(slow);
+            }
+        }
+
+        private QueryShapeStats stats() {
+            return new QueryShapeStats(name, histogram.count(), indexed.sum(), scans.sum(), rowsScanned.sum(),
+                    rowsReturned.sum(), histogram.mean(), histogram.percentile(50), histogram.percentile(90),
+                    histogram.percentile(99), histogram.percentile(99.9), histogram.max());
+        }
+    }
+}
@@ -1,72 +1,1029 @@
 package com.weather.api.repository;
 
+import com.weather.api.jfr.RepositoryOperationEvent;
+import com.weather.api.model.CitySuggestion;
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastProjection;
+import com.weather.api.model.ForecastIds;
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.QueryShapeStats;
+import com.weather.api.model.SlowQuery;
 import com.weather.api.model.WeatherForecast;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @Repository
 public class WeatherRepository {
-    private final Map<String, WeatherForecast> forecasts = new ConcurrentHashMap<>();
+    static final int DEFAULT_MAX_VERSIONS = 50;
+    static final int DEFAULT_CITY_FILTER_KEYS = 100_000;
+    static final double DEFAULT_CITY_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 100;
+    static final int DEFAULT_SLOW_QUERY_LOG_SIZE = 100;
+    private static final int WRITE_LOCK_STRIPES = 256;
 
+    public enum StoreType {
+        HEAP, OFF_HEAP, LSM, JDBC
+    }
+
+    private final ForecastStore forecasts;
+    // The indexes hold forecasts as refs (the compact id itself, where there is one), not id strings.
+    private final ForecastRefs refs = new ForecastRefs();
+    private final NaturalKeyIndex naturalKeys = new NaturalKeyIndex(refs);
+    private final CityIndex cityIndex = new CityIndex(refs);
+    private final GeoIndex geoIndex = new GeoIndex(refs);
+    private final DateIndex dateIndex = new DateIndex(refs);
+    private final ForecastHistory history;
+    private final Clock clock;
+    private final List<ForecastChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Held around a write's store call and the index and listener updates after it, so those are
+    // applied once the write is visible and in the same order for any one id.
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCK_STRIPES];
+    // Cities and city/country pairs that have forecasts, so queries for unknown ones skip the scan.
+    private final CountingBloomFilter cityFilter;
+    private final LongAdder cityFilterRejections = new LongAdder();
+    private final LongAdder cityFilterFalsePositives = new LongAdder();
+    private final QueryStats queryStats;
+    private final QueryStats.Shape findByIdQuery;
+    private final QueryStats.Shape findAllQuery;
+    private final QueryStats.Shape findByCityQuery;
+    private final QueryStats.Shape findByCityAndCountryQuery;
+    private final QueryStats.Shape findByCityAndDateQuery;
+    private final QueryStats.Shape findByCityAndDateRangeQuery;
+    private final QueryStats.Shape lookupByCityQuery;
+    private final QueryStats.Shape findWithinRadiusQuery;
+    private final QueryStats.Shape findByDateRangeQuery;
+
+    public WeatherRepository() {
+        this(Clock.systemUTC(), DEFAULT_MAX_VERSIONS);
+    }
+
+    @Autowired
+    public WeatherRepository(@Value("${weather.history.max-versions:50}") int maxVersions,
+                             @Value("${weather.ids.mode:COMPACT}") ForecastIds.Mode idMode,
+                             @Value("${weather.ids.node-id:0}") int nodeId,
+                             @Value("${weather.store.type:HEAP}") StoreType storeType,
+                             @Value("${weather.store.lsm.directory:}") String lsmDirectory,
+                             @Value("${weather.store.lsm.memtable-bytes:4194304}") long lsmMemtableBytes,
+                             @Value("${weather.store.lsm.compaction-threshold:4}") int lsmCompactionThreshold,
+                             @Value("${weather.store.jdbc.url:}") String jdbcUrl,
+                             @Value("${weather.store.jdbc.pool-size:8}") int jdbcPoolSize,
+                             @Value("${weather.store.jdbc.batch-size:500}") int jdbcBatchSize,
+                             @Value("${weather.city-filter.expected-keys:100000}") int cityFilterKeys,
+                             @Value("${weather.city-filter.false-positive-rate:0.01}") double cityFilterFalsePositiveRate,
+                             @Value("${weather.queries.slow-threshold-ms:100}") long slowQueryThresholdMs,
+                             @Value("${weather.queries.slow-log-size:100}") int slowQueryLogSize) {
+        this(Clock.systemUTC(), maxVersions, createStore(storeType, lsmDirectory, lsmMemtableBytes,
+                lsmCompactionThreshold, jdbcUrl, jdbcPoolSize, jdbcBatchSize),
+                new CountingBloomFilter(cityFilterKeys, cityFilterFalsePositiveRate),
+                new QueryStats(Clock.systemUTC(), slowQueryThresholdMs, slowQueryLogSize));
+        ForecastIds.configure(idMode, nodeId);
+    }
+
+    WeatherRepository(Clock clock, int maxVersions) {
+        this(clock, maxVersions, new HeapForecastStore());
+    }
+
+    WeatherRepository(Clock clock, int maxVersions, ForecastStore forecasts) {
+        this(clock, maxVersions, forecasts,
+                new CountingBloomFilter(DEFAULT_CITY_FILTER_KEYS, DEFAULT_CITY_FILTER_FALSE_POSITIVE_RATE));
+    }
+
+    WeatherRepository(Clock clock, int maxVersions, ForecastStore forecasts, CountingBloomFilter cityFilter) {
+        this(clock, maxVersions, forecasts, cityFilter,
+                new QueryStats(clock, DEFAULT_SLOW_QUERY_THRESHOLD_MS, DEFAULT_SLOW_QUERY_LOG_SIZE));
+    }
+
+    WeatherRepository(Clock clock, int maxVersions, ForecastStore forecasts, CountingBloomFilter cityFilter,
+                      QueryStats queryStats) {
+        this.clock = clock;
+        this.forecasts = forecasts;
+        this.cityFilter = cityFilter;
+        this.queryStats = queryStats;
+        this.findByIdQuery = queryStats.shape("findById", "id");
+        this.findAllQuery = queryStats.shape("findAll");
+        this.findByCityQuery = queryStats.shape("findByCity", "city");
+        this.findByCityAndCountryQuery = queryStats.shape("findByCityAndCountry", "city", "country");
+        this.findByCityAndDateQuery = queryStats.shape("findByCityAndDate", "city", "date");
+        this.findByCityAndDateRangeQuery = queryStats.shape("findByCityAndDateRange", "city", "startDate", "endDate");
+        this.lookupByCityQuery = queryStats.shape("lookupByCity", "city", "startDate", "endDate");
+        this.findWithinRadiusQuery = queryStats.shape("findWithinRadius", "latitude", "longitude", "radiusKm");
+        this.findByDateRangeQuery = queryStats.shape("findByDateRange", "startDate", "endDate");
+        // History reads current versions back from the store instead of keeping a second copy.
+        this.history = new ForecastHistory(maxVersions, forecasts::get);
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+        indexStored();
+    }
+
+    /**
+     * Indexes the forecasts a persistent store already holds from an earlier run, as if each had just
+     * been created: their history starts now.
+     */
+    private void indexStored() {
+        if (forecasts.size() == 0) {
+            return;
+        }
+        List<WeatherForecast> stored = forecasts.values();
+        List<Change> changes = new ArrayList<>(stored.size());
+        for (WeatherForecast forecast : stored) {
+            String key = naturalKey(forecast);
+            String owner = naturalKeys.putIfAbsent(key, forecast.getId());
+            if (owner != null) {
+                throw new IllegalStateException("Stored forecasts " + owner + " and " + forecast.getId()
+                        + " have the same city, country and date: " + key);
+            }
+            changes.add(new Change(forecast.getId(), null, forecast));
+        }
+        publish(changes, clock.instant());
+    }
+
+    /**
+     * Inserts or replaces the forecast with the same id.
+     *
+     * @throws DuplicateForecastException if another forecast already has the same city, country and date
+     */
     public WeatherForecast save(WeatherForecast forecast) {
-        forecasts.put(forecast.getId(), forecast);
+        RepositoryOperationEvent event = RepositoryOperationEvent.start("save");
+        boolean stored = store(forecast, null);
+        event.finish(1, stored ? 1 : 0);
         return forecast;
     }
 
+    /**
+     * Saves the forecasts in order as {@link #save} would, letting the store write them in batches.
+     *
+     * @throws DuplicateForecastException at the first forecast whose natural key is taken; the ones
+     *                                    before it are saved
+     */
+    public List<WeatherForecast> saveAll(List<WeatherForecast> batch) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.start("saveAll");
+        Instant now = clock.instant();
+        Map<String, Deque<WeatherForecast>> pending = new HashMap<>();
+        List<String> ids = new ArrayList<>(batch.size());
+        for (WeatherForecast forecast : batch) {
+            forecast.setId(ForecastIds.canonical(forecast.getId()));
+            pending.computeIfAbsent(forecast.getId(), id -> new ArrayDeque<>()).add(forecast);
+            ids.add(forecast.getId());
+        }
+        List<Change> changes = new ArrayList<>(batch.size());
+        // Where each remapping call's changes start, so a store failure can be traced back to them.
+        List<Integer> calls = new ArrayList<>(batch.size());
+        List<ReentrantLock> locks = lockAll(ids);
+        try {
+            forecasts.computeAll(ids, (id, previous) -> {
+                calls.add(changes.size());
+                return apply(pending.get(id).poll(), null, previous, changes);
+            });
+        } catch (ForecastStoreWriteException e) {
+            int firstDiscarded = calls.size() - e.getDiscarded();
+            discard(changes, firstDiscarded < calls.size() ? calls.get(firstDiscarded) : changes.size());
+            throw e;
+        } finally {
+            try {
+                // On a failed remapping the store keeps the forecasts before it, which are published.
+                publish(changes, now);
+            } finally {
+                unlockAll(locks);
+            }
+        }
+        event.finish(batch.size(), batch.size());
+        return batch;
+    }
+
+    /**
+     * Stores the forecast under its natural key (normalized city, country and date): it replaces the
+     * forecast already holding that key, keeping its id, or is inserted as a new forecast otherwise.
+     *
+     * @return the stored forecast, carrying the existing id when one was replaced
+     */
+    public WeatherForecast upsert(WeatherForecast forecast) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.start("upsert");
+        String key = naturalKey(forecast);
+        int attempts = 0;
+        while (true) {
+            attempts++;
+            String existingId = naturalKeys.get(key);
+            if (existingId == null) {
+                try {
+                    store(forecast, null);
+                    event.finish(attempts, 1);
+                    return forecast;
+                } catch (DuplicateForecastException e) {
+                    // Another writer claimed the key first; replace theirs on the next pass.
+                    continue;
+                }
+            }
+            WeatherForecast replacement = new WeatherForecast(forecast);
+            replacement.setId(existingId);
+            if (store(replacement, key)) {
+                event.finish(attempts, 1);
+                return replacement;
+            }
+        }
+    }
+
+    /**
+     * Replaces the forecast with the same id if the stored forecast is still at {@code expectedVersion},
+     * or at any version when that is {@code null}. The version is checked and the write made together
+     * under the id's write lock (one of 256 stripes) and the store's per-id
+     * compute, so writers to ids on the same stripe wait for each other for the length of one write.
+     * No lock is held between the caller's read and this call: a writer that read an older version
+     * gets a conflict instead of overwriting, and can re-read and retry.
+     *
+     * @return the stored forecast, or empty if there is no forecast with that id
+     * @throws ForecastVersionConflictException if the stored forecast is at another version
+     */
+    public Optional<WeatherForecast> replace(WeatherForecast forecast, Long expectedVersion) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.start("replace");
+        forecast.setId(ForecastIds.canonical(forecast.getId()));
+        Instant now = clock.instant();
+        List<Change> changes = new ArrayList<>(1);
+        ReentrantLock lock = writeLock(forecast.getId());
+        lock.lock();
+        try {
+            forecasts.computeIfPresent(forecast.getId(), previous -> {
+                checkVersion(previous, expectedVersion);
+                return apply(forecast, null, previous, changes);
+            });
+            publish(changes, now);
+        } catch (ForecastStoreWriteException e) {
+            discard(changes, 0);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        event.finish(1, changes.size());
+        return changes.isEmpty() ? Optional.empty() : Optional.of(forecast);
+    }
+
+    public Optional<WeatherForecast> findByNaturalKey(String city, String country, LocalDate date) {
+        String id = naturalKeys.get(naturalKey(city, country, date));
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    /**
+     * Writes the forecast under its id, keeping every index in step. With {@code expectedKey} set, the
+     * write only happens if the stored forecast still has that natural key.
+     */
+    private boolean store(WeatherForecast forecast, String expectedKey) {
+        // Compact ids are case-insensitive; the indexes and listeners only ever see the stored spelling.
+        forecast.setId(ForecastIds.canonical(forecast.getId()));
+        Instant now = clock.instant();
+        List<Change> changes = new ArrayList<>(1);
+        ReentrantLock lock = writeLock(forecast.getId());
+        lock.lock();
+        try {
+            forecasts.compute(forecast.getId(), previous -> apply(forecast, expectedKey, previous, changes));
+            publish(changes, now);
+        } catch (ForecastStoreWriteException e) {
+            discard(changes, 0);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        return !changes.isEmpty();
+    }
+
+    /**
+     * The part of a single write that runs inside the store's per-id compute: checks the expected
+     * key, claims the natural key and records the change, returning the value to store. Everything
+     * readers of the indexes can see is left to {@link #publish}.
+     */
+    private WeatherForecast apply(WeatherForecast forecast, String expectedKey, WeatherForecast previous,
+                                  List<Change> changes) {
+        String key = naturalKey(forecast);
+        String id = forecast.getId();
+        String previousKey = previous == null ? null : naturalKey(previous);
+        if (expectedKey != null && !expectedKey.equals(previousKey)) {
+            return previous;
+        }
+        forecast.setVersion(nextVersion(previous, forecast));
+        if (!key.equals(previousKey)) {
+            // Claiming the key inside the per-id lock makes the unique index and the map agree.
+            String owner = naturalKeys.putIfAbsent(key, id);
+            if (owner != null && !owner.equals(id)) {
+                throw new DuplicateForecastException(owner);
+            }
+        }
+        changes.add(new Change(id, previous, forecast));
+        return forecast;
+    }
+
+    /**
+     * Drops the changes from {@code from} on, which the store did not persist, and gives back the
+     * natural keys they claimed. A key stays with the id if it held it before the first dropped
+     * change to it, since that state is the one stored.
+     */
+    private void discard(List<Change> changes, int from) {
+        List<Change> dropped = changes.subList(from, changes.size());
+        Map<String, String> storedKeys = new HashMap<>();
+        for (Change change : dropped) {
+            if (!storedKeys.containsKey(change.id)) {
+                storedKeys.put(change.id, change.previous == null ? null : naturalKey(change.previous));
+            }
+        }
+        for (Change change : dropped) {
+            if (change.current != null) {
+                String key = naturalKey(change.current);
+                if (!key.equals(storedKeys.get(change.id))) {
+                    naturalKeys.remove(key, change.id);
+                }
+            }
+        }
+        dropped.clear();
+    }
+
+    /**
+     * Brings the secondary indexes and history up to date with changes the store has made visible,
+     * then tells the listeners. Runs after the store call, under the ids' write locks.
+     */
+    private void publish(List<Change> changes, Instant now) {
+        for (int i = 0; i < changes.size(); i++) {
+            Change change = changes.get(i);
+            String id = change.id;
+            WeatherForecast previous = change.previous;
+            WeatherForecast current = change.current;
+            if (previous != null) {
+                String previousKey = naturalKey(previous);
+                if (!previousKey.equals(finalKey(changes, i))) {
+                    naturalKeys.remove(previousKey, id);
+                }
+                geoIndex.remove(previous);
+                dateIndex.remove(previous.getDate(), id);
+            }
+            if (current == null) {
+                cityIndex.remove(previous.getCity(), previous.getDate(), id);
+                removeFromCityFilter(previous);
+                history.recordDelete(previous, now);
+            } else if (previous == null) {
+                cityIndex.add(current.getCity(), current.getDate(), id);
+                addToCityFilter(current);
+                history.recordCreate(current, now);
+            } else {
+                history.recordUpdate(previous, current, now);
+                cityIndex.move(previous.getCity(), previous.getDate(), current.getCity(), current.getDate(), id);
+                if (!cityCountryKey(current.getCity(), current.getCountry())
+                        .equals(cityCountryKey(previous.getCity(), previous.getCountry()))) {
+                    addToCityFilter(current);
+                    removeFromCityFilter(previous);
+                }
+            }
+            if (current != null) {
+                geoIndex.add(current);
+                dateIndex.add(current.getDate(), id);
+            }
+            notifyChanged(previous, current);
+        }
+    }
+
+    /**
+     * The natural key the id holds after the last of {@code changes} to it, from {@code from} on;
+     * {@code null} if that change deletes it. A key the id gives up and later takes back in the same
+     * batch stays claimed throughout.
+     */
+    private static String finalKey(List<Change> changes, int from) {
+        String id = changes.get(from).id;
+        WeatherForecast last = changes.get(from).current;
+        for (int i = from + 1; i < changes.size(); i++) {
+            if (changes.get(i).id.equals(id)) {
+                last = changes.get(i).current;
+            }
+        }
+        return last == null ? null : naturalKey(last);
+    }
+
+    @PreDestroy
+    public void close() {
+        forecasts.close();
+    }
+
+    public void addListener(ForecastChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ForecastChangeListener listener) {
+        listeners.remove(listener);
+    }
+
     public Optional<WeatherForecast> findById(String id) {
-        return Optional.ofNullable(forecasts.get(id));
+        return find(id, null);
+    }
+
+    public <T> Optional<T> findById(String id, Function<? super WeatherForecast, ? extends T> projection) {
+        return findById(id).map(projection);
+    }
+
+    /**
+     * Like {@link #findById(String)}, but has the store decode only the selected fields.
+     */
+    public Optional<ForecastProjection> findById(String id, ForecastFieldSet fields) {
+        return find(id, fields).map(fields::project);
+    }
+
+    private Optional<WeatherForecast> find(String id, ForecastFieldSet fields) {
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(findByIdQuery.name());
+        WeatherForecast forecast = forecasts.get(id, fields);
+        int found = forecast == null ? 0 : 1;
+        event.finish(1, found);
+        findByIdQuery.record(start, true, 1, found, id, null, null);
+        return Optional.ofNullable(forecast);
     }
 
     public List<WeatherForecast> findAll() {
-        return new ArrayList<>(forecasts.values());
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(findAllQuery.name());
+        List<WeatherForecast> all = forecasts.values();
+        event.finish(all.size(), all.size());
+        findAllQuery.record(start, false, all.size(), all.size(), null, null, null);
+        return all;
+    }
+
+    public <T> List<T> findAll(Function<? super WeatherForecast, ? extends T> projection) {
+        return select(findAllQuery, f -> true, null, projection);
+    }
+
+    public List<ForecastProjection> findAll(ForecastFieldSet fields) {
+        return select(findAllQuery, f -> true, fields, fields::project);
+    }
+
+    public Optional<WeatherForecast> findByIdAsOf(String id, Instant asOf) {
+        return history.asOf(ForecastIds.canonical(id), asOf);
+    }
+
+    /**
+     * Returns every forecast as it stood at {@code asOf}, including ones deleted since.
+     */
+    public List<WeatherForecast> findAllAsOf(Instant asOf) {
+        return history.allAsOf(asOf);
+    }
+
+    public List<ForecastVersion> findHistory(String id) {
+        return history.versions(ForecastIds.canonical(id));
+    }
+
+    public void pruneHistory(Instant supersededBefore) {
+        history.prune(supersededBefore);
     }
 
     public List<WeatherForecast> findByCity(String city) {
-        return forecasts.values().stream()
-                .filter(f -> f.getCity().equalsIgnoreCase(city))
-                .collect(Collectors.toList());
+        return findByCity(city, Function.identity());
+    }
+
+    /**
+     * Like {@link #findByCity(String)}, but maps each match through {@code projection} during the
+     * scan rather than collecting the forecasts first.
+     */
+    public <T> List<T> findByCity(String city, Function<? super WeatherForecast, ? extends T> projection) {
+        return findByCity(city, null, projection);
+    }
+
+    /**
+     * Like {@link #findByCity(String)}, but has the store decode only the selected fields, and the
+     * ones the query filters on.
+     */
+    public List<ForecastProjection> findByCity(String city, ForecastFieldSet fields) {
+        return findByCity(city, fields, fields::project);
+    }
+
+    private <T> List<T> findByCity(String city, ForecastFieldSet fields,
+                                   Function<? super WeatherForecast, ? extends T> projection) {
+        if (!cityFilterAdmits(cityKey(city))) {
+            return new ArrayList<>();
+        }
+        return countFalsePositive(selectCity(findByCityQuery, city, null, null,
+                f -> f.getCity().equalsIgnoreCase(city), fields, projection, null, null));
     }
 
     public List<WeatherForecast> findByCityAndCountry(String city, String country) {
-        return forecasts.values().stream()
-                .filter(f -> f.getCity().equalsIgnoreCase(city) && f.getCountry().equalsIgnoreCase(country))
-                .collect(Collectors.toList());
+        return findByCityAndCountry(city, country, Function.identity());
+    }
+
+    public <T> List<T> findByCityAndCountry(String city, String country,
+                                            Function<? super WeatherForecast, ? extends T> projection) {
+        return findByCityAndCountry(city, country, null, projection);
+    }
+
+    public List<ForecastProjection> findByCityAndCountry(String city, String country, ForecastFieldSet fields) {
+        return findByCityAndCountry(city, country, fields, fields::project);
+    }
+
+    private <T> List<T> findByCityAndCountry(String city, String country, ForecastFieldSet fields,
+                                             Function<? super WeatherForecast, ? extends T> projection) {
+        if (!cityFilterAdmits(cityCountryKey(city, country))) {
+            return new ArrayList<>();
+        }
+        return countFalsePositive(selectCity(findByCityAndCountryQuery, city, null, null,
+                f -> f.getCity().equalsIgnoreCase(city) && f.getCountry().equalsIgnoreCase(country), fields,
+                projection, country, null));
     }
 
     public List<WeatherForecast> findByCityAndDate(String city, LocalDate date) {
-        return forecasts.values().stream()
-                .filter(f -> f.getCity().equalsIgnoreCase(city) && f.getDate().equals(date))
-                .collect(Collectors.toList());
+        return findByCityAndDate(city, date, Function.identity());
+    }
+
+    public <T> List<T> findByCityAndDate(String city, LocalDate date,
+                                         Function<? super WeatherForecast, ? extends T> projection) {
+        return findByCityAndDate(city, date, null, projection);
+    }
+
+    public List<ForecastProjection> findByCityAndDate(String city, LocalDate date, ForecastFieldSet fields) {
+        return findByCityAndDate(city, date, fields, fields::project);
+    }
+
+    private <T> List<T> findByCityAndDate(String city, LocalDate date, ForecastFieldSet fields,
+                                          Function<? super WeatherForecast, ? extends T> projection) {
+        if (!cityFilterAdmits(cityKey(city))) {
+            return new ArrayList<>();
+        }
+        return selectCity(findByCityAndDateQuery, city, date, date,
+                f -> f.getCity().equalsIgnoreCase(city) && f.getDate().equals(date), fields, projection, date, null);
     }
 
     public List<WeatherForecast> findByCityAndDateRange(String city, LocalDate startDate, LocalDate endDate) {
-        return forecasts.values().stream()
-                .filter(f -> f.getCity().equalsIgnoreCase(city) &&
-                        !f.getDate().isBefore(startDate) &&
-                        !f.getDate().isAfter(endDate))
-                .collect(Collectors.toList());
+        return findByCityAndDateRange(city, startDate, endDate, Function.identity());
+    }
+
+    public <T> List<T> findByCityAndDateRange(String city, LocalDate startDate, LocalDate endDate,
+                                              Function<? super WeatherForecast, ? extends T> projection) {
+        return findByCityAndDateRange(city, startDate, endDate, null, projection);
+    }
+
+    public List<ForecastProjection> findByCityAndDateRange(String city, LocalDate startDate, LocalDate endDate,
+                                                           ForecastFieldSet fields) {
+        return findByCityAndDateRange(city, startDate, endDate, fields, fields::project);
+    }
+
+    private <T> List<T> findByCityAndDateRange(String city, LocalDate startDate, LocalDate endDate,
+                                               ForecastFieldSet fields,
+                                               Function<? super WeatherForecast, ? extends T> projection) {
+        if (!cityFilterAdmits(cityKey(city))) {
+            return new ArrayList<>();
+        }
+        return selectCity(findByCityAndDateRangeQuery, city, startDate, endDate, f -> f.getCity().equalsIgnoreCase(city) &&
+                !f.getDate().isBefore(startDate) &&
+                !f.getDate().isAfter(endDate), fields, projection, startDate, endDate);
+    }
+
+    /**
+     * Returns the forecasts of one city through the city index rather than a scan, optionally limited
+     * to dates between {@code startDate} and {@code endDate} inclusive (either may be {@code null}).
+     * City names match after trimming, collapsing whitespace and ignoring case. Results are ordered by date.
+     */
+    public <T> List<T> lookupByCity(String city, LocalDate startDate, LocalDate endDate,
+                                    Function<? super WeatherForecast, ? extends T> projection) {
+        return lookupByCity(city, startDate, endDate, null, projection);
+    }
+
+    /**
+     * Like {@link #lookupByCity(String, LocalDate, LocalDate, Function)}, but has the store decode
+     * only the selected fields.
+     */
+    public List<ForecastProjection> lookupByCity(String city, LocalDate startDate, LocalDate endDate,
+                                                 ForecastFieldSet fields) {
+        return lookupByCity(city, startDate, endDate, fields, fields::project);
+    }
+
+    private <T> List<T> lookupByCity(String city, LocalDate startDate, LocalDate endDate, ForecastFieldSet fields,
+                                     Function<? super WeatherForecast, ? extends T> projection) {
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(lookupByCityQuery.name());
+        List<WeatherForecast> scanned = forecasts.scanCity(city, startDate, endDate, fields);
+        if (scanned != null) {
+            event.finish(scanned.size(), scanned.size());
+            lookupByCityQuery.record(start, true, scanned.size(), scanned.size(), city, startDate, endDate);
+            return project(scanned, projection);
+        }
+        List<WeatherForecast> matches = new ArrayList<>();
+        List<String> ids = cityIndex.idsFor(city);
+        ForecastFieldSet decode = fields == null ? null : fields.with(ForecastField.DATE);
+        for (String id : ids) {
+            WeatherForecast forecast = forecasts.get(id, decode);
+            if (forecast != null
+                    && (startDate == null || !forecast.getDate().isBefore(startDate))
+                    && (endDate == null || !forecast.getDate().isAfter(endDate))) {
+                matches.add(forecast);
+            }
+        }
+        matches.sort(Comparator.comparing(WeatherForecast::getDate));
+        event.finish(ids.size(), matches.size());
+        lookupByCityQuery.record(start, true, ids.size(), matches.size(), city, startDate, endDate);
+        return project(matches, projection);
+    }
+
+    public List<CitySuggestion> suggestCities(String query, int limit) {
+        return cityIndex.suggest(query, limit);
+    }
+
+    public List<WeatherForecast> findWithinRadius(double latitude, double longitude, double radiusKm) {
+        return findWithinRadius(latitude, longitude, radiusKm, Function.identity());
+    }
+
+    public <T> List<T> findWithinRadius(double latitude, double longitude, double radiusKm,
+                                        Function<? super WeatherForecast, ? extends T> projection) {
+        return findWithinRadius(latitude, longitude, radiusKm, null, projection);
+    }
+
+    public List<ForecastProjection> findWithinRadius(double latitude, double longitude, double radiusKm,
+                                                     ForecastFieldSet fields) {
+        return findWithinRadius(latitude, longitude, radiusKm, fields, fields::project);
+    }
+
+    private <T> List<T> findWithinRadius(double latitude, double longitude, double radiusKm, ForecastFieldSet fields,
+                                         Function<? super WeatherForecast, ? extends T> projection) {
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(findWithinRadiusQuery.name());
+        List<T> found = new ArrayList<>();
+        List<String> ids = geoIndex.withinRadius(latitude, longitude, radiusKm);
+        for (String id : ids) {
+            WeatherForecast forecast = forecasts.get(id, fields);
+            if (forecast != null) {
+                found.add(projection.apply(forecast));
+            }
+        }
+        event.finish(ids.size(), found.size());
+        findWithinRadiusQuery.record(start, true, ids.size(), found.size(), latitude, longitude, radiusKm);
+        return found;
+    }
+
+    public List<NearbyCity> findNearestCities(double latitude, double longitude, int k) {
+        return geoIndex.nearestCities(latitude, longitude, k);
+    }
+
+    /**
+     * Returns up to {@code limit} ids of forecasts dated strictly before {@code cutoff}, oldest first.
+     */
+    public List<String> findIdsDatedBefore(LocalDate cutoff, int limit) {
+        return dateIndex.idsBefore(cutoff, limit);
+    }
+
+    /**
+     * Returns the forecasts dated from {@code startDate} to {@code endDate} inclusive, read through
+     * the date index rather than a scan.
+     */
+    public List<WeatherForecast> findByDateRange(LocalDate startDate, LocalDate endDate) {
+        List<WeatherForecast> found = new ArrayList<>();
+        if (endDate.isBefore(startDate)) {
+            return found;
+        }
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(findByDateRangeQuery.name());
+        long[] scanned = {0};
+        dateIndex.forEachBetween(startDate, endDate, (date, id) -> {
+            scanned[0]++;
+            WeatherForecast forecast = forecasts.get(id);
+            if (forecast != null && date.equals(forecast.getDate())) {
+                found.add(forecast);
+            }
+        });
+        event.finish(scanned[0], found.size());
+        findByDateRangeQuery.record(start, true, scanned[0], found.size(), startDate, endDate, null);
+        return found;
+    }
+
+    /**
+     * Returns up to {@code limit} ids of the oldest forecasts of every city holding more than
+     * {@code maxPerCity} forecasts, i.e. the ones that must go to bring each city back under the cap.
+     */
+    public List<String> findIdsExceedingCityCap(int maxPerCity, int limit) {
+        return cityIndex.oldestBeyondCap(maxPerCity, limit);
     }
 
     public void deleteById(String id) {
-        forecasts.remove(id);
+        deleteById(id, null);
+    }
+
+    /**
+     * Deletes the forecast if it is at {@code expectedVersion}, or at any version when that is {@code null}.
+     *
+     * @return whether a forecast was deleted
+     * @throws ForecastVersionConflictException if the stored forecast is at another version
+     */
+    public boolean deleteById(String id, Long expectedVersion) {
+        RepositoryOperationEvent event = RepositoryOperationEvent.start("delete");
+        String storedId = ForecastIds.canonical(id);
+        List<Change> changes = new ArrayList<>(1);
+        ReentrantLock lock = writeLock(storedId);
+        lock.lock();
+        try {
+            forecasts.computeIfPresent(storedId, previous -> {
+                checkVersion(previous, expectedVersion);
+                changes.add(new Change(storedId, previous, null));
+                return null;
+            });
+            publish(changes, clock.instant());
+        } finally {
+            lock.unlock();
+        }
+        event.finish(1, changes.size());
+        return !changes.isEmpty();
     }
 
     public void deleteAll() {
-        forecasts.clear();
+        for (ReentrantLock lock : writeLocks) {
+            lock.lock();
+        }
+        try {
+            forecasts.clear();
+            naturalKeys.clear();
+            cityIndex.clear();
+            cityFilter.clear();
+            geoIndex.clear();
+            dateIndex.clear();
+            history.clear();
+            for (ForecastChangeListener listener : listeners) {
+                listener.onForecastsCleared();
+            }
+        } finally {
+            for (int i = writeLocks.length - 1; i >= 0; i--) {
+                writeLocks[i].unlock();
+            }
+        }
     }
 
     public boolean existsById(String id) {
         return forecasts.containsKey(id);
     }
 
+    public boolean existsByCity(String city) {
+        return cityIndex.contains(city);
+    }
+
     public long count() {
         return forecasts.size();
     }
+
+    /**
+     * Number of city queries answered as empty by the city filter alone.
+     */
+    public long getCityFilterRejections() {
+        return cityFilterRejections.sum();
+    }
+
+    /**
+     * Number of city and city/country queries the city filter let through that then found nothing.
+     */
+    public long getCityFilterFalsePositives() {
+        return cityFilterFalsePositives.sum();
+    }
+
+    /**
+     * The city filter's current false positive rate, estimated from how full it is.
+     */
+    public double getCityFilterFalsePositiveRate() {
+        return cityFilter.falsePositiveRate();
+    }
+
+    /**
+     * Latency percentiles and row counts for each kind of query, busiest first. Queries the city
+     * filter answered alone are not included; they are counted by {@link #getCityFilterRejections}.
+     */
+    public List<QueryShapeStats> getQueryShapeStats() {
+        return queryStats.shapeStats();
+    }
+
+    /**
+     * The most recent queries that took at least {@link #getSlowQueryThresholdMs}, newest first.
+     */
+    public List<SlowQuery> getSlowQueries() {
+        return queryStats.slowQueries();
+    }
+
+    public long getSlowQueryThresholdMs() {
+        return queryStats.slowThresholdMs();
+    }
+
+    /**
+     * Scans the store for forecasts matching {@code filter}. With {@code fields} set, which must
+     * include whatever the filter reads, the store decodes only those; {@code null} decodes whole forecasts.
+     */
+    private <T> List<T> select(QueryStats.Shape shape, Predicate<WeatherForecast> filter, ForecastFieldSet fields,
+                               Function<? super WeatherForecast, ? extends T> projection) {
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(shape.name());
+        List<WeatherForecast> scanned = forecasts.values(fields);
+        List<T> found = filter(scanned, filter, projection);
+        event.finish(scanned.size(), found.size());
+        shape.record(start, false, scanned.size(), found.size(), null, null, null);
+        return found;
+    }
+
+    /**
+     * Like {@link #select}, but reads only the city's key range when the store is ordered by city,
+     * and adds the city, country and date the filters read to {@code fields}.
+     * The filter still applies, as the store matches the normalized city name. {@code second} and
+     * {@code third} are the query's parameters after the city, as named by {@code shape}.
+     */
+    private <T> List<T> selectCity(QueryStats.Shape shape, String city, LocalDate startDate, LocalDate endDate,
+                                   Predicate<WeatherForecast> filter, ForecastFieldSet fields,
+                                   Function<? super WeatherForecast, ? extends T> projection,
+                                   Object second, Object third) {
+        long start = System.nanoTime();
+        RepositoryOperationEvent event = RepositoryOperationEvent.start(shape.name());
+        ForecastFieldSet decode = filtered(fields);
+        List<WeatherForecast> scanned = forecasts.scanCity(city, startDate, endDate, decode);
+        boolean usedIndex = scanned != null;
+        if (!usedIndex) {
+            scanned = forecasts.values(decode);
+        }
+        List<T> found = filter(scanned, filter, projection);
+        event.finish(scanned.size(), found.size());
+        shape.record(start, usedIndex, scanned.size(), found.size(), city, second, third);
+        return found;
+    }
+
+    private static ForecastFieldSet filtered(ForecastFieldSet fields) {
+        return fields == null ? null : fields.with(ForecastField.CITY, ForecastField.COUNTRY, ForecastField.DATE);
+    }
+
+    private static <T> List<T> filter(List<WeatherForecast> forecasts, Predicate<WeatherForecast> filter,
+                                      Function<? super WeatherForecast, ? extends T> projection) {
+        List<T> found = new ArrayList<>();
+        for (WeatherForecast forecast : forecasts) {
+            if (filter.test(forecast)) {
+                found.add(projection.apply(forecast));
+            }
+        }
+        return found;
+    }
+
+    private static <T> List<T> project(List<WeatherForecast> forecasts, Function<? super WeatherForecast, ? extends T> projection) {
+        List<T> projected = new ArrayList<>(forecasts.size());
+        for (WeatherForecast forecast : forecasts) {
+            projected.add(projection.apply(forecast));
+        }
+        return projected;
+    }
+
+    private static ForecastStore createStore(StoreType type, String lsmDirectory, long lsmMemtableBytes,
+                                             int lsmCompactionThreshold, String jdbcUrl, int jdbcPoolSize,
+                                             int jdbcBatchSize) {
+        switch (type) {
+            case OFF_HEAP:
+                return new OffHeapForecastStore();
+            case JDBC:
+                return new JdbcForecastStore(jdbcUrl, jdbcPoolSize, jdbcBatchSize);
+            case LSM:
+                return new LsmForecastStore(lsmDirectory.isBlank() ? null : Paths.get(lsmDirectory),
+                        lsmMemtableBytes, lsmCompactionThreshold);
+            default:
+                return new HeapForecastStore();
+        }
+    }
+
+    private boolean cityFilterAdmits(String key) {
+        if (cityFilter.mightContain(key)) {
+            return true;
+        }
+        cityFilterRejections.increment();
+        return false;
+    }
+
+    private <T> List<T> countFalsePositive(List<T> found) {
+        if (found.isEmpty()) {
+            cityFilterFalsePositives.increment();
+        }
+        return found;
+    }
+
+    private void addToCityFilter(WeatherForecast forecast) {
+        cityFilter.add(cityKey(forecast.getCity()));
+        cityFilter.add(cityCountryKey(forecast.getCity(), forecast.getCountry()));
+    }
+
+    private void removeFromCityFilter(WeatherForecast forecast) {
+        cityFilter.remove(cityKey(forecast.getCity()));
+        cityFilter.remove(cityCountryKey(forecast.getCity(), forecast.getCountry()));
+    }
+
+    private static String cityKey(String city) {
+        return foldCase(city);
+    }
+
+    private static String cityCountryKey(String city, String country) {
+        return foldCase(city) + '\u0000' + foldCase(country);
+    }
+
+    /**
+     * Folds case one char at a time the way {@link String#equalsIgnoreCase} compares, so names that
+     * the city queries treat as equal always share a filter key.
+     */
+    private static String foldCase(String value) {
+        if (value == null) {
+            return "";
+        }
+        char[] chars = new char[value.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+        }
+        return new String(chars);
+    }
+
+    private static void checkVersion(WeatherForecast previous, Long expectedVersion) {
+        if (expectedVersion != null && previous.getVersion() != expectedVersion) {
+            throw new ForecastVersionConflictException(previous.getId(), previous.getVersion());
+        }
+    }
+
+    /**
+     * The version a write stores: 1 for a new forecast, and one more than before only if the write
+     * changes the content, so rewriting identical values keeps the version (and the entity tag).
+     */
+    private static long nextVersion(WeatherForecast previous, WeatherForecast forecast) {
+        if (previous == null) {
+            return 1;
+        }
+        for (ForecastField field : ForecastField.values()) {
+            if (field.isVersioned() && field != ForecastField.VERSION
+                    && !Objects.equals(field.get(forecast), field.get(previous))) {
+                return previous.getVersion() + 1;
+            }
+        }
+        return previous.getVersion();
+    }
+
+    private static String naturalKey(WeatherForecast forecast) {
+        return naturalKey(forecast.getCity(), forecast.getCountry(), forecast.getDate());
+    }
+
+    private static String naturalKey(String city, String country, LocalDate date) {
+        return CityIndex.normalize(city) + '|' + CityIndex.normalize(country) + '|' + date;
+    }
+
+    private ReentrantLock writeLock(String id) {
+        return writeLocks[writeStripe(id)];
+    }
+
+    private static int writeStripe(String id) {
+        // Compact ids are case-insensitive, so they are striped by value rather than by spelling.
+        long compact = ForecastIds.parseCompact(id);
+        return Math.floorMod(compact != 0 ? Long.hashCode(compact) : id.hashCode(), WRITE_LOCK_STRIPES);
+    }
+
+    /**
+     * Takes the write locks of all the ids in stripe order, so that overlapping batches cannot deadlock.
+     */
+    private List<ReentrantLock> lockAll(List<String> ids) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String id : ids) {
+            stripes.add(writeStripe(id));
+        }
+        List<ReentrantLock> locks = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            locks.add(writeLocks[stripe]);
+        }
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        return locks;
+    }
+
+    private static void unlockAll(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private void notifyChanged(WeatherForecast previous, WeatherForecast current) {
+        for (ForecastChangeListener listener : listeners) {
+            listener.onForecastChanged(previous, current);
+        }
+    }
+
+    private static final class Change {
+        final String id;
+        final WeatherForecast previous;
+        final WeatherForecast current;
+
+        Change(String id, WeatherForecast previous, WeatherForecast current) {
+            this.id = id;
+            this.previous = previous;
+            this.current = current;
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package com.weather.api.service;
+
+import com.weather.api.model.CityForecasts;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastLookup;
+import com.weather.api.repository.WeatherRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Batch reads. Multi-city requests run one index lookup per city on a small dedicated pool and hand
+ * the results back as futures in request order, so the caller can stream each city as soon as it
+ * and all the cities before it are ready. Each request keeps at most {@code maxInFlight} lookups
+ * queued or running, submitting the next city as one finishes, so a large request cannot flood the
+ * pool and cancelling its futures stops the cities not yet started. Multi-gets by id are plain map
+ * lookups done inline.
+ */
+@Service
+public class ForecastBatchService {
+    private static final Logger log = LoggerFactory.getLogger(ForecastBatchService.class);
+
+    private final WeatherRepository repository;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public ForecastBatchService(WeatherRepository repository,
+                                @Value("${weather.batch.threads:4}") int threads,
+                                @Value("${weather.batch.max-in-flight:4}") int maxInFlight) {
+        this.repository = repository;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "forecast-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks up each distinct city (duplicates differing only in case or spacing are dropped) with
+     * forecasts between {@code startDate} and {@code endDate}, either of which may be {@code null}.
+     * With {@code fields} set, each forecast is reduced to those fields; otherwise it is returned whole.
+     * A city whose lookup fails completes with an error entry rather than exceptionally.
+     */
+    public List<CompletableFuture<CityForecasts>> getForecastsByCities(List<String> cities, LocalDate startDate,
+                                                                       LocalDate endDate, ForecastFieldSet fields) {
+        Map<String, String> distinct = new LinkedHashMap<>();
+        for (String city : cities) {
+            if (city != null && !city.isBlank()) {
+                distinct.putIfAbsent(city.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT), city.trim());
+            }
+        }
+        List<String> names = new ArrayList<>(distinct.values());
+        List<CompletableFuture<CityForecasts>> results = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+        AtomicInteger next = new AtomicInteger();
+        for (int i = 0; i < Math.min(maxInFlight, names.size()); i++) {
+            submitNext(names, results, next, startDate, endDate, fields);
+        }
+        return results;
+    }
+
+    /**
+     * Fetches each distinct id in a single pass, keeping request order and collecting the misses.
+     */
+    public ForecastLookup getForecastsByIds(List<String> ids, ForecastFieldSet fields) {
+        List<Object> found = new ArrayList<>(ids.size());
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            Optional<?> forecast = id == null ? Optional.empty()
+                    : fields == null ? repository.findById(id) : repository.findById(id, fields);
+            if (forecast.isPresent()) {
+                found.add(forecast.get());
+            } else if (id != null) {
+                missing.add(id);
+            }
+        }
+        return new ForecastLookup(found, missing);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts the lookup of the next city whose future is still pending; each finished lookup starts
+     * the one after it, so the request never has more than its initial number in flight.
+     */
+    private void submitNext(List<String> cities, List<CompletableFuture<CityForecasts>> results, AtomicInteger next,
+                            LocalDate startDate, LocalDate endDate, ForecastFieldSet fields) {
+        int index = next.getAndIncrement();
+        while (index < cities.size() && results.get(index).isDone()) {
+            // Cancelled by the caller before it started.
+            index = next.getAndIncrement();
+        }
+        if (index >= cities.size()) {
+            return;
+        }
+        String city = cities.get(index);
+        CompletableFuture<CityForecasts> result = results.get(index);
+        try {
+            executor.execute(() -> {
+                if (!result.isDone()) {
+                    try {
+                        result.complete(lookup(city, startDate, endDate, fields));
+                    } catch (RuntimeException e) {
+                        log.warn("Batch lookup of city {} failed", city, e);
+                        result.complete(CityForecasts.failed(city, "lookup failed"));
+                    }
+                }
+                submitNext(cities, results, next, startDate, endDate, fields);
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down: fail this city and every one after it.
+            for (int i = index; i < results.size(); i++) {
+                results.get(i).complete(CityForecasts.failed(cities.get(i), "lookup failed"));
+            }
+        }
+    }
+
+    private CityForecasts lookup(String city, LocalDate startDate, LocalDate endDate, ForecastFieldSet fields) {
+        List<?> forecasts = fields == null ? repository.lookupByCity(city, startDate, endDate, Function.identity())
+                : repository.lookupByCity(city, startDate, endDate, fields);
+        return new CityForecasts(city, !forecasts.isEmpty() || repository.existsByCity(city), forecasts);
+    }
+}
@@ -0,0 +1,196 @@
+package com.weather.api.service;
+
+import com.weather.api.model.ForecastEvent;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.ForecastChangeListener;
+import com.weather.api.repository.WeatherRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes repository mutations to Server-Sent Events subscribers. Events are enqueued on the
+ * mutating thread into a bounded per-subscriber buffer and written out by a small sender pool, so a
+ * slow client never holds up writers. When a buffer overflows the subscriber is either told to
+ * resync (buffer dropped, one RESYNC event queued) or disconnected, depending on the policy.
+ */
+@Component
+public class ForecastEventBroadcaster implements ForecastChangeListener {
+
+    public enum OverflowPolicy {
+        RESYNC, DISCONNECT
+    }
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final ExecutorService sender;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long timeoutMs;
+
+    public ForecastEventBroadcaster(WeatherRepository repository,
+                                    @Value("${weather.stream.buffer-size:256}") int bufferSize,
+                                    @Value("${weather.stream.overflow-policy:RESYNC}") OverflowPolicy overflowPolicy,
+                                    @Value("${weather.stream.timeout-ms:1800000}") long timeoutMs,
+                                    @Value("${weather.stream.sender-threads:2}") int senderThreads) {
+        this.bufferSize = Math.max(1, bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "forecast-sse-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        repository.addListener(this);
+    }
+
+    public SseEmitter subscribe(String city) {
+        return subscribe(city, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter subscribe(String city, SseEmitter emitter) {
+        Subscription subscription = new Subscription(emitter, city);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        subscriptions.add(subscription);
+        return emitter;
+    }
+
+    @Override
+    public void onForecastChanged(WeatherForecast previous, WeatherForecast current) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        ForecastEvent.Type type = previous == null ? ForecastEvent.Type.CREATED
+                : current == null ? ForecastEvent.Type.DELETED : ForecastEvent.Type.UPDATED;
+        WeatherForecast subject = current != null ? current : previous;
+        ForecastEvent event = new ForecastEvent(sequence.incrementAndGet(), type, subject.getId(), subject, Instant.now());
+        for (Subscription subscription : subscriptions) {
+            if (subscription.matches(previous) || subscription.matches(current)) {
+                subscription.enqueue(event);
+            }
+        }
+    }
+
+    @Override
+    public void onForecastsCleared() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        ForecastEvent event = new ForecastEvent(sequence.incrementAndGet(), ForecastEvent.Type.CLEARED, null, null, Instant.now());
+        for (Subscription subscription : subscriptions) {
+            subscription.enqueue(event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${weather.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                subscription.close();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    private final class Subscription {
+        final SseEmitter emitter;
+        final String city;
+        final BlockingQueue<ForecastEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean open = true;
+
+        Subscription(SseEmitter emitter, String city) {
+            this.emitter = emitter;
+            this.city = city == null || city.isBlank() ? null : city.trim().toLowerCase(Locale.ROOT);
+        }
+
+        boolean matches(WeatherForecast forecast) {
+            return forecast != null && (city == null || city.equalsIgnoreCase(forecast.getCity()));
+        }
+
+        void enqueue(ForecastEvent event) {
+            if (!open) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                overflowCount.incrementAndGet();
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    close();
+                    return;
+                }
+                buffer.clear();
+                buffer.offer(new ForecastEvent(event.getSequence(), ForecastEvent.Type.RESYNC, null, null, Instant.now()));
+            }
+            scheduleDrain();
+        }
+
+        void scheduleDrain() {
+            if (open && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            try {
+                ForecastEvent event;
+                while (open && (event = buffer.poll()) != null) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.getSequence()))
+                            .name(event.getType().name())
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            open = false;
+            buffer.clear();
+            subscriptions.remove(this);
+            emitter.complete();
+        }
+    }
+}
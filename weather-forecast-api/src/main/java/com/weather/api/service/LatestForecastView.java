@@ -0,0 +1,307 @@
+package com.weather.api.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.api.jfr.CacheLookupEvent;
+import com.weather.api.jfr.SerializationEvent;
+import com.weather.api.model.CityOutlook;
+import com.weather.api.model.LatestForecasts;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.ForecastChangeListener;
+import com.weather.api.repository.WeatherRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Materialized view of today's and the next {@code days} days' forecasts for every city, kept up
+ * to date from repository change events rather than by querying. Reads are served from a snapshot
+ * that is serialized to JSON once and reused until the next change; at the date rollover the window
+ * moves forward, dropping yesterday and loading the newly covered day through the date index.
+ * Each city keeps its outlook prebuilt, so a render only copies references under the lock and change
+ * events are never held up behind one; a render during a rollover waits for the load to finish
+ * rather than serving a half-loaded window.
+ */
+@Component
+public class LatestForecastView implements ForecastChangeListener {
+    private static final Logger log = LoggerFactory.getLogger(LatestForecastView.class);
+    private static final Comparator<CityOutlook> CITY_ORDER = Comparator
+            .comparing(CityOutlook::getCity, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(CityOutlook::getCountry, String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * A pre-serialized view body, tagged with the change generation it was built from.
+     */
+    public static final class Snapshot {
+        private final byte[] json;
+        private final String eTag;
+
+        public Snapshot(byte[] json, String eTag) {
+            this.json = json;
+            this.eTag = eTag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    private final WeatherRepository repository;
+    private final ObjectMapper mapper;
+    private final Clock clock;
+    private final int days;
+    private final Object lock = new Object();
+    // Guarded by lock: per city and country, the forecasts in the window.
+    private final Map<String, City> cities = new HashMap<>();
+    // Written under lock; read without it to check whether the snapshot is still today's.
+    private volatile LocalDate startDate;
+    private long generation;
+    // Ids changed by events while a rollover is loading, whose loaded copies are stale; non-null
+    // exactly while a load is running, and renders wait on the lock until it is null again.
+    private Set<String> changedDuringLoad;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public LatestForecastView(WeatherRepository repository, ObjectMapper mapper,
+                              @Value("${weather.latest.days:2}") int days) {
+        this(repository, mapper, days, Clock.systemDefaultZone());
+    }
+
+    LatestForecastView(WeatherRepository repository, ObjectMapper mapper, int days, Clock clock) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.clock = clock;
+        this.days = Math.max(0, days);
+        repository.addListener(this);
+        roll(LocalDate.now(clock));
+    }
+
+    /**
+     * Returns the current view, rolling it over first if the date has changed since it was built.
+     */
+    public Snapshot snapshot() {
+        CacheLookupEvent lookup = CacheLookupEvent.start("latest-view");
+        LocalDate today = LocalDate.now(clock);
+        Snapshot current = snapshot;
+        if (current != null && today.equals(startDate)) {
+            lookup.finish(current.getETag(), true);
+            return current;
+        }
+        lookup.finish(null, false);
+        roll(today);
+        return render();
+    }
+
+    @Scheduled(cron = "${weather.latest.rollover-cron:0 0 0 * * *}")
+    public void rollover() {
+        roll(LocalDate.now(clock));
+        render();
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    @Override
+    public void onForecastChanged(WeatherForecast previous, WeatherForecast current) {
+        synchronized (lock) {
+            boolean changed = false;
+            if (previous != null && inWindow(previous.getDate())) {
+                changed = remove(previous);
+            }
+            if (current != null && inWindow(current.getDate())) {
+                put(current);
+                changed = true;
+            }
+            if (changedDuringLoad != null) {
+                changedDuringLoad.add(previous != null ? previous.getId() : current.getId());
+            }
+            if (changed) {
+                invalidate();
+            }
+        }
+    }
+
+    @Override
+    public void onForecastsCleared() {
+        synchronized (lock) {
+            cities.clear();
+            invalidate();
+        }
+    }
+
+    /**
+     * Moves the window to start at {@code today}, keeping the days it still covers and loading
+     * the rest. The load runs outside the lock, as the repository may call back into this view. If
+     * it fails, the view is emptied so that the next read reloads the whole window.
+     */
+    private void roll(LocalDate today) {
+        LocalDate endDate = today.plusDays(days);
+        LocalDate loadFrom;
+        synchronized (lock) {
+            if (today.equals(startDate)) {
+                return;
+            }
+            LocalDate oldEnd = startDate == null ? null : startDate.plusDays(days);
+            loadFrom = startDate != null && today.isAfter(startDate) && !today.isAfter(oldEnd)
+                    ? oldEnd.plusDays(1) : today;
+            startDate = today;
+            for (Iterator<City> it = cities.values().iterator(); it.hasNext(); ) {
+                City city = it.next();
+                city.dates.headMap(today).clear();
+                city.dates.tailMap(endDate, false).clear();
+                if (city.dates.isEmpty()) {
+                    it.remove();
+                } else {
+                    city.refresh();
+                }
+            }
+            changedDuringLoad = new HashSet<>();
+            invalidate();
+        }
+        List<WeatherForecast> loaded = null;
+        try {
+            loaded = repository.findByDateRange(loadFrom, endDate);
+        } finally {
+            synchronized (lock) {
+                if (loaded == null) {
+                    cities.clear();
+                    startDate = null;
+                } else {
+                    for (WeatherForecast forecast : loaded) {
+                        if (!changedDuringLoad.contains(forecast.getId()) && inWindow(forecast.getDate())) {
+                            put(forecast);
+                        }
+                    }
+                }
+                changedDuringLoad = null;
+                invalidate();
+                lock.notifyAll();
+            }
+        }
+        log.debug("Latest forecast view now covers {} to {}", today, endDate);
+    }
+
+    private Snapshot render() {
+        LatestForecasts body;
+        long builtFrom;
+        synchronized (lock) {
+            awaitLoad();
+            if (startDate == null) {
+                throw new IllegalStateException("The latest forecast view could not be loaded");
+            }
+            body = new LatestForecasts(startDate, startDate.plusDays(days), new ArrayList<>(cities.size()));
+            for (City city : cities.values()) {
+                body.getCities().add(city.outlook);
+            }
+            builtFrom = generation;
+        }
+        body.getCities().sort(CITY_ORDER);
+        SerializationEvent serialization = SerializationEvent.start("json");
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        serialization.finish(body, json.length);
+        Snapshot rendered = new Snapshot(json, "\"" + body.getStartDate() + "-" + builtFrom + "\"");
+        synchronized (lock) {
+            // Only cached if nothing changed while serializing, and not while a rollover is loading.
+            if (generation == builtFrom && changedDuringLoad == null) {
+                snapshot = rendered;
+            }
+        }
+        return rendered;
+    }
+
+    // Caller holds the lock.
+    private void awaitLoad() {
+        while (changedDuringLoad != null) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for the latest forecast view to load", e);
+            }
+        }
+    }
+
+    private void put(WeatherForecast forecast) {
+        City city = cities.computeIfAbsent(key(forecast), k -> new City());
+        city.dates.put(forecast.getDate(), forecast);
+        city.refresh();
+    }
+
+    private boolean remove(WeatherForecast previous) {
+        String key = key(previous);
+        City city = cities.get(key);
+        if (city == null) {
+            return false;
+        }
+        WeatherForecast held = city.dates.get(previous.getDate());
+        if (held == null || !held.getId().equals(previous.getId())) {
+            return false;
+        }
+        city.dates.remove(previous.getDate());
+        if (city.dates.isEmpty()) {
+            cities.remove(key);
+        } else {
+            city.refresh();
+        }
+        return true;
+    }
+
+    private boolean inWindow(LocalDate date) {
+        return date != null && startDate != null
+                && !date.isBefore(startDate) && !date.isAfter(startDate.plusDays(days));
+    }
+
+    private void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    private static String key(WeatherForecast forecast) {
+        return normalize(forecast.getCity()) + '\u0000' + normalize(forecast.getCountry());
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One city's forecasts in the window by date, with the outlook a render serves for it rebuilt
+     * on every change. Both are guarded by the view's lock; an outlook is never modified once built.
+     */
+    private static final class City {
+        final TreeMap<LocalDate, WeatherForecast> dates = new TreeMap<>();
+        CityOutlook outlook;
+
+        void refresh() {
+            WeatherForecast first = dates.firstEntry().getValue();
+            outlook = new CityOutlook(first.getCity(), first.getCountry(), List.copyOf(dates.values()));
+        }
+    }
+}
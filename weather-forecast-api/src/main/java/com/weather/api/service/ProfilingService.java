@@ -0,0 +1,135 @@
+package com.weather.api.service;
+
+import com.weather.api.jfr.CacheLookupEvent;
+import com.weather.api.jfr.ConcurrencyLimitEvent;
+import com.weather.api.jfr.IngestBatchEvent;
+import com.weather.api.jfr.RepositoryOperationEvent;
+import com.weather.api.jfr.SerializationEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Starts, dumps and stops a Java Flight Recorder recording of the JVM plus this service's own events
+ * (repository operations, cache lookups, serialization and ingest batches). The recording is a ring
+ * buffer bounded by age and size, so it can run for the life of the process; while none is running
+ * the custom events cost next to nothing.
+ */
+@Service
+public class ProfilingService {
+    private static final Logger log = LoggerFactory.getLogger(ProfilingService.class);
+    static final String RECORDING_NAME = "weather-api";
+    private static final List<Class<? extends Event>> EVENTS = List.of(
+            RepositoryOperationEvent.class, CacheLookupEvent.class, SerializationEvent.class, IngestBatchEvent.class);
+
+    private final String settings;
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+    private final Duration threshold;
+    // Guarded by this.
+    private Recording recording;
+
+    public ProfilingService(@Value("${weather.jfr.start-on-startup:false}") boolean startOnStartup,
+                            @Value("${weather.jfr.settings:default}") String settings,
+                            @Value("${weather.jfr.max-age-minutes:60}") long maxAgeMinutes,
+                            @Value("${weather.jfr.max-size-mb:100}") long maxSizeMb,
+                            @Value("${weather.jfr.threshold-ms:0}") long thresholdMs) {
+        this.settings = settings;
+        this.maxAge = Duration.ofMinutes(Math.max(1, maxAgeMinutes));
+        this.maxSizeBytes = Math.max(1, maxSizeMb) * 1024 * 1024;
+        this.threshold = Duration.ofMillis(Math.max(0, thresholdMs));
+        if (startOnStartup) {
+            start();
+        }
+    }
+
+    /**
+     * Starts the recording, or leaves the running one as it is.
+     */
+    public synchronized Map<String, Object> start() {
+        if (recording == null) {
+            Recording started;
+            try {
+                started = new Recording(Configuration.getConfiguration(settings));
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("Cannot load JFR settings '" + settings + "'", e);
+            }
+            started.setName(RECORDING_NAME);
+            started.setToDisk(true);
+            started.setMaxAge(maxAge);
+            started.setMaxSize(maxSizeBytes);
+            for (Class<? extends Event> event : EVENTS) {
+                started.enable(event).withThreshold(threshold);
+            }
+            // A periodic sample has no duration, so a threshold would drop it.
+            started.enable(ConcurrencyLimitEvent.class);
+            started.start();
+            recording = started;
+            log.info("Started flight recording with '{}' settings, keeping the last {}", settings, maxAge);
+        }
+        return status();
+    }
+
+    /**
+     * Writes what the running recording holds to a new temporary file, which the caller deletes.
+     *
+     * @return the file, or empty if no recording is running
+     */
+    public synchronized Optional<Path> dump() {
+        if (recording == null) {
+            return Optional.empty();
+        }
+        try {
+            Path file = Files.createTempFile(RECORDING_NAME + "-", ".jfr");
+            recording.dump(file);
+            return Optional.of(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops and discards the running recording.
+     *
+     * @return whether one was running
+     */
+    @PreDestroy
+    public synchronized boolean stop() {
+        if (recording == null) {
+            return false;
+        }
+        recording.close();
+        recording = null;
+        log.info("Stopped flight recording");
+        return true;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("recording", recording != null);
+        status.put("settings", settings);
+        status.put("maxAgeMinutes", maxAge.toMinutes());
+        status.put("maxSizeBytes", maxSizeBytes);
+        status.put("thresholdMs", threshold.toMillis());
+        if (recording != null) {
+            status.put("startTime", recording.getStartTime());
+        }
+        return status;
+    }
+}
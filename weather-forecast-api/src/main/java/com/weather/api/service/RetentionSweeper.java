@@ -0,0 +1,107 @@
+package com.weather.api.service;
+
+import com.weather.api.repository.WeatherRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background enforcement of the retention policy. Each run deletes expired forecasts in small
+ * batches and stops as soon as its time slice is used up; whatever is left is picked up by the
+ * next run, so expiry never holds the repository for long. Deleting forecasts is opt-in through
+ * {@code weather.retention.enabled}; pruning forecast history older than the history retention
+ * window runs either way.
+ */
+@Component
+public class RetentionSweeper {
+    private static final Logger log = LoggerFactory.getLogger(RetentionSweeper.class);
+
+    private final WeatherRepository repository;
+    private final boolean enabled;
+    private final int maxAgeDays;
+    private final int maxPerCity;
+    private final int batchSize;
+    private final long timeSliceNanos;
+    private final int historyRetentionDays;
+
+    private final AtomicLong expiredTotal = new AtomicLong();
+    private final AtomicLong cappedTotal = new AtomicLong();
+
+    public RetentionSweeper(WeatherRepository repository,
+                            @Value("${weather.retention.enabled:false}") boolean enabled,
+                            @Value("${weather.retention.max-age-days:30}") int maxAgeDays,
+                            @Value("${weather.retention.max-per-city:0}") int maxPerCity,
+                            @Value("${weather.retention.batch-size:256}") int batchSize,
+                            @Value("${weather.retention.time-slice-ms:5}") long timeSliceMs,
+                            @Value("${weather.history.retention-days:7}") int historyRetentionDays) {
+        this.repository = repository;
+        this.enabled = enabled;
+        this.maxAgeDays = maxAgeDays;
+        this.maxPerCity = maxPerCity;
+        this.batchSize = Math.max(1, batchSize);
+        this.timeSliceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeSliceMs));
+        this.historyRetentionDays = historyRetentionDays;
+    }
+
+    @Scheduled(fixedDelayString = "${weather.retention.sweep-interval-ms:60000}",
+            initialDelayString = "${weather.retention.sweep-interval-ms:60000}")
+    public void sweep() {
+        sweep(LocalDate.now());
+    }
+
+    /**
+     * Runs one time-sliced pass and returns the number of forecasts removed.
+     */
+    int sweep(LocalDate today) {
+        long deadline = System.nanoTime() + timeSliceNanos;
+        int expired = 0;
+        int capped = 0;
+        if (enabled && maxAgeDays > 0) {
+            LocalDate cutoff = today.minusDays(maxAgeDays);
+            List<String> batch;
+            do {
+                batch = repository.findIdsDatedBefore(cutoff, batchSize);
+                expired += delete(batch);
+            } while (batch.size() == batchSize && System.nanoTime() < deadline);
+        }
+        if (enabled && maxPerCity > 0 && System.nanoTime() < deadline) {
+            List<String> batch;
+            do {
+                batch = repository.findIdsExceedingCityCap(maxPerCity, batchSize);
+                capped += delete(batch);
+            } while (batch.size() == batchSize && System.nanoTime() < deadline);
+        }
+        if (historyRetentionDays > 0) {
+            repository.pruneHistory(today.minusDays(historyRetentionDays).atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+        expiredTotal.addAndGet(expired);
+        cappedTotal.addAndGet(capped);
+        if (expired + capped > 0) {
+            log.info("Retention sweep removed {} expired and {} over-cap forecasts", expired, capped);
+        }
+        return expired + capped;
+    }
+
+    public long getExpiredTotal() {
+        return expiredTotal.get();
+    }
+
+    public long getCappedTotal() {
+        return cappedTotal.get();
+    }
+
+    private int delete(List<String> ids) {
+        for (String id : ids) {
+            repository.deleteById(id);
+        }
+        return ids.size();
+    }
+}
@@ -1,61 +1,121 @@
 package com.weather.api.service;
 
+import com.weather.api.jfr.IngestBatchEvent;
+import com.weather.api.model.CitySuggestion;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastProjection;
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.QueryStatsReport;
 import com.weather.api.model.WeatherForecast;
 import com.weather.api.model.WeatherRequest;
+import com.weather.api.repository.ForecastChangeListener;
+import com.weather.api.repository.ForecastVersionConflictException;
 import com.weather.api.repository.WeatherRepository;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class WeatherService {
+    static final int MAX_SUGGESTIONS = 50;
+
     private final WeatherRepository repository;
+    private final SingleFlight<List<Object>, List<?>> queries = new SingleFlight<>();
+    // Bumped by the repository's change listener, which runs once a write is visible to reads and
+    // before the write call returns. A query issued after a write has returned therefore keys on a
+    // newer generation than any computation that started before the write, so it never joins one
+    // and callers always read their own writes.
+    private final AtomicLong generation = new AtomicLong();
 
     public WeatherService(WeatherRepository repository) {
         this.repository = repository;
+        repository.addListener(new ForecastChangeListener() {
+            @Override
+            public void onForecastChanged(WeatherForecast previous, WeatherForecast current) {
+                generation.incrementAndGet();
+            }
+
+            @Override
+            public void onForecastsCleared() {
+                generation.incrementAndGet();
+            }
+        });
     }
 
     @PostConstruct
     public void initSampleData() {
         LocalDate today = LocalDate.now();
         
-        repository.save(new WeatherForecast("New York", "USA", today, 18.5, "Partly Cloudy", 65, 15.0, "NW", "Partly cloudy with mild temperatures"));
-        repository.save(new WeatherForecast("New York", "USA", today.plusDays(1), 20.0, "Sunny", 55, 10.0, "W", "Clear skies expected"));
-        repository.save(new WeatherForecast("New York", "USA", today.plusDays(2), 16.0, "Rainy", 80, 20.0, "NE", "Rain expected throughout the day"));
+        repository.save(locate(new WeatherForecast("New York", "USA", today, 18.5, "Partly Cloudy", 65, 15.0, "NW", "Partly cloudy with mild temperatures"), 40.7128, -74.006));
+        repository.save(locate(new WeatherForecast("New York", "USA", today.plusDays(1), 20.0, "Sunny", 55, 10.0, "W", "Clear skies expected"), 40.7128, -74.006));
+        repository.save(locate(new WeatherForecast("New York", "USA", today.plusDays(2), 16.0, "Rainy", 80, 20.0, "NE", "Rain expected throughout the day"), 40.7128, -74.006));
         
-        repository.save(new WeatherForecast("London", "UK", today, 12.0, "Cloudy", 75, 18.0, "SW", "Overcast with occasional drizzle"));
-        repository.save(new WeatherForecast("London", "UK", today.plusDays(1), 14.0, "Partly Cloudy", 70, 12.0, "W", "Clouds clearing in the afternoon"));
-        repository.save(new WeatherForecast("London", "UK", today.plusDays(2), 11.0, "Rainy", 85, 25.0, "S", "Heavy rain expected"));
+        repository.save(locate(new WeatherForecast("London", "UK", today, 12.0, "Cloudy", 75, 18.0, "SW", "Overcast with occasional drizzle"), 51.5074, -0.1278));
+        repository.save(locate(new WeatherForecast("London", "UK", today.plusDays(1), 14.0, "Partly Cloudy", 70, 12.0, "W", "Clouds clearing in the afternoon"), 51.5074, -0.1278));
+        repository.save(locate(new WeatherForecast("London", "UK", today.plusDays(2), 11.0, "Rainy", 85, 25.0, "S", "Heavy rain expected"), 51.5074, -0.1278));
         
-        repository.save(new WeatherForecast("Tokyo", "Japan", today, 22.0, "Sunny", 50, 8.0, "E", "Beautiful sunny day"));
-        repository.save(new WeatherForecast("Tokyo", "Japan", today.plusDays(1), 24.0, "Sunny", 45, 5.0, "SE", "Hot and sunny"));
-        repository.save(new WeatherForecast("Tokyo", "Japan", today.plusDays(2), 21.0, "Partly Cloudy", 60, 10.0, "N", "Some clouds moving in"));
+        repository.save(locate(new WeatherForecast("Tokyo", "Japan", today, 22.0, "Sunny", 50, 8.0, "E", "Beautiful sunny day"), 35.6762, 139.6503));
+        repository.save(locate(new WeatherForecast("Tokyo", "Japan", today.plusDays(1), 24.0, "Sunny", 45, 5.0, "SE", "Hot and sunny"), 35.6762, 139.6503));
+        repository.save(locate(new WeatherForecast("Tokyo", "Japan", today.plusDays(2), 21.0, "Partly Cloudy", 60, 10.0, "N", "Some clouds moving in"), 35.6762, 139.6503));
         
-        repository.save(new WeatherForecast("Sydney", "Australia", today, 28.0, "Sunny", 40, 12.0, "NE", "Hot summer day"));
-        repository.save(new WeatherForecast("Sydney", "Australia", today.plusDays(1), 30.0, "Sunny", 35, 15.0, "N", "Very hot, stay hydrated"));
-        repository.save(new WeatherForecast("Sydney", "Australia", today.plusDays(2), 26.0, "Thunderstorm", 70, 30.0, "W", "Afternoon thunderstorms likely"));
+        repository.save(locate(new WeatherForecast("Sydney", "Australia", today, 28.0, "Sunny", 40, 12.0, "NE", "Hot summer day"), -33.8688, 151.2093));
+        repository.save(locate(new WeatherForecast("Sydney", "Australia", today.plusDays(1), 30.0, "Sunny", 35, 15.0, "N", "Very hot, stay hydrated"), -33.8688, 151.2093));
+        repository.save(locate(new WeatherForecast("Sydney", "Australia", today.plusDays(2), 26.0, "Thunderstorm", 70, 30.0, "W", "Afternoon thunderstorms likely"), -33.8688, 151.2093));
         
-        repository.save(new WeatherForecast("Paris", "France", today, 15.0, "Cloudy", 68, 14.0, "W", "Mild with cloud cover"));
-        repository.save(new WeatherForecast("Paris", "France", today.plusDays(1), 17.0, "Partly Cloudy", 60, 10.0, "SW", "Pleasant day expected"));
-        repository.save(new WeatherForecast("Paris", "France", today.plusDays(2), 14.0, "Rainy", 78, 18.0, "NW", "Rain moving in from the west"));
+        repository.save(locate(new WeatherForecast("Paris", "France", today, 15.0, "Cloudy", 68, 14.0, "W", "Mild with cloud cover"), 48.8566, 2.3522));
+        repository.save(locate(new WeatherForecast("Paris", "France", today.plusDays(1), 17.0, "Partly Cloudy", 60, 10.0, "SW", "Pleasant day expected"), 48.8566, 2.3522));
+        repository.save(locate(new WeatherForecast("Paris", "France", today.plusDays(2), 14.0, "Rainy", 78, 18.0, "NW", "Rain moving in from the west"), 48.8566, 2.3522));
     }
 
     public WeatherForecast createForecast(WeatherRequest request) {
-        WeatherForecast forecast = new WeatherForecast(
-                request.getCity(),
-                request.getCountry(),
-                request.getDate(),
-                request.getTemperatureCelsius(),
-                request.getCondition(),
-                request.getHumidity(),
-                request.getWindSpeedKmh(),
-                request.getWindDirection(),
-                request.getDescription()
-        );
-        return repository.save(forecast);
+        return repository.save(toForecast(request));
+    }
+
+    public List<WeatherForecast> createForecasts(List<WeatherRequest> requests) {
+        List<WeatherForecast> forecasts = new ArrayList<>(requests.size());
+        IngestBatchEvent event = IngestBatchEvent.start("bulk-create");
+        for (WeatherRequest request : requests) {
+            forecasts.add(toForecast(request));
+        }
+        List<WeatherForecast> saved = saveForecasts(forecasts);
+        event.finish(saved.size(), 0);
+        return saved;
+    }
+
+    /**
+     * Builds the forecast a create request would store, with its id, without storing it.
+     */
+    public WeatherForecast prepareForecast(WeatherRequest request) {
+        return toForecast(request);
+    }
+
+    public List<WeatherForecast> saveForecasts(List<WeatherForecast> forecasts) {
+        return repository.saveAll(forecasts);
+    }
+
+    public WeatherForecast upsertForecast(WeatherRequest request) {
+        return repository.upsert(toForecast(request));
+    }
+
+    public List<WeatherForecast> upsertForecasts(List<WeatherRequest> requests) {
+        IngestBatchEvent event = IngestBatchEvent.start("bulk-upsert");
+        List<WeatherForecast> stored = new ArrayList<>(requests.size());
+        for (WeatherRequest request : requests) {
+            stored.add(repository.upsert(toForecast(request)));
+        }
+        event.finish(stored.size(), 0);
+        return stored;
     }
 
     public Optional<WeatherForecast> getForecastById(String id) {
@@ -63,49 +123,202 @@ public class WeatherService {
     }
 
     public List<WeatherForecast> getAllForecasts() {
-        return repository.findAll();
+        return coalesce(() -> repository.findAll(), "all");
     }
 
     public List<WeatherForecast> getForecastsByCity(String city) {
-        return repository.findByCity(city);
+        return coalesce(() -> repository.findByCity(city), "city", city);
     }
 
     public List<WeatherForecast> getForecastsByCityAndCountry(String city, String country) {
-        return repository.findByCityAndCountry(city, country);
+        return coalesce(() -> repository.findByCityAndCountry(city, country), "country", city, country);
     }
 
     public List<WeatherForecast> getForecastsByCityAndDate(String city, LocalDate date) {
-        return repository.findByCityAndDate(city, date);
+        return coalesce(() -> repository.findByCityAndDate(city, date), "date", city, date);
     }
 
     public List<WeatherForecast> getForecastsByCityAndDateRange(String city, LocalDate startDate, LocalDate endDate) {
-        return repository.findByCityAndDateRange(city, startDate, endDate);
+        return coalesce(() -> repository.findByCityAndDateRange(city, startDate, endDate),
+                "range", city, startDate, endDate);
+    }
+
+    public Optional<ForecastProjection> getForecastById(String id, ForecastFieldSet fields) {
+        return repository.findById(id, fields);
+    }
+
+    public List<ForecastProjection> getAllForecasts(ForecastFieldSet fields) {
+        return coalesce(() -> repository.findAll(fields), "all", fields);
+    }
+
+    public List<ForecastProjection> getForecastsByCity(String city, ForecastFieldSet fields) {
+        return coalesce(() -> repository.findByCity(city, fields), "city", city, fields);
+    }
+
+    public List<ForecastProjection> getForecastsByCityAndCountry(String city, String country, ForecastFieldSet fields) {
+        return coalesce(() -> repository.findByCityAndCountry(city, country, fields),
+                "country", city, country, fields);
+    }
+
+    public List<ForecastProjection> getForecastsByCityAndDate(String city, LocalDate date, ForecastFieldSet fields) {
+        return coalesce(() -> repository.findByCityAndDate(city, date, fields), "date", city, date, fields);
+    }
+
+    public List<ForecastProjection> getForecastsByCityAndDateRange(String city, LocalDate startDate, LocalDate endDate,
+                                                                   ForecastFieldSet fields) {
+        return coalesce(() -> repository.findByCityAndDateRange(city, startDate, endDate, fields),
+                "range", city, startDate, endDate, fields);
+    }
+
+    public Optional<WeatherForecast> getForecastByIdAsOf(String id, Instant asOf) {
+        return repository.findByIdAsOf(id, asOf);
+    }
+
+    public List<WeatherForecast> getAllForecastsAsOf(Instant asOf) {
+        return repository.findAllAsOf(asOf);
+    }
+
+    public List<WeatherForecast> getForecastsByCityAsOf(String city, Instant asOf) {
+        return filterAsOf(asOf, f -> f.getCity().equalsIgnoreCase(city));
+    }
+
+    public List<WeatherForecast> getForecastsByCityAndCountryAsOf(String city, String country, Instant asOf) {
+        return filterAsOf(asOf, f -> f.getCity().equalsIgnoreCase(city) && f.getCountry().equalsIgnoreCase(country));
+    }
+
+    public List<WeatherForecast> getForecastsByCityAndDateAsOf(String city, LocalDate date, Instant asOf) {
+        return filterAsOf(asOf, f -> f.getCity().equalsIgnoreCase(city) && f.getDate().equals(date));
+    }
+
+    public List<WeatherForecast> getForecastsByCityAndDateRangeAsOf(String city, LocalDate startDate, LocalDate endDate, Instant asOf) {
+        return filterAsOf(asOf, f -> f.getCity().equalsIgnoreCase(city) &&
+                !f.getDate().isBefore(startDate) &&
+                !f.getDate().isAfter(endDate));
+    }
+
+    public List<ForecastVersion> getForecastHistory(String id) {
+        return repository.findHistory(id);
+    }
+
+    public List<WeatherForecast> getForecastsNear(double latitude, double longitude, double radiusKm) {
+        return coalesce(() -> repository.findWithinRadius(latitude, longitude, radiusKm),
+                "near", latitude, longitude, radiusKm);
+    }
+
+    public List<ForecastProjection> getForecastsNear(double latitude, double longitude, double radiusKm,
+                                                     ForecastFieldSet fields) {
+        return coalesce(() -> repository.findWithinRadius(latitude, longitude, radiusKm, fields),
+                "near", latitude, longitude, radiusKm, fields);
+    }
+
+    public List<NearbyCity> getNearestCities(double latitude, double longitude, int k) {
+        return repository.findNearestCities(latitude, longitude, k);
+    }
+
+    public List<CitySuggestion> suggestCities(String query, int limit) {
+        return repository.suggestCities(query, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
     }
 
     public Optional<WeatherForecast> updateForecast(String id, WeatherRequest request) {
-        return repository.findById(id).map(existing -> {
-            existing.setCity(request.getCity());
-            existing.setCountry(request.getCountry());
-            existing.setDate(request.getDate());
-            existing.setTemperatureCelsius(request.getTemperatureCelsius());
-            existing.setCondition(request.getCondition());
-            existing.setHumidity(request.getHumidity());
-            existing.setWindSpeedKmh(request.getWindSpeedKmh());
-            existing.setWindDirection(request.getWindDirection());
-            existing.setDescription(request.getDescription());
-            return repository.save(existing);
-        });
+        return updateForecast(id, request, null);
+    }
+
+    /**
+     * Replaces the forecast if it is still at {@code expectedVersion} ({@code null} for any version).
+     *
+     * @throws ForecastVersionConflictException if it has moved on to another version
+     */
+    public Optional<WeatherForecast> updateForecast(String id, WeatherRequest request, Long expectedVersion) {
+        // Replace rather than mutate the stored instance so the repository can re-index from the old values.
+        WeatherForecast updated = toForecast(request);
+        updated.setId(id);
+        return repository.replace(updated, expectedVersion);
     }
 
     public boolean deleteForecast(String id) {
-        if (repository.existsById(id)) {
-            repository.deleteById(id);
-            return true;
-        }
-        return false;
+        return deleteForecast(id, null);
+    }
+
+    /**
+     * Deletes the forecast if it is at {@code expectedVersion} ({@code null} for any version).
+     *
+     * @throws ForecastVersionConflictException if it is at another version
+     */
+    public boolean deleteForecast(String id, Long expectedVersion) {
+        return repository.deleteById(id, expectedVersion);
     }
 
     public long getForecastCount() {
         return repository.count();
     }
+
+    /**
+     * Number of list queries answered by running them against the repository.
+     */
+    public long getExecutedQueryCount() {
+        return queries.executions();
+    }
+
+    /**
+     * Number of list queries answered by joining an identical query already in flight.
+     */
+    public long getCoalescedQueryCount() {
+        return queries.coalesced();
+    }
+
+    public long getCityFilterRejections() {
+        return repository.getCityFilterRejections();
+    }
+
+    public long getCityFilterFalsePositives() {
+        return repository.getCityFilterFalsePositives();
+    }
+
+    public double getCityFilterFalsePositiveRate() {
+        return repository.getCityFilterFalsePositiveRate();
+    }
+
+    public QueryStatsReport getQueryStats() {
+        return new QueryStatsReport(repository.getSlowQueryThresholdMs(), repository.getQueryShapeStats(),
+                repository.getSlowQueries());
+    }
+
+    /**
+     * Runs a list query through single-flight: identical concurrent queries share one scan and its
+     * result list, which callers must therefore not modify. Only queries of the same generation are
+     * shared, so a query never sees less than the writes that returned before it was issued.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> coalesce(Supplier<List<T>> query, Object... parameters) {
+        return (List<T>) queries.execute(List.of(generation.get(), Arrays.asList(parameters)), query);
+    }
+
+    private List<WeatherForecast> filterAsOf(Instant asOf, Predicate<WeatherForecast> filter) {
+        return repository.findAllAsOf(asOf).stream()
+                .filter(filter)
+                .collect(Collectors.toList());
+    }
+
+    private static WeatherForecast locate(WeatherForecast forecast, double latitude, double longitude) {
+        forecast.setLatitude(latitude);
+        forecast.setLongitude(longitude);
+        return forecast;
+    }
+
+    private WeatherForecast toForecast(WeatherRequest request) {
+        WeatherForecast forecast = new WeatherForecast(
+                request.getCity(),
+                request.getCountry(),
+                request.getDate(),
+                request.getTemperatureCelsius(),
+                request.getCondition(),
+                request.getHumidity(),
+                request.getWindSpeedKmh(),
+                request.getWindDirection(),
+                request.getDescription()
+        );
+        forecast.setLatitude(request.getLatitude());
+        forecast.setLongitude(request.getLongitude());
+        return forecast;
+    }
 }
@@ -0,0 +1,286 @@
+package com.weather.api.service;
+
+import com.weather.api.jfr.IngestBatchEvent;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.model.WeatherRequest;
+import com.weather.api.model.WriteReceipt;
+import com.weather.api.model.WriteStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind path for {@code weather.writes.mode=ASYNC}. Writes are acknowledged as soon as they
+ * are in a {@link WriteRingBuffer}, with a sequence number; a single writer thread applies them in
+ * order, in batches, so consecutive creates reach the repository as one {@code saveAll}. Clients
+ * that need to read their own writes wait on the sequence number with {@link #await}.
+ */
+@Service
+@ConditionalOnProperty(name = "weather.writes.mode", havingValue = "ASYNC")
+public class WriteBehindService {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindService.class);
+    private static final int MAX_RECORDED_FAILURES = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private enum Kind {
+        CREATE, UPSERT, UPDATE, DELETE
+    }
+
+    private final WeatherService weatherService;
+    private final WriteRingBuffer<Write> buffer;
+    private final int batchSize;
+    private final Thread writer;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final Object appliedMonitor = new Object();
+    private final Map<Long, String> failures = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_RECORDED_FAILURES;
+        }
+    };
+    private volatile boolean running = true;
+    // Writer thread only: sequence of the next write taken from the buffer, and failures in the current batch.
+    private long nextSequence = 1;
+    private long batchFailures;
+
+    public WriteBehindService(WeatherService weatherService,
+                              @Value("${weather.writes.buffer-size:8192}") int bufferSize,
+                              @Value("${weather.writes.batch-size:256}") int batchSize) {
+        this.weatherService = weatherService;
+        this.buffer = new WriteRingBuffer<>(bufferSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.writer = new Thread(this::run, "forecast-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public WriteReceipt create(WeatherRequest request) {
+        return createAll(List.of(request));
+    }
+
+    public WriteReceipt createAll(List<WeatherRequest> requests) {
+        // Ids are assigned now, so the client can find its forecasts once the write is applied.
+        List<WeatherForecast> forecasts = new ArrayList<>(requests.size());
+        List<String> ids = new ArrayList<>(requests.size());
+        for (WeatherRequest request : requests) {
+            WeatherForecast forecast = weatherService.prepareForecast(request);
+            forecasts.add(forecast);
+            ids.add(forecast.getId());
+        }
+        return submit(new Write(Kind.CREATE, null, null, forecasts, null), ids);
+    }
+
+    public WriteReceipt upsert(WeatherRequest request) {
+        return upsertAll(List.of(request));
+    }
+
+    public WriteReceipt upsertAll(List<WeatherRequest> requests) {
+        return submit(new Write(Kind.UPSERT, null, requests, null, null), List.of());
+    }
+
+    public WriteReceipt update(String id, WeatherRequest request) {
+        return update(id, request, null);
+    }
+
+    /**
+     * Queues an update that only applies if the forecast is still at {@code expectedVersion} when its
+     * turn comes ({@code null} for any version); a mismatch is reported as the write's error.
+     */
+    public WriteReceipt update(String id, WeatherRequest request, Long expectedVersion) {
+        return submit(new Write(Kind.UPDATE, id, List.of(request), null, expectedVersion), List.of(id));
+    }
+
+    public WriteReceipt delete(String id) {
+        return delete(id, null);
+    }
+
+    public WriteReceipt delete(String id, Long expectedVersion) {
+        return submit(new Write(Kind.DELETE, id, null, null, expectedVersion), List.of(id));
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the write with {@code sequence}, and every write before it,
+     * to be applied.
+     */
+    public WriteStatus await(long sequence, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMs));
+        synchronized (appliedMonitor) {
+            long remaining;
+            while (applied.get() < sequence && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(appliedMonitor, remaining);
+            }
+        }
+        String error;
+        synchronized (failures) {
+            error = failures.get(sequence);
+        }
+        return new WriteStatus(sequence, applied.get(), error);
+    }
+
+    public long getAcceptedSequence() {
+        return accepted.get();
+    }
+
+    public long getAppliedSequence() {
+        return applied.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // The writer drains what was accepted before it stops.
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private WriteReceipt submit(Write write, List<String> ids) {
+        if (!running) {
+            throw new WriteQueueFullException();
+        }
+        long position = buffer.offer(write);
+        if (position < 0) {
+            throw new WriteQueueFullException();
+        }
+        long sequence = position + 1;
+        accepted.accumulateAndGet(sequence, Math::max);
+        LockSupport.unpark(writer);
+        return new WriteReceipt(sequence, ids);
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (true) {
+            batch.clear();
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            long first = nextSequence;
+            nextSequence += batch.size();
+            batchFailures = 0;
+            IngestBatchEvent event = IngestBatchEvent.start("write-behind");
+            try {
+                apply(batch, first);
+            } catch (RuntimeException e) {
+                log.error("Write batch {}..{} failed", first, nextSequence - 1, e);
+                fail(first, e.getMessage());
+            }
+            event.finish(batch.size(), batchFailures);
+            applied.set(nextSequence - 1);
+            synchronized (appliedMonitor) {
+                appliedMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void apply(List<Write> batch, long firstSequence) {
+        int i = 0;
+        while (i < batch.size()) {
+            if (batch.get(i).kind == Kind.CREATE) {
+                // Consecutive creates are saved together.
+                int end = i;
+                while (end < batch.size() && batch.get(end).kind == Kind.CREATE) {
+                    end++;
+                }
+                applyCreates(batch.subList(i, end), firstSequence + i);
+                i = end;
+            } else {
+                applyOne(batch.get(i), firstSequence + i);
+                i++;
+            }
+        }
+    }
+
+    private void applyCreates(List<Write> creates, long firstSequence) {
+        List<WeatherForecast> forecasts = new ArrayList<>();
+        for (Write create : creates) {
+            forecasts.addAll(create.forecasts);
+        }
+        try {
+            weatherService.saveForecasts(forecasts);
+            return;
+        } catch (RuntimeException e) {
+            // Fall through: the forecasts before the failing one are saved; redo the rest one at a time.
+        }
+        for (int i = 0; i < creates.size(); i++) {
+            for (WeatherForecast forecast : creates.get(i).forecasts) {
+                if (weatherService.getForecastById(forecast.getId()).isPresent()) {
+                    continue;
+                }
+                try {
+                    weatherService.saveForecasts(List.of(forecast));
+                } catch (RuntimeException e) {
+                    fail(firstSequence + i, e);
+                }
+            }
+        }
+    }
+
+    private void applyOne(Write write, long sequence) {
+        try {
+            switch (write.kind) {
+                case UPSERT:
+                    weatherService.upsertForecasts(write.requests);
+                    break;
+                case UPDATE:
+                    if (weatherService.updateForecast(write.id, write.requests.get(0), write.expectedVersion).isEmpty()) {
+                        fail(sequence, "Forecast not found: " + write.id);
+                    }
+                    break;
+                case DELETE:
+                    if (!weatherService.deleteForecast(write.id, write.expectedVersion)) {
+                        fail(sequence, "Forecast not found: " + write.id);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected write " + write.kind);
+            }
+        } catch (RuntimeException e) {
+            fail(sequence, e);
+        }
+    }
+
+    private void fail(long sequence, RuntimeException e) {
+        log.warn("Write {} failed", sequence, e);
+        fail(sequence, e.getMessage());
+    }
+
+    private void fail(long sequence, String error) {
+        batchFailures++;
+        synchronized (failures) {
+            failures.put(sequence, error);
+        }
+    }
+
+    private static final class Write {
+        final Kind kind;
+        final String id;
+        final List<WeatherRequest> requests;
+        final List<WeatherForecast> forecasts;
+        final Long expectedVersion;
+
+        Write(Kind kind, String id, List<WeatherRequest> requests, List<WeatherForecast> forecasts,
+              Long expectedVersion) {
+            this.kind = kind;
+            this.id = id;
+            this.requests = requests;
+            this.forecasts = forecasts;
+            this.expectedVersion = expectedVersion;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.weather.api.service;
+
+/**
+ * Thrown when the write-behind buffer has no room for another write.
+ */
+public class WriteQueueFullException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public WriteQueueFullException() {
+        super("Write buffer is full");
+    }
+}
@@ -0,0 +1,71 @@
+package com.weather.api.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer. Producers claim a position with a CAS on the
+ * tail and then publish into its slot; the consumer takes published slots in position order and
+ * stops at the first one that is claimed but not yet written. Neither side takes a lock.
+ */
+final class WriteRingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Written only by the consumer.
+    private volatile long head;
+
+    WriteRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Appends {@code item}.
+     *
+     * @return the item's position, counting from 0, or {@code -1} if the buffer is full
+     */
+    long offer(T item) {
+        while (true) {
+            long position = tail.get();
+            if (position - head >= slots.length()) {
+                return -1;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.set((int) (position & mask), item);
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code max} items, oldest first, into {@code sink}. Consumer thread only.
+     */
+    int drainTo(List<? super T> sink, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (position & mask);
+            T item = slots.get(index);
+            if (item == null) {
+                break;
+            }
+            slots.set(index, null);
+            sink.add(item);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,164 @@
+package com.weather.api;
+
+import com.weather.api.config.ConcurrencyLimiter;
+import com.weather.api.controller.WeatherController;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.model.WeatherRequest;
+import com.weather.api.repository.WeatherRepository;
+import com.weather.api.service.WeatherService;
+import com.weather.api.service.WriteBehindService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation budgets for the hot read paths, measured in bytes per call on the calling thread
+ * after the JIT has warmed up. A change that makes one of these paths allocate noticeably more
+ * fails here before it shows up as GC pressure under load. Budgets leave room for coverage
+ * instrumentation (JaCoCo runs with the tests) and JVM differences, at about one and a half times
+ * what the paths allocated when the budgets were set; tighten them when a path is made leaner.
+ */
+class AllocationBudgetTest {
+    private static final int WARMUP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 10_000;
+    private static final int ROUNDS = 5;
+    private static final int CITIES = 20;
+    private static final int DAYS = 10;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private WeatherRepository repository;
+    private WeatherService service;
+    private WeatherController controller;
+    private String id;
+    private LocalDate today;
+    private ForecastFieldSet fields;
+    // Results are kept here so the JIT cannot drop the calls being measured.
+    private Object sink;
+
+    @BeforeAll
+    static void checkAllocationCounting() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "thread allocation counters unavailable");
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "thread allocation counters unsupported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new WeatherRepository();
+        service = new WeatherService(repository);
+        LocalValidatorFactoryBean validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        ObjectProvider<ConcurrencyLimiter> limiter = beans.getBeanProvider(ConcurrencyLimiter.class);
+        ObjectProvider<WriteBehindService> writeBehind = beans.getBeanProvider(WriteBehindService.class);
+        controller = new WeatherController(service, validator, limiter, writeBehind);
+
+        today = LocalDate.now();
+        List<WeatherRequest> requests = new ArrayList<>();
+        for (int city = 0; city < CITIES; city++) {
+            for (int day = 0; day < DAYS; day++) {
+                requests.add(request("City" + city, today.plusDays(day)));
+            }
+        }
+        List<WeatherForecast> created = service.createForecasts(requests);
+        id = created.get(0).getId();
+        fields = ForecastFieldSet.parse("id,city,date,temperatureCelsius");
+    }
+
+    @Test
+    void repositoryFindById() {
+        assertBudget("repository findById", 128, () -> repository.findById(id));
+    }
+
+    @Test
+    void repositoryFindByCity() {
+        assertBudget("repository findByCity", 1_536, () -> repository.findByCity("City7"));
+    }
+
+    @Test
+    void repositoryFindByCityAndDate() {
+        assertBudget("repository findByCityAndDate", 1_536, () -> repository.findByCityAndDate("City7", today));
+    }
+
+    @Test
+    void repositoryFindByUnknownCity() {
+        assertBudget("repository findByCity (unknown)", 256, () -> repository.findByCity("Atlantis"));
+    }
+
+    @Test
+    void serviceGetForecastsByCity() {
+        assertBudget("service getForecastsByCity", 2_048, () -> service.getForecastsByCity("City7"));
+    }
+
+    @Test
+    void serviceGetForecastsByCityWithFields() {
+        assertBudget("service getForecastsByCity (fields)", 3_072,
+                () -> service.getForecastsByCity("City7", fields));
+    }
+
+    @Test
+    void controllerGetForecastById() {
+        assertBudget("controller GET /{id}", 1_536, () -> controller.getForecastById(id, null, null));
+    }
+
+    @Test
+    void controllerGetForecastsByCity() {
+        assertBudget("controller GET /city/{city}", 2_048,
+                () -> controller.getForecastsByCity("City7", null, null));
+    }
+
+    @Test
+    void controllerGetForecastsByUnknownCity() {
+        assertBudget("controller GET /city/{city} (unknown)", 768,
+                () -> controller.getForecastsByCity("Atlantis", null, null));
+    }
+
+    private void assertBudget(String path, long budgetBytes, Supplier<?> call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sink = call.get();
+        }
+        // The lowest of several rounds, so a one-off allocation elsewhere on the thread is not counted.
+        long thread = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                sink = call.get();
+            }
+            long after = threads.getThreadAllocatedBytes(thread);
+            best = Math.min(best, (after - before) / MEASURED_CALLS);
+        }
+        assertTrue(best <= budgetBytes,
+                path + " allocated " + best + " bytes per call, over its budget of " + budgetBytes);
+    }
+
+    private static WeatherRequest request(String city, LocalDate date) {
+        WeatherRequest request = new WeatherRequest();
+        request.setCity(city);
+        request.setCountry("Testland");
+        request.setDate(date);
+        request.setTemperatureCelsius(20.0);
+        request.setHumidity(60);
+        request.setWindSpeedKmh(10.0);
+        request.setWindDirection("N");
+        request.setCondition("Sunny");
+        request.setDescription("Clear skies");
+        return request;
+    }
+}
@@ -0,0 +1,105 @@
+package com.weather.api.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFormatsConfigTest {
+    private static final TypeReference<List<WeatherForecast>> FORECAST_LIST = new TypeReference<>() {
+    };
+    private static final String[] CITIES = {"London", "Paris", "Tokyo", "New York", "Sydney"};
+    private static final String[] CONDITIONS = {"Sunny", "Partly Cloudy", "Rainy", "Cloudy", "Thunderstorm"};
+
+    private final BinaryFormatsConfig config = new BinaryFormatsConfig();
+    private ObjectMapper json;
+    private ObjectMapper smile;
+    private ObjectMapper cbor;
+    private List<WeatherForecast> forecasts;
+
+    @BeforeEach
+    void setUp() {
+        json = new Jackson2ObjectMapperBuilder().build();
+        smile = config.smileHttpMessageConverter(new Jackson2ObjectMapperBuilder()).getObjectMapper();
+        cbor = config.cborHttpMessageConverter(new Jackson2ObjectMapperBuilder()).getObjectMapper();
+
+        forecasts = new ArrayList<>();
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        for (int i = 0; i < 10_000; i++) {
+            WeatherForecast forecast = new WeatherForecast(CITIES[i % CITIES.length], "Country", today.plusDays(i % 14),
+                    -10.0 + (i % 400) / 10.0, CONDITIONS[i % CONDITIONS.length], i % 100, (i % 80) / 2.0, "NW",
+                    "Forecast number " + i);
+            forecast.setLatitude(51.5074);
+            forecast.setLongitude(-0.1278);
+            forecasts.add(forecast);
+        }
+    }
+
+    @Test
+    void binaryFormats_ShouldRoundTripForecasts() throws Exception {
+        for (ObjectMapper mapper : List.of(smile, cbor)) {
+            List<WeatherForecast> decoded = mapper.readValue(mapper.writeValueAsBytes(forecasts), FORECAST_LIST);
+
+            assertEquals(forecasts.size(), decoded.size());
+            WeatherForecast first = decoded.get(0);
+            assertEquals(forecasts.get(0).getId(), first.getId());
+            assertEquals(forecasts.get(0).getDate(), first.getDate());
+            assertEquals(forecasts.get(0).getTemperatureFahrenheit(), first.getTemperatureFahrenheit());
+            assertEquals(forecasts.get(0).getLatitude(), first.getLatitude());
+        }
+    }
+
+    @Test
+    void binaryFormats_ShouldBeSmallerThanJson() throws Exception {
+        int jsonSize = json.writeValueAsBytes(forecasts).length;
+        int smileSize = smile.writeValueAsBytes(forecasts).length;
+        int cborSize = cbor.writeValueAsBytes(forecasts).length;
+
+        assertTrue(smileSize < jsonSize, "smile " + smileSize + " vs json " + jsonSize);
+        assertTrue(cborSize < jsonSize, "cbor " + cborSize + " vs json " + jsonSize);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark_SmileShouldEncodeAndDecodeFasterThanJson() throws Exception {
+        StringBuilder report = new StringBuilder("format  bytes  encode-ms  decode-ms");
+        Map<String, Long> totalNanos = new HashMap<>();
+        for (String format : List.of("json", "smile", "cbor")) {
+            ObjectMapper mapper = "json".equals(format) ? json : "smile".equals(format) ? smile : cbor;
+            byte[] payload = null;
+            List<WeatherForecast> decoded = null;
+            for (int warmup = 0; warmup < 5; warmup++) {
+                payload = mapper.writeValueAsBytes(forecasts);
+                decoded = mapper.readValue(payload, FORECAST_LIST);
+            }
+            long start = System.nanoTime();
+            for (int round = 0; round < 5; round++) {
+                payload = mapper.writeValueAsBytes(forecasts);
+            }
+            long encodeNanos = (System.nanoTime() - start) / 5;
+            start = System.nanoTime();
+            for (int round = 0; round < 5; round++) {
+                decoded = mapper.readValue(payload, FORECAST_LIST);
+            }
+            long decodeNanos = (System.nanoTime() - start) / 5;
+
+            assertEquals(forecasts.size(), decoded.size());
+            totalNanos.put(format, encodeNanos + decodeNanos);
+            report.append(String.format("%n%-6s %7d %10.2f %10.2f", format, payload.length,
+                    encodeNanos / 1e6, decodeNanos / 1e6));
+        }
+
+        assertTrue(totalNanos.get("smile") < totalNanos.get("json"), report.toString());
+    }
+}
@@ -0,0 +1,113 @@
+package com.weather.api.config;
+
+import com.weather.api.config.ConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiter, 2);
+
+    @Test
+    void classify_ShouldKeepCheapLookupsCriticalAndShedScans() {
+        assertEquals(Priority.CRITICAL, classify("GET", "/api/weather/health"));
+        assertEquals(Priority.CRITICAL, classify("GET", "/api/weather/stats"));
+        assertEquals(Priority.CRITICAL, classify("GET", "/api/weather/latest"));
+        assertEquals(Priority.CRITICAL, classify("GET", "/api/weather/0AB12CDEF3456"));
+        assertEquals(Priority.NORMAL, classify("DELETE", "/api/weather/0AB12CDEF3456"));
+        assertEquals(Priority.NORMAL, classify("GET", "/api/weather/0AB12CDEF3456/history"));
+        assertEquals(Priority.NORMAL, classify("GET", "/api/weather/city/London"));
+        assertEquals(Priority.NORMAL, classify("POST", "/api/weather"));
+        assertEquals(Priority.SHEDDABLE, classify("GET", "/api/weather"));
+        assertEquals(Priority.SHEDDABLE, classify("GET", "/api/weather/nearby"));
+        assertEquals(Priority.SHEDDABLE, classify("GET", "/api/weather/city/London/range"));
+        assertEquals(Priority.SHEDDABLE, classify("POST", "/api/weather/bulk"));
+        assertEquals(Priority.SHEDDABLE, classify("POST", "/api/weather/cities/batch"));
+
+        MockHttpServletRequest asOf = new MockHttpServletRequest("GET", "/api/weather/0AB12CDEF3456");
+        asOf.setParameter("asOf", "2025-01-01T00:00:00Z");
+        assertEquals(Priority.SHEDDABLE, ConcurrencyLimitFilter.classify(asOf));
+    }
+
+    @Test
+    void doFilter_WhenShareIsUsedUp_ShouldRejectWith503AndRetryAfter() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(Priority.SHEDDABLE));
+        }
+        AtomicInteger handled = new AtomicInteger();
+
+        MockHttpServletResponse listing = perform("GET", "/api/weather", handled);
+        MockHttpServletResponse lookup = perform("GET", "/api/weather/0AB12CDEF3456", handled);
+
+        assertEquals(503, listing.getStatus());
+        assertEquals("2", listing.getHeader("Retry-After"));
+        assertEquals(200, lookup.getStatus());
+        assertEquals(1, handled.get());
+        assertEquals(5, limiter.getInFlight());
+    }
+
+    @Test
+    void doFilter_ShouldReleaseTheSlotWhenTheRequestFails() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/weather/city/London");
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(request, new MockHttpServletResponse(), chain));
+
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void doFilter_WithAsyncResponse_ShouldHoldTheSlotUntilComplete() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/weather/cities/batch");
+        request.setAsyncSupported(true);
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                req.startAsync();
+            }
+        });
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertEquals(1, limiter.getInFlight());
+        request.getAsyncContext().complete();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void doFilter_ShouldNotLimitTheChangeStream() {
+        assertTrue(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/api/weather/stream")));
+        assertTrue(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/api/weather/profiling/recording")));
+        assertTrue(filter.shouldNotFilter(new MockHttpServletRequest("GET", "/index.html")));
+    }
+
+    private static Priority classify(String method, String path) {
+        return ConcurrencyLimitFilter.classify(new MockHttpServletRequest(method, path));
+    }
+
+    private MockHttpServletResponse perform(String method, String path, AtomicInteger handled) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, path), response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                handled.incrementAndGet();
+            }
+        }));
+        return response;
+    }
+}
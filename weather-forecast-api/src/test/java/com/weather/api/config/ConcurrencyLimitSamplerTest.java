@@ -0,0 +1,46 @@
+package com.weather.api.config;
+
+import com.weather.api.jfr.ConcurrencyLimitEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitSamplerTest {
+
+    @Test
+    void recording_ShouldCarryTheLimitAndRejectionsPerClass() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 2);
+        assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.SHEDDABLE));
+        assertFalse(limiter.tryAcquire(ConcurrencyLimiter.Priority.SHEDDABLE));
+        Path file = Files.createTempFile("concurrency", ".jfr");
+        try (ConcurrencyLimitSampler sampler = new ConcurrencyLimitSampler(limiter);
+             Recording recording = new Recording()) {
+            recording.enable(ConcurrencyLimitEvent.class).withPeriod(Duration.ofMillis(20));
+            recording.start();
+            Thread.sleep(200);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> samples = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("com.weather.api.ConcurrencyLimit"))
+                    .collect(Collectors.toList());
+            assertFalse(samples.isEmpty());
+            RecordedEvent last = samples.get(samples.size() - 1);
+            assertEquals(2, last.getInt("limit"));
+            assertEquals(1, last.getInt("inFlight"));
+            assertEquals(0, last.getLong("rejectedCritical"));
+            assertEquals(1, last.getLong("rejectedSheddable"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
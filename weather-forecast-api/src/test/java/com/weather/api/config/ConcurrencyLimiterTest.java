@@ -0,0 +1,97 @@
+package com.weather.api.config;
+
+import com.weather.api.config.ConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    void tryAcquire_ShouldGiveEachPriorityItsShareOfTheLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+
+        int sheddable = acquireAll(limiter, Priority.SHEDDABLE);
+        int normal = acquireAll(limiter, Priority.NORMAL);
+        int critical = acquireAll(limiter, Priority.CRITICAL);
+
+        assertEquals(5, sheddable);
+        assertEquals(4, normal);
+        assertEquals(1, critical);
+        assertEquals(10, limiter.getInFlight());
+        assertEquals(1, limiter.getRejections().get(Priority.SHEDDABLE));
+        assertEquals(1, limiter.getRejections().get(Priority.NORMAL));
+        assertEquals(1, limiter.getRejections().get(Priority.CRITICAL));
+    }
+
+    @Test
+    void release_ShouldFreeTheSlot() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 100);
+        acquireAll(limiter, Priority.CRITICAL);
+
+        limiter.release(FAST);
+
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire(Priority.CRITICAL));
+    }
+
+    @Test
+    void limit_WithSteadyLatencyUnderLoad_ShouldGrow() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200);
+
+        for (int i = 0; i < 200; i++) {
+            saturate(limiter, FAST);
+        }
+
+        assertTrue(limiter.getLimit() > 20, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limit_WhenLatencyRises_ShouldShrinkAndStayAboveTheMinimum() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(100, 4, 200);
+        for (int i = 0; i < 50; i++) {
+            saturate(limiter, FAST);
+        }
+        int before = limiter.getLimit();
+
+        for (int i = 0; i < 100; i++) {
+            saturate(limiter, SLOW);
+        }
+
+        assertTrue(limiter.getLimit() < before / 2, before + " -> " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 4);
+    }
+
+    @Test
+    void limit_WhenMostlyIdle_ShouldNotGrow() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200);
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(limiter.tryAcquire(Priority.NORMAL));
+            limiter.release(FAST);
+        }
+
+        assertEquals(20, limiter.getLimit());
+    }
+
+    private static int acquireAll(ConcurrencyLimiter limiter, Priority priority) {
+        int acquired = 0;
+        while (limiter.tryAcquire(priority)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    // Fills the critical share, then releases one request with the given latency.
+    private static void saturate(ConcurrencyLimiter limiter, long latencyNanos) {
+        int acquired = acquireAll(limiter, Priority.CRITICAL);
+        limiter.release(latencyNanos);
+        for (int i = 1; i < acquired; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.weather.api.config;
+
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompressedResponseFilterTest {
+    private static final String BODY = "[" + "{\"city\":\"London\",\"condition\":\"Partly Cloudy\"},".repeat(100) + "{}]";
+
+    private PrecompressedResponseFilter filter;
+    private AtomicInteger renders;
+    private int status;
+    private String body;
+
+    @BeforeEach
+    void setUp() {
+        filter = new PrecompressedResponseFilter(16, 256);
+        renders = new AtomicInteger();
+        status = HttpServletResponse.SC_OK;
+        body = BODY;
+    }
+
+    @Test
+    void acceptsGzip_ShouldHonorQualityValues() {
+        assertTrue(PrecompressedResponseFilter.acceptsGzip("gzip, deflate, br"));
+        assertTrue(PrecompressedResponseFilter.acceptsGzip("br;q=1.0, *;q=0.5"));
+        assertFalse(PrecompressedResponseFilter.acceptsGzip("gzip;q=0"));
+        assertFalse(PrecompressedResponseFilter.acceptsGzip("br, identity"));
+        assertFalse(PrecompressedResponseFilter.acceptsGzip(null));
+    }
+
+    @Test
+    void doFilter_ShouldCompressOnceAndServeRepeatsFromCache() throws Exception {
+        MockHttpServletResponse first = perform("/api/weather", "gzip");
+        MockHttpServletResponse second = perform("/api/weather", "gzip");
+
+        assertEquals(1, renders.get());
+        assertEquals("gzip", second.getHeader("Content-Encoding"));
+        assertEquals("application/json", second.getContentType());
+        assertEquals(BODY, gunzip(first.getContentAsByteArray()));
+        assertEquals(BODY, gunzip(second.getContentAsByteArray()));
+        assertEquals(1, filter.getHitCount());
+        assertEquals(1, filter.getMissCount());
+    }
+
+    @Test
+    void doFilter_ShouldRecompressAfterAnyChangeForGlobalListings() throws Exception {
+        perform("/api/weather", "gzip");
+
+        filter.onForecastChanged(null, forecast("Paris"));
+        perform("/api/weather", "gzip");
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void doFilter_ShouldOnlyInvalidateCityResponsesForTheChangedCity() throws Exception {
+        perform("/api/weather/city/London", "gzip");
+        perform("/api/weather/city/Paris", "gzip");
+
+        filter.onForecastChanged(null, forecast("paris"));
+        perform("/api/weather/city/London", "gzip");
+        perform("/api/weather/city/Paris", "gzip");
+
+        assertEquals(3, renders.get());
+    }
+
+    @Test
+    void doFilter_ShouldInvalidateCityResponsesWhenCleared() throws Exception {
+        perform("/api/weather/city/London/range", "gzip");
+
+        filter.onForecastsCleared();
+        perform("/api/weather/city/London/range", "gzip");
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void doFilter_ShouldPassThroughWhenClientDoesNotAcceptGzip() throws Exception {
+        MockHttpServletResponse response = perform("/api/weather", null);
+
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(BODY, response.getContentAsString());
+        assertEquals(0, filter.getMissCount());
+    }
+
+    @Test
+    void doFilter_ShouldNotCacheSmallOrFailedResponses() throws Exception {
+        body = "[]";
+        MockHttpServletResponse small = perform("/api/weather/city/Nowhere", "gzip");
+        perform("/api/weather/city/Nowhere", "gzip");
+
+        status = HttpServletResponse.SC_NOT_FOUND;
+        body = BODY;
+        MockHttpServletResponse missing = perform("/api/weather/unknown-id", "gzip");
+
+        assertNull(small.getHeader("Content-Encoding"));
+        assertEquals("[]", small.getContentAsString());
+        assertNull(missing.getHeader("Content-Encoding"));
+        assertEquals(404, missing.getStatus());
+        assertEquals(3, renders.get());
+    }
+
+    @Test
+    void doFilter_ShouldSkipUncachedPaths() throws Exception {
+        perform("/api/weather/stats", "gzip");
+        perform("/api/weather/stats", "gzip");
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void doFilter_ShouldLeaveConditionalRequestsToTheController() throws Exception {
+        perform("/api/weather", "gzip");
+
+        MockHttpServletRequest conditional = request("/api/weather", "gzip");
+        conditional.addHeader("If-None-Match", "\"1\"");
+        perform(conditional);
+        MockHttpServletRequest sinceLastRead = request("/api/weather", "gzip");
+        sinceLastRead.addHeader("If-Modified-Since", "Tue, 10 Mar 2026 12:00:00 GMT");
+        perform(sinceLastRead);
+
+        assertEquals(3, renders.get());
+        assertEquals(0, filter.getHitCount());
+    }
+
+    @Test
+    void doFilter_ShouldNotCacheHistoryOrAsOfReads() throws Exception {
+        perform("/api/weather/abc/history", "gzip");
+        perform("/api/weather/abc/history", "gzip");
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest asOf = request("/api/weather", "gzip");
+            asOf.setParameter("asOf", "2026-03-10T12:00:00Z");
+            perform(asOf);
+        }
+
+        assertEquals(4, renders.get());
+        assertEquals(0, filter.getMissCount());
+    }
+
+    private MockHttpServletResponse perform(String path, String acceptEncoding) throws Exception {
+        return perform(request(path, acceptEncoding));
+    }
+
+    private static MockHttpServletRequest request(String path, String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                renders.incrementAndGet();
+                resp.setStatus(status);
+                resp.setContentType("application/json");
+                resp.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }));
+        return response;
+    }
+
+    private static WeatherForecast forecast(String city) {
+        return new WeatherForecast(city, "Country", LocalDate.now(), 20.0, "Sunny", 50, 10.0, "N", "Test");
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.weather.api.config;
+
+import com.weather.api.jfr.ServerTiming;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTimingFilterTest {
+
+    @Test
+    void doFilter_ShouldAddTheHeaderBeforeTheBody() throws Exception {
+        MockHttpServletResponse response = perform(new ServerTimingFilter(0), new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                ServerTiming.start(ServerTiming.Stage.REPOSITORY);
+                ServerTiming.stop(ServerTiming.Stage.REPOSITORY);
+                resp.getOutputStream().write("[]".getBytes(StandardCharsets.UTF_8));
+                resp.flushBuffer();
+                // Stages after the first byte can no longer be reported.
+                ServerTiming.start(ServerTiming.Stage.COMPRESSION);
+                ServerTiming.stop(ServerTiming.Stage.COMPRESSION);
+            }
+        });
+
+        String header = response.getHeader(ServerTimingFilter.HEADER);
+        assertNotNull(header);
+        assertTrue(header.startsWith("db;dur="), header);
+        assertTrue(header.contains("total;dur="), header);
+        assertFalse(header.contains("gzip"), header);
+        assertEquals("[]", response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_WithoutBody_ShouldAddTheHeaderAtTheEnd() throws Exception {
+        MockHttpServletResponse response = perform(new ServerTimingFilter(0), new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            }
+        });
+
+        assertTrue(response.getHeader(ServerTimingFilter.HEADER).startsWith("total;dur="));
+    }
+
+    @Test
+    void doFilter_BelowThreshold_ShouldNotAddTheHeader() throws Exception {
+        MockHttpServletResponse response = perform(new ServerTimingFilter(TimeUnit.MINUTES.toMillis(1)), new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getWriter().write("[]");
+            }
+        });
+
+        assertNull(response.getHeader(ServerTimingFilter.HEADER));
+        assertEquals("[]", response.getContentAsString());
+    }
+
+    private static MockHttpServletResponse perform(ServerTimingFilter filter, HttpServlet servlet) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/weather"), response, new MockFilterChain(servlet));
+        return response;
+    }
+}
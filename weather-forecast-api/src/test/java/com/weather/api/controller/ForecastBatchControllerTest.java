@@ -0,0 +1,222 @@
+package com.weather.api.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.weather.api.config.BinaryFormatsConfig;
+import com.weather.api.model.CityForecasts;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastLookup;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.service.ForecastBatchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ForecastBatchController.class)
+@Import(BinaryFormatsConfig.class)
+class ForecastBatchControllerTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ForecastBatchService batchService;
+
+    @Test
+    void getForecastsByCities_ShouldStreamResultsWithNotFoundMarkers() throws Exception {
+        WeatherForecast london = new WeatherForecast("London", "UK", TODAY, 18.0, "Cloudy", 70, 12.0, "W", "Grey");
+        when(batchService.getForecastsByCities(eq(List.of("London", "Atlantis")), isNull(), isNull(), any()))
+                .thenReturn(List.of(
+                        CompletableFuture.completedFuture(new CityForecasts("London", true, List.of(london))),
+                        CompletableFuture.completedFuture(new CityForecasts("Atlantis", false, List.of()))));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[\"London\",\"Atlantis\"]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].city", is("London")))
+                .andExpect(jsonPath("$[0].found", is(true)))
+                .andExpect(jsonPath("$[0].forecasts[0].date", is("2025-06-01")))
+                .andExpect(jsonPath("$[1].city", is("Atlantis")))
+                .andExpect(jsonPath("$[1].found", is(false)));
+    }
+
+    @Test
+    void getForecastsByCities_WithFailedCity_ShouldStreamAnErrorEntry() throws Exception {
+        when(batchService.getForecastsByCities(anyList(), any(), any(), any()))
+                .thenReturn(List.of(
+                        CompletableFuture.completedFuture(CityForecasts.failed("London", "lookup failed")),
+                        CompletableFuture.completedFuture(new CityForecasts("Atlantis", false, List.of()))));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[\"London\",\"Atlantis\"]}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].error", is("lookup failed")))
+                .andExpect(jsonPath("$[1].error").doesNotExist());
+    }
+
+    @Test
+    void getForecastsByCities_WhenStreamingFails_ShouldCancelPendingLookups() throws Exception {
+        CompletableFuture<CityForecasts> broken = new CompletableFuture<>();
+        broken.completeExceptionally(new IllegalStateException("boom"));
+        CompletableFuture<CityForecasts> pending = new CompletableFuture<>();
+        when(batchService.getForecastsByCities(anyList(), any(), any(), any())).thenReturn(List.of(broken, pending));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[\"London\",\"Paris\"]}"))
+                .andReturn();
+        result.getAsyncResult(5_000);
+
+        assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    void getForecastsByCities_WithDate_ShouldQueryThatDay() throws Exception {
+        when(batchService.getForecastsByCities(anyList(), any(), any(), any())).thenReturn(List.of());
+
+        MvcResult result = mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[\"London\"],\"date\":\"2025-06-01\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        verify(batchService).getForecastsByCities(eq(List.of("London")), eq(TODAY), eq(TODAY), any());
+    }
+
+    @Test
+    void getForecastsByCities_WithSmileAccept_ShouldStreamSmile() throws Exception {
+        when(batchService.getForecastsByCities(anyList(), any(), any(), any())).thenReturn(List.of(
+                CompletableFuture.completedFuture(new CityForecasts("Atlantis", false, List.of()))));
+
+        MvcResult started = mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept("application/x-jackson-smile")
+                        .content("{\"cities\":[\"Atlantis\"]}"))
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn();
+
+        JsonNode body = new ObjectMapper(new SmileFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertEquals("Atlantis", body.get(0).get("city").asText());
+        assertFalse(body.get(0).get("found").asBoolean());
+    }
+
+    @Test
+    void getForecastsByCities_WithDateAndRange_ShouldReturn400() throws Exception {
+        mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[\"London\"],\"date\":\"2025-06-01\",\"startDate\":\"2025-06-01\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getForecastsByCities_WithReversedRange_ShouldReturn400() throws Exception {
+        mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[\"London\"],\"startDate\":\"2025-06-05\",\"endDate\":\"2025-06-01\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getForecastsByCities_WithoutCities_ShouldReturn400() throws Exception {
+        mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"cities\":[]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(batchService);
+    }
+
+    @Test
+    void getForecastsByCities_WithUnsupportedAccept_ShouldReturn406() throws Exception {
+        mockMvc.perform(post("/api/weather/cities/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_PLAIN)
+                        .content("{\"cities\":[\"London\"]}"))
+                .andExpect(status().isNotAcceptable());
+        verifyNoInteractions(batchService);
+    }
+
+    @Test
+    void getForecastsByIds_ShouldStreamFoundForecastsAndMissingIds() throws Exception {
+        WeatherForecast london = new WeatherForecast("London", "UK", TODAY, 18.0, "Cloudy", 70, 12.0, "W", "Grey");
+        when(batchService.getForecastsByIds(eq(List.of(london.getId(), "gone")), any()))
+                .thenReturn(new ForecastLookup(List.of(london), List.of("gone")));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[\"" + london.getId() + "\",\"gone\"]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.forecasts", hasSize(1)))
+                .andExpect(jsonPath("$.forecasts[0].id", is(london.getId())))
+                .andExpect(jsonPath("$.missing[0]", is("gone")));
+    }
+
+    @Test
+    void getForecastsByIds_WithFields_ShouldPassProjection() throws Exception {
+        WeatherForecast london = new WeatherForecast("London", "UK", TODAY, 18.0, "Cloudy", 70, 12.0, "W", "Grey");
+        when(batchService.getForecastsByIds(anyList(), any())).thenAnswer(invocation -> new ForecastLookup(
+                List.of(invocation.<ForecastFieldSet>getArgument(1).project(london)), List.of()));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/lookup")
+                        .param("fields", "city")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[\"" + london.getId() + "\"]}"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(jsonPath("$.forecasts[0].city", is("London")))
+                .andExpect(jsonPath("$.forecasts[0].id").doesNotExist())
+                .andExpect(jsonPath("$.missing", hasSize(0)));
+    }
+
+    @Test
+    void getForecastsByIds_WithoutIds_ShouldReturn400() throws Exception {
+        mockMvc.perform(post("/api/weather/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(batchService);
+    }
+}
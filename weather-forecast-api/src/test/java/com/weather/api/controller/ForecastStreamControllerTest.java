@@ -0,0 +1,46 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.ForecastEventBroadcaster;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(ForecastStreamController.class)
+class ForecastStreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ForecastEventBroadcaster broadcaster;
+
+    @Test
+    void streamChanges_ShouldSubscribeWithCityFilter() throws Exception {
+        when(broadcaster.subscribe("London")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/weather/stream").param("city", "London"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(broadcaster).subscribe("London");
+    }
+
+    @Test
+    void streamChanges_WithoutCity_ShouldSubscribeToAllChanges() throws Exception {
+        when(broadcaster.subscribe(isNull())).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/weather/stream"))
+                .andExpect(request().asyncStarted());
+
+        verify(broadcaster).subscribe(isNull());
+    }
+}
@@ -0,0 +1,50 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.LatestForecastView;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(LatestForecastController.class)
+class LatestForecastControllerTest {
+    private static final String BODY = "{\"startDate\":\"2026-03-10\",\"endDate\":\"2026-03-12\",\"cities\":[]}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LatestForecastView view;
+
+    @Test
+    void getLatestForecasts_ShouldServeThePreSerializedSnapshot() throws Exception {
+        when(view.snapshot()).thenReturn(snapshot());
+
+        mockMvc.perform(get("/api/weather/latest"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", "\"2026-03-10-7\""))
+                .andExpect(content().string(BODY));
+    }
+
+    @Test
+    void getLatestForecasts_WithCurrentETag_ShouldReturn304() throws Exception {
+        when(view.snapshot()).thenReturn(snapshot());
+
+        mockMvc.perform(get("/api/weather/latest").header("If-None-Match", "\"2026-03-10-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    private static LatestForecastView.Snapshot snapshot() {
+        return new LatestForecastView.Snapshot(BODY.getBytes(StandardCharsets.UTF_8), "\"2026-03-10-7\"");
+    }
+}
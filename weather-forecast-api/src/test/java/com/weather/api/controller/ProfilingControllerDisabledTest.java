@@ -0,0 +1,30 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.ProfilingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProfilingController.class)
+class ProfilingControllerDisabledTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProfilingService profilingService;
+
+    @Test
+    void recordingEndpoints_ByDefault_ShouldNotBeMapped() throws Exception {
+        mockMvc.perform(post("/api/weather/profiling/recording")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/weather/profiling/recording/status")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/weather/profiling/recording")).andExpect(status().isNotFound());
+
+        verifyNoInteractions(profilingService);
+    }
+}
@@ -0,0 +1,82 @@
+package com.weather.api.controller;
+
+import com.weather.api.service.ProfilingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = ProfilingController.class, properties = "weather.profiling.enabled=true")
+class ProfilingControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ProfilingService profilingService;
+
+    @Test
+    void startRecording_ShouldReturnStatus() throws Exception {
+        when(profilingService.start()).thenReturn(Map.of("recording", true));
+
+        mockMvc.perform(post("/api/weather/profiling/recording"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.recording").value(true));
+    }
+
+    @Test
+    void startRecording_FromAnotherHost_ShouldReturn403() throws Exception {
+        mockMvc.perform(post("/api/weather/profiling/recording").with(request -> {
+                    request.setRemoteAddr("10.1.2.3");
+                    return request;
+                }))
+                .andExpect(status().isForbidden());
+
+        verify(profilingService, never()).start();
+    }
+
+    @Test
+    void dumpRecording_ShouldStreamTheFileAndDeleteIt() throws Exception {
+        Path file = Files.createTempFile("recording", ".jfr");
+        Files.write(file, new byte[]{1, 2, 3});
+        when(profilingService.dump()).thenReturn(Optional.of(file));
+
+        MvcResult result = mockMvc.perform(get("/api/weather/profiling/recording"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"weather-api.jfr\""))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void dumpRecording_WithoutRecording_ShouldReturn409() throws Exception {
+        when(profilingService.dump()).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/weather/profiling/recording"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void stopRecording_ShouldReturn204OrNotFound() throws Exception {
+        when(profilingService.stop()).thenReturn(true, false);
+
+        mockMvc.perform(delete("/api/weather/profiling/recording")).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/weather/profiling/recording")).andExpect(status().isNotFound());
+    }
+}
@@ -1,18 +1,33 @@
 package com.weather.api.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weather.api.config.BinaryFormatsConfig;
+import com.weather.api.model.CitySuggestion;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.QueryShapeStats;
+import com.weather.api.model.QueryStatsReport;
+import com.weather.api.model.SlowQuery;
 import com.weather.api.model.WeatherForecast;
 import com.weather.api.model.WeatherRequest;
+import com.weather.api.repository.DuplicateForecastException;
+import com.weather.api.repository.ForecastVersionConflictException;
 import com.weather.api.service.WeatherService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
@@ -20,13 +35,19 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(WeatherController.class)
+@Import(BinaryFormatsConfig.class)
 class WeatherControllerTest {
 
     @Autowired
@@ -96,6 +117,103 @@ class WeatherControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void suggestCities_ShouldReturnSuggestions() throws Exception {
+        when(weatherService.suggestCities("lon", 5)).thenReturn(Arrays.asList(new CitySuggestion("London", 3, 1.0)));
+
+        mockMvc.perform(get("/api/weather/cities/suggest").param("q", "lon").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].city", is("London")))
+                .andExpect(jsonPath("$[0].forecastCount", is(3)));
+    }
+
+    @Test
+    void getForecastsNear_ShouldReturnForecasts() throws Exception {
+        when(weatherService.getForecastsNear(40.7, -74.0, 25.0)).thenReturn(Arrays.asList(sampleForecast));
+
+        mockMvc.perform(get("/api/weather/nearby").param("lat", "40.7").param("lon", "-74.0").param("radiusKm", "25"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].city", is("New York")));
+    }
+
+    @Test
+    void getForecastsNear_WithInvalidRadius_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/weather/nearby").param("lat", "40.7").param("lon", "-74.0").param("radiusKm", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getForecastsNear_WithInvalidLatitude_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/weather/nearby").param("lat", "91").param("lon", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getNearestCities_ShouldReturnCities() throws Exception {
+        when(weatherService.getNearestCities(51.5, 0.0, 2))
+                .thenReturn(Arrays.asList(new NearbyCity("London", "UK", 51.5074, -0.1278, 9.2)));
+
+        mockMvc.perform(get("/api/weather/nearest").param("lat", "51.5").param("lon", "0").param("k", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].city", is("London")))
+                .andExpect(jsonPath("$[0].distanceKm", is(9.2)));
+    }
+
+    @Test
+    void getNearestCities_WithInvalidK_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/weather/nearest").param("lat", "51.5").param("lon", "0").param("k", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getForecastById_WithAsOf_ShouldReturnHistoricalVersion() throws Exception {
+        Instant asOf = Instant.parse("2025-06-01T12:00:00Z");
+        when(weatherService.getForecastByIdAsOf("test-id", asOf)).thenReturn(Optional.of(sampleForecast));
+
+        mockMvc.perform(get("/api/weather/test-id").param("asOf", "2025-06-01T12:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.city", is("New York")));
+        verify(weatherService, never()).getForecastById(anyString());
+    }
+
+    @Test
+    void getForecastsByCity_WithAsOf_ShouldQuerySnapshot() throws Exception {
+        Instant asOf = Instant.parse("2025-06-01T12:00:00Z");
+        when(weatherService.getForecastsByCityAsOf("New York", asOf)).thenReturn(Arrays.asList(sampleForecast));
+
+        mockMvc.perform(get("/api/weather/city/New York").param("asOf", "2025-06-01T12:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void getAllForecasts_WithInvalidAsOf_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/weather").param("asOf", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getForecastHistory_WhenExists_ShouldReturnVersions() throws Exception {
+        ForecastVersion version = new ForecastVersion(2, Instant.parse("2025-06-01T12:00:00Z"), null, sampleForecast);
+        when(weatherService.getForecastHistory("test-id")).thenReturn(Arrays.asList(version));
+
+        mockMvc.perform(get("/api/weather/test-id/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].version", is(2)))
+                .andExpect(jsonPath("$[0].recordedAt", is("2025-06-01T12:00:00Z")))
+                .andExpect(jsonPath("$[0].forecast.city", is("New York")));
+    }
+
+    @Test
+    void getForecastHistory_WhenNotExists_ShouldReturn404() throws Exception {
+        when(weatherService.getForecastHistory("non-existent")).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/weather/non-existent/history"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void getForecastsByCity_WhenExists_ShouldReturnForecasts() throws Exception {
         List<WeatherForecast> forecasts = Arrays.asList(sampleForecast);
@@ -272,9 +390,21 @@ class WeatherControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void createForecast_WithInvalidLatitude_ShouldReturn400() throws Exception {
+        validRequest.setLatitude(120.0);
+        validRequest.setLongitude(10.0);
+
+        mockMvc.perform(post("/api/weather")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void updateForecast_WhenExists_ShouldReturnUpdatedForecast() throws Exception {
-        when(weatherService.updateForecast(eq("test-id"), any(WeatherRequest.class))).thenReturn(Optional.of(sampleForecast));
+        when(weatherService.updateForecast(eq("test-id"), any(WeatherRequest.class), isNull()))
+                .thenReturn(Optional.of(sampleForecast));
 
         mockMvc.perform(put("/api/weather/test-id")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -283,9 +413,65 @@ class WeatherControllerTest {
                 .andExpect(jsonPath("$.city", is("New York")));
     }
 
+    @Test
+    void updateForecast_WithIfMatch_ShouldUpdateThatVersionAndReturnNewETag() throws Exception {
+        sampleForecast.setVersion(4);
+        when(weatherService.updateForecast(eq("test-id"), any(WeatherRequest.class), eq(3L)))
+                .thenReturn(Optional.of(sampleForecast));
+
+        mockMvc.perform(put("/api/weather/test-id")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.version", is(4)));
+    }
+
+    @Test
+    void updateForecast_WithStaleIfMatch_ShouldReturn412WithCurrentETag() throws Exception {
+        when(weatherService.updateForecast(eq("test-id"), any(WeatherRequest.class), eq(3L)))
+                .thenThrow(new ForecastVersionConflictException("test-id", 5));
+
+        mockMvc.perform(put("/api/weather/test-id")
+                        .header("If-Match", "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string("ETag", "\"5\""));
+    }
+
+    @Test
+    void deleteForecast_WithIfMatch_ShouldPassTheVersion() throws Exception {
+        when(weatherService.deleteForecast("test-id", 2L)).thenReturn(true);
+
+        mockMvc.perform(delete("/api/weather/test-id").header("If-Match", "\"2\""))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void getForecastById_ShouldReturnETag() throws Exception {
+        sampleForecast.setVersion(7);
+        when(weatherService.getForecastById("test-id")).thenReturn(Optional.of(sampleForecast));
+
+        mockMvc.perform(get("/api/weather/test-id"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""));
+    }
+
+    @Test
+    void expectedVersion_ShouldParseStrongTagsOnly() {
+        assertNull(WeatherController.expectedVersion(null));
+        assertNull(WeatherController.expectedVersion("*"));
+        assertEquals(12L, WeatherController.expectedVersion("\"12\""));
+        assertEquals(WeatherController.UNMATCHABLE_VERSION, WeatherController.expectedVersion("W/\"12\""));
+        assertEquals(WeatherController.UNMATCHABLE_VERSION, WeatherController.expectedVersion("\"abc\""));
+    }
+
     @Test
     void updateForecast_WhenNotExists_ShouldReturn404() throws Exception {
-        when(weatherService.updateForecast(eq("non-existent"), any(WeatherRequest.class))).thenReturn(Optional.empty());
+        when(weatherService.updateForecast(eq("non-existent"), any(WeatherRequest.class), isNull()))
+                .thenReturn(Optional.empty());
 
         mockMvc.perform(put("/api/weather/non-existent")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -295,7 +481,7 @@ class WeatherControllerTest {
 
     @Test
     void deleteForecast_WhenExists_ShouldReturn204() throws Exception {
-        when(weatherService.deleteForecast("test-id")).thenReturn(true);
+        when(weatherService.deleteForecast("test-id", null)).thenReturn(true);
 
         mockMvc.perform(delete("/api/weather/test-id"))
                 .andExpect(status().isNoContent());
@@ -303,7 +489,7 @@ class WeatherControllerTest {
 
     @Test
     void deleteForecast_WhenNotExists_ShouldReturn404() throws Exception {
-        when(weatherService.deleteForecast("non-existent")).thenReturn(false);
+        when(weatherService.deleteForecast("non-existent", null)).thenReturn(false);
 
         mockMvc.perform(delete("/api/weather/non-existent"))
                 .andExpect(status().isNotFound());
@@ -312,9 +498,175 @@ class WeatherControllerTest {
     @Test
     void getStats_ShouldReturnStatistics() throws Exception {
         when(weatherService.getForecastCount()).thenReturn(10L);
+        when(weatherService.getExecutedQueryCount()).thenReturn(7L);
+        when(weatherService.getCoalescedQueryCount()).thenReturn(3L);
+        when(weatherService.getCityFilterRejections()).thenReturn(42L);
 
         mockMvc.perform(get("/api/weather/stats"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.totalForecasts", is(10)));
+                .andExpect(jsonPath("$.totalForecasts", is(10)))
+                .andExpect(jsonPath("$.executedQueries", is(7)))
+                .andExpect(jsonPath("$.coalescedQueries", is(3)))
+                .andExpect(jsonPath("$.cityFilterRejections", is(42)));
+    }
+
+    @Test
+    void getQueryStats_ShouldReturnShapesAndSlowQueries() throws Exception {
+        QueryShapeStats shape = new QueryShapeStats("findByCity", 12, 2, 10, 5000, 24, 850.5, 700, 1200, 4100, 4100, 4100);
+        SlowQuery slow = new SlowQuery(Instant.parse("2026-03-10T12:00:00Z"), "findByCity", "city=Oslo", "scan",
+                500, 2, 4100);
+        when(weatherService.getQueryStats()).thenReturn(new QueryStatsReport(100, List.of(shape), List.of(slow)));
+
+        mockMvc.perform(get("/api/weather/stats/queries"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.slowQueryThresholdMs", is(100)))
+                .andExpect(jsonPath("$.shapes[0].shape", is("findByCity")))
+                .andExpect(jsonPath("$.shapes[0].scanCount", is(10)))
+                .andExpect(jsonPath("$.shapes[0].p99Micros", is(4100)))
+                .andExpect(jsonPath("$.slowQueries[0].parameters", is("city=Oslo")))
+                .andExpect(jsonPath("$.slowQueries[0].accessPath", is("scan")))
+                .andExpect(jsonPath("$.slowQueries[0].timestamp", is("2026-03-10T12:00:00Z")));
+    }
+
+    @Test
+    void getForecastById_WithSmileAccept_ShouldReturnSmile() throws Exception {
+        when(weatherService.getForecastById("test-id")).thenReturn(Optional.of(sampleForecast));
+
+        MvcResult result = mockMvc.perform(get("/api/weather/test-id").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn();
+
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory()).registerModule(new JavaTimeModule());
+        WeatherForecast decoded = smileMapper.readValue(result.getResponse().getContentAsByteArray(), WeatherForecast.class);
+        assertEquals("New York", decoded.getCity());
+        assertEquals(sampleForecast.getDate(), decoded.getDate());
+        assertTrue(smileMapper.readTree(result.getResponse().getContentAsByteArray()).get("date").isTextual());
+    }
+
+    @Test
+    void createForecast_WithCborBody_ShouldReturnCreated() throws Exception {
+        when(weatherService.createForecast(any(WeatherRequest.class))).thenReturn(sampleForecast);
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule());
+
+        mockMvc.perform(post("/api/weather")
+                        .contentType("application/cbor")
+                        .content(cborMapper.writeValueAsBytes(validRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.city", is("New York")));
+    }
+
+    @Test
+    void createForecasts_WithValidRequests_ShouldReturn201() throws Exception {
+        when(weatherService.createForecasts(anyList())).thenReturn(Arrays.asList(sampleForecast, sampleForecast));
+
+        mockMvc.perform(post("/api/weather/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(validRequest, validRequest))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void createForecasts_WithInvalidElement_ShouldReturn400() throws Exception {
+        WeatherRequest invalid = new WeatherRequest();
+
+        mockMvc.perform(post("/api/weather/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(validRequest, invalid))))
+                .andExpect(status().isBadRequest());
+        verify(weatherService, never()).createForecasts(anyList());
+    }
+
+    @Test
+    void createForecasts_WithEmptyList_ShouldReturn400() throws Exception {
+        mockMvc.perform(post("/api/weather/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getForecastsByCity_WithFields_ShouldReturnOnlyRequestedFields() throws Exception {
+        ForecastFieldSet fields = ForecastFieldSet.parse("date,temperatureCelsius,condition");
+        when(weatherService.getForecastsByCity("New York", fields)).thenReturn(List.of(fields.project(sampleForecast)));
+
+        mockMvc.perform(get("/api/weather/city/New York").param("fields", "date,temperatureCelsius,condition"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].condition", is("Sunny")))
+                .andExpect(jsonPath("$[0].date", is(sampleForecast.getDate().toString())))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].id").doesNotExist());
+        verify(weatherService, never()).getForecastsByCity("New York");
+    }
+
+    @Test
+    void getForecastById_WithFields_ShouldReturnProjection() throws Exception {
+        ForecastFieldSet fields = ForecastFieldSet.parse("id,city");
+        when(weatherService.getForecastById("test-id", fields)).thenReturn(Optional.of(fields.project(sampleForecast)));
+
+        mockMvc.perform(get("/api/weather/test-id").param("fields", "id,city"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.city", is("New York")))
+                .andExpect(jsonPath("$.humidity").doesNotExist());
+    }
+
+    @Test
+    void getAllForecasts_WithFieldsAndAsOf_ShouldProjectSnapshot() throws Exception {
+        Instant asOf = Instant.parse("2025-06-01T12:00:00Z");
+        when(weatherService.getAllForecastsAsOf(asOf)).thenReturn(Arrays.asList(sampleForecast));
+
+        mockMvc.perform(get("/api/weather").param("asOf", asOf.toString()).param("fields", "city"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].city", is("New York")))
+                .andExpect(jsonPath("$[0].condition").doesNotExist());
+    }
+
+    @Test
+    void getAllForecasts_WithUnknownField_ShouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/weather").param("fields", "date,nonsense"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createForecast_WithDuplicateNaturalKey_ShouldReturn409() throws Exception {
+        when(weatherService.createForecast(any(WeatherRequest.class))).thenThrow(new DuplicateForecastException("existing-id"));
+
+        mockMvc.perform(post("/api/weather")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isConflict())
+                .andExpect(header().string("Location", "/api/weather/existing-id"));
+    }
+
+    @Test
+    void upsertForecast_ShouldReturnStoredForecast() throws Exception {
+        when(weatherService.upsertForecast(any(WeatherRequest.class))).thenReturn(sampleForecast);
+
+        mockMvc.perform(put("/api/weather")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(sampleForecast.getId())));
+    }
+
+    @Test
+    void upsertForecasts_ShouldReturnStoredForecasts() throws Exception {
+        when(weatherService.upsertForecasts(anyList())).thenReturn(Arrays.asList(sampleForecast));
+
+        mockMvc.perform(put("/api/weather/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(validRequest))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void upsertForecasts_WithInvalidElement_ShouldReturn400() throws Exception {
+        mockMvc.perform(put("/api/weather/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(new WeatherRequest()))))
+                .andExpect(status().isBadRequest());
+        verify(weatherService, never()).upsertForecasts(anyList());
     }
 }
@@ -0,0 +1,132 @@
+package com.weather.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weather.api.config.BinaryFormatsConfig;
+import com.weather.api.model.WeatherRequest;
+import com.weather.api.model.WriteReceipt;
+import com.weather.api.model.WriteStatus;
+import com.weather.api.service.WeatherService;
+import com.weather.api.service.WriteBehindService;
+import com.weather.api.service.WriteQueueFullException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(WeatherController.class)
+@Import(BinaryFormatsConfig.class)
+class WeatherControllerWriteBehindTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private WeatherService weatherService;
+
+    @MockBean
+    private WriteBehindService writeBehind;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private WeatherRequest validRequest;
+
+    @BeforeEach
+    void setUp() {
+        validRequest = new WeatherRequest();
+        validRequest.setCity("Oslo");
+        validRequest.setCountry("Norway");
+        validRequest.setDate(LocalDate.now());
+        validRequest.setTemperatureCelsius(5.0);
+        validRequest.setCondition("Cloudy");
+        validRequest.setHumidity(70);
+        validRequest.setWindSpeedKmh(10.0);
+        validRequest.setWindDirection("N");
+        validRequest.setDescription("Test");
+    }
+
+    @Test
+    void createForecast_ShouldReturn202WithSequence() throws Exception {
+        when(writeBehind.create(any(WeatherRequest.class))).thenReturn(new WriteReceipt(7, List.of("0AB12CDEF3456")));
+
+        mockMvc.perform(post("/api/weather")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.sequence", is(7)))
+                .andExpect(jsonPath("$.ids[0]", is("0AB12CDEF3456")));
+        verify(weatherService, never()).createForecast(any());
+    }
+
+    @Test
+    void createForecasts_ShouldReturn202() throws Exception {
+        when(writeBehind.createAll(anyList())).thenReturn(new WriteReceipt(3, List.of("a", "b")));
+
+        mockMvc.perform(post("/api/weather/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(validRequest, validRequest))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.ids.length()", is(2)));
+    }
+
+    @Test
+    void updateAndDelete_ShouldReturn202() throws Exception {
+        when(writeBehind.update(eq("some-id"), any(WeatherRequest.class), isNull()))
+                .thenReturn(new WriteReceipt(1, List.of("some-id")));
+        when(writeBehind.delete("some-id", null)).thenReturn(new WriteReceipt(2, List.of("some-id")));
+
+        mockMvc.perform(put("/api/weather/some-id")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.sequence", is(1)));
+        mockMvc.perform(delete("/api/weather/some-id"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.sequence", is(2)));
+    }
+
+    @Test
+    void createForecast_WhenBufferIsFull_ShouldReturn503() throws Exception {
+        when(writeBehind.create(any(WeatherRequest.class))).thenThrow(new WriteQueueFullException());
+
+        mockMvc.perform(post("/api/weather")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(validRequest)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void getWriteStatus_ShouldWaitForTheSequence() throws Exception {
+        when(writeBehind.getAcceptedSequence()).thenReturn(5L);
+        when(writeBehind.await(4, 2_000)).thenReturn(new WriteStatus(4, 5, null));
+
+        mockMvc.perform(get("/api/weather/writes/4").param("waitMs", "2000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied", is(true)))
+                .andExpect(jsonPath("$.appliedSequence", is(5)));
+    }
+
+    @Test
+    void getWriteStatus_ForUnknownSequence_ShouldReturn404() throws Exception {
+        when(writeBehind.getAcceptedSequence()).thenReturn(5L);
+
+        mockMvc.perform(get("/api/weather/writes/6"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,59 @@
+package com.weather.api.jfr;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTimingTest {
+
+    @Test
+    void stages_ShouldBeSummedAndListedInTheHeader() throws Exception {
+        ServerTiming timing = ServerTiming.begin();
+        try {
+            ServerTiming.start(ServerTiming.Stage.REPOSITORY);
+            TimeUnit.MILLISECONDS.sleep(2);
+            ServerTiming.stop(ServerTiming.Stage.REPOSITORY);
+            ServerTiming.start(ServerTiming.Stage.REPOSITORY);
+            ServerTiming.stop(ServerTiming.Stage.REPOSITORY);
+            ServerTiming.start(ServerTiming.Stage.SERIALIZATION);
+
+            assertTrue(timing.stageNanos(ServerTiming.Stage.REPOSITORY) >= TimeUnit.MILLISECONDS.toNanos(2));
+            assertEquals(0, timing.stageNanos(ServerTiming.Stage.CACHE));
+            String header = timing.header();
+            assertTrue(header.matches("db;dur=\\d+\\.\\d{3}, ser;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"), header);
+        } finally {
+            timing.end();
+        }
+    }
+
+    @Test
+    void begin_ShouldForgetThePreviousRequest() {
+        ServerTiming timing = ServerTiming.begin();
+        ServerTiming.start(ServerTiming.Stage.CACHE);
+        ServerTiming.stop(ServerTiming.Stage.CACHE);
+        timing.end();
+
+        ServerTiming next = ServerTiming.begin();
+        try {
+            assertSame(timing, next);
+            assertEquals(0, next.stageNanos(ServerTiming.Stage.CACHE));
+            assertTrue(next.header().startsWith("total;dur="));
+        } finally {
+            next.end();
+        }
+    }
+
+    @Test
+    void stages_OutsideATimedRequest_ShouldNotBeRecorded() {
+        ServerTiming.begin().end();
+
+        ServerTiming.start(ServerTiming.Stage.REPOSITORY);
+        ServerTiming.stop(ServerTiming.Stage.REPOSITORY);
+
+        ServerTiming timing = ServerTiming.begin();
+        timing.end();
+        assertEquals(0, timing.stageNanos(ServerTiming.Stage.REPOSITORY));
+    }
+}
@@ -0,0 +1,83 @@
+package com.weather.api.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastFieldSetTest {
+
+    @Test
+    void parse_ShouldReturnNullForBlankSpec() {
+        assertNull(ForecastFieldSet.parse(null));
+        assertNull(ForecastFieldSet.parse("  "));
+        assertNull(ForecastFieldSet.parse(" , "));
+    }
+
+    @Test
+    void parse_ShouldRejectUnknownFields() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> ForecastFieldSet.parse("date,tempC"));
+
+        assertTrue(error.getMessage().contains("tempC"));
+    }
+
+    @Test
+    void parse_ShouldInternEqualSelectionsRegardlessOfOrder() {
+        ForecastFieldSet first = ForecastFieldSet.parse("date,temperatureCelsius,condition");
+        ForecastFieldSet second = ForecastFieldSet.parse(" condition , date,temperatureCelsius,date");
+
+        assertSame(first, second);
+        assertEquals(3, first.size());
+        assertTrue(first.contains(ForecastField.DATE));
+        assertFalse(first.contains(ForecastField.DESCRIPTION));
+    }
+
+    @Test
+    void with_ShouldAddFieldsToAnInternedSet() {
+        ForecastFieldSet fields = ForecastFieldSet.parse("condition");
+
+        ForecastFieldSet widened = fields.with(ForecastField.CITY, ForecastField.DATE);
+
+        assertSame(ForecastFieldSet.parse("city,date,condition"), widened);
+        assertSame(fields, fields.with(ForecastField.CONDITION));
+    }
+
+    @Test
+    void project_ShouldCopyOnlySelectedFields() {
+        WeatherForecast forecast = new WeatherForecast("London", "UK", LocalDate.of(2025, 6, 1), 18.0, "Cloudy", 70, 12.0, "W", "Grey");
+
+        ForecastProjection projection = ForecastFieldSet.parse("condition,date").project(forecast);
+
+        assertEquals(LocalDate.of(2025, 6, 1), projection.get(ForecastField.DATE));
+        assertEquals("Cloudy", projection.get(ForecastField.CONDITION));
+        assertNull(projection.get(ForecastField.DESCRIPTION));
+    }
+
+    @Test
+    void projection_ShouldSerializeSelectedFieldsInCanonicalOrder() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        WeatherForecast forecast = new WeatherForecast("London", "UK", LocalDate.of(2025, 6, 1), 18.0, "Cloudy", 70, 12.0, "W", "Grey");
+
+        JsonNode json = mapper.readTree(mapper.writeValueAsString(
+                ForecastFieldSet.parse("condition,latitude,temperatureCelsius,date").project(forecast)));
+
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> it = json.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        assertEquals(List.of("date", "temperatureCelsius", "condition", "latitude"), names);
+        assertEquals("2025-06-01", json.get("date").asText());
+        assertEquals(18.0, json.get("temperatureCelsius").asDouble());
+        assertTrue(json.get("latitude").isNull());
+    }
+}
@@ -0,0 +1,107 @@
+package com.weather.api.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastIdsTest {
+
+    @AfterEach
+    void tearDown() {
+        ForecastIds.configure(ForecastIds.Mode.COMPACT, 0);
+    }
+
+    @Test
+    void next_InCompactMode_ShouldReturnShortIncreasingIds() {
+        String previous = ForecastIds.next();
+        for (int i = 0; i < 10_000; i++) {
+            String id = ForecastIds.next();
+
+            assertEquals(ForecastIds.LENGTH, id.length());
+            assertTrue(id.compareTo(previous) > 0, id + " should sort after " + previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void parseCompact_ShouldRoundTripAndIgnoreCase() {
+        long id = ForecastIds.nextCompact();
+        String formatted = ForecastIds.format(id);
+
+        assertTrue(id > 0);
+        assertEquals(id, ForecastIds.parseCompact(formatted));
+        assertEquals(id, ForecastIds.parseCompact(formatted.toLowerCase()));
+    }
+
+    @Test
+    void parseCompact_WithOtherStrings_ShouldReturnZero() {
+        assertEquals(0, ForecastIds.parseCompact(UUID.randomUUID().toString()));
+        assertEquals(0, ForecastIds.parseCompact("missing-1"));
+        assertEquals(0, ForecastIds.parseCompact("0000000000OIL"));
+        assertEquals(0, ForecastIds.parseCompact("ZZZZZZZZZZZZZ"));
+        assertEquals(0, ForecastIds.parseCompact(null));
+    }
+
+    @Test
+    void nextCompact_ShouldCarryTimeAndNode() {
+        ForecastIds.configure(ForecastIds.Mode.COMPACT, 517);
+        long before = System.currentTimeMillis();
+
+        long id = ForecastIds.nextCompact();
+
+        long node = (id >>> ForecastIds.SEQUENCE_BITS) & ForecastIds.MAX_NODE_ID;
+        long millis = (id >>> (ForecastIds.SEQUENCE_BITS + ForecastIds.NODE_BITS)) + ForecastIds.EPOCH_MILLIS;
+        assertEquals(517, node);
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() + 1000);
+    }
+
+    @Test
+    void nextCompact_FromConcurrentThreads_ShouldNeverRepeat() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                long[] ids = new long[perThread];
+                for (int i = 0; i < perThread; i++) {
+                    ids[i] = ForecastIds.nextCompact();
+                }
+                return ids;
+            }));
+        }
+        Set<Long> seen = new HashSet<>();
+        for (Future<long[]> future : futures) {
+            for (long id : future.get()) {
+                assertTrue(seen.add(id));
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    @Test
+    void next_InUuidMode_ShouldReturnUuids() {
+        ForecastIds.configure(ForecastIds.Mode.UUID, 0);
+
+        String id = ForecastIds.next();
+
+        assertEquals(id, UUID.fromString(id).toString());
+    }
+
+    @Test
+    void configure_WithNodeOutOfRange_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> ForecastIds.configure(ForecastIds.Mode.COMPACT, 1024));
+    }
+}
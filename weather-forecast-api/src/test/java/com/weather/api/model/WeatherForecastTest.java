@@ -152,6 +152,31 @@ class WeatherForecastTest {
         assertEquals("Heavy rain expected", forecast.getDescription());
     }
 
+    @Test
+    void copyConstructor_ShouldCopyAllFieldsIncludingId() {
+        WeatherForecast original = new WeatherForecast("Tokyo", "Japan", LocalDate.now(), 22.0, "Sunny", 50, 8.0, "E", "Test");
+        original.setLatitude(35.6762);
+
+        WeatherForecast copy = new WeatherForecast(original);
+
+        assertEquals(original.getId(), copy.getId());
+        assertEquals(original.getTemperatureFahrenheit(), copy.getTemperatureFahrenheit());
+        assertEquals(35.6762, copy.getLatitude());
+        assertNotSame(original, copy);
+    }
+
+    @Test
+    void hasLocation_ShouldRequireBothCoordinates() {
+        WeatherForecast forecast = new WeatherForecast();
+        assertFalse(forecast.hasLocation());
+
+        forecast.setLatitude(51.5);
+        assertFalse(forecast.hasLocation());
+
+        forecast.setLongitude(-0.12);
+        assertTrue(forecast.hasLocation());
+    }
+
     @Test
     void temperatureConversion_ShouldRoundToTwoDecimalPlaces() {
         WeatherForecast forecast = new WeatherForecast(
@@ -154,6 +154,16 @@ class WeatherRequestTest {
         assertEquals("Foggy morning", request.getDescription());
     }
 
+    @Test
+    void setCoordinates_ShouldUpdateCoordinates() {
+        WeatherRequest request = new WeatherRequest();
+        request.setLatitude(35.6762);
+        request.setLongitude(139.6503);
+
+        assertEquals(35.6762, request.getLatitude());
+        assertEquals(139.6503, request.getLongitude());
+    }
+
     @Test
     void allFieldsCanBeSetAndRetrieved() {
         WeatherRequest request = new WeatherRequest();
@@ -0,0 +1,196 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.CitySuggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CityIndexTest {
+    private static final LocalDate DATE = LocalDate.of(2025, 12, 1);
+
+    private CityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CityIndex();
+    }
+
+    @Test
+    void suggest_WithPrefix_ShouldReturnMatchingCities() {
+        index.add("London", DATE, "1");
+        index.add("Los Angeles", DATE, "2");
+        index.add("Paris", DATE, "3");
+
+        List<CitySuggestion> suggestions = index.suggest("lo", 10);
+
+        assertEquals(2, suggestions.size());
+        assertTrue(suggestions.stream().allMatch(s -> s.getCity().toLowerCase().startsWith("lo")));
+    }
+
+    @Test
+    void suggest_ShouldRankMorePopularCitiesFirst() {
+        index.add("Paris", DATE, "1");
+        index.add("Parma", DATE, "2");
+        index.add("Parma", DATE, "3");
+
+        List<CitySuggestion> suggestions = index.suggest("par", 10);
+
+        assertEquals("Parma", suggestions.get(0).getCity());
+        assertEquals(2, suggestions.get(0).getForecastCount());
+    }
+
+    @Test
+    void suggest_ShouldHonorLimit() {
+        index.add("Berlin", DATE, "1");
+        index.add("Bern", DATE, "2");
+        index.add("Bergen", DATE, "3");
+
+        assertEquals(2, index.suggest("ber", 2).size());
+    }
+
+    @Test
+    void suggest_WithLimit_ShouldKeepShortestPrefixMatches() {
+        index.add("Santa Clara de Olimar", DATE, "1");
+        index.add("San Jose", DATE, "2");
+        index.add("Sana", DATE, "3");
+        index.add("Sanaa", DATE, "4");
+
+        List<CitySuggestion> suggestions = index.suggest("s", 2);
+
+        assertEquals(List.of("Sana", "Sanaa"), List.of(suggestions.get(0).getCity(), suggestions.get(1).getCity()));
+    }
+
+    @Test
+    void suggest_WithTypo_ShouldReturnFuzzyMatch() {
+        index.add("Tokyo", DATE, "1");
+        index.add("Sydney", DATE, "2");
+
+        List<CitySuggestion> suggestions = index.suggest("tokoy", 5);
+
+        assertFalse(suggestions.isEmpty());
+        assertEquals("Tokyo", suggestions.get(0).getCity());
+    }
+
+    @Test
+    void suggest_ShouldRankPrefixMatchesAheadOfFuzzyMatches() {
+        index.add("New York", DATE, "1");
+        index.add("Newark", DATE, "2");
+
+        List<CitySuggestion> suggestions = index.suggest("new york", 5);
+
+        assertEquals("New York", suggestions.get(0).getCity());
+        assertEquals(1.0, suggestions.get(0).getScore());
+    }
+
+    @Test
+    void suggest_WithBlankQuery_ShouldReturnEmptyList() {
+        index.add("London", DATE, "1");
+
+        assertTrue(index.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void remove_WhenLastReference_ShouldDropCity() {
+        index.add("Madrid", DATE, "1");
+
+        index.remove("Madrid", DATE, "1");
+
+        assertFalse(index.contains("Madrid"));
+        assertTrue(index.suggest("mad", 10).isEmpty());
+        assertTrue(index.suggest("madird", 10).isEmpty());
+    }
+
+    @Test
+    void remove_WhenLastReference_ShouldPruneEmptyTrieNodes() {
+        index.add("Bern", DATE, "1");
+        int nodes = index.trieNodeCount();
+        index.add("Bernalillo", DATE, "2");
+        index.add("Bergen", DATE, "3");
+
+        index.remove("Bernalillo", DATE, "2");
+        index.remove("Bergen", DATE, "3");
+
+        assertEquals(nodes, index.trieNodeCount());
+        assertEquals("Bern", index.suggest("be", 10).get(0).getCity());
+        index.remove("Bern", DATE, "1");
+        assertEquals(1, index.trieNodeCount());
+    }
+
+    @Test
+    void remove_WhenOtherReferencesRemain_ShouldKeepCity() {
+        index.add("Madrid", DATE, "1");
+        index.add("Madrid", DATE, "2");
+
+        index.remove("Madrid", DATE, "1");
+
+        assertTrue(index.contains("madrid"));
+        assertEquals(1, index.suggest("mad", 10).get(0).getForecastCount());
+    }
+
+    @Test
+    void move_ShouldReindexUnderNewCity() {
+        index.add("Rome", DATE, "1");
+
+        index.move("Rome", DATE, "Milan", DATE, "1");
+
+        assertFalse(index.contains("Rome"));
+        assertTrue(index.contains("Milan"));
+    }
+
+    @Test
+    void move_WhenOnlyDateChanges_ShouldReorderCity() {
+        index.add("Rome", DATE, "1");
+        index.add("Rome", DATE.plusDays(1), "2");
+
+        index.move("Rome", DATE, "Rome", DATE.plusDays(2), "1");
+
+        assertEquals(List.of("2", "1"), index.idsFor("rome"));
+    }
+
+    @Test
+    void oldestBeyondCap_ShouldReturnOnlyEachCitysOldestExcess() {
+        index.add("Rome", DATE.plusDays(2), "r3");
+        index.add("Rome", DATE, "r1");
+        index.add("Rome", DATE.plusDays(1), "r2");
+        index.add("Milan", DATE, "m1");
+        index.add("Oslo", DATE.plusDays(1), "o2");
+        index.add("Oslo", DATE, "o1");
+
+        List<String> ids = index.oldestBeyondCap(1, 10);
+
+        assertEquals(3, ids.size());
+        assertTrue(ids.containsAll(List.of("r1", "r2", "o1")));
+        assertEquals(List.of("r1", "r2"), ids.stream().filter(id -> id.startsWith("r")).collect(Collectors.toList()));
+        assertEquals(2, index.oldestBeyondCap(1, 2).size());
+    }
+
+    @Test
+    void clear_ShouldRemoveAllCities() {
+        index.add("Rome", DATE, "1");
+        index.add("Milan", DATE, "2");
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(1, index.trieNodeCount());
+        assertTrue(index.suggest("rom", 10).isEmpty());
+    }
+
+    @Test
+    void remove_ShouldReleaseTheRefsOfLegacyIds() {
+        ForecastRefs refs = new ForecastRefs();
+        CityIndex shared = new CityIndex(refs);
+        shared.add("London", DATE, "legacy-1");
+        shared.add("London", DATE.plusDays(1), "legacy-2");
+
+        shared.remove("London", DATE, "legacy-1");
+
+        assertEquals(List.of("legacy-2"), shared.idsFor("London"));
+        assertEquals(1, refs.legacyCount());
+    }
+}
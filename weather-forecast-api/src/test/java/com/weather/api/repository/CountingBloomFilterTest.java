@@ -0,0 +1,110 @@
+package com.weather.api.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountingBloomFilterTest {
+
+    @Test
+    void constructor_ShouldSizeForKeysAndRate() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+
+        assertEquals(9586, filter.counters());
+        assertEquals(7, filter.hashes());
+    }
+
+    @Test
+    void mightContain_ShouldHaveNoFalseNegativesAndFewFalsePositives() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("city-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("city-" + i));
+            if (filter.mightContain("unknown-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.falsePositiveRate(), 0.005);
+    }
+
+    @Test
+    void remove_ShouldTakeBackOneAdd() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        filter.add("oslo");
+        filter.add("oslo");
+
+        filter.remove("oslo");
+        assertTrue(filter.mightContain("oslo"));
+
+        filter.remove("oslo");
+        assertFalse(filter.mightContain("oslo"));
+        assertEquals(0.0, filter.falsePositiveRate());
+    }
+
+    @Test
+    void saturatedCounters_ShouldNeverBeLowered() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        for (int i = 0; i < 70_000; i++) {
+            filter.add("oslo");
+        }
+        for (int i = 0; i < 70_000; i++) {
+            filter.remove("oslo");
+        }
+
+        assertTrue(filter.mightContain("oslo"));
+    }
+
+    @Test
+    void clear_ShouldEmptyTheFilter() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        filter.add("oslo");
+
+        filter.clear();
+
+        assertFalse(filter.mightContain("oslo"));
+    }
+
+    @Test
+    void concurrentAddsAndRemoves_ShouldKeepCountsExact() throws Exception {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        filter.add("kept");
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    String key = "key-" + thread + "-" + (i % 50);
+                    filter.add(key);
+                    filter.remove(key);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertTrue(filter.mightContain("kept"));
+        filter.remove("kept");
+        assertEquals(0.0, filter.falsePositiveRate());
+    }
+}
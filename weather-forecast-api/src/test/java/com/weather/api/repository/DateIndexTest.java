@@ -0,0 +1,63 @@
+package com.weather.api.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateIndexTest {
+
+    private static final LocalDate JUNE_1 = LocalDate.of(2025, 6, 1);
+    private static final LocalDate JUNE_2 = LocalDate.of(2025, 6, 2);
+    private static final LocalDate JUNE_3 = LocalDate.of(2025, 6, 3);
+
+    private final ForecastRefs refs = new ForecastRefs();
+    private final DateIndex index = new DateIndex(refs);
+
+    @Test
+    void idsBefore_ShouldReturnOlderDatesFirstUpToTheLimit() {
+        index.add(JUNE_2, "b");
+        index.add(JUNE_1, "a");
+        index.add(JUNE_3, "c");
+
+        assertEquals(List.of("a", "b"), index.idsBefore(JUNE_3, 10));
+        assertEquals(List.of("a"), index.idsBefore(JUNE_3, 1));
+    }
+
+    @Test
+    void forEachBetween_ShouldPassIdsWithTheirDates() {
+        index.add(JUNE_1, "a");
+        index.add(JUNE_2, "b");
+        index.add(JUNE_3, "c");
+        List<String> seen = new ArrayList<>();
+
+        index.forEachBetween(JUNE_2, JUNE_3, (date, id) -> seen.add(date + "=" + id));
+
+        assertEquals(List.of("2025-06-02=b", "2025-06-03=c"), seen);
+    }
+
+    @Test
+    void remove_ShouldDropEmptyDatesAndReleaseRefs() {
+        index.add(JUNE_1, "a");
+        index.add(JUNE_1, "a");
+
+        index.remove(JUNE_1, "a");
+
+        assertTrue(index.idsBefore(JUNE_2, 10).isEmpty());
+        assertEquals(0, refs.legacyCount());
+    }
+
+    @Test
+    void clear_ShouldReleaseEveryRef() {
+        index.add(JUNE_1, "a");
+        index.add(JUNE_2, "b");
+
+        index.clear();
+
+        assertTrue(index.idsBefore(JUNE_3, 10).isEmpty());
+        assertEquals(0, refs.legacyCount());
+    }
+}
@@ -0,0 +1,182 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastHistoryTest {
+
+    private static final Instant T0 = Instant.parse("2025-06-01T00:00:00Z");
+    private static final Instant T1 = Instant.parse("2025-06-01T06:00:00Z");
+    private static final Instant T2 = Instant.parse("2025-06-01T12:00:00Z");
+
+    private ForecastHistory history;
+    private WeatherForecast original;
+
+    @BeforeEach
+    void setUp() {
+        history = new ForecastHistory(10);
+        original = new WeatherForecast("London", "UK", LocalDate.of(2025, 6, 2), 12.0, "Cloudy", 75, 18.0, "SW", "Overcast");
+        history.recordCreate(original, T0);
+    }
+
+    @Test
+    void asOf_ShouldReturnVersionValidAtInstant() {
+        WeatherForecast second = revise(original, 14.0, "Sunny");
+        history.recordUpdate(original, second, T1);
+        history.recordUpdate(second, revise(original, 16.0, "Sunny"), T2);
+
+        assertEquals(12.0, history.asOf(original.getId(), T0.plusSeconds(1)).get().getTemperatureCelsius());
+        assertEquals(14.0, history.asOf(original.getId(), T1).get().getTemperatureCelsius());
+        assertEquals(16.0, history.asOf(original.getId(), T2.plusSeconds(60)).get().getTemperatureCelsius());
+    }
+
+    @Test
+    void asOf_ShouldRestoreDerivedAndUnchangedFields() {
+        history.recordUpdate(original, revise(original, 14.0, "Sunny"), T1);
+
+        WeatherForecast restored = history.asOf(original.getId(), T0).get();
+
+        assertEquals("Cloudy", restored.getCondition());
+        assertEquals(53.6, restored.getTemperatureFahrenheit());
+        assertEquals("Overcast", restored.getDescription());
+        assertEquals(original.getId(), restored.getId());
+    }
+
+    @Test
+    void asOf_BeforeCreation_ShouldReturnEmpty() {
+        assertFalse(history.asOf(original.getId(), T0.minusSeconds(1)).isPresent());
+    }
+
+    @Test
+    void asOf_AfterDelete_ShouldReturnEmptyButEarlierInstantsStillResolve() {
+        history.recordDelete(original, T1);
+
+        assertFalse(history.asOf(original.getId(), T2).isPresent());
+        assertTrue(history.asOf(original.getId(), T0).isPresent());
+    }
+
+    @Test
+    void recordUpdate_WithoutChanges_ShouldNotAddVersion() {
+        history.recordUpdate(original, new WeatherForecast(original), T1);
+
+        assertEquals(1, history.versions(original.getId()).size());
+    }
+
+    @Test
+    void versions_ShouldListNewestFirstWithValidityWindows() {
+        history.recordUpdate(original, revise(original, 14.0, "Sunny"), T1);
+
+        List<ForecastVersion> versions = history.versions(original.getId());
+
+        assertEquals(2, versions.size());
+        assertEquals(2, versions.get(0).getVersion());
+        assertEquals(T1, versions.get(0).getRecordedAt());
+        assertNull(versions.get(0).getSupersededAt());
+        assertEquals(1, versions.get(1).getVersion());
+        assertEquals(T0, versions.get(1).getRecordedAt());
+        assertEquals(T1, versions.get(1).getSupersededAt());
+        assertEquals("Cloudy", versions.get(1).getForecast().getCondition());
+    }
+
+    @Test
+    void recordUpdate_BeyondMaxVersions_ShouldDropOldest() {
+        ForecastHistory bounded = new ForecastHistory(2);
+        bounded.recordCreate(original, T0);
+        WeatherForecast second = revise(original, 14.0, "Sunny");
+        bounded.recordUpdate(original, second, T1);
+        bounded.recordUpdate(second, revise(original, 16.0, "Sunny"), T2);
+
+        assertEquals(2, bounded.versions(original.getId()).size());
+        assertFalse(bounded.asOf(original.getId(), T0).isPresent());
+        assertTrue(bounded.asOf(original.getId(), T1).isPresent());
+    }
+
+    @Test
+    void prune_ShouldDropVersionsSupersededBeforeCutoff() {
+        WeatherForecast second = revise(original, 14.0, "Sunny");
+        history.recordUpdate(original, second, T1);
+        history.recordUpdate(second, revise(original, 16.0, "Sunny"), T2);
+
+        history.prune(T2);
+
+        assertEquals(2, history.versions(original.getId()).size());
+        assertFalse(history.asOf(original.getId(), T0).isPresent());
+    }
+
+    @Test
+    void prune_ShouldDropTombstonesDeletedBeforeCutoff() {
+        history.recordDelete(original, T1);
+
+        history.prune(T2);
+
+        assertTrue(history.versions(original.getId()).isEmpty());
+    }
+
+    @Test
+    void allAsOf_ShouldIncludeForecastsDeletedSince() {
+        WeatherForecast other = new WeatherForecast("Paris", "France", LocalDate.of(2025, 6, 2), 15.0, "Cloudy", 68, 14.0, "W", "Mild");
+        history.recordCreate(other, T1);
+        history.recordDelete(original, T2);
+
+        assertEquals(1, history.allAsOf(T0).size());
+        assertEquals(2, history.allAsOf(T1).size());
+        Optional<WeatherForecast> paris = history.allAsOf(T2).stream().findFirst();
+        assertEquals("Paris", paris.get().getCity());
+    }
+
+    @Test
+    void withLiveLookup_ShouldKeepNoChainUntilThereIsHistory() {
+        Map<String, WeatherForecast> live = new HashMap<>();
+        ForecastHistory lazy = new ForecastHistory(10, live::get);
+        live.put(original.getId(), original);
+        lazy.recordCreate(original, T0);
+        lazy.recordUpdate(original, new WeatherForecast(original), T1);
+
+        assertEquals(0, lazy.chainCount());
+        assertFalse(lazy.asOf(original.getId(), T0.minusSeconds(1)).isPresent());
+        assertSame(original, lazy.asOf(original.getId(), T1).get());
+        assertEquals(List.of(original), lazy.allAsOf(T1));
+        assertEquals(T0, lazy.versions(original.getId()).get(0).getRecordedAt());
+
+        WeatherForecast second = revise(original, 14.0, "Sunny");
+        live.put(original.getId(), second);
+        lazy.recordUpdate(original, second, T2);
+
+        assertEquals(1, lazy.chainCount());
+        assertEquals(12.0, lazy.asOf(original.getId(), T1).get().getTemperatureCelsius());
+        assertEquals(14.0, lazy.asOf(original.getId(), T2).get().getTemperatureCelsius());
+        assertEquals(1, lazy.allAsOf(T2).size());
+        assertEquals(2, lazy.versions(original.getId()).size());
+    }
+
+    @Test
+    void withLiveLookup_DeleteShouldLeaveATombstone() {
+        Map<String, WeatherForecast> live = new HashMap<>();
+        ForecastHistory lazy = new ForecastHistory(10, live::get);
+        lazy.recordCreate(original, T0);
+
+        lazy.recordDelete(original, T1);
+
+        assertEquals(1, lazy.chainCount());
+        assertEquals(12.0, lazy.asOf(original.getId(), T0).get().getTemperatureCelsius());
+        assertFalse(lazy.asOf(original.getId(), T1).isPresent());
+    }
+
+    private WeatherForecast revise(WeatherForecast forecast, double temperature, String condition) {
+        WeatherForecast revised = new WeatherForecast(forecast);
+        revised.setTemperatureCelsius(temperature);
+        revised.setCondition(condition);
+        return revised;
+    }
+}
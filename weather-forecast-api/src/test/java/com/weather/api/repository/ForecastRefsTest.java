@@ -0,0 +1,57 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastIds;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastRefsTest {
+
+    private final ForecastRefs refs = new ForecastRefs();
+
+    @Test
+    void compactIds_ShouldBeTheirOwnRefsAndKeepNothing() {
+        String id = ForecastIds.format(123_456_789L);
+
+        assertEquals(123_456_789L, refs.acquire(id));
+        assertEquals(123_456_789L, refs.of(id));
+        assertEquals(id, refs.idOf(123_456_789L));
+        assertEquals(0, refs.legacyCount());
+    }
+
+    @Test
+    void lowerCaseCompactIds_ShouldShareTheRefOfTheirCanonicalSpelling() {
+        String id = ForecastIds.format(123_456_789L);
+
+        assertEquals(123_456_789L, refs.acquire(id.toLowerCase()));
+        assertEquals(id, refs.idOf(123_456_789L));
+        assertEquals(0, refs.legacyCount());
+    }
+
+    @Test
+    void legacyIds_ShouldKeepTheirRefWhileAnyHolderRemains() {
+        String id = "9f3c1a52-7b1e-4f4a-9d8c-2b6f0e1a7c33";
+        long ref = refs.acquire(id);
+        assertEquals(ref, refs.acquire(id));
+        assertNotEquals(0, ref);
+
+        refs.release(ref);
+        assertEquals(ref, refs.of(id));
+        assertEquals(id, refs.idOf(ref));
+
+        refs.release(ref);
+        assertEquals(0, refs.of(id));
+        assertNull(refs.idOf(ref));
+        assertEquals(0, refs.legacyCount());
+    }
+
+    @Test
+    void legacyIds_ShouldGetDistinctRefs() {
+        long first = refs.acquire("first");
+        long second = refs.acquire("second");
+
+        assertNotEquals(first, second);
+        assertEquals("first", refs.idOf(first));
+        assertEquals("second", refs.idOf(second));
+    }
+}
@@ -0,0 +1,167 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoIndexTest {
+
+    private GeoIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new GeoIndex();
+    }
+
+    @Test
+    void haversineKm_ShouldMatchKnownDistance() {
+        double londonToParis = GeoIndex.haversineKm(51.5074, -0.1278, 48.8566, 2.3522);
+
+        assertEquals(343.5, londonToParis, 1.0);
+    }
+
+    @Test
+    void withinRadius_ShouldReturnOnlyPointsInsideRadiusNearestFirst() {
+        WeatherForecast london = located("London", "UK", 51.5074, -0.1278);
+        WeatherForecast paris = located("Paris", "France", 48.8566, 2.3522);
+        WeatherForecast tokyo = located("Tokyo", "Japan", 35.6762, 139.6503);
+        index.add(london);
+        index.add(paris);
+        index.add(tokyo);
+
+        List<String> ids = index.withinRadius(51.0, 0.0, 500);
+
+        assertEquals(List.of(london.getId(), paris.getId()), ids);
+    }
+
+    @Test
+    void withinRadius_ShouldHandleAntimeridian() {
+        WeatherForecast fiji = located("Suva", "Fiji", -18.1416, 178.4419);
+        WeatherForecast samoa = located("Apia", "Samoa", -13.8333, -171.7500);
+        index.add(fiji);
+        index.add(samoa);
+
+        List<String> ids = index.withinRadius(-16.0, 179.9, 1200);
+
+        assertEquals(2, ids.size());
+    }
+
+    @Test
+    void withinRadius_ShouldIgnoreForecastsWithoutCoordinates() {
+        index.add(new WeatherForecast("Nowhere", "None", LocalDate.now(), 10.0, "Sunny", 50, 5.0, "N", "Test"));
+
+        assertTrue(index.withinRadius(0, 0, 20_000).isEmpty());
+    }
+
+    @Test
+    void nearestCities_ShouldReturnDistinctCitiesOrderedByDistance() {
+        index.add(located("London", "UK", 51.5074, -0.1278));
+        index.add(located("London", "UK", 51.5074, -0.1278));
+        index.add(located("Paris", "France", 48.8566, 2.3522));
+        index.add(located("Tokyo", "Japan", 35.6762, 139.6503));
+
+        List<NearbyCity> nearest = index.nearestCities(50.0, 1.0, 2);
+
+        assertEquals(2, nearest.size());
+        assertEquals("Paris", nearest.get(0).getCity());
+        assertEquals("London", nearest.get(1).getCity());
+    }
+
+    @Test
+    void nearestCities_ShouldFindFarAwayCitiesWhenFewExist() {
+        index.add(located("Sydney", "Australia", -33.8688, 151.2093));
+
+        List<NearbyCity> nearest = index.nearestCities(40.7128, -74.0060, 3);
+
+        assertEquals(1, nearest.size());
+        assertEquals("Sydney", nearest.get(0).getCity());
+    }
+
+    @Test
+    void nearestCities_NearPole_ShouldMatchBruteForce() {
+        Random random = new Random(42);
+        List<WeatherForecast> cities = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            WeatherForecast city = located("City" + i, "Arctic", 80 + random.nextDouble() * 10, random.nextDouble() * 360 - 180);
+            cities.add(city);
+            index.add(city);
+        }
+
+        for (int query = 0; query < 50; query++) {
+            double latitude = 85 + random.nextDouble() * 5;
+            double longitude = random.nextDouble() * 360 - 180;
+            List<String> expected = cities.stream()
+                    .sorted(Comparator.comparingDouble(c -> GeoIndex.haversineKm(latitude, longitude, c.getLatitude(), c.getLongitude())))
+                    .limit(3)
+                    .map(WeatherForecast::getCity)
+                    .collect(Collectors.toList());
+
+            List<String> actual = index.nearestCities(latitude, longitude, 3).stream()
+                    .map(NearbyCity::getCity)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void lowerBoundBeyondRing_ShouldNeverExceedDistanceToUnvisitedCells() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            double pointLatitude = random.nextDouble() * 180 - 90;
+            double pointLongitude = random.nextDouble() * 360 - 180;
+            int ring = random.nextInt(60);
+            int rows = Math.abs(row(pointLatitude) - row(latitude));
+            int columns = Math.floorMod((int) Math.floor(pointLongitude) - (int) Math.floor(longitude), 360);
+            if (rows <= ring && Math.min(columns, 360 - columns) <= ring) {
+                continue;
+            }
+
+            double distance = GeoIndex.haversineKm(latitude, longitude, pointLatitude, pointLongitude);
+
+            assertTrue(GeoIndex.lowerBoundBeyondRing(latitude, longitude, ring) <= distance + 1e-6);
+        }
+    }
+
+    @Test
+    void nearestCities_ShouldTreatNamesDifferingOnlyInSpacingAsOneCity() {
+        index.add(located("New  York", "USA", 40.7128, -74.0060));
+        index.add(located("New York", "USA", 40.7306, -73.9352));
+
+        assertEquals(1, index.nearestCities(40.7, -74.0, 5).size());
+    }
+
+    @Test
+    void remove_ShouldDropPointFromIndex() {
+        WeatherForecast london = located("London", "UK", 51.5074, -0.1278);
+        index.add(london);
+
+        index.remove(london);
+
+        assertTrue(index.withinRadius(51.5, 0.0, 100).isEmpty());
+        assertTrue(index.nearestCities(51.5, 0.0, 1).isEmpty());
+    }
+
+    private static int row(double latitude) {
+        return Math.max(0, Math.min(179, (int) Math.floor(latitude) + 90));
+    }
+
+    private WeatherForecast located(String city, String country, double latitude, double longitude) {
+        WeatherForecast forecast = new WeatherForecast(city, country, LocalDate.now(), 20.0, "Sunny", 50, 10.0, "N", "Test description");
+        forecast.setLatitude(latitude);
+        forecast.setLongitude(longitude);
+        return forecast;
+    }
+}
@@ -0,0 +1,159 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeapForecastStoreTest {
+
+    private HeapForecastStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new HeapForecastStore();
+    }
+
+    @Test
+    void compute_ShouldInsertReplaceAndRemove() {
+        WeatherForecast forecast = forecast();
+        WeatherForecast replacement = new WeatherForecast(forecast);
+
+        store.compute(forecast.getId(), previous -> forecast);
+        store.compute(forecast.getId(), previous -> {
+            assertSame(forecast, previous);
+            return replacement;
+        });
+
+        assertSame(replacement, store.get(forecast.getId()));
+        assertEquals(1, store.size());
+
+        store.computeIfPresent(forecast.getId(), previous -> null);
+
+        assertNull(store.get(forecast.getId()));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void computeIfPresent_WhenAbsent_ShouldNotCallRemapping() {
+        store.computeIfPresent(forecast().getId(), previous -> fail("should not be called"));
+
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void get_ShouldMatchCompactIdsIgnoringCase() {
+        WeatherForecast forecast = forecast();
+        store.compute(forecast.getId(), previous -> forecast);
+
+        assertSame(forecast, store.get(forecast.getId().toLowerCase()));
+    }
+
+    @Test
+    void legacyUuidIds_ShouldBeStoredAlongsideCompactIds() {
+        WeatherForecast legacy = forecast();
+        legacy.setId(UUID.randomUUID().toString());
+        WeatherForecast compact = forecast();
+
+        store.compute(legacy.getId(), previous -> legacy);
+        store.compute(compact.getId(), previous -> compact);
+
+        assertSame(legacy, store.get(legacy.getId()));
+        assertSame(compact, store.get(compact.getId()));
+        assertEquals(2, store.size());
+        assertEquals(2, store.values().size());
+        assertNull(store.get("missing"));
+        assertNull(store.get(null));
+    }
+
+    @Test
+    void compute_ManyEntries_ShouldGrowAndReuseRemovedSlots() {
+        List<WeatherForecast> forecasts = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            WeatherForecast forecast = forecast();
+            forecasts.add(forecast);
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        for (int i = 0; i < forecasts.size(); i += 2) {
+            store.computeIfPresent(forecasts.get(i).getId(), previous -> null);
+        }
+        for (int i = 0; i < forecasts.size(); i += 4) {
+            WeatherForecast forecast = forecasts.get(i);
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+
+        assertEquals(15_000, store.size());
+        assertEquals(15_000, store.values().size());
+        for (int i = 0; i < forecasts.size(); i++) {
+            boolean present = i % 2 == 1 || i % 4 == 0;
+            assertEquals(present, store.containsKey(forecasts.get(i).getId()), "index " + i);
+        }
+    }
+
+    @Test
+    void compute_WhenRemappingThrows_ShouldLeaveEntryUnchanged() {
+        WeatherForecast forecast = forecast();
+        store.compute(forecast.getId(), previous -> forecast);
+
+        assertThrows(IllegalStateException.class, () -> store.compute(forecast.getId(), previous -> {
+            throw new IllegalStateException();
+        }));
+
+        assertSame(forecast, store.get(forecast.getId()));
+    }
+
+    @Test
+    void compute_FromConcurrentWriters_ShouldBeAtomicPerId() throws Exception {
+        int writers = 8;
+        int increments = 2_000;
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            WeatherForecast forecast = forecast();
+            ids.add(forecast.getId());
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < increments; i++) {
+                    store.compute(ids.get(i % ids.size()), previous -> {
+                        WeatherForecast next = new WeatherForecast(previous);
+                        next.setHumidity(previous.getHumidity() + 1);
+                        return next;
+                    });
+                    store.compute(forecast().getId(), previous -> null);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (String id : ids) {
+            total += store.get(id).getHumidity();
+        }
+        assertEquals(writers * increments, total);
+        assertEquals(ids.size(), store.size());
+    }
+
+    private static WeatherForecast forecast() {
+        return new WeatherForecast("Oslo", "Norway", LocalDate.now(), 5.0, "Cloudy", 0, 10.0, "N", "Test");
+    }
+}
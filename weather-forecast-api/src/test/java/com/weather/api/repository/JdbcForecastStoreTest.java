@@ -0,0 +1,301 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcForecastStoreTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    private JdbcForecastStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new JdbcForecastStore("jdbc:h2:mem:" + UUID.randomUUID(), 4, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void compute_ShouldRoundTripEveryField() {
+        WeatherForecast forecast = forecast("São Paulo", DAY);
+        forecast.setLatitude(-23.55);
+        forecast.setWindDirection(null);
+        forecast.setVersion(42);
+
+        store.compute(forecast.getId(), previous -> forecast);
+        WeatherForecast stored = store.get(forecast.getId().toLowerCase());
+
+        for (ForecastField field : ForecastField.values()) {
+            assertEquals(field.get(forecast), field.get(stored), field.name());
+        }
+    }
+
+    @Test
+    void computeAll_WhenAChunkFailsToCommit_ShouldKeepEarlierChunksAndReportTheRest() {
+        List<WeatherForecast> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(forecast("City" + i, DAY));
+        }
+        // Longer than the id column, so the second chunk of three fails.
+        batch.get(4).setId("x".repeat(100));
+        List<String> ids = batch.stream().map(WeatherForecast::getId).collect(Collectors.toList());
+
+        ForecastStoreWriteException thrown = assertThrows(ForecastStoreWriteException.class,
+                () -> store.computeAll(ids, (id, previous) -> batch.get(ids.indexOf(id))));
+
+        assertEquals(2, thrown.getDiscarded());
+        assertEquals(3, store.size());
+        assertNotNull(store.get(ids.get(2)));
+        assertNull(store.get(ids.get(3)));
+    }
+
+    @Test
+    void get_WithFields_ShouldDecodeOnlyThoseAndTheId() {
+        WeatherForecast forecast = forecast("São Paulo", DAY);
+        forecast.setLatitude(-23.55);
+        forecast.setVersion(42);
+        store.compute(forecast.getId(), previous -> forecast);
+        ForecastFieldSet fields = ForecastFieldSet.parse("date,temperatureFahrenheit,description,latitude");
+
+        WeatherForecast stored = store.get(forecast.getId(), fields);
+
+        assertEquals(forecast.getId(), stored.getId());
+        for (ForecastField field : ForecastField.values()) {
+            if (fields.contains(field)) {
+                assertEquals(field.get(forecast), field.get(stored), field.name());
+            }
+        }
+        assertNull(stored.getCity());
+        assertNull(stored.getCountry());
+        assertNull(stored.getWindDirection());
+        assertEquals(0, stored.getVersion());
+        WeatherForecast scanned = store.scanCity("são paulo", null, null, fields).get(0);
+        assertEquals(forecast.getDescription(), scanned.getDescription());
+        assertNull(scanned.getCountry());
+    }
+
+    @Test
+    void compute_ShouldInsertReplaceAndRemove() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        store.compute(forecast.getId(), previous -> forecast);
+        store.compute(forecast.getId(), previous -> {
+            WeatherForecast updated = new WeatherForecast(previous);
+            updated.setHumidity(90);
+            return updated;
+        });
+
+        assertEquals(90, store.get(forecast.getId()).getHumidity());
+        assertEquals(1, store.size());
+
+        store.computeIfPresent(forecast.getId(), previous -> null);
+        store.computeIfPresent("missing", previous -> fail("should not be called"));
+
+        assertNull(store.get(forecast.getId()));
+        assertEquals(0, store.size());
+        assertTrue(store.values().isEmpty());
+    }
+
+    @Test
+    void compute_WhenRemappingThrows_ShouldLeaveEntryUnchanged() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        store.compute(forecast.getId(), previous -> forecast);
+
+        assertThrows(DuplicateForecastException.class, () -> store.compute(forecast.getId(), previous -> {
+            throw new DuplicateForecastException("other");
+        }));
+
+        assertEquals("Oslo", store.get(forecast.getId()).getCity());
+    }
+
+    @Test
+    void computeAll_ShouldWriteInBatchesAndKeepResultsBeforeAFailure() {
+        List<WeatherForecast> forecasts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            forecasts.add(forecast("City " + i, DAY));
+        }
+        List<String> ids = forecasts.stream().map(WeatherForecast::getId).collect(Collectors.toList());
+        String failing = ids.get(6);
+
+        assertThrows(DuplicateForecastException.class, () -> store.computeAll(ids, (id, previous) -> {
+            if (id.equals(failing)) {
+                throw new DuplicateForecastException("other");
+            }
+            return forecasts.get(ids.indexOf(id));
+        }));
+
+        assertEquals(6, store.size());
+        assertEquals("City 5", store.get(ids.get(5)).getCity());
+        assertNull(store.get(failing));
+        assertNull(store.get(ids.get(7)));
+    }
+
+    @Test
+    void computeAll_WithRepeatedId_ShouldSeeEarlierResult() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        String id = forecast.getId();
+
+        store.computeAll(List.of(id, id), (key, previous) -> {
+            WeatherForecast next = new WeatherForecast(previous == null ? forecast : previous);
+            next.setHumidity(next.getHumidity() + 1);
+            return next;
+        });
+
+        assertEquals(2, store.get(id).getHumidity());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void scanCity_ShouldReturnOneCityInDateOrderWithinBounds() {
+        for (int day = 9; day >= 0; day--) {
+            WeatherForecast forecast = forecast(day % 2 == 0 ? "New  York" : "Newark", DAY.plusDays(day));
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        WeatherForecast undated = forecast("New York", null);
+        store.compute(undated.getId(), previous -> undated);
+
+        List<LocalDate> dates = store.scanCity(" new york ", DAY.plusDays(2), DAY.plusDays(6)).stream()
+                .map(WeatherForecast::getDate).collect(Collectors.toList());
+
+        assertEquals(List.of(DAY.plusDays(2), DAY.plusDays(4), DAY.plusDays(6)), dates);
+        assertNull(store.scanCity("New York", null, DAY).get(0).getDate());
+        assertEquals(6, store.scanCity("New York", null, null).size());
+    }
+
+    @Test
+    void legacyUuidIds_ShouldBeSupported() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        forecast.setId(UUID.randomUUID().toString());
+
+        store.compute(forecast.getId(), previous -> forecast);
+        store.clear();
+
+        assertNull(store.get(forecast.getId()));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void compute_FromConcurrentWriters_ShouldBeAtomicPerId() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            WeatherForecast forecast = forecast("City " + i, DAY);
+            ids.add(forecast.getId());
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        int writers = 4;
+        int increments = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < increments; i++) {
+                    // Batches cover overlapping ids in different orders, exercising the lock ordering.
+                    List<String> batch = writer % 2 == 0 ? List.of(ids.get(i % 16), ids.get((i + 5) % 16))
+                            : List.of(ids.get((i + 5) % 16), ids.get(i % 16));
+                    store.computeAll(batch, (id, previous) -> {
+                        WeatherForecast next = new WeatherForecast(previous);
+                        next.setHumidity(previous.getHumidity() + 1);
+                        return next;
+                    });
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (String id : ids) {
+            total += store.get(id).getHumidity();
+        }
+        assertEquals(writers * increments * 2, total);
+    }
+
+    @Test
+    void temporaryDatabase_ShouldBeUsableAndRemovedOnClose() {
+        JdbcForecastStore temporary = new JdbcForecastStore("", 2, 100);
+        WeatherForecast forecast = forecast("Oslo", DAY);
+
+        temporary.compute(forecast.getId(), previous -> forecast);
+
+        assertEquals("Oslo", temporary.get(forecast.getId()).getCity());
+        temporary.close();
+    }
+
+    @Test
+    void reopenedDatabase_ShouldKeepItsRowsAndIndexThem(@TempDir Path directory) {
+        String url = "jdbc:h2:file:" + directory.resolve("forecasts").toAbsolutePath();
+        JdbcForecastStore first = new JdbcForecastStore(url, 2, 100);
+        WeatherRepository before = new WeatherRepository(Clock.systemUTC(), 10, first);
+        WeatherForecast oslo = before.save(forecast("Oslo", DAY));
+        before.save(forecast("Oslo", DAY.plusDays(1)));
+        before.save(forecast("Bergen", DAY));
+        first.close();
+
+        JdbcForecastStore reopened = new JdbcForecastStore(url, 2, 100);
+        try {
+            WeatherRepository after = new WeatherRepository(Clock.systemUTC(), 10, reopened);
+
+            assertEquals(3, after.count());
+            assertEquals(2, after.findByCity("oslo").size());
+            assertEquals(oslo.getId(), after.findByNaturalKey("Oslo", "Country", DAY).get().getId());
+            assertEquals(1, after.findHistory(oslo.getId()).size());
+            assertThrows(DuplicateForecastException.class, () -> after.save(forecast("Oslo", DAY)));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void repository_WithJdbcStore_ShouldServeQueriesAndBatchSaves() {
+        WeatherRepository repository = new WeatherRepository(Clock.systemUTC(), 10, store);
+        List<WeatherForecast> batch = new ArrayList<>();
+        for (int day = 0; day < 5; day++) {
+            batch.add(forecast("London", DAY.plusDays(day)));
+        }
+        batch.add(forecast("Paris", DAY));
+
+        repository.saveAll(batch);
+
+        assertEquals(6, repository.count());
+        assertEquals(5, repository.findByCity("london").size());
+        assertEquals(3, repository.findByCityAndDateRange("London", DAY.plusDays(1), DAY.plusDays(3)).size());
+        assertEquals(1, repository.findHistory(batch.get(5).getId()).size());
+
+        repository.deleteById(batch.get(5).getId());
+
+        assertTrue(repository.findByCity("Paris").isEmpty());
+        assertEquals(5, repository.count());
+    }
+
+    private static WeatherForecast forecast(String city, LocalDate date) {
+        return new WeatherForecast(city, "Country", date, 5.0, "Cloudy", 0, 10.0, "N", "Test");
+    }
+}
@@ -0,0 +1,54 @@
+package com.weather.api.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void index_ShouldKeepEveryValueWithinItsBucketsPrecision() {
+        for (long value = 0; value < 5_000_000; value += value < 1000 ? 1 : 997) {
+            long highest = LatencyHistogram.highestEquivalent(LatencyHistogram.index(value));
+
+            assertTrue(highest >= value, "value " + value);
+            assertTrue(highest - value <= Math.max(0, value / 64), "value " + value + " reported as " + highest);
+        }
+    }
+
+    @Test
+    void percentile_ShouldFollowTheRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(100_000, histogram.max());
+        assertEquals(50_050.0, histogram.mean(), 0.001);
+        assertEquals(50_000, histogram.percentile(50), 50_000 / 64.0);
+        assertEquals(99_000, histogram.percentile(99), 99_000 / 64.0);
+        assertEquals(100_000, histogram.percentile(100));
+    }
+
+    @Test
+    void percentile_OfEmptyHistogram_ShouldBeZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.mean());
+    }
+
+    @Test
+    void record_ShouldClampHugeAndNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.percentile(100));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.max());
+        assertEquals(LatencyHistogram.MAX_VALUE / 2.0, histogram.mean(), 1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.weather.api.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void add_ShouldRejectDuplicates() {
+        LongHashSet set = new LongHashSet();
+
+        assertTrue(set.add(7));
+        assertFalse(set.add(7));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(7));
+        assertFalse(set.contains(8));
+    }
+
+    @Test
+    void remove_ShouldKeepCollidingKeysReachable() {
+        LongHashSet set = new LongHashSet();
+        for (long key = 1; key <= 1_000; key++) {
+            set.add(key);
+        }
+
+        for (long key = 1; key <= 1_000; key += 2) {
+            assertTrue(set.remove(key));
+        }
+
+        assertEquals(500, set.size());
+        for (long key = 1; key <= 1_000; key++) {
+            assertEquals(key % 2 == 0, set.contains(key), "key " + key);
+        }
+    }
+
+    @Test
+    void randomOperations_ShouldMatchAHashSet() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) - 1_000L;
+            if (key == 0) {
+                continue;
+            }
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), set.add(key));
+            } else {
+                assertEquals(expected.remove(key), set.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), set.size());
+        long[] members = set.toArray();
+        Arrays.sort(members);
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), members);
+    }
+}
@@ -0,0 +1,47 @@
+package com.weather.api.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongMapTest {
+
+    @Test
+    void put_ShouldReplaceTheValue() {
+        LongLongMap map = new LongLongMap();
+
+        map.put(5, 50);
+        map.put(5, 51);
+
+        assertEquals(1, map.size());
+        assertEquals(51, map.get(5, -1));
+        assertEquals(-1, map.get(6, -1));
+    }
+
+    @Test
+    void randomOperations_ShouldMatchAHashMap() {
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000) + 1L;
+            if (random.nextBoolean()) {
+                long value = random.nextLong();
+                map.put(key, value);
+                expected.put(key, value);
+            } else {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? Long.MIN_VALUE : removed, map.remove(key, Long.MIN_VALUE));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+}
@@ -0,0 +1,230 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmForecastStoreTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 1);
+
+    @TempDir
+    Path directory;
+
+    private LsmForecastStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new LsmForecastStore(directory, 8 * 1024, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void compute_ShouldRoundTripEveryField() {
+        WeatherForecast forecast = forecast("São Paulo", DAY);
+        forecast.setLatitude(-23.55);
+        forecast.setWindDirection(null);
+        forecast.setVersion(42);
+
+        store.compute(forecast.getId(), previous -> forecast);
+        WeatherForecast stored = store.get(forecast.getId().toLowerCase());
+
+        for (ForecastField field : ForecastField.values()) {
+            assertEquals(field.get(forecast), field.get(stored), field.name());
+        }
+    }
+
+    @Test
+    void get_WithFields_ShouldDecodeOnlyThoseAndTheId() {
+        WeatherForecast forecast = forecast("São Paulo", DAY);
+        forecast.setLatitude(-23.55);
+        forecast.setVersion(42);
+        store.compute(forecast.getId(), previous -> forecast);
+        ForecastFieldSet fields = ForecastFieldSet.parse("date,temperatureFahrenheit,description,latitude");
+
+        WeatherForecast stored = store.get(forecast.getId(), fields);
+
+        assertEquals(forecast.getId(), stored.getId());
+        for (ForecastField field : ForecastField.values()) {
+            if (fields.contains(field)) {
+                assertEquals(field.get(forecast), field.get(stored), field.name());
+            }
+        }
+        assertNull(stored.getCity());
+        assertNull(stored.getCountry());
+        assertNull(stored.getWindDirection());
+        assertEquals(0, stored.getVersion());
+        WeatherForecast scanned = store.scanCity("são paulo", null, null, fields).get(0);
+        assertEquals(forecast.getDescription(), scanned.getDescription());
+        assertNull(scanned.getCountry());
+    }
+
+    @Test
+    void compute_MovingToAnotherDate_ShouldReplaceTheOldRecord() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        store.compute(forecast.getId(), previous -> forecast);
+        WeatherForecast moved = new WeatherForecast(forecast);
+        moved.setDate(DAY.plusDays(5));
+
+        store.compute(forecast.getId(), previous -> moved);
+
+        assertEquals(DAY.plusDays(5), store.get(forecast.getId()).getDate());
+        assertEquals(1, store.values().size());
+        assertEquals(1, store.size());
+        assertTrue(store.scanCity("Oslo", DAY, DAY).isEmpty());
+    }
+
+    @Test
+    void computeIfPresent_ReturningNull_ShouldDelete() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        store.compute(forecast.getId(), previous -> forecast);
+
+        store.computeIfPresent(forecast.getId(), previous -> null);
+        store.computeIfPresent("missing", previous -> fail("should not be called"));
+
+        assertNull(store.get(forecast.getId()));
+        assertEquals(0, store.size());
+        assertTrue(store.values().isEmpty());
+    }
+
+    @Test
+    void scanCity_ShouldReturnOneCityInDateOrderWithinBounds() {
+        for (int day = 9; day >= 0; day--) {
+            WeatherForecast forecast = forecast(day % 2 == 0 ? "New  York" : "Newark", DAY.plusDays(day));
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        store.tree().flush();
+        store.tree().awaitBackgroundWork();
+
+        List<LocalDate> dates = store.scanCity(" new york ", DAY.plusDays(2), DAY.plusDays(6)).stream()
+                .map(WeatherForecast::getDate).collect(Collectors.toList());
+
+        assertEquals(List.of(DAY.plusDays(2), DAY.plusDays(4), DAY.plusDays(6)), dates);
+        assertEquals(5, store.scanCity("Newark", null, null).size());
+    }
+
+    @Test
+    void legacyUuidIds_ShouldBeSupported() {
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        forecast.setId(UUID.randomUUID().toString());
+
+        store.compute(forecast.getId(), previous -> forecast);
+
+        assertEquals("Oslo", store.get(forecast.getId()).getCity());
+    }
+
+    @Test
+    void compute_FromConcurrentWritersAcrossFlushes_ShouldBeAtomicPerId() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            WeatherForecast forecast = forecast("City " + i, DAY);
+            ids.add(forecast.getId());
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        int writers = 4;
+        int increments = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < increments; i++) {
+                    store.compute(ids.get(i % ids.size()), previous -> {
+                        WeatherForecast next = new WeatherForecast(previous);
+                        next.setHumidity(previous.getHumidity() + 1);
+                        next.setDate(previous.getDate().plusDays(1));
+                        return next;
+                    });
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        store.tree().awaitBackgroundWork();
+
+        int total = 0;
+        for (String id : ids) {
+            total += store.get(id).getHumidity();
+        }
+        assertEquals(writers * increments, total);
+        assertEquals(ids.size(), store.values().size());
+    }
+
+    @Test
+    void repository_WithLsmStore_ShouldAnswerCityQueriesFromTheStore() {
+        WeatherRepository repository = new WeatherRepository(Clock.systemUTC(), 10, store);
+        repository.save(forecast("London", DAY));
+        repository.save(forecast("London", DAY.plusDays(1)));
+        WeatherForecast paris = repository.save(forecast("Paris", DAY));
+
+        assertEquals(2, repository.findByCity("london").size());
+        assertEquals(1, repository.findByCityAndDate("London", DAY).size());
+        assertEquals(1, repository.findByCityAndDateRange("London", DAY.plusDays(1), DAY.plusDays(3)).size());
+        assertEquals(2, repository.lookupByCity("LONDON", null, null, WeatherForecast::getDate).size());
+        assertTrue(repository.findByCity(" London").isEmpty());
+
+        repository.deleteById(paris.getId());
+
+        assertTrue(repository.findByCity("Paris").isEmpty());
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void reopenedStore_ShouldKeepItsRecordsAndTheRepositoryShouldIndexThem() {
+        WeatherRepository before = new WeatherRepository(Clock.systemUTC(), 10, store);
+        WeatherForecast oslo = before.save(forecast("Oslo", DAY));
+        before.save(forecast("Oslo", DAY.plusDays(1)));
+        before.save(forecast("Bergen", DAY));
+        before.deleteById(before.save(forecast("Tromsø", DAY)).getId());
+
+        store.close();
+        store = new LsmForecastStore(directory, 8 * 1024, 3);
+        WeatherRepository after = new WeatherRepository(Clock.systemUTC(), 10, store);
+
+        assertEquals(3, store.size());
+        assertEquals(2, after.findByCity("oslo").size());
+        assertFalse(after.existsByCity("Tromsø"));
+        assertEquals(oslo.getId(), after.findByNaturalKey("Oslo", "Country", DAY).get().getId());
+        assertThrows(DuplicateForecastException.class, () -> after.save(forecast("Oslo", DAY)));
+    }
+
+    @Test
+    void temporaryDirectory_ShouldBeRemovedOnClose() {
+        LsmForecastStore temporary = new LsmForecastStore(null, 8 * 1024, 3);
+        WeatherForecast forecast = forecast("Oslo", DAY);
+        temporary.compute(forecast.getId(), previous -> forecast);
+
+        assertEquals("Oslo", temporary.get(forecast.getId()).getCity());
+        temporary.close();
+    }
+
+    private static WeatherForecast forecast(String city, LocalDate date) {
+        return new WeatherForecast(city, "Country", date, 5.0, "Cloudy", 0, 10.0, "N", "Test");
+    }
+}
@@ -0,0 +1,288 @@
+package com.weather.api.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmTreeTest {
+
+    @TempDir
+    Path directory;
+
+    private LsmTree tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new LsmTree(directory, 16 * 1024, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tree.close();
+    }
+
+    @Test
+    void get_ShouldSeeLatestValueAcrossMemtableAndSegments() {
+        tree.put("a", bytes("1"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+        tree.put("a", bytes("2"));
+
+        assertEquals("2", string(tree.get("a")));
+        assertEquals(1, tree.segmentCount());
+
+        tree.flush();
+        tree.awaitBackgroundWork();
+
+        assertEquals("2", string(tree.get("a")));
+        assertNull(tree.get("b"));
+    }
+
+    @Test
+    void delete_ShouldShadowOlderSegments() {
+        tree.put("a", bytes("1"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+
+        tree.delete("a");
+
+        assertNull(tree.get("a"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+        assertNull(tree.get("a"));
+        assertTrue(tree.scan("a", "b").isEmpty());
+    }
+
+    @Test
+    void scan_ShouldMergeSourcesInKeyOrderWithNewestWinning() {
+        for (int i = 0; i < 1_000; i++) {
+            tree.put(key(i), bytes("v1-" + i));
+        }
+        tree.flush();
+        tree.awaitBackgroundWork();
+        for (int i = 0; i < 1_000; i += 2) {
+            tree.put(key(i), bytes("v2-" + i));
+        }
+        for (int i = 0; i < 1_000; i += 3) {
+            tree.delete(key(i));
+        }
+
+        NavigableMap<String, byte[]> range = tree.scan(key(100), key(200));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 100; i < 200; i++) {
+            if (i % 3 != 0) {
+                expected.add(key(i));
+            }
+        }
+        assertEquals(expected, new ArrayList<>(range.keySet()));
+        assertEquals("v2-104", string(range.get(key(104))));
+        assertEquals("v1-101", string(range.get(key(101))));
+    }
+
+    @Test
+    void compaction_ShouldMergeSegmentsAndDropDeletes() throws IOException {
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 100; i++) {
+                if (round == 3 && i % 2 == 0) {
+                    tree.delete(key(i));
+                } else {
+                    tree.put(key(i), bytes("r" + round + "-" + i));
+                }
+            }
+            tree.flush();
+        }
+        tree.awaitBackgroundWork();
+
+        assertTrue(tree.compactionCount() > 0);
+        assertEquals(1, tree.segmentCount());
+        assertEquals(1, countSegmentFiles());
+        assertEquals(50, tree.scan("", "\uffff").size());
+        assertNull(tree.get(key(10)));
+        assertEquals("r3-11", string(tree.get(key(11))));
+    }
+
+    @Test
+    void compaction_ShouldLeaveAnOlderLargerTierAloneAndKeepItsDeletes() throws IOException {
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 100; i++) {
+                tree.put(key(i), bytes("r" + round + "-" + i));
+            }
+            tree.flush();
+        }
+        tree.awaitBackgroundWork();
+        long compactions = tree.compactionCount();
+
+        tree.delete(key(11));
+        tree.flush();
+        for (int round = 0; round < 3; round++) {
+            tree.put(key(round), bytes("small-" + round));
+            tree.flush();
+        }
+        tree.awaitBackgroundWork();
+
+        assertEquals(compactions + 1, tree.compactionCount());
+        assertEquals(2, tree.segmentCount());
+        assertEquals(2, countSegmentFiles());
+        // The merged small tier still holds the delete, which must keep shadowing the older segment.
+        assertNull(tree.get(key(11)));
+        assertFalse(tree.scan(key(10), key(20)).containsKey(key(11)));
+        assertEquals("small-2", string(tree.get(key(2))));
+        assertEquals("r3-12", string(tree.get(key(12))));
+    }
+
+    @Test
+    void tierStart_ShouldPickTheNewestRunOfSimilarSizes() {
+        assertEquals(0, LsmTree.tierStart(new long[] {10, 12, 9, 11, 5_000}, 4));
+        assertEquals(1, LsmTree.tierStart(new long[] {10, 5_000, 6_000, 7_000, 8_000}, 4));
+        assertEquals(-1, LsmTree.tierStart(new long[] {10, 12, 5_000, 6_000, 80_000}, 4));
+        assertEquals(-1, LsmTree.tierStart(new long[] {10, 12, 9}, 4));
+    }
+
+    @Test
+    void scan_ShouldApplyMemtableVersionsAfterFrozenAndSegmentVersions() {
+        tree.put("a", bytes("segment"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+        tree.put("a", bytes("memtable"));
+
+        assertEquals("memtable", string(tree.scan("a", "b").get("a")));
+
+        tree.flush();
+        tree.put("a", bytes("newest"));
+
+        assertEquals("newest", string(tree.scan("a", "b").get("a")));
+        tree.awaitBackgroundWork();
+        assertEquals("newest", string(tree.scan("a", "b").get("a")));
+    }
+
+    @Test
+    void writesPastMemtableSize_ShouldFlushInBackground() {
+        for (int i = 0; i < 5_000; i++) {
+            tree.put(key(i), bytes("value-" + i));
+        }
+        tree.awaitBackgroundWork();
+
+        assertTrue(tree.segmentCount() >= 1);
+        for (int i = 0; i < 5_000; i += 97) {
+            assertEquals("value-" + i, string(tree.get(key(i))));
+        }
+    }
+
+    @Test
+    void clear_ShouldRemoveEntriesAndFiles() throws IOException {
+        tree.put("a", bytes("1"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+
+        tree.clear();
+
+        assertNull(tree.get("a"));
+        assertEquals(0, countSegmentFiles());
+    }
+
+    @Test
+    void bloomFilter_ShouldHaveNoFalseNegativesAndFewFalsePositives() {
+        LsmTree.BloomFilter bloom = new LsmTree.BloomFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            bloom.add(key(i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(bloom.mightContain(key(i)));
+            if (bloom.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, falsePositives + " false positives");
+    }
+
+    @Test
+    void reopen_ShouldRecoverSegmentsAndLoggedWrites() {
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 100; i++) {
+                tree.put(key(i), bytes("r" + round + "-" + i));
+            }
+            tree.flush();
+        }
+        tree.awaitBackgroundWork();
+        tree.put(key(1), bytes("flushed"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+        tree.put(key(2), bytes("logged"));
+        tree.delete(key(3));
+
+        tree.close();
+        tree = new LsmTree(directory, 16 * 1024, 4);
+
+        assertEquals("r3-0", string(tree.get(key(0))));
+        assertEquals("flushed", string(tree.get(key(1))));
+        assertEquals("logged", string(tree.get(key(2))));
+        assertNull(tree.get(key(3)));
+        assertEquals(99, tree.scan("", "\uffff").size());
+    }
+
+    @Test
+    void reopen_ShouldIgnoreAWriteCutShortInTheLog() throws IOException {
+        tree.put("a", bytes("1"));
+        tree.put("b", bytes("2"));
+        tree.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            Path log = files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().get();
+            Files.write(log, new byte[] {0, 0, 0, 9, 'c'}, StandardOpenOption.APPEND);
+        }
+
+        tree = new LsmTree(directory, 16 * 1024, 4);
+
+        assertEquals(List.of("a", "b"), new ArrayList<>(tree.scan("", "\uffff").keySet()));
+    }
+
+    @Test
+    void open_ShouldLeaveFilesTheManifestDoesNotListAlone() throws IOException {
+        tree.close();
+        Path notes = Files.writeString(directory.resolve("notes.txt"), "keep me");
+        Path orphan = Files.write(directory.resolve("segment-000099.sst"), new byte[] {1, 2, 3});
+
+        tree = new LsmTree(directory, 16 * 1024, 4);
+        tree.put("a", bytes("1"));
+        tree.flush();
+        tree.awaitBackgroundWork();
+        tree.clear();
+
+        assertTrue(Files.exists(notes));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(orphan));
+        assertNull(tree.get("a"));
+    }
+
+    private long countSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".sst")).count();
+        }
+    }
+
+    private static String key(int i) {
+        return String.format("key-%05d", i);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
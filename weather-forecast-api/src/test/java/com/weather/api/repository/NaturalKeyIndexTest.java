@@ -0,0 +1,75 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastIds;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NaturalKeyIndexTest {
+
+    private final ForecastRefs refs = new ForecastRefs();
+    private final NaturalKeyIndex index = new NaturalKeyIndex(refs);
+
+    @Test
+    void putIfAbsent_ShouldReturnTheOwnerOfATakenKey() {
+        String first = ForecastIds.format(1_000L);
+        String second = ForecastIds.format(2_000L);
+
+        assertNull(index.putIfAbsent("london|uk|2025-06-01", first));
+        assertEquals(first, index.putIfAbsent("london|uk|2025-06-01", second));
+        assertEquals(first, index.get("london|uk|2025-06-01"));
+        assertNull(index.get("paris|france|2025-06-01"));
+    }
+
+    @Test
+    void remove_ShouldOnlyReleaseTheKeyForItsOwner() {
+        index.putIfAbsent("london|uk|2025-06-01", "owner");
+
+        assertFalse(index.remove("london|uk|2025-06-01", "someone-else"));
+        assertTrue(index.remove("london|uk|2025-06-01", "owner"));
+
+        assertNull(index.get("london|uk|2025-06-01"));
+        assertEquals(0, refs.legacyCount());
+    }
+
+    @Test
+    void keysWithTheSameHash_ShouldStayApart() {
+        // "Aa" and "BB" have the same String hash code.
+        index.putIfAbsent("Aa", "first");
+        index.putIfAbsent("BB", "second");
+
+        assertEquals("first", index.get("Aa"));
+        assertEquals("second", index.get("BB"));
+
+        index.remove("Aa", "first");
+        assertEquals("second", index.get("BB"));
+    }
+
+    @Test
+    void manyKeys_ShouldGrowAndSurviveRemovals() {
+        for (int i = 0; i < 20_000; i++) {
+            assertNull(index.putIfAbsent("city-" + i + "|country|2025-06-01", ForecastIds.format(i + 1L)));
+        }
+        for (int i = 0; i < 20_000; i += 2) {
+            assertTrue(index.remove("city-" + i + "|country|2025-06-01", ForecastIds.format(i + 1L)));
+        }
+
+        assertEquals(10_000, index.size());
+        for (int i = 0; i < 20_000; i++) {
+            String expected = i % 2 == 0 ? null : ForecastIds.format(i + 1L);
+            assertEquals(expected, index.get("city-" + i + "|country|2025-06-01"));
+        }
+        assertTrue(index.allocatedBytes() > 0);
+    }
+
+    @Test
+    void clear_ShouldDropEveryKeyAndRef() {
+        index.putIfAbsent("london|uk|2025-06-01", "owner");
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertNull(index.get("london|uk|2025-06-01"));
+        assertEquals(0, refs.legacyCount());
+    }
+}
@@ -0,0 +1,244 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.WeatherForecast;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapForecastStoreTest {
+
+    private OffHeapForecastStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new OffHeapForecastStore();
+    }
+
+    @Test
+    void compute_ShouldRoundTripEveryField() {
+        WeatherForecast forecast = forecast("São Paulo");
+        forecast.setLatitude(-23.55);
+        forecast.setLongitude(-46.63);
+        forecast.setWindDirection(null);
+        forecast.setVersion(42);
+
+        store.compute(forecast.getId(), previous -> forecast);
+        WeatherForecast stored = store.get(forecast.getId());
+
+        assertNotSame(forecast, stored);
+        for (ForecastField field : ForecastField.values()) {
+            assertEquals(field.get(forecast), field.get(stored), field.name());
+        }
+    }
+
+    @Test
+    void get_WithFields_ShouldDecodeOnlyThoseAndTheId() {
+        WeatherForecast forecast = forecast("São Paulo");
+        forecast.setLatitude(-23.55);
+        forecast.setVersion(42);
+        store.compute(forecast.getId(), previous -> forecast);
+        ForecastFieldSet fields = ForecastFieldSet.parse("date,temperatureFahrenheit,description,latitude");
+
+        WeatherForecast stored = store.get(forecast.getId(), fields);
+
+        assertEquals(forecast.getId(), stored.getId());
+        for (ForecastField field : ForecastField.values()) {
+            if (fields.contains(field)) {
+                assertEquals(field.get(forecast), field.get(stored), field.name());
+            }
+        }
+        assertNull(stored.getCity());
+        assertNull(stored.getCountry());
+        assertNull(stored.getWindDirection());
+        assertEquals(0, stored.getVersion());    }
+
+    @Test
+    void compute_ShouldInsertReplaceAndRemove() {
+        WeatherForecast forecast = forecast("Oslo");
+        store.compute(forecast.getId(), previous -> forecast);
+
+        store.compute(forecast.getId(), previous -> {
+            WeatherForecast updated = new WeatherForecast(previous);
+            updated.setDescription("x".repeat(500));
+            return updated;
+        });
+
+        assertEquals(500, store.get(forecast.getId()).getDescription().length());
+        assertEquals(1, store.size());
+
+        store.computeIfPresent(forecast.getId(), previous -> null);
+
+        assertNull(store.get(forecast.getId()));
+        assertEquals(0, store.size());
+        assertTrue(store.values().isEmpty());
+    }
+
+    @Test
+    void legacyUuidIds_ShouldBeStoredAlongsideCompactIds() {
+        WeatherForecast legacy = forecast("Oslo");
+        legacy.setId(UUID.randomUUID().toString());
+        WeatherForecast compact = forecast("Bergen");
+
+        store.compute(legacy.getId(), previous -> legacy);
+        store.compute(compact.getId(), previous -> compact);
+
+        assertEquals("Oslo", store.get(legacy.getId()).getCity());
+        assertEquals("Bergen", store.get(compact.getId().toLowerCase()).getCity());
+        assertEquals(2, store.values().size());
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertNull(store.get(legacy.getId()));
+    }
+
+    @Test
+    void deletes_ShouldFreeSlotsAndBlocksForReuse() {
+        List<WeatherForecast> forecasts = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            WeatherForecast forecast = forecast("City " + i);
+            forecasts.add(forecast);
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        int slots = store.allocatedSlots();
+        long bytes = store.offHeapBytes();
+
+        for (int round = 0; round < 3; round++) {
+            for (WeatherForecast forecast : forecasts) {
+                store.computeIfPresent(forecast.getId(), previous -> null);
+            }
+            forecasts.clear();
+            for (int i = 0; i < 20_000; i++) {
+                WeatherForecast forecast = forecast("City " + i);
+                forecasts.add(forecast);
+                store.compute(forecast.getId(), previous -> forecast);
+            }
+        }
+
+        assertEquals(slots, store.allocatedSlots());
+        assertEquals(bytes, store.offHeapBytes());
+        assertEquals(20_000, store.size());
+        assertEquals("City 123", store.get(forecasts.get(123).getId()).getCity());
+    }
+
+    @Test
+    void compute_WithStringLargerThanAChunk_ShouldUseDedicatedChunk() {
+        WeatherForecast forecast = forecast("Oslo");
+        forecast.setDescription("d".repeat(3 << 20));
+        store.compute(forecast.getId(), previous -> forecast);
+        long bytes = store.offHeapBytes();
+
+        assertEquals(forecast.getDescription(), store.get(forecast.getId()).getDescription());
+
+        store.computeIfPresent(forecast.getId(), previous -> null);
+
+        assertTrue(store.offHeapBytes() < bytes);
+    }
+
+    @Test
+    void compute_WhenRemappingThrows_ShouldLeaveEntryUnchanged() {
+        WeatherForecast forecast = forecast("Oslo");
+        store.compute(forecast.getId(), previous -> forecast);
+
+        assertThrows(DuplicateForecastException.class, () -> store.compute(forecast.getId(), previous -> {
+            throw new DuplicateForecastException("other");
+        }));
+
+        assertEquals("Oslo", store.get(forecast.getId()).getCity());
+    }
+
+    @Test
+    void get_DuringConcurrentRewrites_ShouldNeverSeeATornRecord() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            WeatherForecast forecast = consistent(forecast("Oslo"), 0);
+            ids.add(forecast.getId());
+            store.compute(forecast.getId(), previous -> forecast);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?> writer = pool.submit(() -> {
+            start.await();
+            for (int n = 1; n <= 20_000; n++) {
+                int round = n;
+                String id = ids.get(n % ids.size());
+                store.compute(id, previous -> consistent(new WeatherForecast(previous), round));
+                // Churn unrelated slots and blocks so freed space is reused under the readers.
+                WeatherForecast other = forecast("Tromsø");
+                store.compute(other.getId(), previous -> other);
+                store.computeIfPresent(other.getId(), previous -> null);
+            }
+            running.set(false);
+            return null;
+        });
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    for (String id : ids) {
+                        WeatherForecast read = store.get(id);
+                        assertEquals(read.getHumidity(), read.getDescription().length());
+                        assertEquals(read.getHumidity(), (int) read.getTemperatureCelsius());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        writer.get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        pool.shutdown();
+
+        assertEquals(ids.size(), store.size());
+    }
+
+    @Test
+    void repository_WithOffHeapStore_ShouldServeQueriesAndHistory() {
+        WeatherRepository repository = new WeatherRepository(Clock.systemUTC(), 10, store);
+        WeatherForecast forecast = repository.save(forecast("Oslo"));
+        repository.save(forecast("Bergen"));
+        WeatherForecast updated = new WeatherForecast(forecast);
+        updated.setTemperatureCelsius(-3.0);
+        repository.save(updated);
+
+        assertEquals(-3.0, repository.findById(forecast.getId()).get().getTemperatureCelsius());
+        assertEquals(1, repository.findByCity("oslo").size());
+        assertEquals(2, repository.findHistory(forecast.getId()).size());
+        assertEquals(5.0, repository.findHistory(forecast.getId()).get(1).getForecast().getTemperatureCelsius());
+
+        repository.deleteById(forecast.getId());
+
+        assertEquals(1, repository.count());
+        assertEquals(-3.0, repository.findHistory(forecast.getId()).get(0).getForecast().getTemperatureCelsius());
+    }
+
+    private static WeatherForecast consistent(WeatherForecast forecast, int round) {
+        int value = round % 100;
+        forecast.setHumidity(value);
+        forecast.setTemperatureCelsius(value);
+        forecast.setDescription("r".repeat(value));
+        return forecast;
+    }
+
+    private static WeatherForecast forecast(String city) {
+        return new WeatherForecast(city, "Norway", LocalDate.now(), 5.0, "Cloudy", 0, 10.0, "N", "Test");
+    }
+}
@@ -0,0 +1,63 @@
+package com.weather.api.repository;
+
+import com.weather.api.model.QueryShapeStats;
+import com.weather.api.model.SlowQuery;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStatsTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-03-10T12:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void shapeStats_ShouldCountRunsAndRowsPerShape() {
+        QueryStats stats = new QueryStats(CLOCK, 1000, 10);
+        QueryStats.Shape byCity = stats.shape("findByCity", "city");
+        QueryStats.Shape byId = stats.shape("findById", "id");
+        stats.shape("findAll");
+
+        byCity.record(System.nanoTime(), false, 1000, 3, "Oslo", null, null);
+        byCity.record(System.nanoTime(), true, 3, 3, "Oslo", null, null);
+        byId.record(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50), true, 1, 1, "abc", null, null);
+
+        List<QueryShapeStats> shapes = stats.shapeStats();
+        assertEquals(2, shapes.size());
+        assertEquals("findById", shapes.get(0).getShape());
+        QueryShapeStats city = shapes.get(1);
+        assertEquals(2, city.getCount());
+        assertEquals(1, city.getIndexedCount());
+        assertEquals(1, city.getScanCount());
+        assertEquals(1003, city.getRowsScanned());
+        assertEquals(6, city.getRowsReturned());
+        assertTrue(shapes.get(0).getP99Micros() >= 49_000);
+        assertTrue(stats.slowQueries().isEmpty());
+    }
+
+    @Test
+    void record_AboveThreshold_ShouldKeepTheMostRecentSlowQueries() {
+        QueryStats stats = new QueryStats(CLOCK, 0, 2);
+        QueryStats.Shape range = stats.shape("findByCityAndDateRange", "city", "startDate", "endDate");
+
+        range.record(System.nanoTime(), false, 500, 2, "Oslo", LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 7));
+        range.record(System.nanoTime(), true, 10, 1, "Bergen", LocalDate.of(2026, 3, 1), null);
+        range.record(System.nanoTime(), true, 10, 0, "Tromso", null, null);
+
+        List<SlowQuery> slow = stats.slowQueries();
+        assertEquals(2, slow.size());
+        assertEquals("city=Tromso, startDate=null, endDate=null", slow.get(0).getParameters());
+        SlowQuery bergen = slow.get(1);
+        assertEquals("findByCityAndDateRange", bergen.getShape());
+        assertEquals("city=Bergen, startDate=2026-03-01, endDate=null", bergen.getParameters());
+        assertEquals(QueryStats.INDEX, bergen.getAccessPath());
+        assertEquals(10, bergen.getRowsScanned());
+        assertEquals(1, bergen.getRowsReturned());
+        assertEquals(CLOCK.instant(), bergen.getTimestamp());
+    }
+}
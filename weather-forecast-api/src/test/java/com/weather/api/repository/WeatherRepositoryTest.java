@@ -1,12 +1,29 @@
 package com.weather.api.repository;
 
+import com.weather.api.model.CitySuggestion;
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastProjection;
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.QueryShapeStats;
+import com.weather.api.model.SlowQuery;
 import com.weather.api.model.WeatherForecast;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,6 +47,100 @@ class WeatherRepositoryTest {
         assertEquals("New York", saved.getCity());
     }
 
+    @Test
+    void saveAll_ShouldSaveAndIndexEveryForecast() {
+        List<WeatherForecast> batch = List.of(
+                createForecast("Oslo", "Norway", LocalDate.now()),
+                createForecast("Oslo", "Norway", LocalDate.now().plusDays(1)),
+                createForecast("Bergen", "Norway", LocalDate.now()));
+
+        repository.saveAll(batch);
+
+        assertEquals(3, repository.count());
+        assertEquals(2, repository.findByCity("oslo").size());
+        assertEquals(1, repository.findHistory(batch.get(2).getId()).size());
+    }
+
+    @Test
+    void listeners_ShouldOnlyHearOfChangesOnceTheyAreVisible() {
+        WeatherForecast forecast = createForecast("Oslo", "Norway", LocalDate.now());
+        List<String> seen = new ArrayList<>();
+        repository.addListener(new ForecastChangeListener() {
+            @Override
+            public void onForecastChanged(WeatherForecast previous, WeatherForecast current) {
+                Optional<WeatherForecast> stored = repository.findById(forecast.getId());
+                seen.add(stored.map(WeatherForecast::getCity).orElse("-") + '/'
+                        + repository.findByCity(stored.isPresent() ? stored.get().getCity() : "Oslo").size());
+            }
+
+            @Override
+            public void onForecastsCleared() {
+            }
+        });
+
+        repository.save(forecast);
+        WeatherForecast moved = createForecast("Bergen", "Norway", forecast.getDate());
+        moved.setId(forecast.getId());
+        repository.save(moved);
+        repository.deleteById(forecast.getId());
+
+        assertEquals(List.of("Oslo/1", "Bergen/1", "-/0"), seen);
+    }
+
+    @Test
+    void saveAll_WhenTheStoreFailsToCommitAChunk_ShouldOnlyPublishTheCommittedOnes() {
+        JdbcForecastStore store = new JdbcForecastStore("jdbc:h2:mem:" + UUID.randomUUID(), 2, 2);
+        WeatherRepository jdbc = new WeatherRepository(Clock.systemUTC(), WeatherRepository.DEFAULT_MAX_VERSIONS, store);
+        List<WeatherForecast> changed = new ArrayList<>();
+        jdbc.addListener(new ForecastChangeListener() {
+            @Override
+            public void onForecastChanged(WeatherForecast previous, WeatherForecast current) {
+                changed.add(current);
+            }
+
+            @Override
+            public void onForecastsCleared() {
+            }
+        });
+        WeatherForecast first = createForecast("Oslo", "Norway", LocalDate.now());
+        WeatherForecast second = createForecast("Bergen", "Norway", LocalDate.now());
+        WeatherForecast third = createForecast("Tromsø", "Norway", LocalDate.now());
+        WeatherForecast unstorable = createForecast("Bodø", "Norway", LocalDate.now());
+        // Longer than the id column, so the second chunk's commit fails.
+        unstorable.setId("x".repeat(100));
+        try {
+            ForecastStoreWriteException thrown = assertThrows(ForecastStoreWriteException.class,
+                    () -> jdbc.saveAll(List.of(first, second, third, unstorable)));
+
+            assertEquals(2, thrown.getDiscarded());
+            assertEquals(List.of(first, second), changed);
+            assertEquals(2, jdbc.count());
+            assertTrue(jdbc.findByCity("Tromsø").isEmpty());
+            assertFalse(jdbc.findByNaturalKey("Tromsø", "Norway", LocalDate.now()).isPresent());
+            // The discarded forecast's natural key is free again.
+            jdbc.save(createForecast("Tromsø", "Norway", LocalDate.now()));
+            assertEquals(1, jdbc.findByCity("Tromsø").size());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void saveAll_WithTakenNaturalKey_ShouldKeepForecastsBeforeIt() {
+        WeatherForecast existing = repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+        WeatherForecast first = createForecast("Bergen", "Norway", LocalDate.now());
+        WeatherForecast duplicate = createForecast("Oslo", "Norway", LocalDate.now());
+        WeatherForecast last = createForecast("Tromsø", "Norway", LocalDate.now());
+
+        DuplicateForecastException thrown = assertThrows(DuplicateForecastException.class,
+                () -> repository.saveAll(List.of(first, duplicate, last)));
+
+        assertEquals(existing.getId(), thrown.getExistingId());
+        assertTrue(repository.existsById(first.getId()));
+        assertFalse(repository.existsById(duplicate.getId()));
+        assertFalse(repository.existsById(last.getId()));
+    }
+
     @Test
     void findById_WhenExists_ShouldReturnForecast() {
         WeatherForecast forecast = createForecast("London", "UK", LocalDate.now());
@@ -41,6 +152,22 @@ class WeatherRepositoryTest {
         assertEquals("London", found.get().getCity());
     }
 
+    @Test
+    void findById_WithLegacyUuidId_ShouldReturnForecast() {
+        WeatherForecast forecast = createForecast("London", "UK", LocalDate.now());
+        forecast.setId(UUID.randomUUID().toString());
+        repository.save(forecast);
+        repository.save(createForecast("Paris", "France", LocalDate.now()));
+
+        assertEquals(Optional.of(forecast), repository.findById(forecast.getId()));
+        assertEquals(2, repository.findAll().size());
+
+        repository.deleteById(forecast.getId());
+
+        assertFalse(repository.existsById(forecast.getId()));
+        assertEquals(1, repository.count());
+    }
+
     @Test
     void findById_WhenNotExists_ShouldReturnEmpty() {
         Optional<WeatherForecast> found = repository.findById("non-existent-id");
@@ -206,7 +333,511 @@ class WeatherRepositoryTest {
         assertEquals(0, repository.count());
     }
 
+    @Test
+    void suggestCities_ShouldReturnSavedCities() {
+        repository.save(createForecast("London", "UK", LocalDate.now()));
+        repository.save(createForecast("London", "UK", LocalDate.now().plusDays(1)));
+        repository.save(createForecast("Lisbon", "Portugal", LocalDate.now()));
+
+        List<CitySuggestion> suggestions = repository.suggestCities("l", 10);
+
+        assertEquals(2, suggestions.size());
+        assertEquals("London", suggestions.get(0).getCity());
+        assertEquals(2, suggestions.get(0).getForecastCount());
+    }
+
+    @Test
+    void suggestCities_AfterCityChange_ShouldReflectNewCity() {
+        WeatherForecast forecast = createForecast("Oslo", "Norway", LocalDate.now());
+        repository.save(forecast);
+        WeatherForecast renamed = createForecast("Bergen", "Norway", LocalDate.now());
+        renamed.setId(forecast.getId());
+
+        repository.save(renamed);
+
+        assertTrue(repository.suggestCities("oslo", 10).isEmpty());
+        assertEquals("Bergen", repository.suggestCities("berg", 10).get(0).getCity());
+    }
+
+    @Test
+    void suggestCities_AfterDelete_ShouldNotReturnDeletedCity() {
+        WeatherForecast forecast = createForecast("Vienna", "Austria", LocalDate.now());
+        repository.save(forecast);
+
+        repository.deleteById(forecast.getId());
+
+        assertTrue(repository.suggestCities("vie", 10).isEmpty());
+    }
+
+    @Test
+    void findWithinRadius_ShouldReturnForecastsNearPoint() {
+        WeatherForecast london = locate(createForecast("London", "UK", LocalDate.now()), 51.5074, -0.1278);
+        repository.save(london);
+        repository.save(locate(createForecast("Tokyo", "Japan", LocalDate.now()), 35.6762, 139.6503));
+
+        List<WeatherForecast> found = repository.findWithinRadius(51.5, 0.0, 50);
+
+        assertEquals(1, found.size());
+        assertEquals(london.getId(), found.get(0).getId());
+    }
+
+    @Test
+    void findWithinRadius_AfterLocationChange_ShouldUseNewLocation() {
+        WeatherForecast forecast = locate(createForecast("Lisbon", "Portugal", LocalDate.now()), 38.7223, -9.1393);
+        repository.save(forecast);
+        WeatherForecast moved = locate(createForecast("Porto", "Portugal", LocalDate.now()), 41.1579, -8.6291);
+        moved.setId(forecast.getId());
+
+        repository.save(moved);
+
+        assertTrue(repository.findWithinRadius(38.7223, -9.1393, 50).isEmpty());
+        assertEquals(1, repository.findWithinRadius(41.1579, -8.6291, 50).size());
+    }
+
+    @Test
+    void findNearestCities_ShouldReturnClosestCities() {
+        repository.save(locate(createForecast("London", "UK", LocalDate.now()), 51.5074, -0.1278));
+        repository.save(locate(createForecast("Paris", "France", LocalDate.now()), 48.8566, 2.3522));
+        repository.save(locate(createForecast("Tokyo", "Japan", LocalDate.now()), 35.6762, 139.6503));
+
+        List<NearbyCity> nearest = repository.findNearestCities(51.0, -0.5, 1);
+
+        assertEquals(1, nearest.size());
+        assertEquals("London", nearest.get(0).getCity());
+    }
+
+    @Test
+    void deleteById_ShouldRemoveForecastFromSpatialIndex() {
+        WeatherForecast forecast = locate(createForecast("Oslo", "Norway", LocalDate.now()), 59.9139, 10.7522);
+        repository.save(forecast);
+
+        repository.deleteById(forecast.getId());
+
+        assertTrue(repository.findWithinRadius(59.9139, 10.7522, 10).isEmpty());
+    }
+
+    @Test
+    void findIdsDatedBefore_ShouldReturnOldestFirstUpToLimit() {
+        LocalDate today = LocalDate.now();
+        WeatherForecast oldest = createForecast("Rome", "Italy", today.minusDays(5));
+        WeatherForecast older = createForecast("Rome", "Italy", today.minusDays(3));
+        repository.save(older);
+        repository.save(oldest);
+        repository.save(createForecast("Rome", "Italy", today));
+
+        assertEquals(List.of(oldest.getId(), older.getId()), repository.findIdsDatedBefore(today, 10));
+        assertEquals(List.of(oldest.getId()), repository.findIdsDatedBefore(today, 1));
+    }
+
+    @Test
+    void findIdsDatedBefore_AfterDateChange_ShouldUseNewDate() {
+        LocalDate today = LocalDate.now();
+        WeatherForecast forecast = createForecast("Rome", "Italy", today.minusDays(5));
+        repository.save(forecast);
+        WeatherForecast moved = createForecast("Rome", "Italy", today);
+        moved.setId(forecast.getId());
+
+        repository.save(moved);
+
+        assertTrue(repository.findIdsDatedBefore(today, 10).isEmpty());
+    }
+
+    @Test
+    void findIdsExceedingCityCap_ShouldReturnOldestBeyondCap() {
+        LocalDate today = LocalDate.now();
+        WeatherForecast oldest = createForecast("Rome", "Italy", today);
+        repository.save(oldest);
+        repository.save(createForecast("Rome", "Italy", today.plusDays(1)));
+        repository.save(createForecast("Rome", "Italy", today.plusDays(2)));
+        repository.save(createForecast("Milan", "Italy", today));
+
+        assertEquals(List.of(oldest.getId()), repository.findIdsExceedingCityCap(2, 10));
+        assertTrue(repository.findIdsExceedingCityCap(3, 10).isEmpty());
+    }
+
+    @Test
+    void findByCity_WithProjection_ShouldMapMatchesDuringScan() {
+        repository.save(createForecast("London", "UK", LocalDate.now()));
+        repository.save(createForecast("london", "UK", LocalDate.now().plusDays(1)));
+        repository.save(createForecast("Paris", "France", LocalDate.now()));
+        ForecastFieldSet fields = ForecastFieldSet.parse("date,condition");
+
+        List<ForecastProjection> found = repository.findByCity("LONDON", fields::project);
+
+        assertEquals(2, found.size());
+        assertEquals("Sunny", found.get(0).get(ForecastField.CONDITION));
+        assertNull(found.get(0).get(ForecastField.CITY));
+    }
+
+    @Test
+    void findByCityAndDateRange_WithProjection_ShouldApplyFilter() {
+        LocalDate today = LocalDate.now();
+        repository.save(createForecast("Oslo", "Norway", today));
+        repository.save(createForecast("Oslo", "Norway", today.plusDays(5)));
+
+        List<LocalDate> dates = repository.findByCityAndDateRange("Oslo", today, today.plusDays(1), WeatherForecast::getDate);
+
+        assertEquals(List.of(today), dates);
+    }
+
+    @Test
+    void findWithinRadius_WithProjection_ShouldKeepDistanceOrder() {
+        repository.save(locate(createForecast("Paris", "France", LocalDate.now()), 48.8566, 2.3522));
+        repository.save(locate(createForecast("London", "UK", LocalDate.now()), 51.5074, -0.1278));
+
+        List<String> cities = repository.findWithinRadius(51.0, 0.0, 500, WeatherForecast::getCity);
+
+        assertEquals(List.of("London", "Paris"), cities);
+    }
+
+    @Test
+    void save_WithDuplicateNaturalKey_ShouldThrowAndKeepOriginal() {
+        WeatherForecast original = repository.save(createForecast("London", "UK", LocalDate.now()));
+
+        DuplicateForecastException error = assertThrows(DuplicateForecastException.class,
+                () -> repository.save(createForecast(" london ", "uk", LocalDate.now())));
+
+        assertEquals(original.getId(), error.getExistingId());
+        assertEquals(1, repository.count());
+        assertEquals(1, repository.findByCity("London").size());
+    }
+
+    @Test
+    void save_UpdateIntoTakenNaturalKey_ShouldThrowAndLeaveForecastUnchanged() {
+        LocalDate today = LocalDate.now();
+        repository.save(createForecast("Rome", "Italy", today));
+        WeatherForecast tomorrow = repository.save(createForecast("Rome", "Italy", today.plusDays(1)));
+        WeatherForecast moved = new WeatherForecast(tomorrow);
+        moved.setDate(today);
+
+        assertThrows(DuplicateForecastException.class, () -> repository.save(moved));
+
+        assertEquals(today.plusDays(1), repository.findById(tomorrow.getId()).get().getDate());
+        assertTrue(repository.findByNaturalKey("Rome", "Italy", today.plusDays(1)).isPresent());
+    }
+
+    @Test
+    void save_UpdateChangingNaturalKey_ShouldReleaseOldKey() {
+        WeatherForecast forecast = repository.save(createForecast("Rome", "Italy", LocalDate.now()));
+        WeatherForecast moved = new WeatherForecast(forecast);
+        moved.setDate(LocalDate.now().plusDays(3));
+        repository.save(moved);
+
+        repository.save(createForecast("Rome", "Italy", LocalDate.now()));
+
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void upsert_ShouldInsertThenReplaceKeepingId() {
+        WeatherForecast first = repository.upsert(createForecast("Lima", "Peru", LocalDate.now()));
+        WeatherForecast rerun = createForecast("LIMA", "Peru", LocalDate.now());
+        rerun.setTemperatureCelsius(26.0);
+
+        WeatherForecast stored = repository.upsert(rerun);
+
+        assertEquals(first.getId(), stored.getId());
+        assertEquals(1, repository.count());
+        assertEquals(26.0, repository.findById(first.getId()).get().getTemperatureCelsius());
+        assertEquals(2, repository.findHistory(first.getId()).size());
+    }
+
+    @Test
+    void deleteById_ShouldReleaseNaturalKey() {
+        WeatherForecast forecast = repository.save(createForecast("Lima", "Peru", LocalDate.now()));
+
+        repository.deleteById(forecast.getId());
+
+        assertTrue(repository.findByNaturalKey("Lima", "Peru", LocalDate.now()).isEmpty());
+        assertDoesNotThrow(() -> repository.save(createForecast("Lima", "Peru", LocalDate.now())));
+    }
+
+    @Test
+    void upsert_FromConcurrentWriters_ShouldKeepOneForecastPerKey() throws Exception {
+        int writers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int day = 0; day < 200; day++) {
+                    repository.upsert(createForecast("Quito", "Ecuador", LocalDate.of(2025, 1, 1).plusDays(day % 50)));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(50, repository.count());
+        assertEquals(50, repository.findByCity("Quito").size());
+    }
+
+    @Test
+    void findByIdAsOf_ShouldReturnVersionAtInstant() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-06-01T00:00:00Z"));
+        WeatherRepository versioned = new WeatherRepository(clock, 10);
+        WeatherForecast forecast = createForecast("Lima", "Peru", LocalDate.now());
+        versioned.save(forecast);
+        clock.advanceSeconds(3600);
+        WeatherForecast revised = new WeatherForecast(forecast);
+        revised.setTemperatureCelsius(25.0);
+
+        versioned.save(revised);
+
+        assertEquals(20.0, versioned.findByIdAsOf(forecast.getId(), clock.instant().minusSeconds(1)).get().getTemperatureCelsius());
+        assertEquals(25.0, versioned.findByIdAsOf(forecast.getId(), clock.instant()).get().getTemperatureCelsius());
+        assertEquals(25.0, versioned.findById(forecast.getId()).get().getTemperatureCelsius());
+        assertEquals(2, versioned.findHistory(forecast.getId()).size());
+    }
+
+    @Test
+    void findAllAsOf_ShouldIncludeDeletedForecasts() {
+        MutableClock clock = new MutableClock(Instant.parse("2025-06-01T00:00:00Z"));
+        WeatherRepository versioned = new WeatherRepository(clock, 10);
+        WeatherForecast forecast = createForecast("Quito", "Ecuador", LocalDate.now());
+        versioned.save(forecast);
+        Instant beforeDelete = clock.instant();
+        clock.advanceSeconds(60);
+
+        versioned.deleteById(forecast.getId());
+
+        assertEquals(0, versioned.count());
+        assertEquals(1, versioned.findAllAsOf(beforeDelete).size());
+        assertTrue(versioned.findAllAsOf(clock.instant()).isEmpty());
+    }
+
+    @Test
+    void pruneHistory_ShouldForgetDeletedForecasts() {
+        WeatherForecast forecast = createForecast("Quito", "Ecuador", LocalDate.now());
+        repository.save(forecast);
+        repository.deleteById(forecast.getId());
+
+        repository.pruneHistory(Instant.now().plusSeconds(1));
+
+        assertTrue(repository.findHistory(forecast.getId()).isEmpty());
+    }
+
+    private WeatherForecast locate(WeatherForecast forecast, double latitude, double longitude) {
+        forecast.setLatitude(latitude);
+        forecast.setLongitude(longitude);
+        return forecast;
+    }
+
+    @Test
+    void save_ShouldStartAtVersionOneAndBumpOnlyOnChange() {
+        WeatherForecast forecast = repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+        assertEquals(1, forecast.getVersion());
+
+        WeatherForecast same = new WeatherForecast(forecast);
+        repository.save(same);
+        assertEquals(1, same.getVersion());
+
+        WeatherForecast changed = new WeatherForecast(forecast);
+        changed.setHumidity(90);
+        repository.save(changed);
+        assertEquals(2, repository.findById(forecast.getId()).get().getVersion());
+        assertEquals(2, repository.findHistory(forecast.getId()).size());
+    }
+
+    @Test
+    void replace_WithExpectedVersion_ShouldOnlyApplyToThatVersion() {
+        WeatherForecast forecast = repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+        WeatherForecast first = new WeatherForecast(forecast);
+        first.setHumidity(60);
+        WeatherForecast second = new WeatherForecast(forecast);
+        second.setHumidity(70);
+
+        assertEquals(2, repository.replace(first, 1L).get().getVersion());
+        ForecastVersionConflictException conflict = assertThrows(ForecastVersionConflictException.class,
+                () -> repository.replace(second, 1L));
+
+        assertEquals(2, conflict.getCurrentVersion());
+        assertEquals(60, repository.findById(forecast.getId()).get().getHumidity());
+    }
+
+    @Test
+    void lowerCaseCompactId_ShouldReplaceAndDeleteTheSameForecastEverywhere() {
+        LocalDate date = LocalDate.of(2026, 1, 1);
+        WeatherForecast forecast = repository.save(createForecast("Oslo", "Norway", date));
+        String lowerCase = forecast.getId().toLowerCase();
+        WeatherForecast moved = new WeatherForecast(forecast);
+        moved.setId(lowerCase);
+        moved.setCity("Bergen");
+
+        repository.replace(moved, null);
+
+        assertEquals(forecast.getId(), moved.getId());
+        assertTrue(repository.findByCity("Oslo").isEmpty());
+        assertFalse(repository.existsByCity("Oslo"));
+        assertEquals(1, repository.findByCity("Bergen").size());
+        assertTrue(repository.findByNaturalKey("Oslo", "Norway", date).isEmpty());
+        assertEquals(2, repository.findHistory(lowerCase).size());
+
+        assertTrue(repository.deleteById(lowerCase, null));
+
+        assertFalse(repository.existsByCity("Bergen"));
+        assertTrue(repository.findByNaturalKey("Bergen", "Norway", date).isEmpty());
+        repository.save(createForecast("Bergen", "Norway", date));
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void replace_WhenMissing_ShouldNotInsert() {
+        WeatherForecast forecast = createForecast("Oslo", "Norway", LocalDate.now());
+
+        assertTrue(repository.replace(forecast, null).isEmpty());
+        assertFalse(repository.existsById(forecast.getId()));
+    }
+
+    @Test
+    void deleteById_WithExpectedVersion_ShouldRefuseOtherVersions() {
+        WeatherForecast forecast = repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+
+        assertThrows(ForecastVersionConflictException.class, () -> repository.deleteById(forecast.getId(), 2L));
+        assertTrue(repository.existsById(forecast.getId()));
+        assertTrue(repository.deleteById(forecast.getId(), 1L));
+        assertFalse(repository.deleteById(forecast.getId(), 1L));
+    }
+
+    @Test
+    void replace_FromConcurrentReadModifyWriteLoops_ShouldLoseNoUpdates() throws Exception {
+        WeatherForecast forecast = createForecast("Oslo", "Norway", LocalDate.now());
+        forecast.setHumidity(0);
+        repository.save(forecast);
+        int threads = 8;
+        int incrementsPerThread = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> retries = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            retries.add(pool.submit(() -> {
+                start.await();
+                int conflicts = 0;
+                for (int i = 0; i < incrementsPerThread; i++) {
+                    while (true) {
+                        WeatherForecast current = repository.findById(forecast.getId()).get();
+                        WeatherForecast next = new WeatherForecast(current);
+                        next.setHumidity(current.getHumidity() + 1);
+                        try {
+                            repository.replace(next, current.getVersion());
+                            break;
+                        } catch (ForecastVersionConflictException e) {
+                            conflicts++;
+                        }
+                    }
+                }
+                return conflicts;
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : retries) {
+            result.get();
+        }
+        pool.shutdown();
+
+        WeatherForecast stored = repository.findById(forecast.getId()).get();
+        assertEquals(threads * incrementsPerThread, stored.getHumidity());
+        assertEquals(1 + threads * incrementsPerThread, stored.getVersion());
+    }
+
+    @Test
+    void findByCity_ForUnknownCity_ShouldBeRejectedByTheCityFilter() {
+        repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+
+        assertTrue(repository.findByCity("Olso").isEmpty());
+        assertTrue(repository.findByCityAndCountry("Oslo", "Sweden").isEmpty());
+        assertEquals(1, repository.findByCity("OSLO").size());
+        assertEquals(1, repository.findByCityAndCountry("oslo", "NORWAY").size());
+
+        assertEquals(2, repository.getCityFilterRejections());
+        assertEquals(0, repository.getCityFilterFalsePositives());
+        assertTrue(repository.getCityFilterFalsePositiveRate() < 0.01);
+    }
+
+    @Test
+    void cityFilter_ShouldFollowUpdatesAndDeletes() {
+        WeatherForecast forecast = repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+        WeatherForecast moved = new WeatherForecast(forecast);
+        moved.setCity("Bergen");
+        repository.save(moved);
+
+        assertTrue(repository.findByCity("Oslo").isEmpty());
+        assertEquals(1, repository.findByCityAndDate("Bergen", LocalDate.now()).size());
+        assertEquals(1, repository.getCityFilterRejections());
+
+        repository.deleteById(forecast.getId());
+
+        assertTrue(repository.findByCityAndDateRange("Bergen", LocalDate.now(), LocalDate.now()).isEmpty());
+        assertEquals(2, repository.getCityFilterRejections());
+    }
+
+    @Test
+    void cityFilter_ShouldMatchLikeEqualsIgnoreCase() {
+        repository.save(createForecast("\u0130zmir", "T\u00fcrkiye", LocalDate.now()));
+
+        assertEquals(1, repository.findByCity("izmir").size());
+        assertEquals(0, repository.getCityFilterRejections());
+    }
+
+    @Test
+    void queryStats_ShouldRecordAccessPathAndRowsPerShape() {
+        repository = new WeatherRepository(Clock.systemUTC(), WeatherRepository.DEFAULT_MAX_VERSIONS,
+                new HeapForecastStore(), new CountingBloomFilter(1000, 0.01), new QueryStats(Clock.systemUTC(), 0, 10));
+        repository.save(createForecast("Oslo", "Norway", LocalDate.now()));
+        repository.save(createForecast("Bergen", "Norway", LocalDate.now()));
+
+        repository.findByCity("Oslo");
+        repository.lookupByCity("Oslo", null, null, f -> f);
+        repository.findByCity("Atlantis");
+
+        QueryShapeStats findByCity = repository.getQueryShapeStats().stream()
+                .filter(s -> s.getShape().equals("findByCity")).findFirst().get();
+        assertEquals(1, findByCity.getCount());
+        assertEquals(1, findByCity.getScanCount());
+        assertEquals(2, findByCity.getRowsScanned());
+        assertEquals(1, findByCity.getRowsReturned());
+        List<SlowQuery> slow = repository.getSlowQueries();
+        assertEquals(2, slow.size());
+        assertEquals("lookupByCity", slow.get(0).getShape());
+        assertEquals("index", slow.get(0).getAccessPath());
+        assertEquals("city=Oslo", slow.get(1).getParameters());
+        assertEquals("scan", slow.get(1).getAccessPath());
+        assertEquals(0, repository.getSlowQueryThresholdMs());
+    }
+
     private WeatherForecast createForecast(String city, String country, LocalDate date) {
         return new WeatherForecast(city, country, date, 20.0, "Sunny", 50, 10.0, "N", "Test description");
     }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
 }
@@ -0,0 +1,185 @@
+package com.weather.api.service;
+
+import com.weather.api.model.CityForecasts;
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastLookup;
+import com.weather.api.model.ForecastProjection;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.WeatherRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ForecastBatchServiceTest {
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    private WeatherRepository repository;
+    private ForecastBatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        repository = new WeatherRepository();
+        batchService = new ForecastBatchService(repository, 2, 2);
+        repository.save(forecast("London", TODAY.plusDays(1)));
+        repository.save(forecast("London", TODAY));
+        repository.save(forecast("Paris", TODAY.plusDays(3)));
+        repository.save(forecast("New York", TODAY));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+    }
+
+    @Test
+    void getForecastsByCities_ShouldGroupByCityInRequestOrder() {
+        List<CityForecasts> results = resolve(List.of("paris", "London"), null, null, null);
+
+        assertEquals(2, results.size());
+        assertEquals("paris", results.get(0).getCity());
+        assertEquals(1, results.get(0).getForecasts().size());
+        assertEquals("London", results.get(1).getCity());
+        List<?> london = results.get(1).getForecasts();
+        assertEquals(TODAY, ((WeatherForecast) london.get(0)).getDate());
+        assertEquals(TODAY.plusDays(1), ((WeatherForecast) london.get(1)).getDate());
+    }
+
+    @Test
+    void getForecastsByCities_ShouldMarkUnknownCitiesAsNotFound() {
+        List<CityForecasts> results = resolve(List.of("Atlantis", "London"), null, null, null);
+
+        assertFalse(results.get(0).isFound());
+        assertTrue(results.get(0).getForecasts().isEmpty());
+        assertTrue(results.get(1).isFound());
+    }
+
+    @Test
+    void getForecastsByCities_ShouldFilterByDateButKeepKnownCitiesFound() {
+        List<CityForecasts> results = resolve(List.of("London", "Paris"), TODAY, TODAY, null);
+
+        assertEquals(1, results.get(0).getForecasts().size());
+        assertTrue(results.get(1).isFound());
+        assertTrue(results.get(1).getForecasts().isEmpty());
+    }
+
+    @Test
+    void getForecastsByCities_ShouldDropDuplicatesAndBlanks() {
+        List<CityForecasts> results = resolve(List.of("New York", " new   york ", "", "NEW YORK"), null, null, null);
+
+        assertEquals(1, results.size());
+        assertEquals(1, results.get(0).getForecasts().size());
+    }
+
+    @Test
+    void getForecastsByCities_ShouldApplyProjection() {
+        ForecastFieldSet fields = ForecastFieldSet.parse("date");
+
+        List<CityForecasts> results = resolve(List.of("Paris"), null, null, fields);
+
+        ForecastProjection projection = (ForecastProjection) results.get(0).getForecasts().get(0);
+        assertEquals(TODAY.plusDays(3), projection.get(ForecastField.DATE));
+        assertNull(projection.get(ForecastField.CITY));
+    }
+
+    @Test
+    void getForecastsByCities_WhenALookupFails_ShouldReturnAnErrorEntryForThatCity() {
+        WeatherRepository failing = spy(repository);
+        doThrow(new IllegalStateException("store unavailable"))
+                .when(failing).lookupByCity(eq("Paris"), any(), any(), any(Function.class));
+        ForecastBatchService service = new ForecastBatchService(failing, 2, 2);
+        try {
+            List<CityForecasts> results = new ArrayList<>();
+            for (CompletableFuture<CityForecasts> future
+                    : service.getForecastsByCities(List.of("London", "Paris", "New York"), null, null, null)) {
+                results.add(future.join());
+            }
+
+            assertNull(results.get(0).getError());
+            assertEquals("Paris", results.get(1).getCity());
+            assertEquals("lookup failed", results.get(1).getError());
+            assertFalse(results.get(1).isFound());
+            assertEquals(1, results.get(2).getForecasts().size());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void getForecastsByCities_ShouldCapLookupsInFlightAndSkipCancelledCities() throws Exception {
+        WeatherRepository slow = spy(repository);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        doAnswer(invocation -> {
+            started.incrementAndGet();
+            release.await();
+            return invocation.callRealMethod();
+        }).when(slow).lookupByCity(anyString(), any(), any(), any(Function.class));
+        ForecastBatchService service = new ForecastBatchService(slow, 4, 2);
+        try {
+            List<CompletableFuture<CityForecasts>> results =
+                    service.getForecastsByCities(List.of("London", "Paris", "New York", "Rome", "Oslo"), null, null, null);
+            verify(slow, timeout(1_000).times(2)).lookupByCity(anyString(), any(), any(), any(Function.class));
+            Thread.sleep(50);
+            assertEquals(2, started.get());
+
+            results.forEach(result -> result.cancel(false));
+            release.countDown();
+
+            verify(slow, after(200).times(2)).lookupByCity(anyString(), any(), any(), any(Function.class));
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void getForecastsByIds_ShouldReturnFoundInRequestOrderAndListMissing() {
+        WeatherForecast first = repository.save(forecast("Rome", TODAY));
+        WeatherForecast second = repository.save(forecast("Milan", TODAY));
+
+        ForecastLookup lookup = batchService.getForecastsByIds(
+                List.of(second.getId(), "missing-1", first.getId(), second.getId(), "missing-1"), null);
+
+        assertEquals(List.of(second, first), lookup.getForecasts());
+        assertEquals(List.of("missing-1"), lookup.getMissing());
+    }
+
+    @Test
+    void getForecastsByIds_ShouldApplyProjection() {
+        WeatherForecast rome = repository.save(forecast("Rome", TODAY));
+        ForecastFieldSet fields = ForecastFieldSet.parse("city");
+
+        ForecastLookup lookup = batchService.getForecastsByIds(List.of(rome.getId()), fields);
+
+        assertEquals("Rome", ((ForecastProjection) lookup.getForecasts().get(0)).get(ForecastField.CITY));
+        assertTrue(lookup.getMissing().isEmpty());
+    }
+
+    private List<CityForecasts> resolve(List<String> cities, LocalDate start, LocalDate end,
+                                        ForecastFieldSet fields) {
+        List<CityForecasts> results = new ArrayList<>();
+        for (CompletableFuture<CityForecasts> future : batchService.getForecastsByCities(cities, start, end, fields)) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private static WeatherForecast forecast(String city, LocalDate date) {
+        return new WeatherForecast(city, "Country", date, 20.0, "Sunny", 50, 10.0, "N", "Test description");
+    }
+}
@@ -0,0 +1,155 @@
+package com.weather.api.service;
+
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.WeatherRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastEventBroadcasterTest {
+
+    private WeatherRepository repository;
+    private ForecastEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        repository = new WeatherRepository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void subscriber_ShouldReceiveCreateUpdateAndDeleteEvents() throws Exception {
+        broadcaster = new ForecastEventBroadcaster(repository, 16, ForecastEventBroadcaster.OverflowPolicy.RESYNC, 0, 1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(null, emitter);
+
+        WeatherForecast forecast = createForecast("London");
+        repository.save(forecast);
+        WeatherForecast revised = new WeatherForecast(forecast);
+        revised.setTemperatureCelsius(25.0);
+        repository.save(revised);
+        repository.deleteById(forecast.getId());
+
+        assertEquals(List.of("CREATED", "UPDATED", "DELETED"), emitter.awaitEvents(3));
+    }
+
+    @Test
+    void subscriber_WithCityFilter_ShouldOnlyReceiveMatchingEvents() throws Exception {
+        broadcaster = new ForecastEventBroadcaster(repository, 16, ForecastEventBroadcaster.OverflowPolicy.RESYNC, 0, 1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe("paris", emitter);
+
+        repository.save(createForecast("London"));
+        repository.save(createForecast("Paris"));
+
+        assertEquals(List.of("CREATED"), emitter.awaitEvents(1));
+        Thread.sleep(50);
+        assertEquals(1, emitter.events.size());
+    }
+
+    @Test
+    void subscriber_WhenBufferOverflows_ShouldBeToldToResync() throws Exception {
+        broadcaster = new ForecastEventBroadcaster(repository, 2, ForecastEventBroadcaster.OverflowPolicy.RESYNC, 0, 1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.block();
+        broadcaster.subscribe(null, emitter);
+
+        for (int i = 0; i < 5; i++) {
+            repository.save(createForecast("City" + i));
+        }
+        emitter.unblock();
+
+        assertTrue(broadcaster.getOverflowCount() > 0);
+        assertTrue(emitter.awaitEventsUntil("RESYNC"));
+        assertEquals(1, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void subscriber_WhenBufferOverflowsWithDisconnectPolicy_ShouldBeDropped() {
+        broadcaster = new ForecastEventBroadcaster(repository, 1, ForecastEventBroadcaster.OverflowPolicy.DISCONNECT, 0, 1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.block();
+        broadcaster.subscribe(null, emitter);
+
+        for (int i = 0; i < 5; i++) {
+            repository.save(createForecast("City" + i));
+        }
+        emitter.unblock();
+
+        assertEquals(0, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void deleteAll_ShouldSendClearedEvent() throws Exception {
+        broadcaster = new ForecastEventBroadcaster(repository, 16, ForecastEventBroadcaster.OverflowPolicy.RESYNC, 0, 1);
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe("Tokyo", emitter);
+
+        repository.deleteAll();
+
+        assertEquals(List.of("CLEARED"), emitter.awaitEvents(1));
+    }
+
+    private WeatherForecast createForecast(String city) {
+        return new WeatherForecast(city, "Country", LocalDate.now(), 20.0, "Sunny", 50, 10.0, "N", "Test description");
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            gate.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                String text = String.valueOf(data.getData());
+                int start = text.indexOf("event:");
+                if (start >= 0) {
+                    events.add(text.substring(start + 6, text.indexOf('\n', start)));
+                }
+            }
+        }
+
+        List<String> awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            return events;
+        }
+
+        boolean awaitEventsUntil(String name) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (!events.contains(name) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            return events.contains(name);
+        }
+    }
+}
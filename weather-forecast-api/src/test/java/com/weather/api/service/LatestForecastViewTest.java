@@ -0,0 +1,258 @@
+package com.weather.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.weather.api.config.PrecompressedResponseFilter;
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.WeatherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+class LatestForecastViewTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private WeatherRepository repository;
+    private MutableClock clock;
+
+    @BeforeEach
+    void setUp() {
+        repository = new WeatherRepository();
+        clock = new MutableClock(TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC));
+    }
+
+    @Test
+    void constructor_ShouldLoadTheWindowFromTheRepository() throws Exception {
+        repository.save(forecast("Oslo", TODAY.minusDays(1)));
+        repository.save(forecast("Oslo", TODAY));
+        repository.save(forecast("Oslo", TODAY.plusDays(2)));
+        repository.save(forecast("Oslo", TODAY.plusDays(3)));
+        repository.save(forecast("Bergen", TODAY.plusDays(1)));
+
+        JsonNode view = read(new LatestForecastView(repository, mapper, 2, clock));
+
+        assertEquals("2026-03-10", view.get("startDate").asText());
+        assertEquals("2026-03-12", view.get("endDate").asText());
+        assertEquals(2, view.get("cities").size());
+        assertEquals("Bergen", view.get("cities").get(0).get("city").asText());
+        JsonNode oslo = view.get("cities").get(1).get("forecasts");
+        assertEquals(2, oslo.size());
+        assertEquals("2026-03-10", oslo.get(0).get("date").asText());
+        assertEquals("2026-03-12", oslo.get(1).get("date").asText());
+    }
+
+    @Test
+    void changes_ShouldBeReflectedInTheNextSnapshot() throws Exception {
+        LatestForecastView view = new LatestForecastView(repository, mapper, 2, clock);
+        WeatherForecast oslo = repository.save(forecast("Oslo", TODAY));
+        LatestForecastView.Snapshot first = view.snapshot();
+
+        assertSame(first, view.snapshot());
+
+        WeatherForecast moved = new WeatherForecast(oslo);
+        moved.setDate(TODAY.plusDays(5));
+        repository.save(moved);
+        LatestForecastView.Snapshot second = view.snapshot();
+
+        assertNotEquals(first.getETag(), second.getETag());
+        assertEquals(0, read(view).get("cities").size());
+
+        repository.save(forecast("Bergen", TODAY.plusDays(1)));
+        repository.deleteAll();
+        assertEquals(0, read(view).get("cities").size());
+    }
+
+    @Test
+    void update_ShouldReplaceTheCitysForecastForThatDay() throws Exception {
+        LatestForecastView view = new LatestForecastView(repository, mapper, 2, clock);
+        WeatherForecast oslo = repository.save(forecast("Oslo", TODAY));
+        WeatherForecast warmer = new WeatherForecast(oslo);
+        warmer.setTemperatureCelsius(25.0);
+        repository.save(warmer);
+
+        JsonNode forecasts = read(view).get("cities").get(0).get("forecasts");
+
+        assertEquals(1, forecasts.size());
+        assertEquals(25.0, forecasts.get(0).get("temperatureCelsius").asDouble());
+    }
+
+    @Test
+    void snapshot_AfterMidnight_ShouldRollTheWindowForward() throws Exception {
+        repository.save(forecast("Oslo", TODAY));
+        repository.save(forecast("Oslo", TODAY.plusDays(3)));
+        LatestForecastView view = new LatestForecastView(repository, mapper, 2, clock);
+        assertEquals(1, read(view).get("cities").get(0).get("forecasts").size());
+
+        clock.advanceDays(1);
+        JsonNode rolled = read(view);
+
+        assertEquals("2026-03-11", rolled.get("startDate").asText());
+        JsonNode forecasts = rolled.get("cities").get(0).get("forecasts");
+        assertEquals(1, forecasts.size());
+        assertEquals("2026-03-13", forecasts.get(0).get("date").asText());
+    }
+
+    @Test
+    void rollover_AcrossSeveralDays_ShouldReloadTheWholeWindow() throws Exception {
+        LatestForecastView view = new LatestForecastView(repository, mapper, 1, clock);
+        repository.save(forecast("Oslo", TODAY.plusDays(10)));
+        assertEquals(0, read(view).get("cities").size());
+
+        clock.advanceDays(10);
+        view.rollover();
+
+        assertEquals(1, read(view).get("cities").size());
+    }
+
+    @Test
+    void snapshot_DuringARollover_ShouldWaitForTheLoadWhileChangesGoThrough() throws Exception {
+        WeatherRepository spied = spy(repository);
+        spied.save(forecast("Oslo", TODAY.plusDays(1)));
+        spied.save(forecast("Oslo", TODAY.plusDays(3)));
+        LatestForecastView view = new LatestForecastView(spied, mapper, 2, clock);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return invocation.callRealMethod();
+        }).when(spied).findByDateRange(any(), any());
+        clock.advanceDays(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> rolling = executor.submit(view::rollover);
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<LatestForecastView.Snapshot> reading = executor.submit(view::snapshot);
+
+            assertThrows(TimeoutException.class, () -> reading.get(200, TimeUnit.MILLISECONDS));
+            spied.save(forecast("Bergen", TODAY.plusDays(2)));
+            release.countDown();
+            rolling.get(5, TimeUnit.SECONDS);
+
+            JsonNode rolled = mapper.readTree(reading.get(5, TimeUnit.SECONDS).getJson());
+            assertEquals("2026-03-11", rolled.get("startDate").asText());
+            assertEquals("Bergen", rolled.get("cities").get(0).get("city").asText());
+            assertEquals(2, rolled.get("cities").get(1).get("forecasts").size());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rollover_WhenTheLoadFails_ShouldReloadTheWholeWindowOnTheNextRead() throws Exception {
+        WeatherRepository spied = spy(repository);
+        spied.save(forecast("Oslo", TODAY.plusDays(1)));
+        spied.save(forecast("Oslo", TODAY.plusDays(3)));
+        LatestForecastView view = new LatestForecastView(spied, mapper, 2, clock);
+        doThrow(new IllegalStateException("store unavailable")).when(spied).findByDateRange(any(), any());
+        clock.advanceDays(1);
+
+        assertThrows(IllegalStateException.class, view::rollover);
+        doAnswer(invocation -> invocation.callRealMethod()).when(spied).findByDateRange(any(), any());
+
+        JsonNode forecasts = read(view).get("cities").get(0).get("forecasts");
+        assertEquals(2, forecasts.size());
+    }
+
+    @Test
+    void snapshot_AfterMidnight_ShouldNotBeServedStaleByTheCompressionFilter() throws Exception {
+        repository.save(forecast("Oslo", TODAY.plusDays(3)));
+        LatestForecastView view = new LatestForecastView(repository, mapper, 2, clock);
+        PrecompressedResponseFilter filter = new PrecompressedResponseFilter(16, 0);
+        repository.addListener(filter);
+        assertEquals(0, readCompressed(filter, view).get("cities").size());
+
+        clock.advanceDays(1);
+        JsonNode rolled = readCompressed(filter, view);
+
+        assertEquals("2026-03-11", rolled.get("startDate").asText());
+        assertEquals(1, rolled.get("cities").size());
+    }
+
+    private JsonNode readCompressed(PrecompressedResponseFilter filter, LatestForecastView view) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/weather/latest");
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType("application/json");
+                resp.getOutputStream().write(view.snapshot().getJson());
+            }
+        }));
+        byte[] body = response.getContentAsByteArray();
+        if ("gzip".equals(response.getHeader("Content-Encoding"))) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        return mapper.readTree(body);
+    }
+
+    private JsonNode read(LatestForecastView view) throws Exception {
+        return mapper.readTree(view.snapshot().getJson());
+    }
+
+    private static WeatherForecast forecast(String city, LocalDate date) {
+        return new WeatherForecast(city, "Norway", date, 10.0, "Cloudy", 70, 12.0, "W", "Test");
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advanceDays(int days) {
+            now = now.plusSeconds(days * 86_400L);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.weather.api.service;
+
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.WeatherRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfilingServiceTest {
+    private final ProfilingService profiling = new ProfilingService(false, "default", 60, 100, 0);
+
+    @AfterEach
+    void tearDown() {
+        profiling.stop();
+    }
+
+    @Test
+    void dump_WithoutRecording_ShouldBeEmpty() {
+        assertFalse((Boolean) profiling.status().get("recording"));
+        assertTrue(profiling.dump().isEmpty());
+        assertFalse(profiling.stop());
+    }
+
+    @Test
+    void start_ShouldBeIdempotent() {
+        Object startTime = profiling.start().get("startTime");
+
+        assertEquals(startTime, profiling.start().get("startTime"));
+        assertTrue((Boolean) profiling.status().get("recording"));
+        assertTrue(profiling.stop());
+    }
+
+    @Test
+    void dump_ShouldContainRepositoryOperationEvents() throws Exception {
+        WeatherRepository repository = new WeatherRepository();
+        repository.save(new WeatherForecast("Oslo", "Norway", LocalDate.of(2026, 3, 10), 4.0, "Snow", 80, 10.0, "N", "Test"));
+        repository.save(new WeatherForecast("Bergen", "Norway", LocalDate.of(2026, 3, 10), 6.0, "Rain", 90, 12.0, "W", "Test"));
+        profiling.start();
+
+        repository.findByCity("Oslo", f -> f);
+
+        Optional<Path> file = profiling.dump();
+        assertTrue(file.isPresent());
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file.get()).stream()
+                    .filter(e -> e.getEventType().getName().equals("com.weather.api.RepositoryOperation"))
+                    .filter(e -> "findByCity".equals(e.getString("operation")))
+                    .collect(Collectors.toList());
+            assertEquals(1, events.size());
+            assertEquals(2, events.get(0).getLong("rowsScanned"));
+            assertEquals(1, events.get(0).getLong("rowsReturned"));
+        } finally {
+            Files.deleteIfExists(file.get());
+        }
+    }
+}
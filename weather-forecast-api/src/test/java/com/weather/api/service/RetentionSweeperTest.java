@@ -0,0 +1,112 @@
+package com.weather.api.service;
+
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.repository.WeatherRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionSweeperTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 15);
+
+    private WeatherRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new WeatherRepository();
+    }
+
+    @Test
+    void sweep_ShouldExpireForecastsOlderThanMaxAge() {
+        repository.save(createForecast("London", TODAY.minusDays(10)));
+        repository.save(createForecast("London", TODAY.minusDays(3)));
+        repository.save(createForecast("London", TODAY));
+        RetentionSweeper sweeper = new RetentionSweeper(repository, true, 7, 0, 256, 50, 0);
+
+        int removed = sweeper.sweep(TODAY);
+
+        assertEquals(1, removed);
+        assertEquals(2, repository.count());
+        assertEquals(1, sweeper.getExpiredTotal());
+    }
+
+    @Test
+    void sweep_ShouldKeepForecastExactlyAtCutoff() {
+        repository.save(createForecast("London", TODAY.minusDays(7)));
+        RetentionSweeper sweeper = new RetentionSweeper(repository, true, 7, 0, 256, 50, 0);
+
+        assertEquals(0, sweeper.sweep(TODAY));
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void sweep_ShouldProcessMoreThanOneBatch() {
+        for (int i = 1; i <= 20; i++) {
+            repository.save(createForecast("City" + i, TODAY.minusDays(30 + i)));
+        }
+        RetentionSweeper sweeper = new RetentionSweeper(repository, true, 7, 0, 3, 1_000, 0);
+
+        int removed = sweeper.sweep(TODAY);
+
+        assertEquals(20, removed);
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void sweep_ShouldCapEachCityToNewestForecasts() {
+        repository.save(createForecast("Paris", TODAY));
+        repository.save(createForecast("Paris", TODAY.plusDays(1)));
+        repository.save(createForecast("Paris", TODAY.plusDays(2)));
+        repository.save(createForecast("Tokyo", TODAY));
+        RetentionSweeper sweeper = new RetentionSweeper(repository, true, 0, 2, 256, 50, 0);
+
+        int removed = sweeper.sweep(TODAY);
+
+        assertEquals(1, removed);
+        assertEquals(1, sweeper.getCappedTotal());
+        assertTrue(repository.findByCity("Paris").stream().noneMatch(f -> f.getDate().equals(TODAY)));
+        assertEquals(1, repository.findByCity("Tokyo").size());
+    }
+
+    @Test
+    void sweep_ShouldPruneHistoryOutsideRetentionWindow() {
+        WeatherForecast forecast = createForecast("London", LocalDate.now());
+        repository.save(forecast);
+        repository.deleteById(forecast.getId());
+        RetentionSweeper sweeper = new RetentionSweeper(repository, true, 0, 0, 256, 50, 1);
+
+        sweeper.sweep(LocalDate.now().plusDays(2));
+
+        assertTrue(repository.findHistory(forecast.getId()).isEmpty());
+    }
+
+    @Test
+    void sweep_WhenDisabled_ShouldNotRemoveAnything() {
+        repository.save(createForecast("London", LocalDate.now().minusYears(1)));
+        RetentionSweeper sweeper = new RetentionSweeper(repository, false, 1, 0, 256, 50, 0);
+
+        sweeper.sweep();
+
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void sweep_WhenDisabled_ShouldStillPruneHistory() {
+        WeatherForecast forecast = createForecast("London", LocalDate.now());
+        repository.save(forecast);
+        repository.deleteById(forecast.getId());
+        RetentionSweeper sweeper = new RetentionSweeper(repository, false, 1, 0, 256, 50, 1);
+
+        sweeper.sweep(LocalDate.now().plusDays(2));
+
+        assertTrue(repository.findHistory(forecast.getId()).isEmpty());
+    }
+
+    private WeatherForecast createForecast(String city, LocalDate date) {
+        return new WeatherForecast(city, "Country", date, 20.0, "Sunny", 50, 10.0, "N", "Test description");
+    }
+}
@@ -0,0 +1,112 @@
+package com.weather.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+
+    @Test
+    void execute_WithConcurrentIdenticalKeys_ShouldRunOnceAndShareTheResult() throws Exception {
+        int callers = 8;
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(pool.submit(() -> flight.execute("london", () -> {
+            runs.incrementAndGet();
+            entered.countDown();
+            await(release);
+            return "result";
+        })));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < callers; i++) {
+            results.add(pool.submit(() -> flight.execute("london", () -> {
+                runs.incrementAndGet();
+                return "other";
+            })));
+        }
+        while (flight.coalesced() < callers - 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("result", result.get());
+        }
+        pool.shutdown();
+        assertEquals(1, runs.get());
+        assertEquals(1, flight.executions());
+        assertEquals(callers - 1, flight.coalesced());
+    }
+
+    @Test
+    void execute_AfterCompletion_ShouldRunAgain() {
+        assertEquals("a", flight.execute("key", () -> "a"));
+        assertEquals("b", flight.execute("key", () -> "b"));
+
+        assertEquals(2, flight.executions());
+        assertEquals(0, flight.coalesced());
+    }
+
+    @Test
+    void execute_WithDifferentKeys_ShouldNotShare() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<String> slow = pool.submit(() -> flight.execute("london", () -> {
+            await(release);
+            return "london";
+        }));
+
+        assertEquals("paris", flight.execute("paris", () -> "paris"));
+        release.countDown();
+        assertEquals("london", slow.get());
+        pool.shutdown();
+        assertEquals(0, flight.coalesced());
+    }
+
+    @Test
+    void execute_WhenComputationFails_ShouldRethrowToEveryCallerAndForgetTheKey() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<String> leader = pool.submit(() -> flight.execute("key", () -> {
+            entered.countDown();
+            await(release);
+            throw new IllegalStateException("boom");
+        }));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        Future<String> follower = pool.submit(() -> flight.execute("key", () -> "unused"));
+        while (flight.coalesced() < 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (Future<String> result : List.of(leader, follower)) {
+            Exception e = assertThrows(Exception.class, result::get);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        pool.shutdown();
+        assertEquals("fresh", flight.execute("key", () -> "fresh"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
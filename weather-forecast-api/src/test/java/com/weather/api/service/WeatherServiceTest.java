@@ -1,22 +1,43 @@
 package com.weather.api.service;
 
+import com.weather.api.model.CitySuggestion;
+import com.weather.api.model.ForecastField;
+import com.weather.api.model.ForecastFieldSet;
+import com.weather.api.model.ForecastProjection;
+import com.weather.api.model.ForecastVersion;
+import com.weather.api.model.NearbyCity;
+import com.weather.api.model.QueryShapeStats;
+import com.weather.api.model.QueryStatsReport;
 import com.weather.api.model.WeatherForecast;
 import com.weather.api.model.WeatherRequest;
+import com.weather.api.repository.ForecastChangeListener;
+import com.weather.api.repository.ForecastVersionConflictException;
 import com.weather.api.repository.WeatherRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -140,13 +161,13 @@ class WeatherServiceTest {
 
     @Test
     void updateForecast_WhenExists_ShouldUpdateAndReturnForecast() {
-        WeatherForecast existingForecast = new WeatherForecast("Old City", "Old Country", LocalDate.now(), 10.0, "Rainy", 80, 20.0, "S", "Old description");
-        when(repository.findById("test-id")).thenReturn(Optional.of(existingForecast));
-        when(repository.save(any(WeatherForecast.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.replace(any(WeatherForecast.class), isNull()))
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
 
         Optional<WeatherForecast> result = weatherService.updateForecast("test-id", validRequest);
 
         assertTrue(result.isPresent());
+        assertEquals("test-id", result.get().getId());
         assertEquals("New York", result.get().getCity());
         assertEquals("USA", result.get().getCountry());
         assertEquals(20.0, result.get().getTemperatureCelsius());
@@ -155,12 +176,215 @@ class WeatherServiceTest {
         assertEquals(10.0, result.get().getWindSpeedKmh());
         assertEquals("N", result.get().getWindDirection());
         assertEquals("Test description", result.get().getDescription());
-        verify(repository, times(1)).save(any(WeatherForecast.class));
+        verify(repository, times(1)).replace(any(WeatherForecast.class), isNull());
+    }
+
+    @Test
+    void updateForecast_WithExpectedVersion_ShouldPassItToTheRepository() {
+        when(repository.replace(any(WeatherForecast.class), eq(3L)))
+                .thenThrow(new ForecastVersionConflictException("test-id", 4));
+
+        ForecastVersionConflictException conflict = assertThrows(ForecastVersionConflictException.class,
+                () -> weatherService.updateForecast("test-id", validRequest, 3L));
+
+        assertEquals(4, conflict.getCurrentVersion());
+    }
+
+    @Test
+    void getForecastsByCity_WithConcurrentIdenticalQueries_ShouldScanOnce() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findByCity("London")).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return List.of(sampleForecast);
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<List<WeatherForecast>>> results = new ArrayList<>();
+        results.add(pool.submit(() -> weatherService.getForecastsByCity("London")));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            results.add(pool.submit(() -> weatherService.getForecastsByCity("London")));
+        }
+        while (weatherService.getCoalescedQueryCount() < 3) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (Future<List<WeatherForecast>> result : results) {
+            assertEquals(List.of(sampleForecast), result.get());
+        }
+        pool.shutdown();
+        verify(repository, times(1)).findByCity("London");
+        assertEquals(1, weatherService.getExecutedQueryCount());
+    }
+
+    @Test
+    void getForecastsByCity_AfterAChange_ShouldNotJoinAnEarlierQuery() throws Exception {
+        ArgumentCaptor<ForecastChangeListener> listener = ArgumentCaptor.forClass(ForecastChangeListener.class);
+        verify(repository).addListener(listener.capture());
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findByCity("London")).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return List.of();
+        }).thenReturn(List.of(sampleForecast));
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<List<WeatherForecast>> stale = pool.submit(() -> weatherService.getForecastsByCity("London"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        listener.getValue().onForecastChanged(null, sampleForecast);
+
+        assertEquals(List.of(sampleForecast), weatherService.getForecastsByCity("London"));
+        release.countDown();
+        assertTrue(stale.get().isEmpty());
+        pool.shutdown();
+        assertEquals(0, weatherService.getCoalescedQueryCount());
+    }
+
+    @Test
+    void getForecastsByCity_AfterAWriteReturns_ShouldReadThatWrite() throws Exception {
+        WeatherRepository real = spy(new WeatherRepository());
+        WeatherService service = new WeatherService(real);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Object before = invocation.callRealMethod();
+            entered.countDown();
+            release.await();
+            return before;
+        }).doCallRealMethod().when(real).findByCity("Oslo");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<List<WeatherForecast>> stale = pool.submit(() -> service.getForecastsByCity("Oslo"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        validRequest.setCity("Oslo");
+        WeatherForecast created = service.createForecast(validRequest);
+
+        // The repository tells the service of the write before save returns, so this query cannot
+        // join the one still blocked from before it.
+        List<WeatherForecast> fresh = pool.submit(() -> service.getForecastsByCity("Oslo")).get(5, TimeUnit.SECONDS);
+        assertEquals(1, fresh.size());
+        assertEquals(created.getId(), fresh.get(0).getId());
+        release.countDown();
+        assertTrue(stale.get().isEmpty());
+        pool.shutdown();
+        assertEquals(0, service.getCoalescedQueryCount());
+    }
+
+    @Test
+    void createForecasts_ShouldSaveAsOneBatch() {
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<WeatherForecast> created = weatherService.createForecasts(Arrays.asList(validRequest, validRequest));
+
+        assertEquals(2, created.size());
+        assertNotEquals(created.get(0).getId(), created.get(1).getId());
+        verify(repository).saveAll(anyList());
+        verify(repository, never()).save(any(WeatherForecast.class));
+    }
+
+    @Test
+    void createForecast_WithCoordinates_ShouldCopyLocation() {
+        validRequest.setLatitude(40.7128);
+        validRequest.setLongitude(-74.0060);
+        when(repository.save(any(WeatherForecast.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherForecast created = weatherService.createForecast(validRequest);
+
+        assertEquals(40.7128, created.getLatitude());
+        assertEquals(-74.0060, created.getLongitude());
+    }
+
+    @Test
+    void getForecastsNear_ShouldDelegateToRepository() {
+        when(repository.findWithinRadius(40.0, -74.0, 100.0)).thenReturn(Arrays.asList(sampleForecast));
+
+        List<WeatherForecast> result = weatherService.getForecastsNear(40.0, -74.0, 100.0);
+
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    void upsertForecast_ShouldUpsertByNaturalKey() {
+        when(repository.upsert(any(WeatherForecast.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherForecast result = weatherService.upsertForecast(validRequest);
+
+        assertEquals("New York", result.getCity());
+        verify(repository).upsert(any(WeatherForecast.class));
+        verify(repository, never()).save(any(WeatherForecast.class));
+    }
+
+    @Test
+    void getForecastsByCity_WithFields_ShouldProjectInRepository() {
+        ForecastFieldSet fields = ForecastFieldSet.parse("date,temperatureCelsius");
+        when(repository.findByCity(eq("New York"), any(ForecastFieldSet.class)))
+                .thenAnswer(invocation -> List.of(invocation.<ForecastFieldSet>getArgument(1).project(sampleForecast)));
+
+        List<ForecastProjection> result = weatherService.getForecastsByCity("New York", fields);
+
+        assertEquals(1, result.size());
+        assertEquals(20.0, result.get(0).get(ForecastField.TEMPERATURE_CELSIUS));
+        assertNull(result.get(0).get(ForecastField.CITY));
+        verify(repository, never()).findByCity("New York");
+    }
+
+    @Test
+    void getNearestCities_ShouldDelegateToRepository() {
+        NearbyCity city = new NearbyCity("New York", "USA", 40.7128, -74.0060, 12.5);
+        when(repository.findNearestCities(40.0, -74.0, 3)).thenReturn(Collections.singletonList(city));
+
+        List<NearbyCity> result = weatherService.getNearestCities(40.0, -74.0, 3);
+
+        assertEquals("New York", result.get(0).getCity());
+    }
+
+    @Test
+    void getForecastsByCityAsOf_ShouldFilterHistoricalSnapshot() {
+        Instant asOf = Instant.parse("2025-06-01T00:00:00Z");
+        WeatherForecast london = new WeatherForecast("London", "UK", LocalDate.now(), 15.0, "Cloudy", 70, 15.0, "W", "Cloudy day");
+        when(repository.findAllAsOf(asOf)).thenReturn(Arrays.asList(sampleForecast, london));
+
+        List<WeatherForecast> result = weatherService.getForecastsByCityAsOf("new york", asOf);
+
+        assertEquals(1, result.size());
+        assertEquals("New York", result.get(0).getCity());
+    }
+
+    @Test
+    void getForecastsByCityAndDateRangeAsOf_ShouldApplyRangeToSnapshot() {
+        Instant asOf = Instant.parse("2025-06-01T00:00:00Z");
+        LocalDate today = LocalDate.now();
+        when(repository.findAllAsOf(asOf)).thenReturn(Arrays.asList(sampleForecast));
+
+        assertEquals(1, weatherService.getForecastsByCityAndDateRangeAsOf("New York", today, today, asOf).size());
+        assertTrue(weatherService.getForecastsByCityAndDateRangeAsOf("New York", today.plusDays(1), today.plusDays(2), asOf).isEmpty());
+    }
+
+    @Test
+    void getForecastHistory_ShouldDelegateToRepository() {
+        ForecastVersion version = new ForecastVersion(1, Instant.now(), null, sampleForecast);
+        when(repository.findHistory("test-id")).thenReturn(Collections.singletonList(version));
+
+        assertEquals(1, weatherService.getForecastHistory("test-id").size());
+    }
+
+    @Test
+    void suggestCities_ShouldClampLimit() {
+        List<CitySuggestion> suggestions = Collections.singletonList(new CitySuggestion("London", 3, 1.0));
+        when(repository.suggestCities("lon", WeatherService.MAX_SUGGESTIONS)).thenReturn(suggestions);
+
+        List<CitySuggestion> result = weatherService.suggestCities("lon", 1000);
+
+        assertEquals(1, result.size());
+        verify(repository).suggestCities("lon", WeatherService.MAX_SUGGESTIONS);
     }
 
     @Test
     void updateForecast_WhenNotExists_ShouldReturnEmpty() {
-        when(repository.findById("non-existent")).thenReturn(Optional.empty());
+        when(repository.replace(any(WeatherForecast.class), isNull())).thenReturn(Optional.empty());
 
         Optional<WeatherForecast> result = weatherService.updateForecast("non-existent", validRequest);
 
@@ -170,23 +394,21 @@ class WeatherServiceTest {
 
     @Test
     void deleteForecast_WhenExists_ShouldReturnTrue() {
-        when(repository.existsById("test-id")).thenReturn(true);
-        doNothing().when(repository).deleteById("test-id");
+        when(repository.deleteById("test-id", null)).thenReturn(true);
 
         boolean result = weatherService.deleteForecast("test-id");
 
         assertTrue(result);
-        verify(repository, times(1)).deleteById("test-id");
+        verify(repository, times(1)).deleteById("test-id", null);
     }
 
     @Test
     void deleteForecast_WhenNotExists_ShouldReturnFalse() {
-        when(repository.existsById("non-existent")).thenReturn(false);
+        when(repository.deleteById("non-existent", null)).thenReturn(false);
 
         boolean result = weatherService.deleteForecast("non-existent");
 
         assertFalse(result);
-        verify(repository, never()).deleteById(anyString());
     }
 
     @Test
@@ -197,4 +419,18 @@ class WeatherServiceTest {
 
         assertEquals(5L, count);
     }
+
+    @Test
+    void getQueryStats_ShouldCombineRepositoryStatistics() {
+        QueryShapeStats shape = new QueryShapeStats("findByCity", 1, 0, 1, 10, 1, 5.0, 5, 5, 5, 5, 5);
+        when(repository.getSlowQueryThresholdMs()).thenReturn(100L);
+        when(repository.getQueryShapeStats()).thenReturn(List.of(shape));
+        when(repository.getSlowQueries()).thenReturn(List.of());
+
+        QueryStatsReport report = weatherService.getQueryStats();
+
+        assertEquals(100L, report.getSlowQueryThresholdMs());
+        assertEquals(List.of(shape), report.getShapes());
+        assertTrue(report.getSlowQueries().isEmpty());
+    }
 }
@@ -0,0 +1,183 @@
+package com.weather.api.service;
+
+import com.weather.api.model.WeatherForecast;
+import com.weather.api.model.WeatherRequest;
+import com.weather.api.model.WriteReceipt;
+import com.weather.api.model.WriteStatus;
+import com.weather.api.repository.WeatherRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class WriteBehindServiceTest {
+    private static final long WAIT_MS = 5_000;
+
+    private WeatherRepository repository;
+    private WeatherService weatherService;
+    private WriteBehindService writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        repository = new WeatherRepository();
+        weatherService = new WeatherService(repository);
+        writeBehind = new WriteBehindService(weatherService, 64, 16);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeBehind.shutdown();
+    }
+
+    @Test
+    void create_ShouldBeVisibleOnceTheSequenceIsApplied() throws Exception {
+        WriteReceipt receipt = writeBehind.create(request("Oslo", 0));
+
+        WriteStatus status = writeBehind.await(receipt.getSequence(), WAIT_MS);
+
+        assertTrue(status.isApplied());
+        assertNull(status.getError());
+        assertEquals("Oslo", weatherService.getForecastById(receipt.getIds().get(0)).get().getCity());
+    }
+
+    @Test
+    void writes_ShouldBeAppliedInSequenceOrder() throws Exception {
+        WriteReceipt created = writeBehind.create(request("Oslo", 0));
+        String id = created.getIds().get(0);
+        WeatherRequest update = request("Oslo", 0);
+        update.setHumidity(99);
+        writeBehind.update(id, update);
+        WriteReceipt deleted = writeBehind.delete(id);
+        WriteReceipt recreated = writeBehind.createAll(List.of(request("Bergen", 0), request("Bergen", 1)));
+
+        assertTrue(writeBehind.await(recreated.getSequence(), WAIT_MS).isApplied());
+
+        assertEquals(4, recreated.getSequence());
+        assertNull(writeBehind.await(deleted.getSequence(), 0).getError());
+        assertFalse(repository.existsById(id));
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    void manyCreates_ShouldAllBeApplied() throws Exception {
+        long last = 0;
+        for (int i = 0; i < 200; i++) {
+            WriteReceipt receipt;
+            while (true) {
+                try {
+                    receipt = writeBehind.create(request("City " + i, 0));
+                    break;
+                } catch (WriteQueueFullException e) {
+                    Thread.onSpinWait();
+                }
+            }
+            last = receipt.getSequence();
+        }
+
+        assertTrue(writeBehind.await(last, WAIT_MS).isApplied());
+        assertEquals(200, repository.count());
+        assertEquals(200, writeBehind.getAppliedSequence());
+    }
+
+    @Test
+    void failedWrites_ShouldReportTheirError() throws Exception {
+        WriteReceipt first = writeBehind.create(request("Oslo", 0));
+        WriteReceipt duplicate = writeBehind.create(request("Oslo", 0));
+        WriteReceipt other = writeBehind.create(request("Bergen", 0));
+        WriteReceipt missing = writeBehind.delete("missing");
+
+        writeBehind.await(missing.getSequence(), WAIT_MS);
+
+        assertNull(writeBehind.await(first.getSequence(), 0).getError());
+        assertNotNull(writeBehind.await(duplicate.getSequence(), 0).getError());
+        assertNull(writeBehind.await(other.getSequence(), 0).getError());
+        assertTrue(repository.existsById(other.getIds().get(0)));
+        assertFalse(repository.existsById(duplicate.getIds().get(0)));
+        assertEquals("Forecast not found: missing", writeBehind.await(missing.getSequence(), 0).getError());
+    }
+
+    @Test
+    void update_WithStaleVersion_ShouldReportTheConflict() throws Exception {
+        WriteReceipt created = writeBehind.create(request("Oslo", 0));
+        String id = created.getIds().get(0);
+        WriteReceipt current = writeBehind.update(id, request("Oslo", 1), 1L);
+        WriteReceipt stale = writeBehind.update(id, request("Oslo", 2), 1L);
+
+        writeBehind.await(stale.getSequence(), WAIT_MS);
+
+        assertNull(writeBehind.await(current.getSequence(), 0).getError());
+        assertEquals("Forecast " + id + " is at version 2", writeBehind.await(stale.getSequence(), 0).getError());
+        assertEquals(LocalDate.now().plusDays(1), repository.findById(id).get().getDate());
+    }
+
+    @Test
+    void upsert_ShouldReplaceByNaturalKey() throws Exception {
+        writeBehind.create(request("Oslo", 0));
+        WeatherRequest replacement = request("Oslo", 0);
+        replacement.setHumidity(42);
+
+        WriteReceipt receipt = writeBehind.upsert(replacement);
+        writeBehind.await(receipt.getSequence(), WAIT_MS);
+
+        assertEquals(1, repository.count());
+        assertEquals(42, repository.findAll().get(0).getHumidity());
+    }
+
+    @Test
+    void submit_WhenBufferIsFull_ShouldRefuse() throws Exception {
+        writeBehind.shutdown();
+        WeatherService blocked = mock(WeatherService.class);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(blocked.prepareForecast(any())).thenAnswer(invocation -> new WeatherForecast());
+        when(blocked.saveForecasts(anyList())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return invocation.getArgument(0);
+        });
+        writeBehind = new WriteBehindService(blocked, 4, 1);
+        writeBehind.create(request("Oslo", 0));
+        entered.await();
+
+        List<WriteReceipt> accepted = new ArrayList<>();
+        assertThrows(WriteQueueFullException.class, () -> {
+            while (true) {
+                accepted.add(writeBehind.create(request("Oslo", 0)));
+            }
+        });
+        release.countDown();
+
+        assertEquals(4, accepted.size());
+        assertTrue(writeBehind.await(accepted.get(3).getSequence(), WAIT_MS).isApplied());
+    }
+
+    @Test
+    void await_BeforeTheWriteIsApplied_ShouldTimeOut() throws Exception {
+        WriteStatus status = writeBehind.await(writeBehind.getAcceptedSequence() + 1, 10);
+
+        assertFalse(status.isApplied());
+    }
+
+    private static WeatherRequest request(String city, int dayOffset) {
+        WeatherRequest request = new WeatherRequest();
+        request.setCity(city);
+        request.setCountry("Norway");
+        request.setDate(LocalDate.now().plusDays(dayOffset));
+        request.setTemperatureCelsius(5.0);
+        request.setCondition("Cloudy");
+        request.setHumidity(70);
+        request.setWindSpeedKmh(10.0);
+        request.setWindDirection("N");
+        request.setDescription("Test");
+        return request;
+    }
+}
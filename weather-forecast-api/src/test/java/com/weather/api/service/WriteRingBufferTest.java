@@ -0,0 +1,92 @@
+package com.weather.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteRingBufferTest {
+
+    @Test
+    void capacity_ShouldRoundUpToAPowerOfTwo() {
+        assertEquals(8, new WriteRingBuffer<String>(8).capacity());
+        assertEquals(16, new WriteRingBuffer<String>(9).capacity());
+    }
+
+    @Test
+    void offer_WhenFull_ShouldRefuseUntilDrained() {
+        WriteRingBuffer<String> buffer = new WriteRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, buffer.offer("item-" + i));
+        }
+
+        assertEquals(-1, buffer.offer("overflow"));
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(2, buffer.drainTo(drained, 2));
+        assertEquals(List.of("item-0", "item-1"), drained);
+        assertEquals(4, buffer.offer("item-4"));
+        assertEquals(3, buffer.size());
+    }
+
+    @Test
+    void drainTo_AcrossWrapAround_ShouldKeepOrder() {
+        WriteRingBuffer<Integer> buffer = new WriteRingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+            if (i % 3 == 2) {
+                buffer.drainTo(drained, Integer.MAX_VALUE);
+            }
+        }
+        buffer.drainTo(drained, Integer.MAX_VALUE);
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), drained);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void offer_FromConcurrentProducers_ShouldDeliverEachItemOnceInPerProducerOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        WriteRingBuffer<long[]> buffer = new WriteRingBuffer<>(1024);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (long i = 0; i < perProducer; i++) {
+                    while (buffer.offer(new long[]{producer, i}) < 0) {
+                        Thread.onSpinWait();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        long[] next = new long[producers];
+        List<long[]> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            batch.clear();
+            received += buffer.drainTo(batch, 64);
+            for (long[] item : batch) {
+                assertEquals(next[(int) item[0]]++, item[1]);
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertEquals(0, buffer.size());
+    }
+}
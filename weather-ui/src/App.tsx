@@ -33,6 +33,19 @@ interface WeatherForecast {
   description: string;
 }
 
+interface CitySuggestion {
+  city: string;
+  forecastCount: number;
+  score: number;
+}
+
+interface ForecastEvent {
+  sequence: number;
+  type: 'CREATED' | 'UPDATED' | 'DELETED' | 'CLEARED' | 'RESYNC';
+  forecastId: string | null;
+  forecast: WeatherForecast | null;
+}
+
 const API_BASE_URL = import.meta.env.VITE_API_URL || 'http://localhost:8080';
 
 function App() {
@@ -41,6 +54,7 @@ function App() {
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
   const [useCelsius, setUseCelsius] = useState(true);
+  const [suggestions, setSuggestions] = useState<CitySuggestion[]>([]);
 
   const fetchAllForecasts = async () => {
     setLoading(true);
@@ -87,6 +101,38 @@ function App() {
     fetchAllForecasts();
   }, []);
 
+  useEffect(() => {
+    const source = new EventSource(`${API_BASE_URL}/api/weather/stream`);
+    const applyChange = (message: MessageEvent) => {
+      const event: ForecastEvent = JSON.parse(message.data);
+      setForecasts((current) => {
+        const others = current.filter((f) => f.id !== event.forecastId);
+        if (event.type === 'DELETED' || !event.forecast) return others;
+        return [...others, event.forecast];
+      });
+    };
+    source.addEventListener('CREATED', applyChange);
+    source.addEventListener('UPDATED', applyChange);
+    source.addEventListener('DELETED', applyChange);
+    source.addEventListener('CLEARED', () => setForecasts([]));
+    source.addEventListener('RESYNC', () => fetchAllForecasts());
+    return () => source.close();
+  }, []);
+
+  useEffect(() => {
+    const query = searchCity.trim();
+    if (!query) {
+      setSuggestions([]);
+      return;
+    }
+    const controller = new AbortController();
+    fetch(`${API_BASE_URL}/api/weather/cities/suggest?q=${encodeURIComponent(query)}&limit=8`, { signal: controller.signal })
+      .then((response) => (response.ok ? response.json() : []))
+      .then((data: CitySuggestion[]) => setSuggestions(data))
+      .catch(() => {});
+    return () => controller.abort();
+  }, [searchCity]);
+
   const getWeatherIcon = (condition: string) => {
     const conditionLower = condition.toLowerCase();
     if (conditionLower.includes('sunny') || conditionLower.includes('clear')) {
@@ -160,11 +206,17 @@ function App() {
               <Input
                 type="text"
                 placeholder="Search by city name..."
+                list="city-suggestions"
                 value={searchCity}
                 onChange={(e) => setSearchCity(e.target.value)}
                 onKeyDown={(e) => e.key === 'Enter' && searchByCity()}
                 className="pl-12 h-14 bg-white/10 border-white/20 text-white placeholder:text-gray-400 rounded-xl text-lg backdrop-blur-sm transition-all duration-300 focus:bg-white/20 focus:border-purple-400"
               />
+              <datalist id="city-suggestions">
+                {suggestions.map((suggestion) => (
+                  <option key={suggestion.city} value={suggestion.city} />
+                ))}
+              </datalist>
             </div>
             <Button 
               onClick={searchByCity}